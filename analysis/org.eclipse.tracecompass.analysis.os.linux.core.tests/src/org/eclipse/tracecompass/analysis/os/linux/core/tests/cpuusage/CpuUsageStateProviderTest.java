@@ -12,13 +12,24 @@
 
 package org.eclipse.tracecompass.analysis.os.linux.core.tests.cpuusage;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -29,8 +40,12 @@ import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.CpuUsageCube;
+import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.CpuUsageSamples;
 import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.KernelCpuUsageAnalysis;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelAnalysisModule;
 import org.eclipse.tracecompass.analysis.os.linux.core.tests.Activator;
@@ -47,6 +62,7 @@ import org.eclipse.tracecompass.statesystem.core.tests.shared.utils.StateInterva
 import org.eclipse.tracecompass.statesystem.core.tests.shared.utils.StateSystemTestUtils;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
 import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestHelper;
@@ -58,6 +74,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 /**
@@ -69,6 +86,13 @@ public class CpuUsageStateProviderTest {
 
     private static final String CPU_USAGE_FILE = "testfiles/cpu_analysis.xml";
 
+    /* The header of the cube file: magic number, version, start and end */
+    private static final int CUBE_MAGIC = 0x43505543;
+    private static final int CUBE_VERSION = 2;
+    private static final int CUBE_VERSION_OFFSET = 4;
+    private static final int CUBE_START_OFFSET = 8;
+    private static final int CUBE_END_OFFSET = 16;
+
     private IKernelTrace fTrace;
     private KernelCpuUsageAnalysis fModule;
 
@@ -292,6 +316,205 @@ public class CpuUsageStateProviderTest {
         assertEquals(expected, resultMap);
     }
 
+    /**
+     * Test the
+     * {@link KernelCpuUsageAnalysis#getCpuUsageInRanges(java.util.Set, long[], IProgressMonitor)}
+     * method, which must give the same usage as
+     * {@link KernelCpuUsageAnalysis#getCpuUsageInRange(java.util.Set, long, long)}
+     * for each range.
+     */
+    @Test
+    public void testUsageInRanges() {
+        fModule.schedule();
+        fModule.waitForCompletion();
+
+        long[] times = { 0L, 1L, 4L, 13L, 13L, 22L, 25L, 30L };
+        CpuUsageSamples samples = fModule.getCpuUsageInRanges(Collections.EMPTY_SET, times, new NullProgressMonitor());
+        assertEquals(times.length - 1, samples.getNbRanges());
+        assertArrayEquals(new int[] { 0, 1 }, samples.getCpus());
+        assertArrayEquals(new int[] { 1, 2, 3, 4 }, samples.getThreads());
+        assertNull(samples.getUsage(1, 2));
+
+        for (int i = 0; i < samples.getNbRanges(); i++) {
+            Map<String, Long> expected = fModule.getCpuUsageInRange(Collections.EMPTY_SET, times[i], times[i + 1]);
+            for (int cpu : samples.getCpus()) {
+                for (int tid : samples.getThreads()) {
+                    long[] usage = samples.getUsage(cpu, tid);
+                    Long value = expected.get(cpu + KernelCpuUsageAnalysis.SPLIT_STRING + tid);
+                    if (usage == null) {
+                        assertNull(value);
+                    } else {
+                        assertEquals(value, Long.valueOf(usage[i]));
+                    }
+                }
+            }
+            for (int tid : samples.getThreads()) {
+                Long value = expected.get(KernelCpuUsageAnalysis.TOTAL + KernelCpuUsageAnalysis.SPLIT_STRING + tid);
+                assertEquals(value, Long.valueOf(samples.getThreadUsage(tid)[i]));
+            }
+        }
+
+        /* A subset of the CPUs */
+        samples = fModule.getCpuUsageInRanges(Collections.<@NonNull Integer> singleton(0), new long[] { 4L, 13L }, new NullProgressMonitor());
+        assertArrayEquals(new int[] { 0 }, samples.getCpus());
+        assertArrayEquals(new long[] { 9L }, samples.getThreadUsage(2));
+        assertArrayEquals(new long[] { 0L }, samples.getThreadUsage(4));
+
+        /* A canceled monitor stops the computation */
+        IProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        samples = fModule.getCpuUsageInRanges(Collections.EMPTY_SET, times, monitor);
+        assertEquals(times.length - 1, samples.getNbRanges());
+        assertEquals(0, samples.getCpus().length);
+    }
+
+    /**
+     * Test the {@link CpuUsageCube} of the analysis, and its supplementary
+     * file, which is read back by another module and rebuilt when it does not
+     * match the state systems
+     *
+     * @throws IOException
+     *             If the cube file cannot be read or written
+     * @throws TmfAnalysisException
+     *             If the other module cannot be created
+     */
+    @Test
+    public void testCpuUsageCube() throws IOException, TmfAnalysisException {
+        fModule.schedule();
+        fModule.waitForCompletion();
+
+        CpuUsageCube cube = fModule.getCpuUsageCube();
+        assertNotNull(cube);
+        assertSame(cube, fModule.getCpuUsageCube());
+        assertEquals(1L, cube.getBucketDuration());
+        assertEquals(1L, cube.getStartTime());
+        assertEquals(25L, cube.getEndTime());
+
+        /* Total usage: 2 -> 19, 4 -> 13, 3 -> 11, 1 -> 5 */
+        assertEquals(ImmutableList.of(2, 4, 3, 1), cube.getTopThreads(Collections.EMPTY_SET, 0L, 30L, 10));
+        assertEquals(ImmutableList.of(2, 4), cube.getTopThreads(Collections.EMPTY_SET, 0L, 30L, 2));
+        assertEquals(ImmutableList.of(2, 3), cube.getTopThreads(Collections.<@NonNull Integer> singleton(0), 0L, 30L, 10));
+
+        /* The cube is saved in the supplementary files */
+        Path file = Paths.get(TmfTraceManager.getSupplementaryFileDir(fTrace), KernelCpuUsageAnalysis.ID + ".cube");
+        assertTrue(Files.exists(file));
+        assertCubeFileHeader(file);
+
+        /* Another module reads it back instead of building it again */
+        FileTime time = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, time);
+        CpuUsageCube readCube = getCubeOfNewModule();
+        assertNotNull(readCube);
+        assertEquals(time, Files.getLastModifiedTime(file));
+        assertEquals(1L, readCube.getBucketDuration());
+        assertEquals(ImmutableList.of(2, 4, 3, 1), readCube.getTopThreads(Collections.EMPTY_SET, 0L, 30L, 10));
+        assertEquals(ImmutableList.of(2, 3), readCube.getTopThreads(Collections.<@NonNull Integer> singleton(0), 0L, 30L, 10));
+
+        /* It is rebuilt if the version, start or end time do not match */
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(CUBE_VERSION_OFFSET);
+            raf.writeInt(CUBE_VERSION - 1);
+        }
+        testCubeRebuilt(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(CUBE_START_OFFSET);
+            raf.writeLong(0L);
+        }
+        testCubeRebuilt(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(CUBE_END_OFFSET);
+            raf.writeLong(30L);
+        }
+        testCubeRebuilt(file);
+    }
+
+    /**
+     * Test that the usage of a {@link CpuUsageCube} in time ranges is the one
+     * of {@link KernelCpuUsageAnalysis#getCpuUsageInRanges}, exactly when the
+     * bounds of the ranges are those of buckets, and otherwise within a bucket
+     * at each bound
+     */
+    @Test
+    public void testCpuUsageCubeInRanges() {
+        fModule.schedule();
+        fModule.waitForCompletion();
+
+        long bucketDuration = 4L;
+        CpuUsageCube cube = CpuUsageCube.build(fModule, 1L, 25L, bucketDuration);
+        assertEquals(bucketDuration, cube.getBucketDuration());
+
+        compareCubeUsage(cube, new long[] { 1L, 25L }, 0);
+        compareCubeUsage(cube, new long[] { 1L, 5L, 13L, 17L, 25L }, 0);
+        compareCubeUsage(cube, new long[] { 0L, 9L, 30L }, 0);
+        /* Partial buckets */
+        compareCubeUsage(cube, new long[] { 2L, 7L, 11L, 12L, 22L, 25L }, 2 * bucketDuration);
+        compareCubeUsage(cube, new long[] { 0L, 3L, 14L, 30L }, 2 * bucketDuration);
+    }
+
+    private void compareCubeUsage(CpuUsageCube cube, long[] times, long delta) {
+        CpuUsageSamples expected = fModule.getCpuUsageInRanges(Collections.EMPTY_SET, times, new NullProgressMonitor());
+        CpuUsageSamples actual = cube.getCpuUsageInRanges(Collections.EMPTY_SET, times);
+        assertEquals(expected.getNbRanges(), actual.getNbRanges());
+        for (int cpu : expected.getCpus()) {
+            for (int tid : expected.getThreads()) {
+                long[] expectedUsage = expected.getUsage(cpu, tid);
+                long[] actualUsage = actual.getUsage(cpu, tid);
+                for (int i = 0; i < expected.getNbRanges(); i++) {
+                    long expectedValue = (expectedUsage == null) ? 0 : expectedUsage[i];
+                    long actualValue = (actualUsage == null) ? 0 : actualUsage[i];
+                    assertEquals(expectedValue, actualValue, delta);
+                }
+            }
+        }
+        /* The cube has no usage the analysis does not have */
+        for (int cpu : actual.getCpus()) {
+            for (int tid : actual.getThreads()) {
+                if (actual.getUsage(cpu, tid) != null) {
+                    assertNotNull(expected.getUsage(cpu, tid));
+                }
+            }
+        }
+    }
+
+    private static void assertCubeFileHeader(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            assertEquals(CUBE_MAGIC, in.readInt());
+            assertEquals(CUBE_VERSION, in.readInt());
+            assertEquals(1L, in.readLong());
+            assertEquals(25L, in.readLong());
+        }
+    }
+
+    private void testCubeRebuilt(Path file) throws IOException, TmfAnalysisException {
+        FileTime time = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, time);
+        CpuUsageCube cube = getCubeOfNewModule();
+        assertNotNull(cube);
+        assertEquals(1L, cube.getStartTime());
+        assertEquals(25L, cube.getEndTime());
+        assertEquals(ImmutableList.of(2, 4, 3, 1), cube.getTopThreads(Collections.EMPTY_SET, 0L, 30L, 10));
+        /* The file is written again */
+        assertNotEquals(time, Files.getLastModifiedTime(file));
+        assertCubeFileHeader(file);
+    }
+
+    /*
+     * The cube of another module of the same analysis, which does not have the
+     * cube of the module under test in memory
+     */
+    private CpuUsageCube getCubeOfNewModule() throws TmfAnalysisException {
+        KernelCpuUsageAnalysis module = new KernelCpuUsageAnalysis();
+        try {
+            module.setId(KernelCpuUsageAnalysis.ID);
+            assertTrue(module.setTrace(fTrace));
+            module.schedule();
+            assertTrue(module.waitForCompletion());
+            return module.getCpuUsageCube();
+        } finally {
+            module.dispose();
+        }
+    }
+
     /**
      * Tests the cpu usage for a cpu subset within a range
      */
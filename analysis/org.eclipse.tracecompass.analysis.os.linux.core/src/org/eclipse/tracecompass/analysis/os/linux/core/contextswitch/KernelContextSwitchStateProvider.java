@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.analysis.os.linux.core.contextswitch;
 
+import java.util.function.Predicate;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
@@ -67,6 +69,12 @@ public class KernelContextSwitchStateProvider extends AbstractTmfStateProvider {
         return new KernelContextSwitchStateProvider(getTrace(), fLayout);
     }
 
+    @Override
+    public Predicate<String> getEventTypeFilter() {
+        String eventSchedSwitch = fLayout.eventSchedSwitch();
+        return eventName -> eventName.equals(eventSchedSwitch);
+    }
+
     /*
      * Classify sched_switch events for every CPU
      */
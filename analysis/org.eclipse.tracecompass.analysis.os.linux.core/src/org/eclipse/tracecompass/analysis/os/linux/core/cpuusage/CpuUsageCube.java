@@ -0,0 +1,509 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.os.linux.core.cpuusage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * Time spent on CPU by each thread on each CPU, precomputed in time buckets.
+ * <p>
+ * The base level splits the time range of the analysis in buckets of equal
+ * duration, and each bucket of a higher level sums {@link #FANOUT}
+ * consecutive buckets of the level below. The usage in any time range is then
+ * the sum of O(log range) buckets, instead of a query of the state systems at
+ * both ends of the range. The part of a base bucket overlapped by a range is
+ * prorated by its duration, so the usage is exact for bounds aligned to the
+ * base buckets, and otherwise off by at most one base bucket duration at each
+ * bound.
+ * <p>
+ * Each bucket stores its (CPU, thread) keys, packed in longs sorted by CPU
+ * then by thread, and the matching usage.
+ *
+ * @since 2.0
+ */
+public final class CpuUsageCube {
+
+    /** Number of buckets of a level summed in a bucket of the next level */
+    public static final int FANOUT = 4;
+
+    /** Maximum number of base buckets */
+    private static final int MAX_BUCKETS = 4096;
+    /** Number of base buckets computed by a single batch of queries */
+    private static final int CHUNK_SIZE = 256;
+
+    private static final int MAGIC = 0x43505543;
+    private static final int VERSION = 2;
+
+    private final long fStart;
+    private final long fEnd;
+    private final long fBucketDuration;
+    /* Per level and bucket, the sorted packed (cpu, tid) keys and the usage */
+    private final long[][][] fKeys;
+    private final long[][][] fValues;
+    /* All the keys, those of the root bucket */
+    private final long[] fAllKeys;
+
+    private CpuUsageCube(long start, long end, long bucketDuration, long[][][] keys, long[][][] values) {
+        fStart = start;
+        fEnd = end;
+        fBucketDuration = bucketDuration;
+        fKeys = keys;
+        fValues = values;
+        fAllKeys = keys[keys.length - 1][0];
+    }
+
+    // ------------------------------------------------------------------------
+    // Build and persistence
+    // ------------------------------------------------------------------------
+
+    /**
+     * Build the cube of a completed CPU usage analysis
+     *
+     * @param module
+     *            The CPU usage analysis
+     * @param start
+     *            The start time of the state systems
+     * @param end
+     *            The end time of the state systems
+     * @return The cube
+     */
+    static CpuUsageCube build(KernelCpuUsageAnalysis module, long start, long end) {
+        long duration = Math.max(1, end - start);
+        return build(module, start, end, Math.max(1, (duration + MAX_BUCKETS - 1) / MAX_BUCKETS));
+    }
+
+    /**
+     * Build the cube of a completed CPU usage analysis, with base buckets of
+     * a given duration
+     *
+     * @param module
+     *            The CPU usage analysis
+     * @param start
+     *            The start time of the cube
+     * @param end
+     *            The end time of the cube
+     * @param bucketDuration
+     *            The duration of the base buckets
+     * @return The cube
+     */
+    public static CpuUsageCube build(KernelCpuUsageAnalysis module, long start, long end, long bucketDuration) {
+        if (bucketDuration <= 0) {
+            throw new IllegalArgumentException("Invalid bucket duration: " + bucketDuration); //$NON-NLS-1$
+        }
+        long duration = Math.max(1, end - start);
+        int nbBuckets = (int) ((duration + bucketDuration - 1) / bucketDuration);
+
+        List<long[][]> levelKeys = new ArrayList<>();
+        List<long[][]> levelValues = new ArrayList<>();
+        long[][] keys = new long[nbBuckets][];
+        long[][] values = new long[nbBuckets][];
+        for (int first = 0; first < nbBuckets; first += CHUNK_SIZE) {
+            int nb = Math.min(CHUNK_SIZE, nbBuckets - first);
+            long[] times = new long[nb + 1];
+            for (int i = 0; i <= nb; i++) {
+                times[i] = Math.min(end, start + (first + i) * bucketDuration);
+            }
+            CpuUsageSamples samples = module.getCpuUsageInRanges(Collections.emptySet(), times, new NullProgressMonitor());
+            int[] cpus = samples.getCpus();
+            Arrays.sort(cpus);
+            int[] tids = samples.getThreads();
+            long[][] usage = new long[cpus.length * tids.length][];
+            for (int c = 0; c < cpus.length; c++) {
+                for (int t = 0; t < tids.length; t++) {
+                    usage[c * tids.length + t] = samples.getUsage(cpus[c], tids[t]);
+                }
+            }
+            for (int i = 0; i < nb; i++) {
+                /* Keep the non-zero usage, in (cpu, tid) order */
+                int count = 0;
+                for (long[] entry : usage) {
+                    if (entry != null && entry[i] > 0) {
+                        count++;
+                    }
+                }
+                long[] bucketKeys = new long[count];
+                long[] bucketValues = new long[count];
+                int index = 0;
+                for (int e = 0; e < usage.length; e++) {
+                    long[] entry = usage[e];
+                    if (entry != null && entry[i] > 0) {
+                        bucketKeys[index] = packKey(cpus[e / tids.length], tids[e % tids.length]);
+                        bucketValues[index] = entry[i];
+                        index++;
+                    }
+                }
+                keys[first + i] = bucketKeys;
+                values[first + i] = bucketValues;
+            }
+        }
+        levelKeys.add(keys);
+        levelValues.add(values);
+
+        /* Sum the buckets of each level until there is a single one */
+        while (keys.length > 1) {
+            int nbParents = (keys.length + FANOUT - 1) / FANOUT;
+            long[][] parentKeys = new long[nbParents][];
+            long[][] parentValues = new long[nbParents][];
+            for (int p = 0; p < nbParents; p++) {
+                long[] sumKeys = new long[0];
+                long[] sumValues = new long[0];
+                for (int b = p * FANOUT; b < Math.min(keys.length, (p + 1) * FANOUT); b++) {
+                    long[][] merged = merge(sumKeys, sumValues, keys[b], values[b]);
+                    sumKeys = merged[0];
+                    sumValues = merged[1];
+                }
+                parentKeys[p] = sumKeys;
+                parentValues[p] = sumValues;
+            }
+            keys = parentKeys;
+            values = parentValues;
+            levelKeys.add(keys);
+            levelValues.add(values);
+        }
+        return new CpuUsageCube(start, end, bucketDuration,
+                levelKeys.toArray(new long[levelKeys.size()][][]),
+                levelValues.toArray(new long[levelValues.size()][][]));
+    }
+
+    /* Sum two buckets, merging their sorted keys */
+    private static long[][] merge(long[] keys1, long[] values1, long[] keys2, long[] values2) {
+        long[] keys = new long[keys1.length + keys2.length];
+        long[] values = new long[keys.length];
+        int i = 0, j = 0, n = 0;
+        while (i < keys1.length || j < keys2.length) {
+            if (j == keys2.length || (i < keys1.length && keys1[i] < keys2[j])) {
+                keys[n] = keys1[i];
+                values[n++] = values1[i++];
+            } else if (i == keys1.length || keys2[j] < keys1[i]) {
+                keys[n] = keys2[j];
+                values[n++] = values2[j++];
+            } else {
+                keys[n] = keys1[i];
+                values[n++] = values1[i++] + values2[j++];
+            }
+        }
+        return new long[][] { Arrays.copyOf(keys, n), Arrays.copyOf(values, n) };
+    }
+
+    /**
+     * Read a cube from a file
+     *
+     * @param file
+     *            The file
+     * @return The cube
+     * @throws IOException
+     *             If the file cannot be read or is not a cube file
+     */
+    static CpuUsageCube read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Invalid CPU usage cube file: " + file); //$NON-NLS-1$
+            }
+            long start = in.readLong();
+            long end = in.readLong();
+            long bucketDuration = in.readLong();
+            int nbLevels = in.readInt();
+            long[][][] keys = new long[nbLevels][][];
+            long[][][] values = new long[nbLevels][][];
+            for (int level = 0; level < nbLevels; level++) {
+                int nbBuckets = in.readInt();
+                keys[level] = new long[nbBuckets][];
+                values[level] = new long[nbBuckets][];
+                for (int b = 0; b < nbBuckets; b++) {
+                    int count = in.readInt();
+                    keys[level][b] = new long[count];
+                    values[level][b] = new long[count];
+                    for (int i = 0; i < count; i++) {
+                        keys[level][b][i] = in.readLong();
+                        values[level][b][i] = in.readLong();
+                    }
+                }
+            }
+            if (nbLevels == 0 || keys[nbLevels - 1].length != 1) {
+                throw new IOException("Invalid CPU usage cube file: " + file); //$NON-NLS-1$
+            }
+            return new CpuUsageCube(start, end, bucketDuration, keys, values);
+        }
+    }
+
+    /**
+     * Write this cube to a file
+     *
+     * @param file
+     *            The file
+     * @throws IOException
+     *             If the file cannot be written
+     */
+    void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fStart);
+            out.writeLong(fEnd);
+            out.writeLong(fBucketDuration);
+            out.writeInt(fKeys.length);
+            for (int level = 0; level < fKeys.length; level++) {
+                out.writeInt(fKeys[level].length);
+                for (int b = 0; b < fKeys[level].length; b++) {
+                    out.writeInt(fKeys[level][b].length);
+                    for (int i = 0; i < fKeys[level][b].length; i++) {
+                        out.writeLong(fKeys[level][b][i]);
+                        out.writeLong(fValues[level][b][i]);
+                    }
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Getters
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the start time of the cube
+     *
+     * @return The start time
+     */
+    public long getStartTime() {
+        return fStart;
+    }
+
+    /**
+     * Get the end time of the cube
+     *
+     * @return The end time
+     */
+    public long getEndTime() {
+        return fEnd;
+    }
+
+    /**
+     * Get the duration of the base buckets
+     *
+     * @return The duration of a base bucket
+     */
+    public long getBucketDuration() {
+        return fBucketDuration;
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the time spent on the CPUs by each thread in a time range
+     *
+     * @param cpus
+     *            A set of the desired CPUs to get. An empty set gets all the
+     *            cores
+     * @param start
+     *            Start time of requested range
+     * @param end
+     *            End time of requested range
+     * @return A map of TID -> time spent on CPU in the [start, end] interval
+     */
+    public Map<Integer, Long> getThreadUsage(Set<@NonNull Integer> cpus, long start, long end) {
+        long[] usage = new long[fAllKeys.length];
+        accumulate(start, end, usage);
+        Map<Integer, Long> map = new HashMap<>();
+        for (int i = 0; i < fAllKeys.length; i++) {
+            if (usage[i] > 0 && (cpus.isEmpty() || cpus.contains(getCpu(fAllKeys[i])))) {
+                map.merge(getTid(fAllKeys[i]), usage[i], Long::sum);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Get the threads that spent the most time on the CPUs in a time range,
+     * excluding the idle thread
+     *
+     * @param cpus
+     *            A set of the desired CPUs to get. An empty set gets all the
+     *            cores
+     * @param start
+     *            Start time of requested range
+     * @param end
+     *            End time of requested range
+     * @param nb
+     *            The maximum number of threads
+     * @return The IDs of at most nb threads, by decreasing time on CPU
+     */
+    public List<Integer> getTopThreads(Set<@NonNull Integer> cpus, long start, long end, int nb) {
+        Map<Integer, Long> usage = getThreadUsage(cpus, start, end);
+        usage.remove(Integer.parseInt(KernelCpuUsageAnalysis.TID_ZERO));
+        List<Entry<Integer, Long>> entries = new ArrayList<>(usage.entrySet());
+        entries.sort(Entry.comparingByValue(Comparator.reverseOrder()));
+        List<Integer> tids = new ArrayList<>();
+        for (Entry<Integer, Long> entry : entries.subList(0, Math.min(nb, entries.size()))) {
+            tids.add(entry.getKey());
+        }
+        return tids;
+    }
+
+    /**
+     * Get the time spent on CPU by the threads in consecutive time ranges, for
+     * example one per point of a chart. This is the equivalent of
+     * {@link KernelCpuUsageAnalysis#getCpuUsageInRanges(Set, long[], org.eclipse.core.runtime.IProgressMonitor)}
+     * without querying the state systems.
+     *
+     * @param cpus
+     *            A set of the desired CPUs to get. An empty set gets all the
+     *            cores
+     * @param times
+     *            The increasing bounds of the ranges, range i is [times[i],
+     *            times[i + 1]]
+     * @return The time spent on CPU by the threads in each range
+     */
+    public CpuUsageSamples getCpuUsageInRanges(Set<@NonNull Integer> cpus, long[] times) {
+        int nbRanges = Math.max(0, times.length - 1);
+        long[][] usage = new long[fAllKeys.length][nbRanges];
+        long[] rangeUsage = new long[fAllKeys.length];
+        for (int range = 0; range < nbRanges; range++) {
+            Arrays.fill(rangeUsage, 0);
+            accumulate(times[range], times[range + 1], rangeUsage);
+            for (int i = 0; i < rangeUsage.length; i++) {
+                usage[i][range] = rangeUsage[i];
+            }
+        }
+
+        /* The keys are sorted by CPU, then by thread */
+        List<Integer> cpuList = new ArrayList<>();
+        List<int[]> tidList = new ArrayList<>();
+        List<long[][]> usageList = new ArrayList<>();
+        int i = 0;
+        while (i < fAllKeys.length) {
+            int cpu = getCpu(fAllKeys[i]);
+            int first = i;
+            while (i < fAllKeys.length && getCpu(fAllKeys[i]) == cpu) {
+                i++;
+            }
+            if (!cpus.isEmpty() && !cpus.contains(cpu)) {
+                continue;
+            }
+            int[] tids = new int[i - first];
+            for (int t = 0; t < tids.length; t++) {
+                tids[t] = getTid(fAllKeys[first + t]);
+            }
+            cpuList.add(cpu);
+            tidList.add(tids);
+            usageList.add(Arrays.copyOfRange(usage, first, i));
+        }
+        long[] clampedTimes = new long[times.length];
+        for (int t = 0; t < times.length; t++) {
+            clampedTimes[t] = Math.min(fEnd, Math.max(fStart, times[t]));
+        }
+        return new CpuUsageSamples(clampedTimes, cpuList.stream().mapToInt(Integer::intValue).toArray(),
+                tidList.toArray(new int[tidList.size()][]), usageList.toArray(new long[usageList.size()][][]));
+    }
+
+    /*
+     * Add the usage in the [start, end] range to an array indexed like the
+     * keys of the root bucket
+     */
+    private void accumulate(long start, long end, long[] usage) {
+        long t1 = Math.max(fStart, start);
+        long t2 = Math.min(fEnd, end);
+        if (t2 <= t1) {
+            return;
+        }
+        int nbBuckets = fKeys[0].length;
+        int b1 = (int) Math.min(nbBuckets - 1, (t1 - fStart) / fBucketDuration);
+        int b2 = (int) Math.min(nbBuckets - 1, (t2 - fStart) / fBucketDuration);
+        if (getBucketEnd(b2 - 1) == t2) {
+            /* The range ends on a bucket boundary, it does not overlap the next one */
+            b2--;
+        }
+        if (b1 == b2) {
+            addPartialBucket(b1, t1, t2, usage);
+            return;
+        }
+        int from = b1;
+        int to = b2 + 1;
+        if (getBucketStart(b1) < t1) {
+            addPartialBucket(b1, t1, getBucketEnd(b1), usage);
+            from++;
+        }
+        if (getBucketEnd(b2) > t2) {
+            addPartialBucket(b2, getBucketStart(b2), t2, usage);
+            to--;
+        }
+
+        /* Add the largest aligned buckets that fit in the remaining range */
+        int bucket = from;
+        while (bucket < to) {
+            int level = 0;
+            int size = 1;
+            while (level + 1 < fKeys.length && bucket % (size * FANOUT) == 0 && bucket + size * FANOUT <= to) {
+                level++;
+                size *= FANOUT;
+            }
+            addBucket(level, bucket / size, 1.0, usage);
+            bucket += size;
+        }
+    }
+
+    private long getBucketStart(int bucket) {
+        return fStart + bucket * fBucketDuration;
+    }
+
+    private long getBucketEnd(int bucket) {
+        return Math.min(fEnd, fStart + (bucket + 1) * fBucketDuration);
+    }
+
+    private void addPartialBucket(int bucket, long t1, long t2, long[] usage) {
+        long duration = getBucketEnd(bucket) - getBucketStart(bucket);
+        double ratio = (duration <= 0) ? 1.0 : (double) (t2 - t1) / duration;
+        addBucket(0, bucket, ratio, usage);
+    }
+
+    private void addBucket(int level, int bucket, double ratio, long[] usage) {
+        long[] keys = fKeys[level][bucket];
+        long[] values = fValues[level][bucket];
+        for (int i = 0; i < keys.length; i++) {
+            int index = Arrays.binarySearch(fAllKeys, keys[i]);
+            usage[index] += (ratio == 1.0) ? values[i] : Math.round(values[i] * ratio);
+        }
+    }
+
+    /*
+     * The thread ID is offset to be unsigned in the low bits, so that the keys
+     * sort like the (cpu, tid) pairs even for negative thread IDs
+     */
+    private static long packKey(int cpu, int tid) {
+        return ((long) cpu << 32) | ((long) tid - Integer.MIN_VALUE);
+    }
+
+    private static int getCpu(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int getTid(long key) {
+        return (int) ((key & 0xFFFFFFFFL) + Integer.MIN_VALUE);
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.os.linux.core.cpuusage;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Time spent on CPU by threads in consecutive time ranges, as computed by
+ * {@link KernelCpuUsageAnalysis#getCpuUsageInRanges(java.util.Set, long[], org.eclipse.core.runtime.IProgressMonitor)}.
+ * Range i goes from {@link #getTimes()}[i] to {@link #getTimes()}[i + 1].
+ * <p>
+ * The usage is stored in arrays indexed by CPU and by thread, rather than in
+ * maps keyed by concatenated strings, so that thousands of threads and
+ * hundreds of ranges do not create millions of map entries.
+ *
+ * @since 2.0
+ */
+public final class CpuUsageSamples {
+
+    private final long[] fTimes;
+    private final int[] fCpus;
+    /* Thread IDs per CPU index, sorted */
+    private final int[][] fTids;
+    /* Usage per CPU index, thread index and range */
+    private final long[][][] fUsage;
+    /* All thread IDs, sorted */
+    private final int[] fAllTids;
+
+    CpuUsageSamples(long[] times, int[] cpus, int[][] tids, long[][][] usage) {
+        fTimes = times;
+        fCpus = cpus;
+        fTids = tids;
+        fUsage = usage;
+        fAllTids = Arrays.stream(tids).flatMapToInt(Arrays::stream).distinct().sorted().toArray();
+    }
+
+    /**
+     * Get the bounds of the ranges, clamped to the time range of the state
+     * systems
+     *
+     * @return The bounds of the ranges, one more than the number of ranges
+     */
+    public long[] getTimes() {
+        return Arrays.copyOf(fTimes, fTimes.length);
+    }
+
+    /**
+     * Get the number of ranges
+     *
+     * @return The number of ranges
+     */
+    public int getNbRanges() {
+        return Math.max(0, fTimes.length - 1);
+    }
+
+    /**
+     * Get the CPUs for which the usage was computed
+     *
+     * @return The CPU numbers
+     */
+    public int[] getCpus() {
+        return Arrays.copyOf(fCpus, fCpus.length);
+    }
+
+    /**
+     * Get the threads that have been on any of the CPUs
+     *
+     * @return The sorted thread IDs
+     */
+    public int[] getThreads() {
+        return Arrays.copyOf(fAllTids, fAllTids.length);
+    }
+
+    /**
+     * Get the time spent by a thread on a CPU in each range
+     *
+     * @param cpu
+     *            The CPU number
+     * @param tid
+     *            The thread ID
+     * @return The time spent in each range, or null if the thread has never
+     *         been on this CPU
+     */
+    public long @Nullable [] getUsage(int cpu, int tid) {
+        for (int i = 0; i < fCpus.length; i++) {
+            if (fCpus[i] == cpu) {
+                int index = Arrays.binarySearch(fTids[i], tid);
+                if (index < 0) {
+                    return null;
+                }
+                return Arrays.copyOf(fUsage[i][index], getNbRanges());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the time spent by a thread on all the CPUs in each range
+     *
+     * @param tid
+     *            The thread ID
+     * @return The time spent in each range, all zeros if the thread has never
+     *         been on any of the CPUs
+     */
+    public long[] getThreadUsage(int tid) {
+        long[] usage = new long[getNbRanges()];
+        for (int i = 0; i < fCpus.length; i++) {
+            int index = Arrays.binarySearch(fTids[i], tid);
+            if (index >= 0) {
+                long[] cpuUsage = fUsage[i][index];
+                for (int range = 0; range < usage.length; range++) {
+                    usage[range] += cpuUsage[range];
+                }
+            }
+        }
+        return usage;
+    }
+}
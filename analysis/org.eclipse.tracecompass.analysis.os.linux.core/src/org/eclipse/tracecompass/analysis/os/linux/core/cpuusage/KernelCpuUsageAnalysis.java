@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2015 École Polytechnique de Montréal and others.
+ * Copyright (c) 2014, 2016 École Polytechnique de Montréal and others.
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -14,6 +14,12 @@ package org.eclipse.tracecompass.analysis.os.linux.core.cpuusage;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -21,6 +27,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelAnalysisModule;
@@ -43,6 +50,7 @@ import org.eclipse.tracecompass.tmf.core.analysis.requirements.TmfAnalysisRequir
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 
 import com.google.common.collect.HashMultimap;
@@ -67,6 +75,9 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
     /** Idle process thread ID */
     public static final String TID_ZERO = "0"; //$NON-NLS-1$
 
+    /** The extension of the supplementary file of the CPU usage cube */
+    private static final String CUBE_EXTENSION = ".cube"; //$NON-NLS-1$
+
     /** The requirements as an immutable set */
     private static final KernelEventLayoutRequirement LAYOUT_REQUIREMENT;
     private static final SetMultimap<IKernelAnalysisEventLayout, TmfAnalysisRequirement> LAYOUT_REQ_MAP = NonNullUtils.checkNotNull(HashMultimap.create());
@@ -75,6 +86,9 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
         LAYOUT_REQUIREMENT = new KernelEventLayoutRequirement(ImmutableSet.of((l) -> l.eventSchedSwitch()), ValuePriorityLevel.MANDATORY);
     }
 
+    private final Object fCubeLock = new Object();
+    private @Nullable CpuUsageCube fCube = null;
+
     private static IKernelAnalysisEventLayout getLayout(@Nullable ITmfTrace trace) {
         IKernelAnalysisEventLayout layout;
 
@@ -189,14 +203,7 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
 
         try {
             /* Get the list of quarks for each CPU and CPU's TIDs */
-            int cpusNode = cpuSs.getQuarkAbsolute(Attributes.CPUS);
-            Map<Integer, List<Integer>> tidsPerCpu = new HashMap<>();
-            for (int cpuNode : cpuSs.getSubAttributes(cpusNode, false)) {
-                final @NonNull List<@NonNull Integer> cpuSubAttributes = cpuSs.getSubAttributes(cpuNode, false);
-                if (cpus.isEmpty() || cpus.contains(Integer.parseInt(cpuSs.getAttributeName(cpuNode)))) {
-                    tidsPerCpu.put(cpuNode, cpuSubAttributes);
-                }
-            }
+            List<CpuThreads> cpuThreads = getCpuThreads(cpuSs, kernelSs, cpus);
 
             /* Query full states at start and end times */
             List<ITmfStateInterval> kernelEndState = kernelSs.queryFullState(endTime);
@@ -204,76 +211,18 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
             List<ITmfStateInterval> kernelStartState = kernelSs.queryFullState(startTime);
             List<ITmfStateInterval> startState = cpuSs.queryFullState(startTime);
 
-            long countAtStart, countAtEnd;
-
-            for (Entry<Integer, List<Integer>> entry : tidsPerCpu.entrySet()) {
-                int cpuNode = entry.getKey();
-                List<Integer> tidNodes = entry.getValue();
-
-                String curCpuName = cpuSs.getAttributeName(cpuNode);
+            for (CpuThreads cpu : cpuThreads) {
+                long[] counts = computeCpuUsage(cpu, startTime, endTime, kernelStartState, startState, kernelEndState, endState);
                 long cpuTotal = 0;
-
-                /* Get the quark of the thread running on this CPU */
-                int currentThreadQuark = kernelSs.getQuarkAbsolute(Attributes.CPUS, curCpuName, Attributes.CURRENT_THREAD);
-                /* Get the currently running thread on this CPU */
-                int startThread = kernelStartState.get(currentThreadQuark).getStateValue().unboxInt();
-                int endThread = kernelEndState.get(currentThreadQuark).getStateValue().unboxInt();
-
-                for (int tidNode : tidNodes) {
-                    String curTidName = cpuSs.getAttributeName(tidNode);
-                    int tid = Integer.parseInt(curTidName);
-
-                    countAtEnd = endState.get(tidNode).getStateValue().unboxLong();
-                    countAtStart = startState.get(tidNode).getStateValue().unboxLong();
-                    if (countAtStart == -1) {
-                        countAtStart = 0;
-                    }
-                    if (countAtEnd == -1) {
-                        countAtEnd = 0;
-                    }
-
-                    /*
-                     * Interpolate start and end time of threads running at
-                     * those times
-                     */
-                    if (tid == startThread || startThread == -1) {
-                        long runningTime = kernelStartState.get(currentThreadQuark).getEndTime() - kernelStartState.get(currentThreadQuark).getStartTime();
-                        long runningEnd = kernelStartState.get(currentThreadQuark).getEndTime();
-
-                        countAtStart = interpolateCount(countAtStart, startTime, runningEnd, runningTime);
-                    }
-                    if (tid == endThread) {
-                        long runningTime = kernelEndState.get(currentThreadQuark).getEndTime() - kernelEndState.get(currentThreadQuark).getStartTime();
-                        long runningEnd = kernelEndState.get(currentThreadQuark).getEndTime();
-
-                        countAtEnd = interpolateCount(countAtEnd, endTime, runningEnd, runningTime);
-                    }
-                    /*
-                     * If startThread is -1, we made the hypothesis that the
-                     * process running at start was the current one. If the
-                     * count is negative, we were wrong in this hypothesis. Also
-                     * if the time at end is 0, it either means the process
-                     * hasn't been on the CPU or that we still don't know who is
-                     * running. In both cases, that invalidates the hypothesis.
-                     */
-                    if ((startThread == -1) && ((countAtEnd - countAtStart < 0) || (countAtEnd == 0))) {
-                        countAtStart = 0;
-                    }
-
-                    long currentCount = countAtEnd - countAtStart;
-                    if (currentCount < 0) {
-                        Activator.getDefault().logWarning(String.format("Negative count: start %d, end %d", countAtStart, countAtEnd)); //$NON-NLS-1$
-                        currentCount = 0;
-                    } else if (currentCount > endTime - startTime) {
-                        Activator.getDefault().logWarning(String.format("CPU Usage: Spent more time on CPU than allowed: %s spent %d when max should be %d", curTidName, currentCount, endTime - startTime)); //$NON-NLS-1$
-                        currentCount = 0;
-                    }
+                for (int i = 0; i < counts.length; i++) {
+                    long currentCount = counts[i];
+                    String curTidName = cpu.fTidNames[i];
                     cpuTotal += currentCount;
-                    map.put(curCpuName + SPLIT_STRING + curTidName, currentCount);
+                    map.put(cpu.fName + SPLIT_STRING + curTidName, currentCount);
                     addToMap(totalMap, curTidName, currentCount);
                     totalTime += (currentCount);
                 }
-                map.put(curCpuName, cpuTotal);
+                map.put(cpu.fName, cpuTotal);
             }
 
             /* Add the totals to the map */
@@ -298,6 +247,284 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
         return map;
     }
 
+    /**
+     * Get the time spent on CPU by the threads in consecutive time ranges, for
+     * example one per point of a chart. This is equivalent to calling
+     * {@link #getCpuUsageInRange(Set, long, long)} for each range, but the
+     * state systems are queried once per range bound instead of four times
+     * per range.
+     *
+     * @param cpus
+     *            A set of the desired CPUs to get. An empty set gets all the
+     *            cores
+     * @param times
+     *            The increasing bounds of the ranges, range i is [times[i],
+     *            times[i + 1]]
+     * @param monitor
+     *            The progress monitor, checked between the ranges
+     * @return The time spent on CPU by the threads in each range. It has no
+     *         CPUs if the state systems are not available, or if the monitor
+     *         is canceled.
+     * @since 2.0
+     */
+    public CpuUsageSamples getCpuUsageInRanges(Set<@NonNull Integer> cpus, long[] times, IProgressMonitor monitor) {
+        int nbRanges = Math.max(0, times.length - 1);
+        CpuUsageSamples empty = new CpuUsageSamples(times, new int[0], new int[0][], new long[0][][]);
+
+        ITmfTrace trace = getTrace();
+        ITmfStateSystem cpuSs = getStateSystem();
+        if (trace == null || cpuSs == null || nbRanges == 0) {
+            return empty;
+        }
+        ITmfStateSystem kernelSs = TmfStateSystemAnalysisModule.getStateSystem(trace, KernelAnalysisModule.ID);
+        if (kernelSs == null) {
+            return empty;
+        }
+
+        /*
+         * Make sure the times are within the state history, so we don't get
+         * TimeRange exceptions.
+         */
+        long minTime = Math.max(cpuSs.getStartTime(), kernelSs.getStartTime());
+        long maxTime = Math.min(cpuSs.getCurrentEndTime(), kernelSs.getCurrentEndTime());
+        if (maxTime < minTime) {
+            return empty;
+        }
+        long[] clampedTimes = new long[times.length];
+        for (int i = 0; i < times.length; i++) {
+            clampedTimes[i] = Math.min(maxTime, Math.max(minTime, times[i]));
+        }
+
+        try {
+            List<CpuThreads> cpuThreads = getCpuThreads(cpuSs, kernelSs, cpus);
+            int[] cpuNumbers = new int[cpuThreads.size()];
+            int[][] tids = new int[cpuThreads.size()][];
+            long[][][] usage = new long[cpuThreads.size()][][];
+            for (int c = 0; c < cpuThreads.size(); c++) {
+                CpuThreads cpu = cpuThreads.get(c);
+                cpuNumbers[c] = cpu.fCpu;
+                tids[c] = cpu.fTids;
+                usage[c] = new long[cpu.fTids.length][nbRanges];
+            }
+
+            /*
+             * The state at the end of a range is the state at the start of the
+             * next one, so each bound is queried once.
+             */
+            List<ITmfStateInterval> kernelStartState = kernelSs.queryFullState(clampedTimes[0]);
+            List<ITmfStateInterval> startState = cpuSs.queryFullState(clampedTimes[0]);
+            for (int range = 0; range < nbRanges; range++) {
+                if (monitor.isCanceled()) {
+                    return empty;
+                }
+                long startTime = clampedTimes[range];
+                long endTime = Math.max(startTime, clampedTimes[range + 1]);
+                List<ITmfStateInterval> kernelEndState = kernelStartState;
+                List<ITmfStateInterval> endState = startState;
+                if (endTime != startTime) {
+                    kernelEndState = kernelSs.queryFullState(endTime);
+                    endState = cpuSs.queryFullState(endTime);
+                }
+                for (int c = 0; c < cpuThreads.size(); c++) {
+                    long[] counts = computeCpuUsage(cpuThreads.get(c), startTime, endTime, kernelStartState, startState, kernelEndState, endState);
+                    for (int i = 0; i < counts.length; i++) {
+                        usage[c][i][range] = counts[i];
+                    }
+                }
+                kernelStartState = kernelEndState;
+                startState = endState;
+            }
+            return new CpuUsageSamples(clampedTimes, cpuNumbers, tids, usage);
+
+        } catch (TimeRangeException | AttributeNotFoundException e) {
+            /*
+             * Assume there is no events or the attribute does not exist yet,
+             * no CPU will be in the samples.
+             */
+        } catch (StateValueTypeException | StateSystemDisposedException e) {
+            /*
+             * These other exception types would show a logic problem, so they
+             * should not happen.
+             */
+            Activator.getDefault().logError("Error getting CPU usage in time ranges", e); //$NON-NLS-1$
+        }
+        return empty;
+    }
+
+    /**
+     * Get the cube of the time spent on CPU by the threads in time buckets,
+     * which answers range queries without querying the state systems. It is
+     * built the first time it is requested once the analysis is completed,
+     * and saved as a supplementary file next to the state history.
+     *
+     * @return The CPU usage cube, or null if the analysis is not completed
+     * @since 2.0
+     */
+    public @Nullable CpuUsageCube getCpuUsageCube() {
+        synchronized (fCubeLock) {
+            CpuUsageCube cube = fCube;
+            if (cube != null) {
+                return cube;
+            }
+            ITmfTrace trace = getTrace();
+            ITmfStateSystem cpuSs = getStateSystem();
+            if (trace == null || cpuSs == null || !cpuSs.waitUntilBuilt(0)) {
+                return null;
+            }
+            ITmfStateSystem kernelSs = TmfStateSystemAnalysisModule.getStateSystem(trace, KernelAnalysisModule.ID);
+            if (kernelSs == null || !kernelSs.waitUntilBuilt(0)) {
+                return null;
+            }
+            long start = Math.max(cpuSs.getStartTime(), kernelSs.getStartTime());
+            long end = Math.min(cpuSs.getCurrentEndTime(), kernelSs.getCurrentEndTime());
+            if (end < start) {
+                return null;
+            }
+
+            Path file = Paths.get(TmfTraceManager.getSupplementaryFileDir(trace), getId() + CUBE_EXTENSION);
+            if (Files.exists(file)) {
+                /* Attempt to read the existing file */
+                try {
+                    cube = CpuUsageCube.read(file);
+                    if (cube.getStartTime() != start || cube.getEndTime() != end) {
+                        cube = null;
+                    }
+                } catch (IOException e) {
+                    /*
+                     * We did not manage to read the file successfully, we will
+                     * just fall-through to rebuild a new one.
+                     */
+                }
+            }
+            if (cube == null) {
+                cube = CpuUsageCube.build(this, start, end);
+                try {
+                    cube.write(file);
+                } catch (IOException e) {
+                    /* Didn't work, oh well. It will be rebuilt next time */
+                }
+            }
+            fCube = cube;
+            return cube;
+        }
+    }
+
+    /**
+     * The quarks of a CPU and of its threads
+     */
+    private static final class CpuThreads {
+        private final String fName;
+        private final int fCpu;
+        /* The quark of the thread running on this CPU in the kernel state system */
+        private final int fCurrentThreadQuark;
+        /* The quarks and IDs of the threads, sorted by ID */
+        private final int[] fTidNodes;
+        private final int[] fTids;
+        private final String[] fTidNames;
+
+        public CpuThreads(String name, int currentThreadQuark, int[] tidNodes, int[] tids, String[] tidNames) {
+            fName = name;
+            fCpu = Integer.parseInt(name);
+            fCurrentThreadQuark = currentThreadQuark;
+            fTidNodes = tidNodes;
+            fTids = tids;
+            fTidNames = tidNames;
+        }
+    }
+
+    private static List<CpuThreads> getCpuThreads(ITmfStateSystem cpuSs, ITmfStateSystem kernelSs, Set<@NonNull Integer> cpus) throws AttributeNotFoundException {
+        List<CpuThreads> cpuThreads = new ArrayList<>();
+        int cpusNode = cpuSs.getQuarkAbsolute(Attributes.CPUS);
+        for (int cpuNode : cpuSs.getSubAttributes(cpusNode, false)) {
+            String curCpuName = cpuSs.getAttributeName(cpuNode);
+            if (!cpus.isEmpty() && !cpus.contains(Integer.parseInt(curCpuName))) {
+                continue;
+            }
+            /* Sort the threads by ID, to find them by binary search */
+            List<@NonNull Integer> tidNodeList = new ArrayList<>(cpuSs.getSubAttributes(cpuNode, false));
+            tidNodeList.sort(Comparator.comparingInt(tidNode -> Integer.parseInt(cpuSs.getAttributeName(tidNode))));
+            int[] tidNodes = new int[tidNodeList.size()];
+            int[] tids = new int[tidNodeList.size()];
+            String[] tidNames = new String[tidNodeList.size()];
+            for (int i = 0; i < tidNodes.length; i++) {
+                tidNodes[i] = tidNodeList.get(i);
+                tidNames[i] = cpuSs.getAttributeName(tidNodes[i]);
+                tids[i] = Integer.parseInt(tidNames[i]);
+            }
+            int currentThreadQuark = kernelSs.getQuarkAbsolute(Attributes.CPUS, curCpuName, Attributes.CURRENT_THREAD);
+            cpuThreads.add(new CpuThreads(curCpuName, currentThreadQuark, tidNodes, tids, tidNames));
+        }
+        return cpuThreads;
+    }
+
+    /*
+     * Compute the time spent on a CPU by each of its threads in the [startTime,
+     * endTime] range, from the full states at the start and end times
+     */
+    private static long[] computeCpuUsage(CpuThreads cpu, long startTime, long endTime,
+            List<ITmfStateInterval> kernelStartState, List<ITmfStateInterval> startState,
+            List<ITmfStateInterval> kernelEndState, List<ITmfStateInterval> endState) {
+        long[] counts = new long[cpu.fTidNodes.length];
+        long countAtStart, countAtEnd;
+
+        int currentThreadQuark = cpu.fCurrentThreadQuark;
+        /* Get the currently running thread on this CPU */
+        int startThread = kernelStartState.get(currentThreadQuark).getStateValue().unboxInt();
+        int endThread = kernelEndState.get(currentThreadQuark).getStateValue().unboxInt();
+
+        for (int i = 0; i < cpu.fTidNodes.length; i++) {
+            int tidNode = cpu.fTidNodes[i];
+            int tid = cpu.fTids[i];
+
+            countAtEnd = endState.get(tidNode).getStateValue().unboxLong();
+            countAtStart = startState.get(tidNode).getStateValue().unboxLong();
+            if (countAtStart == -1) {
+                countAtStart = 0;
+            }
+            if (countAtEnd == -1) {
+                countAtEnd = 0;
+            }
+
+            /*
+             * Interpolate start and end time of threads running at those times
+             */
+            if (tid == startThread || startThread == -1) {
+                long runningTime = kernelStartState.get(currentThreadQuark).getEndTime() - kernelStartState.get(currentThreadQuark).getStartTime();
+                long runningEnd = kernelStartState.get(currentThreadQuark).getEndTime();
+
+                countAtStart = interpolateCount(countAtStart, startTime, runningEnd, runningTime);
+            }
+            if (tid == endThread) {
+                long runningTime = kernelEndState.get(currentThreadQuark).getEndTime() - kernelEndState.get(currentThreadQuark).getStartTime();
+                long runningEnd = kernelEndState.get(currentThreadQuark).getEndTime();
+
+                countAtEnd = interpolateCount(countAtEnd, endTime, runningEnd, runningTime);
+            }
+            /*
+             * If startThread is -1, we made the hypothesis that the process
+             * running at start was the current one. If the count is negative,
+             * we were wrong in this hypothesis. Also if the time at end is 0,
+             * it either means the process hasn't been on the CPU or that we
+             * still don't know who is running. In both cases, that invalidates
+             * the hypothesis.
+             */
+            if ((startThread == -1) && ((countAtEnd - countAtStart < 0) || (countAtEnd == 0))) {
+                countAtStart = 0;
+            }
+
+            long currentCount = countAtEnd - countAtStart;
+            if (currentCount < 0) {
+                Activator.getDefault().logWarning(String.format("Negative count: start %d, end %d", countAtStart, countAtEnd)); //$NON-NLS-1$
+                currentCount = 0;
+            } else if (currentCount > endTime - startTime) {
+                Activator.getDefault().logWarning(String.format("CPU Usage: Spent more time on CPU than allowed: %s spent %d when max should be %d", cpu.fTidNames[i], currentCount, endTime - startTime)); //$NON-NLS-1$
+                currentCount = 0;
+            }
+            counts[i] = currentCount;
+        }
+        return counts;
+    }
+
     private static long interpolateCount(long count, long ts, long runningEnd, long runningTime) {
         long newCount = count;
 
@@ -17,6 +17,7 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Predicate;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
@@ -82,6 +83,15 @@ public class KernelCpuUsageStateProvider extends AbstractTmfStateProvider {
         return new KernelCpuUsageStateProvider(this.getTrace(), this.fLayout);
     }
 
+    /**
+     * @since 2.0
+     */
+    @Override
+    public Predicate<String> getEventTypeFilter() {
+        String eventSchedSwitch = fLayout.eventSchedSwitch();
+        return eventName -> eventName.equals(eventSchedSwitch);
+    }
+
     @Override
     protected void eventHandle(@Nullable ITmfEvent event) {
         if (event == null) {
@@ -11,6 +11,7 @@ package org.eclipse.tracecompass.analysis.os.linux.core.tid;
 
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.Predicate;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
@@ -42,7 +43,7 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 class ActiveTidStateProvider extends AbstractTmfStateProvider {
 
     private static final @NonNull String PROVIDER_ID = "activeTidAnalysis.provider"; //$NON-NLS-1$
-    private static final int VERSION = 0;
+    private static final int VERSION = 1;
 
     private final Map<Integer, Integer> fCpuNumToQuark = new TreeMap<>();
     private final @NonNull String fSchedSwitch;
@@ -66,8 +67,20 @@ class ActiveTidStateProvider extends AbstractTmfStateProvider {
         return new ActiveTidStateProvider(getTrace(), fLayout);
     }
 
+    @Override
+    public Predicate<String> getEventTypeFilter() {
+        return fSchedSwitch::equals;
+    }
+
     @Override
     protected void eventHandle(@NonNull ITmfEvent event) {
+        /*
+         * The CPU attributes are created by the sched_switch events only, the
+         * other events are skipped by the event type filter
+         */
+        if (!event.getName().equals(fSchedSwitch)) {
+            return;
+        }
         Integer cpu = TmfTraceUtils.resolveIntEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
         if (cpu == null) {
             return;
@@ -83,9 +96,6 @@ class ActiveTidStateProvider extends AbstractTmfStateProvider {
             cpuQuark = ssb.getQuarkAbsoluteAndAdd(cpuAttributeName);
             fCpuNumToQuark.put(cpu, cpuQuark);
         }
-        if (!event.getName().equals(fSchedSwitch)) {
-            return;
-        }
         try {
             int nextTid = ((Long) event.getContent().getField(fNextTid).getValue()).intValue();
             final TmfStateValue value = TmfStateValue.newValueInt(nextTid);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -24,12 +24,25 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.ITmfIndexedEventContent;
+import org.eclipse.tracecompass.tmf.core.event.TmfIndexedFields;
 
 /**
  * Scheduler switch event handler
  */
 public class SchedSwitchHandler extends KernelEventHandler {
 
+    /* Indexes of the fields in the content, in this order */
+    private static final int PREV_COMM = 0;
+    private static final int PREV_TID = 1;
+    private static final int PREV_STATE = 2;
+    private static final int PREV_PRIO = 3;
+    private static final int NEXT_COMM = 4;
+    private static final int NEXT_TID = 5;
+    private static final int NEXT_PRIO = 6;
+
+    private final TmfIndexedFields fFields;
+
     /**
      * Constructor
      *
@@ -38,6 +51,8 @@ public class SchedSwitchHandler extends KernelEventHandler {
      */
     public SchedSwitchHandler(IKernelAnalysisEventLayout layout) {
         super(layout);
+        fFields = new TmfIndexedFields(layout.fieldPrevComm(), layout.fieldPrevTid(), layout.fieldPrevState(), layout.fieldPrevPrio(),
+                layout.fieldNextComm(), layout.fieldNextTid(), layout.fieldNextPrio());
     }
 
     @Override
@@ -48,13 +63,33 @@ public class SchedSwitchHandler extends KernelEventHandler {
         }
 
         ITmfEventField content = event.getContent();
-        String prevProcessName = checkNotNull((String) content.getField(getLayout().fieldPrevComm()).getValue());
-        Integer prevTid = ((Long) content.getField(getLayout().fieldPrevTid()).getValue()).intValue();
-        Long prevState = checkNotNull((Long) content.getField(getLayout().fieldPrevState()).getValue());
-        Integer prevPrio = ((Long) content.getField(getLayout().fieldPrevPrio()).getValue()).intValue();
-        String nextProcessName = checkNotNull((String) content.getField(getLayout().fieldNextComm()).getValue());
-        Integer nextTid = ((Long) content.getField(getLayout().fieldNextTid()).getValue()).intValue();
-        Integer nextPrio = ((Long) content.getField(getLayout().fieldNextPrio()).getValue()).intValue();
+        String prevProcessName;
+        int prevTid;
+        long prevState;
+        int prevPrio;
+        String nextProcessName;
+        int nextTid;
+        int nextPrio;
+        int[] indexes = fFields.getIndexes(content);
+        if (indexes != null) {
+            /* Read the values without looking up the fields by name */
+            ITmfIndexedEventContent indexedContent = (ITmfIndexedEventContent) content;
+            prevProcessName = checkNotNull((String) indexedContent.getFieldValue(indexes[PREV_COMM]));
+            prevTid = (int) indexedContent.getFieldLongValue(indexes[PREV_TID], 0);
+            prevState = indexedContent.getFieldLongValue(indexes[PREV_STATE], 0);
+            prevPrio = (int) indexedContent.getFieldLongValue(indexes[PREV_PRIO], 0);
+            nextProcessName = checkNotNull((String) indexedContent.getFieldValue(indexes[NEXT_COMM]));
+            nextTid = (int) indexedContent.getFieldLongValue(indexes[NEXT_TID], 0);
+            nextPrio = (int) indexedContent.getFieldLongValue(indexes[NEXT_PRIO], 0);
+        } else {
+            prevProcessName = checkNotNull((String) content.getField(getLayout().fieldPrevComm()).getValue());
+            prevTid = ((Long) content.getField(getLayout().fieldPrevTid()).getValue()).intValue();
+            prevState = checkNotNull((Long) content.getField(getLayout().fieldPrevState()).getValue());
+            prevPrio = ((Long) content.getField(getLayout().fieldPrevPrio()).getValue()).intValue();
+            nextProcessName = checkNotNull((String) content.getField(getLayout().fieldNextComm()).getValue());
+            nextTid = ((Long) content.getField(getLayout().fieldNextTid()).getValue()).intValue();
+            nextPrio = ((Long) content.getField(getLayout().fieldNextPrio()).getValue()).intValue();
+        }
 
         /* Will never return null since "cpu" is null checked */
         String formerThreadAttributeName = Attributes.buildThreadAttributeName(prevTid, cpu);
@@ -95,7 +130,7 @@ public class SchedSwitchHandler extends KernelEventHandler {
         setCpuStatus(ss, nextTid, newCurrentThreadNode, timestamp, currentCPUNode);
     }
 
-    private static void setOldProcessStatus(ITmfStateSystemBuilder ss, Long prevState, Integer formerThreadNode, long timestamp) throws AttributeNotFoundException {
+    private static void setOldProcessStatus(ITmfStateSystemBuilder ss, long prevState, int formerThreadNode, long timestamp) throws AttributeNotFoundException {
         ITmfStateValue value;
         /*
          * Empirical observations and look into the linux code have
@@ -137,7 +172,7 @@ public class SchedSwitchHandler extends KernelEventHandler {
         return state == 0;
     }
 
-    private static void setCpuStatus(ITmfStateSystemBuilder ss, Integer nextTid, Integer newCurrentThreadNode, long timestamp, int currentCPUNode) throws AttributeNotFoundException {
+    private static void setCpuStatus(ITmfStateSystemBuilder ss, int nextTid, int newCurrentThreadNode, long timestamp, int currentCPUNode) throws AttributeNotFoundException {
         int quark;
         ITmfStateValue value;
         if (nextTid > 0) {
@@ -156,7 +191,7 @@ public class SchedSwitchHandler extends KernelEventHandler {
         ss.modifyAttribute(timestamp, value, quark);
     }
 
-    private static void setCpuProcess(ITmfStateSystemBuilder ss, Integer nextTid, long timestamp, int currentCPUNode) throws AttributeNotFoundException {
+    private static void setCpuProcess(ITmfStateSystemBuilder ss, int nextTid, long timestamp, int currentCPUNode) throws AttributeNotFoundException {
         int quark;
         ITmfStateValue value;
         quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.CURRENT_THREAD);
@@ -164,7 +199,7 @@ public class SchedSwitchHandler extends KernelEventHandler {
         ss.modifyAttribute(timestamp, value, quark);
     }
 
-    private static void setProcessPrio(ITmfStateSystemBuilder ss, Integer prio, Integer threadNode, long timestamp) throws AttributeNotFoundException {
+    private static void setProcessPrio(ITmfStateSystemBuilder ss, int prio, int threadNode, long timestamp) throws AttributeNotFoundException {
         int quark;
         ITmfStateValue value;
         quark = ss.getQuarkRelativeAndAdd(threadNode, Attributes.PRIO);
@@ -172,7 +207,7 @@ public class SchedSwitchHandler extends KernelEventHandler {
         ss.modifyAttribute(timestamp, value, quark);
     }
 
-    private static void setProcessExecName(ITmfStateSystemBuilder ss, String processName, Integer threadNode, long timestamp) throws AttributeNotFoundException {
+    private static void setProcessExecName(ITmfStateSystemBuilder ss, String processName, int threadNode, long timestamp) throws AttributeNotFoundException {
         int quark;
         ITmfStateValue value;
         quark = ss.getQuarkRelativeAndAdd(threadNode, Attributes.EXEC_NAME);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2015 École Polytechnique de Montréal
+ * Copyright (c) 2014, 2016 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -12,19 +12,19 @@
 
 package org.eclipse.tracecompass.internal.analysis.os.linux.ui.views.cpuusage;
 
-import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
-
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.stream.IntStream;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.CpuUsageCube;
+import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.CpuUsageSamples;
 import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.KernelCpuUsageAnalysis;
 import org.eclipse.tracecompass.internal.analysis.os.linux.ui.Activator;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
@@ -53,6 +53,12 @@ public class CpuUsageXYViewer extends TmfCommonXLineChartViewer {
      */
     private static final double RESOLUTION = 0.4;
 
+    /*
+     * Minimum number of buckets of the CPU usage cube per x value, so that the
+     * prorated buckets at the bounds of the x values are negligible.
+     */
+    private static final int MIN_BUCKETS_PER_VALUE = 16;
+
     // Timeout between updates in the updateData thread
     private static final long BUILD_UPDATE_TIMEOUT = 500;
 
@@ -89,6 +95,68 @@ public class CpuUsageXYViewer extends TmfCommonXLineChartViewer {
         return arr;
     }
 
+    /*
+     * Get the end times of the empty ranges, in increasing order. When zoomed
+     * in further than one time unit per x value, a range can be empty, we
+     * need at least 1 time unit to be able to get its CPU usage.
+     */
+    private static long[] getEmptyRangeEnds(long[] times) {
+        return IntStream.range(0, times.length - 1)
+                .filter(i -> times[i + 1] == times[i])
+                .mapToLong(i -> times[i + 1])
+                .distinct()
+                .toArray();
+    }
+
+    /*
+     * Get the bounds of the one time unit ranges before the end times, range
+     * 2k is [ends[k] - 1, ends[k]]
+     */
+    private static long[] getUnitRangeBounds(long[] ends) {
+        long[] bounds = new long[2 * ends.length];
+        for (int k = 0; k < ends.length; k++) {
+            bounds[2 * k] = ends[k] - 1;
+            bounds[2 * k + 1] = ends[k];
+        }
+        return bounds;
+    }
+
+    /*
+     * Get the sum of the time spent on CPU by all the threads but the idle one,
+     * in each range
+     */
+    private static long[] getTotalUsage(CpuUsageSamples samples) {
+        long[] totalCpu = new long[samples.getNbRanges()];
+        for (int tid : samples.getThreads()) {
+            if (tid == 0) {
+                /* Skip the idle thread */
+                continue;
+            }
+            long[] usage = samples.getThreadUsage(tid);
+            for (int i = 0; i < totalCpu.length; i++) {
+                totalCpu[i] += usage[i];
+            }
+        }
+        return totalCpu;
+    }
+
+    /*
+     * Convert the time spent on CPU in each range to a percentage of the range.
+     * An empty range takes the usage of the time unit before its end, range 2k
+     * of the unit usage for the k-th of the empty range ends.
+     */
+    private static void toPercentages(long[] usage, long[] times, long[] emptyEnds, long[] unitUsage, double[] values) {
+        for (int i = 0; i < usage.length; i++) {
+            long duration = times[i + 1] - times[i];
+            if (duration > 0) {
+                values[i] = (double) usage[i] / (double) duration * 100;
+            } else {
+                int k = Arrays.binarySearch(emptyEnds, times[i + 1]);
+                values[i] = (double) unitUsage[2 * k] * 100;
+            }
+        }
+    }
+
     @Override
     protected void updateData(long start, long end, int nb, IProgressMonitor monitor) {
         try {
@@ -124,34 +192,17 @@ public class CpuUsageXYViewer extends TmfCommonXLineChartViewer {
                 currentEnd = ss.getCurrentEndTime();
 
                 /* Initialize the data */
-                Map<String, Long> cpuUsageMap = fModule.getCpuUsageInRange(fCpus, Math.max(start, traceStart), Math.min(end, traceEnd));
-                Map<String, String> totalEntries = new HashMap<>();
                 fYValues.clear();
-                fYValues.put(Messages.CpuUsageXYViewer_Total, zeroFill(xvalues.length));
-                String stringSelectedThread = Long.toString(selectedThread);
+                double[] totalValues = zeroFill(xvalues.length);
+                fYValues.put(Messages.CpuUsageXYViewer_Total, totalValues);
+                double[] selectedValues = null;
                 if (selectedThread != -1) {
-                    fYValues.put(stringSelectedThread, zeroFill(xvalues.length));
-                }
-
-                for (Entry<String, Long> entry : cpuUsageMap.entrySet()) {
-                    /*
-                     * Process only entries representing the total of all CPUs
-                     * and that have time on CPU
-                     */
-                    if (entry.getValue() == 0) {
-                        continue;
-                    }
-                    if (!entry.getKey().startsWith(KernelCpuUsageAnalysis.TOTAL)) {
-                        continue;
-                    }
-                    String[] strings = entry.getKey().split(KernelCpuUsageAnalysis.SPLIT_STRING, 2);
-
-                    if ((strings.length > 1) && !(strings[1].equals(KernelCpuUsageAnalysis.TID_ZERO))) {
-                        /* This is the total cpu usage for a thread */
-                        totalEntries.put(strings[1], entry.getKey());
-                    }
+                    selectedValues = zeroFill(xvalues.length);
+                    fYValues.put(Long.toString(selectedThread), selectedValues);
                 }
 
+                /* Get the bounds of the range of each x value */
+                long[] times = new long[xvalues.length + 1];
                 double prevX = xvalues[0] - 1;
                 long prevTime = (long) prevX + offset;
                 /*
@@ -160,46 +211,35 @@ public class CpuUsageXYViewer extends TmfCommonXLineChartViewer {
                  */
                 prevTime = Math.max(traceStart, prevTime);
                 prevTime = Math.min(traceEnd, prevTime);
-                /* Get CPU usage statistics for each x value */
+                times[0] = prevTime;
                 for (int i = 0; i < xvalues.length; i++) {
-                    if (monitor.isCanceled()) {
-                        return;
-                    }
-                    long totalCpu = 0;
-                    double x = xvalues[i];
-                    long time = (long) x + offset;
+                    long time = (long) xvalues[i] + offset;
                     time = Math.max(traceStart, time);
                     time = Math.min(traceEnd, time);
-                    if (time == prevTime) {
-                        /*
-                         * we need at least 1 time unit to be able to get cpu
-                         * usage when zoomed in
-                         */
-                        prevTime = time - 1;
-                    }
-
-                    cpuUsageMap = fModule.getCpuUsageInRange(fCpus, prevTime, time);
-
-                    /*
-                     * Calculate the sum of all total entries, and add a data
-                     * point to the selected one
-                     */
-                    for (Entry<String, String> entry : totalEntries.entrySet()) {
-                        Long cpuEntry = cpuUsageMap.get(entry.getValue());
-                        cpuEntry = cpuEntry != null ? cpuEntry : 0L;
-
-                        totalCpu += cpuEntry;
-
-                        if (entry.getKey().equals(stringSelectedThread)) {
-                            /* This is the total cpu usage for a thread */
-                            double[] key = checkNotNull(fYValues.get(entry.getKey()));
-                            key[i] = (double) cpuEntry / (double) (time - prevTime) * 100;
-                        }
-
-                    }
-                    double[] key = checkNotNull(fYValues.get(Messages.CpuUsageXYViewer_Total));
-                    key[i] = (double) totalCpu / (double) (time - prevTime) * 100;
-                    prevTime = time;
+                    times[i + 1] = Math.max(times[i], time);
+                }
+
+                /*
+                 * Get CPU usage statistics for all the x values at once, from
+                 * the precomputed cube once the analysis is completed, if its
+                 * buckets are fine enough for the x values
+                 */
+                CpuUsageCube cube = complete ? fModule.getCpuUsageCube() : null;
+                CpuUsageSamples samples;
+                if (cube != null && cube.getBucketDuration() * MIN_BUCKETS_PER_VALUE <= (times[xvalues.length] - times[0]) / xvalues.length) {
+                    samples = cube.getCpuUsageInRanges(fCpus, times);
+                } else {
+                    samples = fModule.getCpuUsageInRanges(fCpus, times, monitor);
+                }
+                long[] emptyEnds = getEmptyRangeEnds(times);
+                CpuUsageSamples unitSamples = fModule.getCpuUsageInRanges(fCpus, getUnitRangeBounds(emptyEnds), monitor);
+                if (monitor.isCanceled()) {
+                    return;
+                }
+                toPercentages(getTotalUsage(samples), times, emptyEnds, getTotalUsage(unitSamples), totalValues);
+                if (selectedValues != null && selectedThread != 0) {
+                    int tid = (int) selectedThread;
+                    toPercentages(samples.getThreadUsage(tid), times, emptyEnds, unitSamples.getThreadUsage(tid), selectedValues);
                 }
                 for (Entry<String, double[]> entry : fYValues.entrySet()) {
                     setSeries(entry.getKey(), entry.getValue());
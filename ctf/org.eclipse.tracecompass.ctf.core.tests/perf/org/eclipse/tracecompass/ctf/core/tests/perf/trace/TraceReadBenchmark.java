@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -15,14 +15,20 @@ package org.eclipse.tracecompass.ctf.core.tests.perf.trace;
 
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+
 import org.eclipse.test.performance.Dimension;
 import org.eclipse.test.performance.Performance;
 import org.eclipse.test.performance.PerformanceMeter;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
+import org.eclipse.tracecompass.ctf.core.trace.CTFResponse;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
 import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
 import org.junit.Test;
 
@@ -54,6 +60,24 @@ public class TraceReadBenchmark {
         readTrace(CtfTestTrace.KERNEL_VM, "trace-kernel-vm", false);
     }
 
+    /**
+     * Benchmark reading the streams of the bigger trace "kernel_vm" one at a
+     * time, preparing the next packet in the background
+     */
+    @Test
+    public void testKernelVmStreamsReadAhead() {
+        readStreams(CtfTestTrace.KERNEL_VM, "trace-kernel-vm-streams-read-ahead", true);
+    }
+
+    /**
+     * Benchmark reading the streams of the bigger trace "kernel_vm" one at a
+     * time, mapping each packet when it is reached
+     */
+    @Test
+    public void testKernelVmStreamsNoReadAhead() {
+        readStreams(CtfTestTrace.KERNEL_VM, "trace-kernel-vm-streams-no-read-ahead", false);
+    }
+
     private static void readTrace(CtfTestTrace testTrace, String testName, boolean inGlobalSummary) {
         Performance perf = Performance.getDefault();
         PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
@@ -84,4 +108,35 @@ public class TraceReadBenchmark {
         }
         pm.commit();
     }
+
+    private static void readStreams(CtfTestTrace testTrace, String testName, boolean readAhead) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ':' + testName, Dimension.CPU_TIME);
+
+        for (int loop = 0; loop < LOOP_COUNT; loop++) {
+            pm.start();
+            try {
+                CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+                for (ICTFStream stream : trace.getStreams()) {
+                    for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                        try (CTFStreamInputReader reader = new CTFStreamInputReader(streamInput)) {
+                            reader.setReadAhead(readAhead);
+                            while (reader.readNextEvent() == CTFResponse.OK) {
+                                IEventDefinition ed = reader.getCurrentEvent();
+                                /* Do something with the event */
+                                if (ed != null) {
+                                    ed.getCPU();
+                                }
+                            }
+                        }
+                    }
+                }
+            } catch (CTFException | IOException e) {
+                fail("Test failed at iteration " + loop + ':' + e.getMessage());
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
 }
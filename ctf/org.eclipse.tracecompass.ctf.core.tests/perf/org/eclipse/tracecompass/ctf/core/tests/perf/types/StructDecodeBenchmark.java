@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.perf.types;
+
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Benchmark of the decoding of the fields of a struct, with the layout of the
+ * payload of a "sched_switch" kernel event, compared with reading each field
+ * by its declaration.
+ */
+public class StructDecodeBenchmark {
+
+    private static final String TEST_SUITE_NAME = "CTF Struct Decode Benchmark";
+    private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
+    private static final int LOOP_COUNT = 25;
+    private static final int NB_EVENTS = 100000;
+
+    private static StructDeclaration createDeclaration() {
+        IntegerDeclaration charDecl = IntegerDeclaration.createDeclaration(8, true, 10, ByteOrder.LITTLE_ENDIAN, Encoding.UTF8, "", 8);
+        IntegerDeclaration intDecl = IntegerDeclaration.createDeclaration(32, true, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 8);
+        IntegerDeclaration longDecl = IntegerDeclaration.createDeclaration(64, true, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 8);
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("_prev_comm", new ArrayDeclaration(16, charDecl));
+        declaration.addField("_prev_tid", intDecl);
+        declaration.addField("_prev_prio", intDecl);
+        declaration.addField("_prev_state", longDecl);
+        declaration.addField("_next_comm", new ArrayDeclaration(16, charDecl));
+        declaration.addField("_next_tid", intDecl);
+        declaration.addField("_next_prio", intDecl);
+        return declaration;
+    }
+
+    private static byte[] createEvents(StructDeclaration declaration) {
+        int eventSize = declaration.getMaximumSize() / Byte.SIZE;
+        byte[] data = new byte[eventSize * NB_EVENTS];
+        new Random(0).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Benchmark the decoding of the struct by its declaration
+     */
+    @Test
+    public void testStructDeclaration() {
+        StructDeclaration declaration = createDeclaration();
+        byte[] data = createEvents(declaration);
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + "#struct-declaration");
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ":struct-declaration", Dimension.CPU_TIME);
+
+        for (int loop = 0; loop < LOOP_COUNT; loop++) {
+            BitBuffer input = new BitBuffer(ByteBuffer.wrap(data), ByteOrder.LITTLE_ENDIAN);
+            pm.start();
+            try {
+                for (int i = 0; i < NB_EVENTS; i++) {
+                    declaration.createDefinition(null, "fields", input);
+                }
+            } catch (CTFException e) {
+                fail("Test failed at iteration " + loop + ':' + e.getMessage());
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
+
+    /**
+     * Benchmark the decoding of the fields one by one by their declarations,
+     * the reference for {@link #testStructDeclaration()}
+     */
+    @Test
+    public void testFieldDeclarations() {
+        StructDeclaration declaration = createDeclaration();
+        byte[] data = createEvents(declaration);
+        String[] fieldNames = Iterables.toArray(declaration.getFieldsList(), String.class);
+        IDeclaration[] fields = new IDeclaration[fieldNames.length];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = declaration.getField(fieldNames[i]);
+        }
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + "#field-declarations");
+        perf.tagAsSummary(pm, TEST_SUITE_NAME + ":field-declarations", Dimension.CPU_TIME);
+
+        for (int loop = 0; loop < LOOP_COUNT; loop++) {
+            BitBuffer input = new BitBuffer(ByteBuffer.wrap(data), ByteOrder.LITTLE_ENDIAN);
+            pm.start();
+            try {
+                for (int i = 0; i < NB_EVENTS; i++) {
+                    for (int j = 0; j < fields.length; j++) {
+                        fields[j].createDefinition(null, fieldNames[j], input);
+                    }
+                }
+            } catch (CTFException e) {
+                fail("Test failed at iteration " + loop + ':' + e.getMessage());
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
+}
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.junit.Test;
+
+/**
+ * Part of the {@link BitBuffer} tests which compare the reads of integers of
+ * all the lengths at all the bit positions of a buffer with a reference
+ * implementation, which assembles the integers byte by byte.
+ */
+public class BitBufferWordTest {
+
+    private static final int BUFFER_SIZE = 24;
+
+    private static byte[] createData(long seed) {
+        byte[] data = new byte[BUFFER_SIZE];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Test {@link BitBuffer#get(int, boolean)} for all the lengths at all the
+     * positions, including the ones ending at the end of the buffer
+     *
+     * @throws CTFException
+     *             Not expected
+     */
+    @Test
+    public void testGetAllPositions() throws CTFException {
+        for (ByteOrder byteOrder : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            for (long seed = 0; seed < 4; seed++) {
+                byte[] data = createData(seed);
+                BitBuffer fixture = new BitBuffer(ByteBuffer.wrap(data), byteOrder);
+                for (int length = 1; length <= Long.SIZE; length++) {
+                    for (int position = 0; position + length <= BUFFER_SIZE * Byte.SIZE; position++) {
+                        for (boolean signed : new boolean[] { true, false }) {
+                            long expected = Reference.get(data, byteOrder, position, length, signed);
+                            fixture.position(position);
+                            long actual = fixture.get(length, signed);
+                            assertEquals(byteOrder + " position:" + position + " length:" + length + " signed:" + signed, expected, actual);
+                            assertEquals(position + length, fixture.position());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test {@link BitBuffer#get(int, boolean)} with values having all their
+     * bits set or cleared, for the sign extension
+     *
+     * @throws CTFException
+     *             Not expected
+     */
+    @Test
+    public void testGetSignExtension() throws CTFException {
+        for (byte fill : new byte[] { 0, -1, 0x55 }) {
+            byte[] data = new byte[BUFFER_SIZE];
+            Arrays.fill(data, fill);
+            for (ByteOrder byteOrder : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+                BitBuffer fixture = new BitBuffer(ByteBuffer.wrap(data), byteOrder);
+                for (int length = 1; length <= Long.SIZE; length++) {
+                    for (int position = 0; position < 2 * Byte.SIZE; position++) {
+                        fixture.position(position);
+                        assertEquals(Reference.get(data, byteOrder, position, length, true), fixture.get(length, true));
+                        fixture.position(position);
+                        assertEquals(Reference.get(data, byteOrder, position, length, false), fixture.get(length, false));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test {@link BitBuffer#get(long[], int, boolean)} against reading the
+     * integers one by one
+     *
+     * @throws CTFException
+     *             Not expected
+     */
+    @Test
+    public void testGetArray() throws CTFException {
+        byte[] data = createData(42);
+        for (ByteOrder byteOrder : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            for (int length = 1; length <= Long.SIZE; length++) {
+                for (int start = 0; start < Byte.SIZE; start++) {
+                    int count = (BUFFER_SIZE * Byte.SIZE - start) / length;
+                    for (boolean signed : new boolean[] { true, false }) {
+                        BitBuffer fixture = new BitBuffer(ByteBuffer.wrap(data), byteOrder);
+                        long[] expected = new long[count];
+                        fixture.position(start);
+                        for (int i = 0; i < count; i++) {
+                            expected[i] = fixture.get(length, signed);
+                        }
+                        long[] actual = new long[count];
+                        fixture.position(start);
+                        fixture.get(actual, length, signed);
+                        assertArrayEquals(expected, actual);
+                        assertEquals(start + (long) count * length, fixture.position());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test {@link BitBuffer#get(long[], int, boolean)} beyond the end of the
+     * buffer, which reads nothing
+     *
+     * @throws CTFException
+     *             Not expected
+     */
+    @Test
+    public void testGetArrayOutOfBounds() throws CTFException {
+        BitBuffer fixture = new BitBuffer(ByteBuffer.wrap(createData(0)));
+        fixture.position(3);
+        try {
+            fixture.get(new long[BUFFER_SIZE / Integer.BYTES], Integer.SIZE, false);
+            fail();
+        } catch (CTFException e) {
+            /* Expected */
+        }
+        assertEquals(3, fixture.position());
+    }
+
+    /**
+     * Reference implementation, reading integers of up to 32 bits byte by
+     * byte, and longer integers in two parts
+     */
+    private static final class Reference {
+
+        private static final int BYTE_MASK = 0xff;
+
+        public static long get(byte[] data, ByteOrder byteOrder, long index, int length, boolean signed) {
+            if (length > Integer.SIZE) {
+                int highShift = length - Integer.SIZE;
+                long a = getInt(data, byteOrder, index, Integer.SIZE, true) & 0xffffffffL;
+                long b = getInt(data, byteOrder, index + Integer.SIZE, highShift, false) & ((1L << highShift) - 1L);
+                long value = (byteOrder == ByteOrder.BIG_ENDIAN) ? ((a << highShift) | b) : ((b << Integer.SIZE) | a);
+                if (signed) {
+                    int signExtendBits = Long.SIZE - length;
+                    value = (value << signExtendBits) >> signExtendBits;
+                }
+                return value;
+            }
+            long value = getInt(data, byteOrder, index, length, signed);
+            return signed ? value : (value & 0xffffffffL);
+        }
+
+        private static int getInt(byte[] data, ByteOrder byteOrder, long index, int length, boolean signed) {
+            return (byteOrder == ByteOrder.LITTLE_ENDIAN) ? getIntLE(data, index, length, signed) : getIntBE(data, index, length, signed);
+        }
+
+        private static int getIntBE(byte[] data, long index, int length, boolean signed) {
+            long end = index + length;
+            int startByte = (int) (index / Byte.SIZE);
+            int endByte = (int) ((end + (Byte.SIZE - 1)) / Byte.SIZE);
+            int currByte = startByte;
+            int cache = data[currByte] & BYTE_MASK;
+            int value = 0;
+            boolean isNeg = (cache & (1 << (Byte.SIZE - (index % Byte.SIZE) - 1))) != 0;
+            if (signed && isNeg) {
+                value = ~0;
+            }
+            if (startByte == (endByte - 1)) {
+                int cmask = cache >>> ((Byte.SIZE - (end % Byte.SIZE)) % Byte.SIZE);
+                if ((length % Byte.SIZE) > 0) {
+                    cmask &= ~((~0) << length);
+                }
+                value <<= length;
+                return value | cmask;
+            }
+            int cshift = (int) (index % Byte.SIZE);
+            if (cshift > 0) {
+                value <<= Byte.SIZE - cshift;
+                value |= cache & ~((~0) << (Byte.SIZE - cshift));
+                currByte++;
+            }
+            for (; currByte < (endByte - 1); currByte++) {
+                value <<= Byte.SIZE;
+                value |= data[currByte] & BYTE_MASK;
+            }
+            int lshift = (int) (end % Byte.SIZE);
+            if (lshift > 0) {
+                int cmask = (data[currByte] & BYTE_MASK) >>> (Byte.SIZE - lshift);
+                value <<= lshift;
+                value |= cmask & ~((~0) << lshift);
+            } else {
+                value <<= Byte.SIZE;
+                value |= data[currByte] & BYTE_MASK;
+            }
+            return value;
+        }
+
+        private static int getIntLE(byte[] data, long index, int length, boolean signed) {
+            long end = index + length;
+            int startByte = (int) (index / Byte.SIZE);
+            int endByte = (int) ((end + (Byte.SIZE - 1)) / Byte.SIZE);
+            int currByte = endByte - 1;
+            int cache = data[currByte] & BYTE_MASK;
+            int value = 0;
+            int mod = (int) (end % Byte.SIZE);
+            boolean isNeg = (cache & (1 << (((mod > 0) ? mod : Byte.SIZE) - 1))) != 0;
+            if (signed && isNeg) {
+                value = ~0;
+            }
+            if (startByte == (endByte - 1)) {
+                int cmask = cache >>> (index % Byte.SIZE);
+                if ((length % Byte.SIZE) > 0) {
+                    cmask &= ~((~0) << length);
+                }
+                value <<= length;
+                return value | cmask;
+            }
+            int cshift = (int) (end % Byte.SIZE);
+            if (cshift > 0) {
+                value <<= cshift;
+                value |= cache & ~((~0) << cshift);
+                currByte--;
+            }
+            for (; currByte >= (startByte + 1); currByte--) {
+                value <<= Byte.SIZE;
+                value |= data[currByte] & BYTE_MASK;
+            }
+            int lshift = (int) (index % Byte.SIZE);
+            if (lshift > 0) {
+                int cmask = (data[currByte] & BYTE_MASK) >>> lshift;
+                value <<= (Byte.SIZE - lshift);
+                value |= cmask & ~((~0) << (Byte.SIZE - lshift));
+            } else {
+                value <<= Byte.SIZE;
+                value |= data[currByte] & BYTE_MASK;
+            }
+            return value;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ package org.eclipse.tracecompass.ctf.core.tests.trace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
@@ -35,6 +36,7 @@ import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketEventIndex;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 import org.junit.Test;
 
@@ -226,4 +228,57 @@ public class CTFPacketReaderTest {
         assertFalse(cpr.hasMoreEvents());
     }
 
+    /**
+     * Test the event index of a packet: it is built once the packet is read
+     * entirely, and skipping to a timestamp with it reads the same events as
+     * reading the packet from its beginning
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testEventIndex() throws CTFException {
+        final int nbEvents = 1000;
+        // events of a 8-bit timestamp, that wraps, and a field
+        byte[] bytes = new byte[2 * nbEvents];
+        for (int i = 0; i < nbEvents; i++) {
+            bytes[2 * i] = (byte) i;
+            bytes[2 * i + 1] = (byte) (i / 4);
+        }
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, bytes.length);
+        StructDeclaration eventHeaderDeclaration = new StructDeclaration(8);
+        eventHeaderDeclaration.addField("timestamp", IntegerDeclaration.UINT_8_DECL);
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("field", IntegerDeclaration.UINT_8_DECL);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        CTFTrace trace = new CTFTrace();
+
+        CTFPacketReader cpr = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, eventHeaderDeclaration, null, null, trace);
+        for (int i = 0; i < nbEvents / 2; i++) {
+            cpr.readNextEvent();
+        }
+        assertNull(cpr.getEventIndex());
+        while (cpr.hasMoreEvents()) {
+            cpr.readNextEvent();
+        }
+        PacketEventIndex index = cpr.getEventIndex();
+        assertNotNull(index);
+        assertEquals(nbEvents / PacketEventIndex.STRIDE, index.size());
+        assertEquals(-1, index.floor(PacketEventIndex.STRIDE - 1));
+        assertEquals(0, index.floor(PacketEventIndex.STRIDE));
+
+        for (long timestamp : new long[] { 0, 255, 256, 300, 700, 999 }) {
+            CTFPacketReader seeker = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, eventHeaderDeclaration, null, null, trace);
+            seeker.skipTo(index, timestamp);
+            EventDefinition event = seeker.readNextEvent();
+            while (event.getTimestamp() < timestamp) {
+                event = seeker.readNextEvent();
+            }
+            assertEquals(timestamp, event.getTimestamp());
+            assertEquals(timestamp / 4, ((IntegerDefinition) event.getFields().getDefinition("field")).getValue());
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package org.eclipse.tracecompass.ctf.core.tests.trace;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -229,4 +230,43 @@ public class CTFStreamInputReaderTest {
             fixture.setCurrentEvent(eventDefinition);
         }
     }
+
+    /**
+     * Test that reading the packets ahead in the background reads the same
+     * events as reading them on demand, also after a seek.
+     *
+     * @throws CTFException
+     *             error
+     * @throws IOException
+     *             file not there
+     */
+    @Test
+    public void testReadAhead() throws CTFException, IOException {
+        try (CTFStreamInputReader reference = getStreamInputReader();
+                CTFStreamInputReader readAhead = getStreamInputReader()) {
+            readAhead.setReadAhead(true);
+            assertTrue(readAhead.isReadAhead());
+            long count = 0;
+            while (reference.readNextEvent() == CTFResponse.OK) {
+                assertEquals(CTFResponse.OK, readAhead.readNextEvent());
+                IEventDefinition event = reference.getCurrentEvent();
+                IEventDefinition other = readAhead.getCurrentEvent();
+                assertNotNull(event);
+                assertNotNull(other);
+                assertEquals(event.getTimestamp(), other.getTimestamp());
+                assertEquals(event.getDeclaration().getName(), other.getDeclaration().getName());
+                count++;
+            }
+            assertEquals(CTFResponse.FINISH, readAhead.readNextEvent());
+            assertTrue(count > 0);
+
+            reference.seek(0);
+            readAhead.seek(0);
+            IEventDefinition first = reference.getCurrentEvent();
+            IEventDefinition other = readAhead.getCurrentEvent();
+            assertNotNull(first);
+            assertNotNull(other);
+            assertEquals(first.getTimestamp(), other.getTimestamp());
+        }
+    }
 }
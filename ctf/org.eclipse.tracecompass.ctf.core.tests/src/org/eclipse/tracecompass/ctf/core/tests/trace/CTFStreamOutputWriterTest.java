@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.tests.shared.LttngKernelTraceGenerator;
+import org.eclipse.tracecompass.ctf.core.trace.CTFResponse;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamOutputWriter;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the packets copied by a {@link CTFStreamOutputWriter} for time
+ * ranges in the middle of the streams. The files written are compared to the
+ * packets selected by a scan of all the packets of the stream.
+ */
+public class CTFStreamOutputWriterTest {
+
+    private CTFTrace fTrace;
+    private File fOutDir;
+
+    /**
+     * Open the trace and create the output directory
+     *
+     * @throws CTFException
+     *             error opening the trace
+     * @throws IOException
+     *             error creating the directory
+     */
+    @Before
+    public void setUp() throws CTFException, IOException {
+        fTrace = new CTFTrace(LttngKernelTraceGenerator.getPath());
+        fOutDir = Files.createTempDirectory("ctfwriter").toFile(); //$NON-NLS-1$
+    }
+
+    /**
+     * Delete the output directory
+     */
+    @After
+    public void tearDown() {
+        File[] files = fOutDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        fOutDir.delete();
+    }
+
+    /**
+     * Test ranges starting and ending at, between and inside the packets of
+     * each stream
+     *
+     * @throws CTFException
+     *             error reading or writing the streams
+     * @throws IOException
+     *             error reading the files
+     */
+    @Test
+    public void testMidStreamRanges() throws CTFException, IOException {
+        int nbStreams = 0;
+        for (ICTFStream stream : fTrace.getStreams()) {
+            for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                assertNotNull(streamInput);
+                List<ICTFPacketDescriptor> packets = getPackets(streamInput);
+                int nb = packets.size();
+                assertTrue(nb >= 4);
+                for (int i : new int[] { 1, nb / 4, nb / 2, 3 * nb / 4, nb - 3 }) {
+                    ICTFPacketDescriptor packet = packets.get(i);
+                    long begin = packet.getTimestampBegin();
+                    long end = packet.getTimestampEnd();
+                    long nextBegin = packets.get(i + 1).getTimestampBegin();
+                    long nextEnd = packets.get(i + 1).getTimestampEnd();
+                    assertCopy(streamInput, packets, begin, begin);
+                    assertCopy(streamInput, packets, end, end);
+                    assertCopy(streamInput, packets, begin - 1, begin - 1);
+                    assertCopy(streamInput, packets, end + 1, end + 1);
+                    assertCopy(streamInput, packets, begin + (end - begin) / 2, begin + (end - begin) / 2);
+                    assertCopy(streamInput, packets, begin, nextEnd);
+                    assertCopy(streamInput, packets, end, nextBegin);
+                    assertCopy(streamInput, packets, begin + 1, nextBegin - 1);
+                    assertCopy(streamInput, packets, end + 1, packets.get(i + 2).getTimestampEnd());
+                }
+                assertCopy(streamInput, packets, 0, Long.MAX_VALUE);
+                nbStreams++;
+            }
+        }
+        assertTrue(nbStreams > 0);
+    }
+
+    /**
+     * Test ranges before, after and between the packets, which copy nothing
+     *
+     * @throws CTFException
+     *             error reading or writing the streams
+     * @throws IOException
+     *             error reading the files
+     */
+    @Test
+    public void testEmptyRanges() throws CTFException, IOException {
+        for (ICTFStream stream : fTrace.getStreams()) {
+            for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                assertNotNull(streamInput);
+                List<ICTFPacketDescriptor> packets = getPackets(streamInput);
+                long first = packets.get(0).getTimestampBegin();
+                long last = packets.get(packets.size() - 1).getTimestampEnd();
+                assertCopy(streamInput, packets, Long.MIN_VALUE, first - 1);
+                assertCopy(streamInput, packets, last + 1, Long.MAX_VALUE);
+                assertCopy(streamInput, packets, Long.MAX_VALUE, Long.MIN_VALUE);
+            }
+        }
+    }
+
+    /*
+     * Copy the packets of a range, and compare the file written to the
+     * packets that overlap the range, in the order of the stream file
+     */
+    private void assertCopy(CTFStreamInput streamInput, List<ICTFPacketDescriptor> packets, long startTime, long endTime) throws CTFException, IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (RandomAccessFile source = new RandomAccessFile(streamInput.getFile(), "r")) { //$NON-NLS-1$
+            for (ICTFPacketDescriptor packet : packets) {
+                if (packet.getTimestampEnd() >= startTime && packet.getTimestampBegin() <= endTime) {
+                    byte[] bytes = new byte[(int) (packet.getPacketSizeBits() / Byte.SIZE)];
+                    source.seek(packet.getOffsetBytes());
+                    source.readFully(bytes);
+                    expected.write(bytes);
+                }
+            }
+        }
+
+        CTFStreamOutputWriter writer = new CTFStreamOutputWriter(streamInput, fOutDir);
+        writer.copyPackets(startTime, endTime);
+        File outFile = writer.getOutFile();
+        String message = streamInput.getFilename() + " [" + startTime + ", " + endTime + ']'; //$NON-NLS-1$ //$NON-NLS-2$
+        if (expected.size() == 0) {
+            assertFalse(message, outFile.exists());
+        } else {
+            assertArrayEquals(message, expected.toByteArray(), Files.readAllBytes(outFile.toPath()));
+            assertTrue(outFile.delete());
+        }
+    }
+
+    /*
+     * Get the packets of a stream, in the order of the file. They are the
+     * packets of its events, and have to cover the whole file.
+     */
+    private static List<ICTFPacketDescriptor> getPackets(CTFStreamInput streamInput) throws CTFException, IOException {
+        List<ICTFPacketDescriptor> packets = new ArrayList<>();
+        try (CTFStreamInputReader reader = new CTFStreamInputReader(streamInput)) {
+            while (reader.readNextEvent() == CTFResponse.OK) {
+                ICTFPacketDescriptor packet = reader.getCurrentPacketReader().getCurrentPacket();
+                assertNotNull(packet);
+                if (packets.isEmpty() || packets.get(packets.size() - 1).getOffsetBytes() != packet.getOffsetBytes()) {
+                    packets.add(packet);
+                }
+            }
+        }
+        packets.sort(Comparator.comparingLong(ICTFPacketDescriptor::getOffsetBytes));
+        long offset = 0;
+        for (ICTFPacketDescriptor packet : packets) {
+            assertEquals(offset, packet.getOffsetBytes());
+            offset += packet.getPacketSizeBits() / Byte.SIZE;
+        }
+        assertEquals(streamInput.getFile().length(), offset);
+        return packets;
+    }
+}
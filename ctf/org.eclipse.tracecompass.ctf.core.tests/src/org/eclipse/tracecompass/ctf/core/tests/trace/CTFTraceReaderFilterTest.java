@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests of the event filter of a {@link CTFTraceReader}. The events read with
+ * a filter must be exactly the events of an unfiltered read that are accepted
+ * by the filter, the lost events and the last event of each packet.
+ */
+@RunWith(Parameterized.class)
+public class CTFTraceReaderFilterTest {
+
+    private final CtfTestTrace fTestTrace;
+    private final boolean fHasLostEvents;
+
+    private CTFTrace fTrace;
+    private final List<ReadEvent> fEvents = new ArrayList<>();
+
+    /**
+     * An event read from the trace, with the stream and packet it is in
+     */
+    private static class ReadEvent {
+        private final long fTimestamp;
+        private final String fName;
+        private final String fKey;
+        private final String fStream;
+        private final String fPacket;
+        private boolean fLastOfPacket = false;
+
+        public ReadEvent(CTFStreamInputReader stream, IEventDefinition event) {
+            fTimestamp = event.getTimestamp();
+            fName = event.getDeclaration().getName();
+            fStream = stream.getFilename();
+            fPacket = fStream + '@' + stream.getCurrentPacketReader().getCurrentPacket().getOffsetBytes();
+            fKey = fTimestamp + "/" + fPacket + '/' + fName; //$NON-NLS-1$
+        }
+
+        public boolean isLost() {
+            return fName.equals(CTFStrings.LOST_EVENT_NAME);
+        }
+    }
+
+    /**
+     * Get the traces to test, one with lost events
+     *
+     * @return the traces, and whether they have lost events
+     */
+    @Parameters(name = "{index}: {0}")
+    public static Iterable<Object[]> getTraces() {
+        return Arrays.asList(
+                new Object[] { CtfTestTrace.KERNEL, false },
+                new Object[] { CtfTestTrace.KERNEL_VM, false },
+                new Object[] { CtfTestTrace.HELLO_LOST, true });
+    }
+
+    /**
+     * Constructor
+     *
+     * @param testTrace
+     *            the trace to read
+     * @param hasLostEvents
+     *            whether the trace has lost events
+     */
+    public CTFTraceReaderFilterTest(CtfTestTrace testTrace, boolean hasLostEvents) {
+        fTestTrace = testTrace;
+        fHasLostEvents = hasLostEvents;
+    }
+
+    /**
+     * Open the trace and read all its events without filter
+     *
+     * @throws CTFException
+     *             error reading the trace
+     */
+    @Before
+    public void setUp() throws CTFException {
+        fTrace = CtfTestTraceUtils.getTrace(fTestTrace);
+        fEvents.addAll(read(null));
+        assertTrue(fEvents.size() > 0);
+
+        /*
+         * The next event of the same stream is in another packet, or none. The
+         * lost events, read between the packets, are not counted.
+         */
+        Map<String, String> nextPackets = new HashMap<>();
+        for (int i = fEvents.size() - 1; i >= 0; i--) {
+            ReadEvent event = fEvents.get(i);
+            if (!event.isLost()) {
+                String nextPacket = nextPackets.put(event.fStream, event.fPacket);
+                event.fLastOfPacket = !event.fPacket.equals(nextPacket);
+            }
+        }
+        assertEquals(fHasLostEvents, fEvents.stream().anyMatch(ReadEvent::isLost));
+    }
+
+    /**
+     * Test a filter accepting one type of events
+     *
+     * @throws CTFException
+     *             error reading the trace
+     */
+    @Test
+    public void testOneType() throws CTFException {
+        String name = fEvents.get(fEvents.size() / 2).fName;
+        assertFilter(name::equals);
+    }
+
+    /**
+     * Test a filter accepting a few types of events
+     *
+     * @throws CTFException
+     *             error reading the trace
+     */
+    @Test
+    public void testSomeTypes() throws CTFException {
+        assertFilter(name -> name.startsWith("sched_") || name.startsWith("irq_")); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Test a filter rejecting all the events, only the lost events and the
+     * last event of each packet are read
+     *
+     * @throws CTFException
+     *             error reading the trace
+     */
+    @Test
+    public void testNoType() throws CTFException {
+        assertFilter(name -> false);
+    }
+
+    /**
+     * Test a filter accepting all the events
+     *
+     * @throws CTFException
+     *             error reading the trace
+     */
+    @Test
+    public void testAllTypes() throws CTFException {
+        assertFilter(name -> true);
+    }
+
+    private void assertFilter(Predicate<String> filter) throws CTFException {
+        List<ReadEvent> expected = new ArrayList<>();
+        for (ReadEvent event : fEvents) {
+            if (filter.test(event.fName) || event.isLost() || event.fLastOfPacket) {
+                expected.add(event);
+            }
+        }
+        List<ReadEvent> events = read(filter);
+
+        /* The order of the events at the same timestamp is not compared */
+        assertEquals(getTimestamps(expected), getTimestamps(events));
+        assertEquals(getSortedKeys(expected), getSortedKeys(events));
+    }
+
+    private List<ReadEvent> read(Predicate<String> filter) throws CTFException {
+        List<ReadEvent> events = new ArrayList<>();
+        try (CTFTraceReader reader = new CTFTraceReader(fTrace)) {
+            if (filter != null) {
+                reader.setEventFilter(filter);
+                reader.seek(0);
+            }
+            while (reader.hasMoreEvents()) {
+                CTFStreamInputReader stream = reader.getTopStream();
+                IEventDefinition event = reader.getCurrentEventDef();
+                assertNotNull(stream);
+                assertNotNull(event);
+                events.add(new ReadEvent(stream, event));
+                reader.advance();
+            }
+        }
+        return events;
+    }
+
+    private static List<Long> getTimestamps(List<ReadEvent> events) {
+        List<Long> timestamps = new ArrayList<>();
+        for (ReadEvent event : events) {
+            timestamps.add(event.fTimestamp);
+        }
+        return timestamps;
+    }
+
+    private static List<String> getSortedKeys(List<ReadEvent> events) {
+        List<String> keys = new ArrayList<>();
+        for (ReadEvent event : events) {
+            keys.add(event.fKey);
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+}
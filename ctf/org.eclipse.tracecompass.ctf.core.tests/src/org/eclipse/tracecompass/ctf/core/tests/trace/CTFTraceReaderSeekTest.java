@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.tests.shared.LttngKernelTraceGenerator;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the seeks of a {@link CTFTraceReader} on a trace with enough
+ * streams for them to be seeked in parallel. The events after a seek are
+ * compared to those of a reader going through the whole trace without
+ * seeking.
+ */
+public class CTFTraceReaderSeekTest {
+
+    /* The trace readers seek their streams in parallel from 4 streams */
+    private static final int MIN_PARALLEL_STREAMS = 4;
+
+    private static final int NB_EVENTS_AFTER_SEEK = 500;
+
+    private CTFTrace fTrace;
+    private final List<Long> fTimestamps = new ArrayList<>();
+    private final List<String> fKeys = new ArrayList<>();
+
+    /**
+     * Open the trace and read all its events
+     *
+     * @throws CTFException
+     *             error reading the trace
+     */
+    @Before
+    public void setUp() throws CTFException {
+        fTrace = new CTFTrace(LttngKernelTraceGenerator.getPath());
+        int nbStreams = 0;
+        for (ICTFStream stream : fTrace.getStreams()) {
+            nbStreams += stream.getStreamInputs().size();
+        }
+        assertTrue(nbStreams >= MIN_PARALLEL_STREAMS);
+
+        try (CTFTraceReader reader = new CTFTraceReader(fTrace)) {
+            while (reader.hasMoreEvents()) {
+                IEventDefinition event = reader.getCurrentEventDef();
+                fTimestamps.add(event.getTimestamp());
+                fKeys.add(getKey(event));
+                reader.advance();
+            }
+        }
+        assertTrue(fTimestamps.size() > NB_EVENTS_AFTER_SEEK);
+    }
+
+    /**
+     * Test seeks on and between the timestamps of events through the trace,
+     * and before and after it
+     *
+     * @throws CTFException
+     *             error reading the trace
+     */
+    @Test
+    public void testSeek() throws CTFException {
+        int nb = fTimestamps.size();
+        try (CTFTraceReader reader = new CTFTraceReader(fTrace)) {
+            for (int index : new int[] { 0, nb / 4, nb / 2, 3 * nb / 4, nb - 1 }) {
+                long timestamp = fTimestamps.get(index);
+                assertSeek(reader, timestamp);
+                assertSeek(reader, timestamp + 1);
+                assertSeek(reader, timestamp - 1);
+            }
+            assertSeek(reader, 0);
+            assertSeek(reader, fTimestamps.get(nb / 2));
+            assertSeek(reader, fTimestamps.get(0));
+            assertFalse(reader.seek(fTimestamps.get(nb - 1) + 1));
+        }
+    }
+
+    /**
+     * Test that an error seeking one of the streams is reported by the seek of
+     * the trace reader
+     *
+     * @throws CTFException
+     *             the expected error
+     * @throws IOException
+     *             error closing the stream
+     */
+    @Test(expected = CTFException.class)
+    public void testSeekError() throws CTFException, IOException {
+        try (CTFTraceReader reader = new CTFTraceReader(fTrace)) {
+            CTFStreamInputReader stream = reader.getTopStream();
+            assertNotNull(stream);
+            stream.close();
+            reader.seek(fTimestamps.get(fTimestamps.size() / 2));
+        }
+    }
+
+    /*
+     * Seek the reader, and compare the events after the seek to those of the
+     * whole trace from the first event at or after the timestamp. The order
+     * of events at the same timestamp is not compared.
+     */
+    private void assertSeek(CTFTraceReader reader, long timestamp) throws CTFException {
+        int first = 0;
+        while (first < fTimestamps.size() && fTimestamps.get(first) < timestamp) {
+            first++;
+        }
+        int end = Math.min(fTimestamps.size(), first + NB_EVENTS_AFTER_SEEK);
+        List<Long> expectedTimestamps = fTimestamps.subList(first, end);
+
+        assertEquals(first < end, reader.seek(timestamp));
+        List<Long> timestamps = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        while (reader.hasMoreEvents() && timestamps.size() < expectedTimestamps.size()) {
+            IEventDefinition event = reader.getCurrentEventDef();
+            timestamps.add(event.getTimestamp());
+            keys.add(getKey(event));
+            reader.advance();
+        }
+        assertEquals(expectedTimestamps, timestamps);
+        if (first < end) {
+            long last = fTimestamps.get(end - 1);
+            assertEquals(getKeysBefore(fKeys.subList(first, end), expectedTimestamps, last), getKeysBefore(keys, timestamps, last));
+        }
+    }
+
+    private static String getKey(IEventDefinition event) {
+        return event.getTimestamp() + "/" + event.getCPU() + "/" + event.getDeclaration().getName();
+    }
+
+    /*
+     * Get the sorted keys of the events before a timestamp, so that the events
+     * at the last timestamp, which may be cut, are not compared
+     */
+    private static List<String> getKeysBefore(List<String> keys, List<Long> timestamps, long end) {
+        List<String> sorted = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (timestamps.get(i) < end) {
+                sorted.add(keys.get(i));
+            }
+        }
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ package org.eclipse.tracecompass.ctf.core.tests.trace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.nio.ByteOrder;
@@ -274,6 +275,29 @@ public class MetadataTest {
         assertEquals("bozo_the_clown", eventDeclarations.get(1).getName());
     }
 
+    /**
+     * Test that the traces with the same events share their declarations,
+     * whether their metadata text is the same or not
+     *
+     * @throws CTFException
+     */
+    @Test
+    public void testSharedDeclarations() throws CTFException {
+        Metadata first = new Metadata();
+        first.parseText(mdStart);
+        Metadata second = new Metadata();
+        second.parseText(mdStart);
+        Metadata third = new Metadata();
+        third.parseText("/* Another trace */\n" + mdStart);
+
+        IEventDeclaration event = Iterables.getOnlyElement(first.getTrace().getEventDeclarations(0L));
+        IEventDeclaration secondEvent = Iterables.getOnlyElement(second.getTrace().getEventDeclarations(0L));
+        IEventDeclaration thirdEvent = Iterables.getOnlyElement(third.getTrace().getEventDeclarations(0L));
+        assertNotNull(event.getFields());
+        assertSame(event.getFields(), secondEvent.getFields());
+        assertSame(event.getFields(), thirdEvent.getFields());
+    }
+
     /**
      * Run the ByteOrder getDetectedByteOrder() method test.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,15 +18,20 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.Definition;
 import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -87,6 +92,76 @@ public class StructDeclarationTest {
         assertNotNull(result);
     }
 
+    /**
+     * Test that the fields of a struct are read like by their declarations,
+     * with the integers of all the sizes, signs and byte orders, and with
+     * fields that are not byte aligned.
+     *
+     * @throws CTFException
+     *             out of bounds
+     */
+    @Test
+    public void testCreateDefinitionFields() throws CTFException {
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("u8", IntegerDeclaration.UINT_8_DECL);
+        declaration.addField("s16", IntegerDeclaration.createDeclaration(16, true, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 16));
+        declaration.addField("u32", IntegerDeclaration.createDeclaration(32, false, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 8));
+        declaration.addField("s32", IntegerDeclaration.createDeclaration(32, true, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 32));
+        declaration.addField("u64", IntegerDeclaration.createDeclaration(64, false, 16, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 64));
+        EnumDeclaration enumDeclaration = new EnumDeclaration(IntegerDeclaration.createDeclaration(16, false, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 8));
+        enumDeclaration.add(0, 0x7fff, "low");
+        enumDeclaration.add(0x8000, 0xffff, "high");
+        declaration.addField("enum", enumDeclaration);
+        declaration.addField("bits", IntegerDeclaration.createDeclaration(5, true, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 1));
+        declaration.addField("array", new ArrayDeclaration(3, IntegerDeclaration.createDeclaration(16, false, 10, ByteOrder.LITTLE_ENDIAN, Encoding.NONE, "", 16)));
+        declaration.addField("s8", IntegerDeclaration.INT_8_DECL);
+        declaration.addField("string", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        declaration.addField("s64", IntegerDeclaration.createDeclaration(64, true, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 8));
+        declaration.addField("u16", IntegerDeclaration.createDeclaration(16, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 16));
+
+        Random random = new Random(42);
+        for (ByteOrder byteOrder : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            /* Strings of odd and even lengths misalign the fields after them */
+            for (int stringLength = 0; stringLength < 4; stringLength++) {
+                byte[] data = new byte[64];
+                random.nextBytes(data);
+                int stringStart = 35;
+                for (int i = 0; i < stringLength; i++) {
+                    data[stringStart + i] = (byte) ('a' + i);
+                }
+                data[stringStart + stringLength] = 0;
+
+                BitBuffer input = new BitBuffer(ByteBuffer.wrap(data), byteOrder);
+                StructDefinition result = declaration.createDefinition(null, "", input);
+
+                BitBuffer expectedInput = new BitBuffer(ByteBuffer.wrap(data), byteOrder);
+                for (String fieldName : declaration.getFieldsList()) {
+                    IDeclaration field = declaration.getField(fieldName);
+                    Definition expected = field.createDefinition(null, fieldName, expectedInput);
+                    Definition actual = result.getDefinition(fieldName);
+                    assertNotNull(actual);
+                    assertEquals(fieldName, expected.toString(), actual.toString());
+                }
+                assertEquals(expectedInput.position(), input.position());
+            }
+        }
+    }
+
+    /**
+     * Test that a struct that does not fit in the input is not read
+     *
+     * @throws CTFException
+     *             out of bounds
+     */
+    @Test(expected = CTFException.class)
+    public void testCreateDefinitionTruncated() throws CTFException {
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("u32", IntegerDeclaration.UINT_32B_DECL);
+        declaration.addField("s64", IntegerDeclaration.INT_64B_DECL);
+        BitBuffer input = new BitBuffer(ByteBuffer.allocate(8));
+        declaration.createDefinition(null, "", input);
+    }
+
     /**
      * Run the Declaration getField(String) method test.
      */
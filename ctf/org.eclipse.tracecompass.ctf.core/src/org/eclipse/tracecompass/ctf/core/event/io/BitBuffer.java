@@ -1,5 +1,5 @@
 /*******************************************************************************.
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -18,6 +18,7 @@ package org.eclipse.tracecompass.ctf.core.event.io;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.ctf.core.CTFException;
@@ -110,7 +111,7 @@ public final class BitBuffer {
      *             raised if the buffer tries to read out of bounds
      */
     public int getInt() throws CTFException {
-        return getInt(BIT_INT, true);
+        return (int) get(BIT_INT, true);
     }
 
     /**
@@ -149,25 +150,64 @@ public final class BitBuffer {
         if (length > BIT_LONG) {
             throw new CTFException("Cannot read a long longer than 64 bits. Rquested: " + length); //$NON-NLS-1$
         }
-        if (length > BIT_INT) {
-            final int highShift = length - BIT_INT;
-            long a = getInt();
-            long b = getInt(highShift, false);
-            long retVal;
-            /* Cast the signed-extended int into a unsigned int. */
-            a &= INT_MASK;
-            b &= (1L << highShift) - 1L;
-
-            retVal = (fByteOrder == ByteOrder.BIG_ENDIAN) ? ((a << highShift) | b) : ((b << BIT_INT) | a);
-            /* sign extend */
-            if (signed) {
-                int signExtendBits = BIT_LONG - length;
-                retVal = (retVal << signExtendBits) >> signExtendBits;
-            }
-            return retVal;
+
+        /* Nothing to read. */
+        if (length == 0) {
+            return 0;
+        }
+
+        /* Validate that the buffer has enough bits. */
+        if (!canRead(length)) {
+            throw new CTFException("Cannot read the integer, " + //$NON-NLS-1$
+                    "the buffer does not have enough remaining space. " + //$NON-NLS-1$
+                    "Requested:" + length + " Available:" + (fBitCapacity - fPosition)); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        long val = read(fPosition, length, signed);
+        fPosition += length;
+        return val;
+    }
+
+    /**
+     * Relative bulk <i>get</i> method for reading integers of <i>length</i>
+     * bits.
+     *
+     * Reads <i>dst.length</i> consecutive integers of <i>length</i> bits,
+     * without padding between them, starting at the current position. The
+     * results are signed extended if <i>signed</i> is true. The current
+     * position is increased of <i>dst.length</i> times <i>length</i> bits.
+     *
+     * @param dst
+     *            The array to fill with the values read from the buffer
+     * @param length
+     *            The length in bits of each integer
+     * @param signed
+     *            The sign extended flag
+     * @throws CTFException
+     *             An error occurred reading the data. If more than 64 bits at a
+     *             time are read, or the buffer is read beyond its end, this
+     *             exception will be raised, and the position is not changed.
+     * @since 2.0
+     */
+    public void get(long @NonNull [] dst, int length, boolean signed) throws CTFException {
+        if (length > BIT_LONG) {
+            throw new CTFException("Cannot read a long longer than 64 bits. Rquested: " + length); //$NON-NLS-1$
         }
-        long retVal = getInt(length, signed);
-        return (signed ? retVal : (retVal & INT_MASK));
+        long total = (long) length * dst.length;
+        if (fPosition + total > fBitCapacity) {
+            throw new CTFException("Cannot read the integers, " + //$NON-NLS-1$
+                    "the buffer does not have enough remaining space. " + //$NON-NLS-1$
+                    "Requested:" + total + " Available:" + (fBitCapacity - fPosition)); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (length == 0) {
+            Arrays.fill(dst, 0);
+            return;
+        }
+        long position = fPosition;
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = read(position, length, signed);
+            position += length;
+        }
+        fPosition = position;
     }
 
     /**
@@ -192,199 +232,97 @@ public final class BitBuffer {
     }
 
     /**
-     * Relative <i>get</i> method for reading integer of <i>length</i> bits.
+     * Read an integer of <i>length</i> bits at a bit index, which is known to
+     * be in the buffer.
      *
-     * Reads <i>length</i> bits starting at the current position. The result is
-     * signed extended if <i>signed</i> is true. The current position is
-     * increased of <i>length</i> bits.
-     *
-     * @param length
-     *            The length in bits of this integer
-     * @param signed
-     *            The sign extended flag
-     * @return The int value read from the buffer
-     * @throws CTFException
-     *             An error occurred reading the data. When the buffer is read
-     *             beyond its end, this exception will be raised.
+     * The aligned bytes, shorts, ints and longs are read by the byte buffer.
+     * The other integers are extracted from the 64-bit word starting at the
+     * byte of the index, completed by the next byte when the integer spans
+     * over 9 bytes.
      */
-    private int getInt(int length, boolean signed) throws CTFException {
-
-        /* Nothing to read. */
-        if (length == 0) {
-            return 0;
-        }
-
-        /* Validate that the buffer has enough bits. */
-        if (!canRead(length)) {
-            throw new CTFException("Cannot read the integer, " + //$NON-NLS-1$
-                    "the buffer does not have enough remaining space. " + //$NON-NLS-1$
-                    "Requested:" + length + " Available:" + (fBitCapacity - fPosition)); //$NON-NLS-1$ //$NON-NLS-2$
-        }
-
-        /* Get the value from the byte buffer. */
-        int val = 0;
-        boolean gotIt = false;
+    private long read(long index, int length, boolean signed) {
+        int startByte = (int) (index / BIT_CHAR);
+        int bitOffset = (int) (index & (BIT_CHAR - 1));
 
         /*
          * Try a fast read when the position is byte-aligned by using
          * java.nio.ByteBuffer's native methods
          */
-        /*
-         * A faster alignment detection as the compiler cannot guaranty that pos
-         * is always positive.
-         */
-        if ((fPosition & (BitBuffer.BIT_CHAR - 1)) == 0) {
+        if (bitOffset == 0) {
             switch (length) {
-            case BitBuffer.BIT_CHAR:
-                // Byte
-                val = fBuffer.get((int) (fPosition / BIT_CHAR));
-                if (!signed) {
-                    val = val & BYTE_MASK;
-                }
-                gotIt = true;
-                break;
-
-            case BitBuffer.BIT_SHORT:
-                // Word
-                val = fBuffer.getShort((int) (fPosition / BIT_CHAR));
-                if (!signed) {
-                    val = val & SHORT_MASK;
-                }
-                gotIt = true;
-                break;
-
-            case BitBuffer.BIT_INT:
-                // Double word
-                val = fBuffer.getInt((int) (fPosition / BIT_CHAR));
-                gotIt = true;
-                break;
-
+            case BIT_CHAR: {
+                byte val = fBuffer.get(startByte);
+                return signed ? val : val & BYTE_MASK;
+            }
+            case BIT_SHORT: {
+                short val = fBuffer.getShort(startByte);
+                return signed ? val : val & SHORT_MASK;
+            }
+            case BIT_INT: {
+                int val = fBuffer.getInt(startByte);
+                return signed ? val : val & INT_MASK;
+            }
+            case BIT_LONG:
+                return fBuffer.getLong(startByte);
             default:
                 break;
             }
         }
 
-        /* When not byte-aligned, fall-back to a general decoder. */
-        if (!gotIt) {
-            // Nothing read yet: use longer methods
-            if (fByteOrder == ByteOrder.LITTLE_ENDIAN) {
-                val = getIntLE(fPosition, length, signed);
-            } else {
-                val = getIntBE(fPosition, length, signed);
-            }
-        }
-        fPosition += length;
-
-        return val;
-    }
-
-    private int getIntBE(long index, int length, boolean signed) {
-        if ((length <= 0) || (length > BIT_INT)) {
-            throw new IllegalArgumentException("Length must be between 1-32 bits"); //$NON-NLS-1$
-        }
+        /* The bits to discard on the left of the value */
+        int shift = BIT_LONG - length;
+        boolean spansNinthByte = (bitOffset + length) > BIT_LONG;
         long end = index + length;
-        int startByte = (int) (index / BIT_CHAR);
-        int endByte = (int) ((end + (BIT_CHAR - 1)) / BIT_CHAR);
-        int currByte, lshift, cshift, mask, cmask, cache;
-        int value = 0;
-
-        currByte = startByte;
-        cache = fBuffer.get(currByte) & BYTE_MASK;
-        boolean isNeg = (cache & (1 << (BIT_CHAR - (index % BIT_CHAR) - 1))) != 0;
-        if (signed && isNeg) {
-            value = ~0;
-        }
-        if (startByte == (endByte - 1)) {
-            cmask = cache >>> ((BIT_CHAR - (end % BIT_CHAR)) % BIT_CHAR);
-            if (((length) % BIT_CHAR) > 0) {
-                mask = ~((~0) << length);
-                cmask &= mask;
+        int nbBytes = (int) ((end + (BIT_CHAR - 1)) / BIT_CHAR) - startByte;
+        if (fByteOrder == ByteOrder.LITTLE_ENDIAN) {
+            /* The first bit is the least significant bit of the word */
+            long bits = loadLE(startByte, nbBytes) >>> bitOffset;
+            if (spansNinthByte) {
+                bits |= ((long) (fBuffer.get(startByte + Long.BYTES) & BYTE_MASK)) << (BIT_LONG - bitOffset);
             }
-            value <<= length;
-            value |= cmask;
-            return value;
-        }
-        cshift = (int) (index % BIT_CHAR);
-        if (cshift > 0) {
-            mask = ~((~0) << (BIT_CHAR - cshift));
-            cmask = cache & mask;
-            lshift = BIT_CHAR - cshift;
-            value <<= lshift;
-            value |= cmask;
-            currByte++;
-        }
-        for (; currByte < (endByte - 1); currByte++) {
-            value <<= BIT_CHAR;
-            value |= fBuffer.get(currByte) & BYTE_MASK;
+            bits <<= shift;
+            return signed ? (bits >> shift) : (bits >>> shift);
         }
-        lshift = (int) (end % BIT_CHAR);
-        if (lshift > 0) {
-            mask = ~((~0) << lshift);
-            cmask = fBuffer.get(currByte) & BYTE_MASK;
-            cmask >>>= BIT_CHAR - lshift;
-            cmask &= mask;
-            value <<= lshift;
-            value |= cmask;
-        } else {
-            value <<= BIT_CHAR;
-            value |= fBuffer.get(currByte) & BYTE_MASK;
+        /* The first bit is the most significant bit of the word */
+        long bits = loadBE(startByte, nbBytes) << bitOffset;
+        if (spansNinthByte) {
+            bits |= (fBuffer.get(startByte + Long.BYTES) & BYTE_MASK) >>> (BIT_CHAR - bitOffset);
         }
-        return value;
+        return signed ? (bits >> shift) : (bits >>> shift);
     }
 
-    private int getIntLE(long index, int length, boolean signed) {
-        if ((length <= 0) || (length > BIT_INT)) {
-            throw new IllegalArgumentException("Length must be between 1-32 bits"); //$NON-NLS-1$
-        }
-        long end = index + length;
-        int startByte = (int) (index / BIT_CHAR);
-        int endByte = (int) ((end + (BIT_CHAR - 1)) / BIT_CHAR);
-        int currByte, lshift, cshift, mask, cmask, cache, mod;
-        int value = 0;
-
-        currByte = endByte - 1;
-        cache = fBuffer.get(currByte) & BYTE_MASK;
-        mod = (int) (end % BIT_CHAR);
-        lshift = (mod > 0) ? mod : BIT_CHAR;
-        boolean isNeg = (cache & (1 << (lshift - 1))) != 0;
-        if (signed && isNeg) {
-            value = ~0;
+    /**
+     * Load the 64-bit word starting at a byte in big endian, padded with zeros
+     * on the right near the end of the buffer, where only the needed bytes are
+     * read.
+     */
+    private long loadBE(int startByte, int nbBytes) {
+        if (startByte + Long.BYTES <= fBuffer.limit()) {
+            long word = fBuffer.getLong(startByte);
+            return (fBuffer.order() == ByteOrder.BIG_ENDIAN) ? word : Long.reverseBytes(word);
         }
-        if (startByte == (endByte - 1)) {
-            cmask = cache >>> (index % BIT_CHAR);
-            if (((length) % BIT_CHAR) > 0) {
-                mask = ~((~0) << length);
-                cmask &= mask;
-            }
-            value <<= length;
-            value |= cmask;
-            return value;
+        long word = 0;
+        for (int i = 0; i < nbBytes; i++) {
+            word = (word << BIT_CHAR) | (fBuffer.get(startByte + i) & BYTE_MASK);
         }
-        cshift = (int) (end % BIT_CHAR);
-        if (cshift > 0) {
-            mask = ~((~0) << cshift);
-            cmask = cache & mask;
-            value <<= cshift;
-            value |= cmask;
-            currByte--;
-        }
-        for (; currByte >= (startByte + 1); currByte--) {
-            value <<= BIT_CHAR;
-            value |= fBuffer.get(currByte) & BYTE_MASK;
+        return word << (BIT_CHAR * (Long.BYTES - nbBytes));
+    }
+
+    /**
+     * Load the 64-bit word starting at a byte in little endian, padded with
+     * zeros on the left near the end of the buffer, where only the needed
+     * bytes are read.
+     */
+    private long loadLE(int startByte, int nbBytes) {
+        if (startByte + Long.BYTES <= fBuffer.limit()) {
+            long word = fBuffer.getLong(startByte);
+            return (fBuffer.order() == ByteOrder.LITTLE_ENDIAN) ? word : Long.reverseBytes(word);
         }
-        lshift = (int) (index % BIT_CHAR);
-        if (lshift > 0) {
-            mask = ~((~0) << (BIT_CHAR - lshift));
-            cmask = fBuffer.get(currByte) & BYTE_MASK;
-            cmask >>>= lshift;
-            cmask &= mask;
-            value <<= (BIT_CHAR - lshift);
-            value |= cmask;
-        } else {
-            value <<= BIT_CHAR;
-            value |= fBuffer.get(currByte) & BYTE_MASK;
+        long word = 0;
+        for (int i = 0; i < nbBytes; i++) {
+            word |= ((long) (fBuffer.get(startByte + i) & BYTE_MASK)) << (BIT_CHAR * i);
         }
-        return value;
+        return word;
     }
 
     // ------------------------------------------------------------------------
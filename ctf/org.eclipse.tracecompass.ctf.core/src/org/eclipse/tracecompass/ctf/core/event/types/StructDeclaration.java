@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -24,6 +24,7 @@ import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
 import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructDecoder;
 
 /**
  * A CTF structure declaration.
@@ -57,6 +58,9 @@ public class StructDeclaration extends Declaration {
     /** maximum bit alignment */
     private long fMaxAlign;
 
+    /** Decoder of the fields, compiled for the current fields when first read */
+    private volatile @Nullable StructDecoder fDecoder;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -209,15 +213,16 @@ public class StructDeclaration extends Declaration {
         fFieldNames = names;
         fFields = fields;
         fMaxAlign = Math.max(fMaxAlign, declaration.getAlignment());
+        fDecoder = null;
     }
 
-    private void fillStruct(@NonNull BitBuffer input, final IDefinition[] myFields, StructDefinition structDefinition) throws CTFException {
-        final @NonNull String[] fieldNames = fFieldNames;
-        final @NonNull IDeclaration[] fields = fFields;
-        for (int i = 0; i < fields.length; i++) {
-            /* We should not have inserted null keys... */
-            myFields[i] = fields[i].createDefinition(structDefinition, fieldNames[i], input);
+    private void fillStruct(@NonNull BitBuffer input, final Definition[] myFields, StructDefinition structDefinition) throws CTFException {
+        StructDecoder decoder = fDecoder;
+        if (decoder == null) {
+            decoder = StructDecoder.compile(fFieldNames, fFields);
+            fDecoder = decoder;
         }
+        decoder.decode(input, myFields, structDefinition);
     }
 
     /**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -18,7 +18,9 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -33,6 +35,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketEventIndex;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
@@ -71,6 +74,12 @@ public class CTFStreamInput implements IDefinitionScope {
      */
     private final StreamInputPacketIndex fIndex;
 
+    /**
+     * The event indexes of the packets that were decoded, by packet offset.
+     * The readers of this input share them.
+     */
+    private final Map<Long, PacketEventIndex> fEventIndexes = new ConcurrentHashMap<>();
+
     private long fTimestampEnd;
 
     /**
@@ -147,6 +156,29 @@ public class CTFStreamInput implements IDefinitionScope {
         return fIndex;
     }
 
+    /**
+     * Gets the event index of a packet, if it was decoded already
+     *
+     * @param packet
+     *            the packet
+     * @return the event index of the packet, or null if it is not available
+     */
+    @Nullable PacketEventIndex getEventIndex(ICTFPacketDescriptor packet) {
+        return fEventIndexes.get(packet.getOffsetBits());
+    }
+
+    /**
+     * Sets the event index of a packet, once it was decoded
+     *
+     * @param packet
+     *            the packet
+     * @param eventIndex
+     *            the event index of the packet
+     */
+    void setEventIndex(ICTFPacketDescriptor packet, PacketEventIndex eventIndex) {
+        fEventIndexes.putIfAbsent(packet.getOffsetBits(), eventIndex);
+    }
+
     /**
      * Gets the filename of the streamInput file.
      *
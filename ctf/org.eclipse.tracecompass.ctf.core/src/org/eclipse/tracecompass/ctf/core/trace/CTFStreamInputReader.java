@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2015 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -18,7 +18,13 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -33,6 +39,7 @@ import org.eclipse.tracecompass.internal.ctf.core.Activator;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
 import org.eclipse.tracecompass.internal.ctf.core.trace.NullPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketEventIndex;
 
 /**
  * A CTF trace event reader. Reads the events of a trace file.
@@ -46,6 +53,24 @@ public class CTFStreamInputReader implements AutoCloseable {
 
     private static final int BITS_PER_BYTE = Byte.SIZE;
 
+    /**
+     * Size of the file windows that are mapped, in bytes. A window covers many
+     * packets, which then share the same mapping.
+     */
+    private static final long WINDOW_SIZE = 8L * 1024 * 1024;
+
+    /**
+     * Size of a memory page, used to fault in the packets read ahead
+     */
+    private static final int PAGE_SIZE = 4096;
+
+    /**
+     * The bytes read to fault in the pages of the packets read ahead,
+     * combined. Storing them in a volatile field keeps the reads from being
+     * optimized away as dead code.
+     */
+    private static volatile byte fTouchedPages = 0;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -82,6 +107,87 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     private boolean fLive = false;
 
+    /**
+     * Prepare the next packet in the background
+     */
+    private boolean fReadAhead = false;
+
+    /**
+     * Filter on the names of the events to read, null to read all the events
+     */
+    private @Nullable Predicate<String> fEventFilter = null;
+
+    /**
+     * The ids of the event declarations accepted by the event filter, and the
+     * number of declarations when they were computed
+     */
+    private @Nullable BitSet fEventIds = null;
+    private int fNbEventDeclarations = 0;
+
+    /**
+     * The mapped window of the file the current packet is in
+     */
+    private @Nullable Window fWindow = null;
+
+    /**
+     * The next packet, being prepared in the background
+     */
+    private @Nullable Future<PreparedPacket> fNextPacket = null;
+
+    /**
+     * The descriptor of the packet being prepared
+     */
+    private @Nullable ICTFPacketDescriptor fNextPacketDescriptor = null;
+
+    /**
+     * A mapped region of the file, shared by the packets it contains
+     */
+    private static final class Window {
+        private final ByteBuffer fBuffer;
+        private final long fStart;
+
+        public Window(ByteBuffer buffer, long start) {
+            fBuffer = buffer;
+            fStart = start;
+        }
+
+        public @Nullable ByteBuffer slice(long start, long size) {
+            long offset = start - fStart;
+            if (offset < 0 || offset + size > fBuffer.capacity()) {
+                return null;
+            }
+            ByteBuffer buffer = fBuffer.duplicate();
+            buffer.position((int) offset);
+            buffer.limit((int) (offset + size));
+            return buffer.slice();
+        }
+    }
+
+    /**
+     * A packet with its data, ready to be read
+     */
+    private static final class PreparedPacket {
+        private final Window fWindow;
+        private final ByteBuffer fBuffer;
+
+        public PreparedPacket(Window window, ByteBuffer buffer) {
+            fWindow = window;
+            fBuffer = buffer;
+        }
+    }
+
+    /**
+     * Lazy holder of the threads preparing the packets read ahead, shared by
+     * all the readers
+     */
+    private static final class ReadAheadExecutor {
+        private static final ExecutorService INSTANCE = NonNullUtils.checkNotNull(Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread thread = new Thread(r, "CTF read-ahead"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -131,22 +237,110 @@ public class CTFStreamInputReader implements AutoCloseable {
 
     private IPacketReader getCurrentPacketReader(@Nullable ICTFPacketDescriptor packet) throws CTFException {
         IPacketReader ctfPacketReader = NullPacketReader.INSTANCE;
+        PreparedPacket prepared = takeNextPacket(packet);
         if (packet != null) {
             long size = packet.getContentSizeBits();
             if (size < 0) {
                 throw new CTFIOException("Cannot have negative sized buffers."); //$NON-NLS-1$
             }
-            BitBuffer bitBuffer = new BitBuffer(getByteBufferAt(packet.getOffsetBits(), size));
+            ByteBuffer buffer;
+            if (prepared != null) {
+                fWindow = prepared.fWindow;
+                buffer = prepared.fBuffer;
+            } else {
+                buffer = getByteBufferAt(packet.getOffsetBits(), size);
+            }
+            BitBuffer bitBuffer = new BitBuffer(buffer);
             bitBuffer.position(packet.getPayloadStartBits());
             IDeclaration eventHeaderDeclaration = getStreamInput().getStream().getEventHeaderDeclaration();
             CTFTrace trace = getStreamInput().getStream().getTrace();
-            ctfPacketReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+            CTFPacketReader packetReader = new CTFPacketReader(bitBuffer, packet, getEventDeclarations(), eventHeaderDeclaration, getStreamEventContextDecl(), trace.getPacketHeaderDef(), trace);
+            packetReader.setEventFilter(getEventIds());
+            ctfPacketReader = packetReader;
+            prepareNextPacket();
         }
         return ctfPacketReader;
     }
 
     /**
-     * Get a bytebuffer map of the file
+     * Get the packet prepared in the background, if it is the one to read and
+     * it is ready. Otherwise the preparation is cancelled, and the packet is
+     * mapped on this thread rather than waiting for it.
+     */
+    private @Nullable PreparedPacket takeNextPacket(@Nullable ICTFPacketDescriptor packet) {
+        Future<PreparedPacket> future = fNextPacket;
+        ICTFPacketDescriptor nextPacket = fNextPacketDescriptor;
+        fNextPacket = null;
+        fNextPacketDescriptor = null;
+        if (future == null) {
+            return null;
+        }
+        try {
+            if (packet != null && packet.equals(nextPacket) && future.isDone() && !future.isCancelled()) {
+                return future.get();
+            }
+        } catch (ExecutionException e) {
+            /* Map it again on this thread, to report the error */
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        future.cancel(false);
+        return null;
+    }
+
+    /**
+     * Map and fault in the data of the packet after the current one in the
+     * background, if it is already indexed, so that switching to it does not
+     * stall the reading.
+     */
+    private void prepareNextPacket() {
+        int nextIndex = fPacketIndex + 1;
+        if (!fReadAhead || nextIndex >= getPacketSize()) {
+            return;
+        }
+        ICTFPacketDescriptor next = fStreamInput.getIndex().getElement(nextIndex);
+        long size = next.getContentSizeBits();
+        if (size < 0) {
+            return;
+        }
+        Window window = fWindow;
+        fNextPacketDescriptor = next;
+        fNextPacket = ReadAheadExecutor.INSTANCE.submit(() -> {
+            long position = next.getOffsetBits() / BITS_PER_BYTE;
+            long length = (size + BITS_PER_BYTE - 1) / BITS_PER_BYTE;
+            Window nextWindow = window;
+            ByteBuffer buffer = (nextWindow == null) ? null : nextWindow.slice(position, length);
+            if (buffer == null) {
+                nextWindow = mapWindow(position, length);
+                buffer = NonNullUtils.checkNotNull(nextWindow.slice(position, length));
+            }
+            /* Touch every page, so the reading thread does not fault on them */
+            byte touched = 0;
+            for (int i = buffer.position(); i < buffer.limit(); i += PAGE_SIZE) {
+                touched ^= buffer.get(i);
+            }
+            fTouchedPages = (byte) (fTouchedPages ^ touched);
+            return new PreparedPacket(nextWindow, buffer);
+        });
+    }
+
+    /**
+     * Map a window of the file starting at the given position. It covers at
+     * least the requested size, and more if the file allows it.
+     */
+    private Window mapWindow(long position, long size) throws IOException {
+        FileChannel fileChannel = NonNullUtils.checkNotNull(fFileChannel);
+        long windowSize = size;
+        if (SafeMappedByteBuffer.isMemoryMapped()) {
+            windowSize = Math.max(size, Math.min(WINDOW_SIZE, fileChannel.size() - position));
+        }
+        ByteBuffer map = SafeMappedByteBuffer.map(fileChannel, MapMode.READ_ONLY, position, windowSize);
+        return new Window(map, position);
+    }
+
+    /**
+     * Get a bytebuffer map of the file. The map is a view of a larger window
+     * of the file, which is reused while the requested regions are in it.
      *
      * @param position
      *            start offset in bits
@@ -159,11 +353,18 @@ public class CTFStreamInputReader implements AutoCloseable {
      * @since 2.0
      */
     public ByteBuffer getByteBufferAt(long position, long size) throws CTFException {
-        ByteBuffer map;
-        try {
-            map = SafeMappedByteBuffer.map(fFileChannel, MapMode.READ_ONLY, position / BITS_PER_BYTE, (size + BITS_PER_BYTE - 1) / BITS_PER_BYTE);
-        } catch (IOException e) {
-            throw new CTFIOException(e.getMessage(), e);
+        long bytePosition = position / BITS_PER_BYTE;
+        long byteSize = (size + BITS_PER_BYTE - 1) / BITS_PER_BYTE;
+        Window window = fWindow;
+        ByteBuffer map = (window == null) ? null : window.slice(bytePosition, byteSize);
+        if (map == null) {
+            try {
+                window = mapWindow(bytePosition, byteSize);
+            } catch (IOException e) {
+                throw new CTFIOException(e.getMessage(), e);
+            }
+            fWindow = window;
+            map = window.slice(bytePosition, byteSize);
         }
         if (map == null) {
             throw new CTFIOException("Failed to allocate mapped byte buffer"); //$NON-NLS-1$
@@ -180,6 +381,8 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     @Override
     public void close() throws IOException {
+        takeNextPacket(null);
+        fWindow = null;
         if (fFileChannel != null) {
             fFileChannel.close();
         }
@@ -266,6 +469,78 @@ public class CTFStreamInputReader implements AutoCloseable {
         fLive = live;
     }
 
+    /**
+     * Set the read-ahead mode. In this mode, the data of the packet following
+     * the current one is mapped and loaded in the background while the current
+     * packet is read, which speeds up sequential reading.
+     *
+     * @param readAhead
+     *            whether the next packet is prepared in the background
+     * @since 2.0
+     */
+    public void setReadAhead(boolean readAhead) {
+        fReadAhead = readAhead;
+        if (!readAhead) {
+            takeNextPacket(null);
+        }
+    }
+
+    /**
+     * Set a filter on the types of the events to read. The events of the other
+     * types are skipped without being decoded, except the last event of each
+     * packet, and the lost events are always read. The filter applies to the
+     * events read after the current one, the reader has to be seeked for the
+     * current event to be filtered too.
+     *
+     * @param eventFilter
+     *            the filter on the names of the events to read, or null to
+     *            read all the events
+     * @since 2.0
+     */
+    public void setEventFilter(@Nullable Predicate<String> eventFilter) {
+        fEventFilter = eventFilter;
+        fEventIds = null;
+        if (fPacketReader instanceof CTFPacketReader) {
+            ((CTFPacketReader) fPacketReader).setEventFilter(getEventIds());
+        }
+    }
+
+    /**
+     * Get the ids of the event declarations accepted by the event filter. They
+     * are computed again when declarations are added.
+     */
+    private @Nullable BitSet getEventIds() {
+        Predicate<String> eventFilter = fEventFilter;
+        if (eventFilter == null) {
+            return null;
+        }
+        List<@Nullable IEventDeclaration> declarations = getEventDeclarations();
+        BitSet eventIds = fEventIds;
+        if (eventIds == null || fNbEventDeclarations != declarations.size()) {
+            eventIds = new BitSet(declarations.size());
+            for (int i = 0; i < declarations.size(); i++) {
+                IEventDeclaration declaration = declarations.get(i);
+                /* The unknown ids are read, to report them */
+                if (declaration == null || eventFilter.test(declaration.getName())) {
+                    eventIds.set(i);
+                }
+            }
+            fEventIds = eventIds;
+            fNbEventDeclarations = declarations.size();
+        }
+        return eventIds;
+    }
+
+    /**
+     * Get if the next packet is prepared in the background
+     *
+     * @return whether the read-ahead mode is enabled
+     * @since 2.0
+     */
+    public boolean isReadAhead() {
+        return fReadAhead;
+    }
+
     /**
      * Get if the trace is to read live or not
      *
@@ -295,14 +570,23 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public CTFResponse readNextEvent() throws CTFException {
+        skipFilteredEvents();
 
         /*
          * Change packet if needed
          */
         if (!fPacketReader.hasMoreEvents()) {
             final ICTFPacketDescriptor prevPacket = fPacketReader.getCurrentPacket();
+            saveEventIndex();
             if (prevPacket != null || fLive) {
                 goToNextPacket();
+                skipFilteredEvents();
+                /* Skip the packets without any event to read */
+                while (fEventFilter != null && !fPacketReader.hasMoreEvents() && fPacketReader.getCurrentPacket() != null) {
+                    saveEventIndex();
+                    goToNextPacket();
+                    skipFilteredEvents();
+                }
             }
 
         }
@@ -342,6 +626,26 @@ public class CTFStreamInputReader implements AutoCloseable {
 
     }
 
+    private void skipFilteredEvents() throws CTFException {
+        if (fPacketReader instanceof CTFPacketReader) {
+            ((CTFPacketReader) fPacketReader).skipFilteredEvents();
+        }
+    }
+
+    /**
+     * Keep the event index of the current packet for the next seeks in it, if
+     * it was decoded entirely.
+     */
+    private void saveEventIndex() {
+        ICTFPacketDescriptor packet = fPacketReader.getCurrentPacket();
+        if (packet != null && fPacketReader instanceof CTFPacketReader) {
+            PacketEventIndex eventIndex = ((CTFPacketReader) fPacketReader).getEventIndex();
+            if (eventIndex != null) {
+                fStreamInput.setEventIndex(packet, eventIndex);
+            }
+        }
+    }
+
     /**
      * @return
      */
@@ -355,7 +659,7 @@ public class CTFStreamInputReader implements AutoCloseable {
      *
      * @param timestamp
      *            The timestamp to seek to.
-     * @return The offset compared to the current position
+     * @return The number of events decoded before the one at the timestamp
      * @throws CTFException
      *             if an error occurs
      */
@@ -381,6 +685,18 @@ public class CTFStreamInputReader implements AutoCloseable {
             gotoPacket(timestamp);
         }
 
+        /*
+         * Skip the events before the timestamp if the packet was decoded
+         * before.
+         */
+        ICTFPacketDescriptor packet = fPacketReader.getCurrentPacket();
+        if (packet != null && fPacketReader instanceof CTFPacketReader) {
+            PacketEventIndex eventIndex = fStreamInput.getEventIndex(packet);
+            if (eventIndex != null) {
+                ((CTFPacketReader) fPacketReader).skipTo(eventIndex, timestamp);
+            }
+        }
+
         /*
          * Advance until either of these conditions are met:
          *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -16,9 +16,7 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -27,7 +25,6 @@ import java.nio.file.StandardOpenOption;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
-import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
 
 /**
@@ -48,8 +45,6 @@ public class CTFStreamOutputWriter {
     @Nullable
     private final CTFStreamInput fStreamInput;
     @NonNull
-    private final CTFStreamPacketOutputWriter fStreamPacketOutputWriter;
-    @NonNull
     private final File fOutFile;
 
     // ------------------------------------------------------------------------
@@ -76,8 +71,6 @@ public class CTFStreamOutputWriter {
         } catch (IOException e) {
             throw new CTFIOException("Output file can't be created: " + outFilePath, e); //$NON-NLS-1$
         }
-
-        fStreamPacketOutputWriter = new CTFStreamPacketOutputWriter();
     }
 
     /**
@@ -87,6 +80,10 @@ public class CTFStreamOutputWriter {
      *
      * startTime <= packet.getTimestampEnd() && packet.getTimestampStart() <= endTime
      *
+     * The first packet is found by a binary search of the packet index, and the
+     * consecutive packets of the file are transferred in one piece, without
+     * copying them in memory.
+     *
      * @param startTime
      *            the start time for packets to be written
      * @param endTime
@@ -105,14 +102,30 @@ public class CTFStreamOutputWriter {
             StreamInputPacketIndex index = streamInput.getIndex();
             int count = 0;
             try (FileChannel source = FileChannel.open(streamInput.getFile().toPath(), StandardOpenOption.READ)) {
-                for (int i = 0; i < index.size(); i++) {
+                /* The packets are sorted by time, skip the ones before */
+                int first = Math.min(index.search(startTime), index.size());
+                while (first > 0 && index.getElement(first - 1).getTimestampEnd() >= startTime) {
+                    first--;
+                }
+                /* The range of bytes of the consecutive packets to copy */
+                long runStart = 0;
+                long runEnd = 0;
+                for (int i = first; i < index.size(); i++) {
                     ICTFPacketDescriptor entry = index.getElement(i);
-                    if ((entry.getTimestampEnd() >= startTime) && (entry.getTimestampBegin() <= endTime)) {
-                        ByteBuffer buffer = SafeMappedByteBuffer.map(source, MapMode.READ_ONLY, entry.getOffsetBytes(), entry.getPacketSizeBits() / Byte.SIZE);
-                        fStreamPacketOutputWriter.writePacket(buffer, fc);
+                    if (entry.getTimestampBegin() > endTime) {
+                        break;
+                    }
+                    if (entry.getTimestampEnd() >= startTime) {
+                        long offset = entry.getOffsetBytes();
+                        if (offset != runEnd) {
+                            transfer(source, runStart, runEnd, fc);
+                            runStart = offset;
+                        }
+                        runEnd = offset + entry.getPacketSizeBits() / Byte.SIZE;
                         count++;
                     }
                 }
+                transfer(source, runStart, runEnd, fc);
             }
 
             if (count == 0 && fOutFile.exists()) {
@@ -126,6 +139,22 @@ public class CTFStreamOutputWriter {
         }
     }
 
+    /**
+     * Transfer a range of bytes of the source file at the end of the output
+     * file. The transfer may be done by the operating system, without reading
+     * the bytes in memory.
+     */
+    private static void transfer(FileChannel source, long start, long end, FileChannel fc) throws IOException {
+        long position = start;
+        while (position < end) {
+            long transferred = source.transferTo(position, end - position, fc);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file at position " + position); //$NON-NLS-1$
+            }
+            position += transferred;
+        }
+    }
+
     /**
      * Get the stream file to write.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -22,6 +22,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
@@ -42,6 +48,23 @@ public class CTFTraceReader implements AutoCloseable {
 
     private static final int MIN_PRIO_SIZE = 16;
 
+    /**
+     * Minimum number of streams for the streams to be seeked in parallel
+     */
+    private static final int MIN_PARALLEL_SEEK_SIZE = 4;
+
+    /**
+     * Lazy holder of the threads seeking the streams, shared by all the
+     * readers
+     */
+    private static final class SeekExecutor {
+        private static final ExecutorService INSTANCE = checkNotNull(Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread thread = new Thread(r, "CTF seek"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -81,6 +104,11 @@ public class CTFTraceReader implements AutoCloseable {
      */
     private boolean fClosed = false;
 
+    /**
+     * Filter on the names of the events to read, null to read all the events
+     */
+    private Predicate<String> fEventFilter = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -210,9 +238,12 @@ public class CTFTraceReader implements AutoCloseable {
             for (CTFStreamInput streamInput : streamInputs) {
 
                 /*
-                 * Create a reader and add it to the group.
+                 * Create a reader and add it to the group. Traces are mostly
+                 * read sequentially, so prepare the packets ahead.
                  */
-                fStreamInputReaders.add(new CTFStreamInputReader(checkNotNull(streamInput)));
+                CTFStreamInputReader streamInputReader = new CTFStreamInputReader(checkNotNull(streamInput));
+                streamInputReader.setReadAhead(true);
+                fStreamInputReaders.add(streamInputReader);
             }
         }
 
@@ -222,6 +253,40 @@ public class CTFTraceReader implements AutoCloseable {
         fEventCountPerTraceFile = new long[fStreamInputReaders.size()];
     }
 
+    /**
+     * Set a filter on the types of the events to read. The events of the other
+     * types are skipped without being decoded, which is much faster when only
+     * a few types of events are needed. The lost events and the last event of
+     * each packet are always read, so the end time of the trace is the same
+     * with or without filter. The filter applies to the events read after the
+     * current ones, the reader has to be seeked for the current events to be
+     * filtered too.
+     *
+     * @param eventFilter
+     *            the filter on the names of the events to read, or null to
+     *            read all the events
+     * @since 2.0
+     */
+    public void setEventFilter(Predicate<String> eventFilter) {
+        fEventFilter = eventFilter;
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader streamInputReader : fStreamInputReaders) {
+                streamInputReader.setEventFilter(eventFilter);
+            }
+        }
+    }
+
+    /**
+     * Get the filter on the types of the events to read
+     *
+     * @return the filter on the names of the events to read, or null if all
+     *         the events are read
+     * @since 2.0
+     */
+    public Predicate<String> getEventFilter() {
+        return fEventFilter;
+    }
+
     /**
      * Returns whether or not this CTFTraceReader has been closed
      *
@@ -249,6 +314,8 @@ public class CTFTraceReader implements AutoCloseable {
                 try (CTFStreamInputReader streamInputReader = new CTFStreamInputReader(checkNotNull(streamInput))) {
                     if (!fStreamInputReaders.contains(streamInputReader)) {
                         CTFStreamInputReader streamInputReaderToAdd = new CTFStreamInputReader(checkNotNull(streamInput));
+                        streamInputReaderToAdd.setReadAhead(true);
+                        streamInputReaderToAdd.setEventFilter(fEventFilter);
                         streamInputReaderToAdd.readNextEvent();
                         fStreamInputReaders.add(streamInputReaderToAdd);
                         readers.add(streamInputReaderToAdd);
@@ -424,12 +491,21 @@ public class CTFTraceReader implements AutoCloseable {
          * Remove all the trace readers from the priority queue
          */
         fPrio.clear();
-        for (CTFStreamInputReader streamInputReader : fStreamInputReaders) {
-            /*
-             * Seek the trace reader.
-             */
-            streamInputReader.seek(timestamp);
-
+        List<CTFStreamInputReader> streamInputReaders;
+        synchronized (fStreamInputReaders) {
+            streamInputReaders = new ArrayList<>(fStreamInputReaders);
+        }
+        if (streamInputReaders.size() >= MIN_PARALLEL_SEEK_SIZE) {
+            seekInParallel(streamInputReaders, timestamp);
+        } else {
+            for (CTFStreamInputReader streamInputReader : streamInputReaders) {
+                /*
+                 * Seek the trace reader.
+                 */
+                streamInputReader.seek(timestamp);
+            }
+        }
+        for (CTFStreamInputReader streamInputReader : streamInputReaders) {
             /*
              * Add it to the priority queue if there is a current event.
              */
@@ -440,6 +516,35 @@ public class CTFTraceReader implements AutoCloseable {
         return hasMoreEvents();
     }
 
+    /**
+     * Seek the stream readers at the same time, each stream reader being used
+     * by only one thread. The cost of the seek is then the one of the slowest
+     * stream.
+     */
+    private static void seekInParallel(List<CTFStreamInputReader> streamInputReaders, long timestamp) throws CTFException {
+        List<Callable<Long>> seeks = new ArrayList<>();
+        for (CTFStreamInputReader streamInputReader : streamInputReaders) {
+            seeks.add(() -> streamInputReader.seek(timestamp));
+        }
+        try {
+            for (Future<Long> seek : SeekExecutor.INSTANCE.invokeAll(seeks)) {
+                seek.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CTFException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CTFException) {
+                throw (CTFException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new CTFException(e.getMessage(), cause);
+        }
+    }
+
     /**
      * Gets the stream with the oldest event
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -16,7 +16,14 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -30,6 +37,12 @@ import org.eclipse.tracecompass.ctf.core.CTFException;
  */
 public class CTFTraceWriter {
 
+    /**
+     * Minimum number of stream files copied at the same time, the copies
+     * mostly wait for the disk
+     */
+    private static final int MIN_COPY_THREADS = 4;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -98,14 +111,51 @@ public class CTFTraceWriter {
                 throw new CTFIOException("Error copying metadata: " + e.toString(), e); //$NON-NLS-1$
             }
 
-            // Copy packets
+            // Copy packets, each stream file in its own thread
+            List<Callable<Void>> copies = new ArrayList<>();
             for (ICTFStream stream : trace.getStreams()) {
                 Set<CTFStreamInput> inputs = stream.getStreamInputs();
                 for (CTFStreamInput s : inputs) {
                     CTFStreamOutputWriter streamOutputwriter = new CTFStreamOutputWriter(checkNotNull(s), out);
-                    streamOutputwriter.copyPackets(adjustedStart, adjustedEnd);
+                    copies.add(() -> {
+                        streamOutputwriter.copyPackets(adjustedStart, adjustedEnd);
+                        return null;
+                    });
                 }
             }
+            copyInParallel(copies);
+        }
+    }
+
+    /**
+     * Run the copies of the stream files at the same time. The copies are
+     * bound by the disk more than by the processors, but the operating system
+     * can then schedule the reads of all the files.
+     */
+    private static void copyInParallel(List<Callable<Void>> copies) throws CTFException {
+        if (copies.isEmpty()) {
+            return;
+        }
+        int nbThreads = Math.min(copies.size(), Math.max(MIN_COPY_THREADS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads, r -> new Thread(r, "CTF trace writer")); //$NON-NLS-1$
+        try {
+            for (Future<Void> copy : executor.invokeAll(copies)) {
+                copy.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CTFException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CTFException) {
+                throw (CTFException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new CTFException(e.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
         }
     }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -44,6 +44,7 @@ import org.eclipse.tracecompass.ctf.parser.CTFParser;
 import org.eclipse.tracecompass.ctf.parser.CTFParser.parse_return;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.CtfAntlrException;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.IOStructGen;
+import org.eclipse.tracecompass.internal.ctf.core.event.metadata.MetadataCache;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.ParseException;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 
@@ -68,6 +69,8 @@ public class Metadata {
 
     private static final int BITS_PER_BYTE = Byte.SIZE;
 
+    private static final int READ_BUFFER_SIZE = 8192;
+
     /**
      * Name of the metadata file in the trace directory
      */
@@ -160,7 +163,7 @@ public class Metadata {
                 /* Check if metadata is packet-based, if not it is text based */
                 Reader metadataTextInput = (isPacketBased(metadataFileChannel) ? readBinaryMetaData(metadataFileChannel) : new FileReader(fis.getFD()));) {
 
-            readMetaDataText(metadataTextInput);
+            readMetaDataText(readAll(metadataTextInput));
 
         } catch (FileNotFoundException e) {
             throw new CTFException("Cannot find metadata file!", e); //$NON-NLS-1$
@@ -190,6 +193,17 @@ public class Metadata {
         return new StringReader(metadataText.toString());
     }
 
+    private static String readAll(Reader metadataTextInput) throws IOException {
+        StringBuilder metadataText = new StringBuilder();
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int read = metadataTextInput.read(buffer);
+        while (read >= 0) {
+            metadataText.append(buffer, 0, read);
+            read = metadataTextInput.read(buffer);
+        }
+        return metadataText.toString();
+    }
+
     /**
      * Executes a weak validation of the metadata. It checks if a file with name
      * metadata exists and if one of the following conditions are met:
@@ -246,9 +260,8 @@ public class Metadata {
      *             parsing a TSDL file
      */
     public void parseText(String data) throws CTFException {
-        Reader metadataTextInput = new StringReader(data);
         try {
-            readMetaDataText(metadataTextInput);
+            readMetaDataText(data);
         } catch (IOException | ParseException e) {
             throw new CTFException(e);
         } catch (RecognitionException | RewriteCardinalityException e) {
@@ -257,8 +270,14 @@ public class Metadata {
 
     }
 
-    private void readMetaDataText(Reader metadataTextInput) throws IOException, RecognitionException, ParseException {
-        CommonTree tree = createAST(metadataTextInput);
+    private void readMetaDataText(String metadataText) throws IOException, RecognitionException, ParseException {
+        /* The traces of the same tracer often have the same metadata */
+        String hash = MetadataCache.getHash(metadataText);
+        CommonTree tree = MetadataCache.getTree(hash);
+        boolean isCached = (tree != null);
+        if (tree == null) {
+            tree = createAST(new StringReader(metadataText));
+        }
 
         /* Generate IO structures (declarations) */
         fTreeParser = new IOStructGen(tree, NonNullUtils.checkNotNull(fTrace));
@@ -268,6 +287,10 @@ public class Metadata {
         if (detectedByteOrder != null && fTrace.getByteOrder() != detectedByteOrder) {
             throw new ParseException("Metadata byte order and trace byte order inconsistent."); //$NON-NLS-1$
         }
+        if (!isCached) {
+            MetadataCache.putTree(hash, tree);
+        }
+        MetadataCache.shareDeclarations(fTrace);
     }
 
     /**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -30,6 +30,17 @@ public class SafeMappedByteBuffer {
 
     private SafeMappedByteBuffer(){}
 
+    /**
+     * Get whether the buffers are really mapped, in which case mapping a
+     * larger region only costs address space. Otherwise the whole region is
+     * read.
+     *
+     * @return true if the file regions are mapped, false if they are read
+     */
+    public static boolean isMemoryMapped() {
+        return !IS_WIN32;
+    }
+
     /**
      * Maps a region of this channel's file directly into memory. On Windows,
      * this will allocate a new ByteBuffer and read the file.
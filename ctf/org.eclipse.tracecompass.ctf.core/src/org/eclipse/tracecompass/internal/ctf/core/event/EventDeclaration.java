@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2011, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -33,6 +33,7 @@ import org.eclipse.tracecompass.ctf.core.trace.CTFIOException;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructSkipper;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
 
@@ -76,6 +77,30 @@ public class EventDeclaration implements IEventDeclaration {
 
     private int fId = (int) UNSET_EVENT_ID;
 
+    /**
+     * Skippers of the contexts and the fields, compiled when an event is
+     * first skipped
+     */
+    private volatile @Nullable Skippers fSkippers = null;
+
+    /**
+     * The skippers of the structs of an event, null for the structs that have
+     * to be decoded
+     */
+    private static final class Skippers {
+        private final @Nullable StructDeclaration fStreamEventContextDecl;
+        private final @Nullable StructSkipper fStreamEventContext;
+        private final @Nullable StructSkipper fContext;
+        private final @Nullable StructSkipper fFields;
+
+        public Skippers(@Nullable StructDeclaration streamEventContextDecl, @Nullable StructDeclaration context, @Nullable StructDeclaration fields) {
+            fStreamEventContextDecl = streamEventContextDecl;
+            fStreamEventContext = (streamEventContextDecl == null) ? null : StructSkipper.compile(streamEventContextDecl);
+            fContext = (context == null) ? null : StructSkipper.compile(context);
+            fFields = (fields == null) ? null : StructSkipper.compile(fields);
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -129,6 +154,71 @@ public class EventDeclaration implements IEventDeclaration {
                 packetDescriptor);
     }
 
+    /**
+     * Skips an event of this declaration, without creating its definition.
+     * When the event header has the timestamp, the contexts and the fields
+     * that only have fields of known size or strings are skipped without
+     * being decoded, the other ones are decoded. Otherwise, the whole event is
+     * decoded for its timestamp.
+     *
+     * @param streamEventContextDecl
+     *            event context
+     * @param packetDescriptor
+     *            current packet
+     * @param packetContext
+     *            packet context
+     * @param eventHeaderDef
+     *            The event header definition
+     * @param input
+     *            the bitbuffer input source, after the event header
+     * @param prevTimestamp
+     *            The timestamp of the previous event
+     * @return the timestamp of the event
+     * @throws CTFException
+     *             As a bitbuffer is used to read, it could have wrapped
+     *             IOExceptions.
+     */
+    public long skipDefinition(StructDeclaration streamEventContextDecl, ICTFPacketDescriptor packetDescriptor, ICompositeDefinition packetContext, ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp)
+            throws CTFException {
+        if (!hasTimestamp(eventHeaderDef)) {
+            return createDefinition(streamEventContextDecl, packetDescriptor, packetContext, eventHeaderDef, input, prevTimestamp).getTimestamp();
+        }
+        Skippers skippers = fSkippers;
+        if (skippers == null || skippers.fStreamEventContextDecl != streamEventContextDecl) {
+            skippers = new Skippers(streamEventContextDecl, fContext, fFields);
+            fSkippers = skippers;
+        }
+        final CTFStream stream = fStream;
+        final CTFTrace trace = stream == null ? null : stream.getTrace();
+        if (skippers.fStreamEventContext != null) {
+            skippers.fStreamEventContext.skip(input);
+        } else if (streamEventContextDecl != null) {
+            streamEventContextDecl.createDefinition(trace, ILexicalScope.STREAM_EVENT_CONTEXT, input);
+        }
+        if (skippers.fContext != null) {
+            skippers.fContext.skip(input);
+        } else if (fContext != null) {
+            fContext.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.CONTEXT, input);
+        }
+        if (skippers.fFields != null) {
+            skippers.fFields.skip(input);
+        } else if (fFields != null) {
+            fFields.createFieldDefinition(eventHeaderDef, trace, ILexicalScope.FIELDS, input);
+        }
+        return calculateTimestamp(eventHeaderDef, prevTimestamp, null, null);
+    }
+
+    /**
+     * Check if the timestamp of an event is in its header, and not in its
+     * context or fields
+     */
+    private static boolean hasTimestamp(@Nullable ICompositeDefinition eventHeaderDef) {
+        if (eventHeaderDef instanceof EventHeaderDefinition) {
+            return true;
+        }
+        return (eventHeaderDef instanceof StructDefinition) && (((StructDefinition) eventHeaderDef).lookupDefinition(CTFStrings.TIMESTAMP) instanceof IntegerDefinition);
+    }
+
     private static long calculateTimestamp(@Nullable ICompositeDefinition eventHeaderDef, long prevTimestamp, StructDefinition eventPayload, StructDefinition eventContext) throws CTFIOException {
         long timestamp = 0;
         Definition def = null;
@@ -207,6 +297,7 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public void setContext(StructDeclaration context) {
         fContext = context;
+        fSkippers = null;
     }
 
     /**
@@ -217,6 +308,7 @@ public class EventDeclaration implements IEventDeclaration {
      */
     public void setFields(StructDeclaration fields) {
         fFields = fields;
+        fSkippers = null;
     }
 
     @Override
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.metadata;
+
+import java.lang.ref.SoftReference;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.antlr.runtime.tree.CommonTree;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Process-wide cache of the parsed metadata, shared by the traces of the same
+ * tracer and kernel.
+ *
+ * The syntax trees of the metadata texts are kept by the hash of their text,
+ * so a metadata text already read by another trace is not parsed again. The
+ * trees are softly referenced, so they are freed when memory runs low. A cached
+ * tree may be read by several traces at the same time, so it is immutable:
+ * generating the declarations of a trace must not add, remove or reparent its
+ * nodes.
+ *
+ * The declarations of the payloads and contexts of the events are interned
+ * once generated, so the traces with the same events share the same
+ * declarations, even if the text of their metadata differs elsewhere (UUID,
+ * environment). The declarations are not modified once generated.
+ */
+@NonNullByDefault
+public final class MetadataCache {
+
+    /**
+     * Number of syntax trees kept, the trees of large metadata (kernel traces)
+     * take a few megabytes
+     */
+    private static final int MAX_SIZE = 8;
+
+    private static final String HASH_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+    private static final int HEX_RADIX = 16;
+
+    private static final Map<String, SoftReference<CommonTree>> TREES = Collections.synchronizedMap(new LinkedHashMap<String, SoftReference<CommonTree>>(MAX_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = -6452916813047431917L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.@Nullable Entry<String, SoftReference<CommonTree>> eldest) {
+            return size() > MAX_SIZE;
+        }
+    });
+
+    /**
+     * Weakly referenced declarations, freed when no trace uses them anymore
+     */
+    private static final Interner<StructDeclaration> DECLARATIONS = Interners.newWeakInterner();
+
+    private MetadataCache() {
+    }
+
+    /**
+     * Get the hash of a metadata text, the key of its syntax tree
+     *
+     * @param metadataText
+     *            the metadata text
+     * @return the hash of the text
+     */
+    public static String getHash(String metadataText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            return new BigInteger(1, digest.digest(metadataText.getBytes(StandardCharsets.UTF_8))).toString(HEX_RADIX);
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Java platform has to support SHA-256 */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the syntax tree of a metadata text
+     *
+     * @param hash
+     *            the hash of the metadata text
+     * @return the syntax tree, or null if the text was not parsed before
+     */
+    public static @Nullable CommonTree getTree(String hash) {
+        SoftReference<CommonTree> reference = TREES.get(hash);
+        if (reference == null) {
+            return null;
+        }
+        CommonTree tree = reference.get();
+        if (tree == null) {
+            /* Freed by the garbage collector */
+            TREES.remove(hash, reference);
+        }
+        return tree;
+    }
+
+    /**
+     * Keep the syntax tree of a metadata text, once the declarations of a
+     * trace were successfully generated from it
+     *
+     * @param hash
+     *            the hash of the metadata text
+     * @param tree
+     *            the syntax tree
+     */
+    public static void putTree(String hash, CommonTree tree) {
+        TREES.put(hash, new SoftReference<>(tree));
+    }
+
+    /**
+     * Replace the declarations of the events of a trace by the equal
+     * declarations of the other traces
+     *
+     * @param trace
+     *            the trace, after its metadata is parsed
+     */
+    public static void shareDeclarations(CTFTrace trace) {
+        for (ICTFStream stream : trace.getStreams()) {
+            for (IEventDeclaration event : stream.getEventDeclarations()) {
+                if (!(event instanceof EventDeclaration)) {
+                    continue;
+                }
+                EventDeclaration eventDeclaration = (EventDeclaration) event;
+                StructDeclaration fields = eventDeclaration.getFields();
+                if (fields != null) {
+                    StructDeclaration shared = DECLARATIONS.intern(fields);
+                    if (shared != fields) {
+                        eventDeclaration.setFields(shared);
+                    }
+                }
+                StructDeclaration context = eventDeclaration.getContext();
+                if (context != null) {
+                    StructDeclaration shared = DECLARATIONS.intern(context);
+                    if (shared != context) {
+                        eventDeclaration.setContext(shared);
+                    }
+                }
+            }
+        }
+    }
+}
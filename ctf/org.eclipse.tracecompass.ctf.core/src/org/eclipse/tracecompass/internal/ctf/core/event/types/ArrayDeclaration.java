@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -23,6 +23,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.AbstractArrayDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.Definition;
 import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
@@ -129,6 +130,11 @@ public final class ArrayDeclaration extends CompoundDeclaration {
             }
         }
         List<String> elemNames = fChildrenNames.get(fieldName);
+        IntegerDeclaration packedIntegers = IntegerElements.getPackedIntegers(fElemType);
+        if (packedIntegers != null) {
+            IntegerElements.read(packedIntegers, definitionScope, elemNames, fLength, input, definitions);
+            return definitions.build();
+        }
         for (int i = 0; i < fLength; i++) {
             String name = elemNames.get(i);
             if (name == null) {
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.nio.ByteOrder;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
+import org.eclipse.tracecompass.ctf.core.event.types.Definition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+
+import com.google.common.collect.ImmutableList.Builder;
+
+/**
+ * Reader of the integer elements of an array or a sequence, which reads all
+ * their values from the buffer at once when there is no padding between them.
+ */
+final class IntegerElements {
+
+    private IntegerElements() {
+    }
+
+    /**
+     * Check if the elements are integers without padding between them, their
+     * length being a multiple of their alignment
+     *
+     * @param elemType
+     *            the type of the elements
+     * @return the integer declaration of the elements, or null if they are
+     *         read one by one
+     */
+    public static @Nullable IntegerDeclaration getPackedIntegers(IDeclaration elemType) {
+        if (!(elemType instanceof IntegerDeclaration)) {
+            return null;
+        }
+        IntegerDeclaration declaration = (IntegerDeclaration) elemType;
+        if (declaration.getLength() > Long.SIZE || (declaration.getLength() % declaration.getAlignment()) != 0) {
+            return null;
+        }
+        return declaration;
+    }
+
+    /**
+     * Read the elements
+     *
+     * @param declaration
+     *            the declaration of the elements, see
+     *            {@link #getPackedIntegers(IDeclaration)}
+     * @param definitionScope
+     *            the scope of the elements
+     * @param names
+     *            the names of the elements
+     * @param count
+     *            the number of elements
+     * @param input
+     *            the input
+     * @param definitions
+     *            the builder of the list of the definitions of the elements
+     * @throws CTFException
+     *             if the elements cannot be read
+     */
+    public static void read(IntegerDeclaration declaration, @Nullable IDefinitionScope definitionScope,
+            List<String> names, int count, BitBuffer input, Builder<@NonNull Definition> definitions) throws CTFException {
+        if (count == 0) {
+            return;
+        }
+        /* Only the first element needs to be aligned */
+        long mask = declaration.getAlignment() - 1;
+        input.position((input.position() + mask) & ~mask);
+
+        long[] values = new long[count];
+        ByteOrder byteOrder = input.getByteOrder();
+        input.setByteOrder(declaration.getByteOrder());
+        try {
+            input.get(values, declaration.getLength(), declaration.isSigned());
+        } finally {
+            input.setByteOrder(byteOrder);
+        }
+        for (int i = 0; i < count; i++) {
+            definitions.add(new IntegerDefinition(declaration, definitionScope, checkNotNull(names.get(i)), values[i]));
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson, Ecole Polytechnique de Montreal and others
+ * Copyright (c) 2014, 2016 Ericsson, Ecole Polytechnique de Montreal and others
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -26,6 +26,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.Definition;
 import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 
 import com.google.common.collect.ArrayListMultimap;
@@ -130,6 +131,11 @@ public class SequenceDeclaration extends CompoundDeclaration {
         }
         List<String> paths = (List<String>) fPaths.get(fieldName);
         Builder<@NonNull Definition> definitions = new ImmutableList.Builder<>();
+        IntegerDeclaration packedIntegers = IntegerElements.getPackedIntegers(fElemType);
+        if (packedIntegers != null) {
+            IntegerElements.read(packedIntegers, definitionScope, paths, (int) length, input, definitions);
+            return new ArrayDefinition(this, definitionScope, fieldName, definitions.build());
+        }
         for (int i = 0; i < length; i++) {
             /* We should not have inserted any null values */
             String elemName = checkNotNull(paths.get(i));
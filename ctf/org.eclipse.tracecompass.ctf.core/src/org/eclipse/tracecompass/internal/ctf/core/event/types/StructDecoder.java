@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.Definition;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+
+/**
+ * Decoder of the fields of a struct, specialized for its layout when the
+ * struct is compiled.
+ *
+ * The consecutive fields of fixed size are grouped in runs. Once the start of
+ * a run is aligned, the offset of each of its fields is a constant, so the
+ * alignment of the fields is not computed again for each event. The byte
+ * aligned integers and enums of 8, 16, 32 or 64 bits of a run are read
+ * straight from the byte buffer at their offset. The other fields (variants,
+ * sequences, strings, floats, structs) are read by their declaration, like in
+ * the generic path.
+ *
+ * It is immutable, and can be shared by the threads reading the trace.
+ */
+@NonNullByDefault
+public final class StructDecoder {
+
+    private static final int BITS_PER_BYTE = Byte.SIZE;
+
+    private static final long BYTE_MASK = (1L << Byte.SIZE) - 1;
+    private static final long SHORT_MASK = (1L << Short.SIZE) - 1;
+    private static final long INT_MASK = (1L << Integer.SIZE) - 1;
+
+    /**
+     * Consecutive fields of fixed size with constant offsets
+     */
+    private static final class Run {
+        private final int fFrom;
+        private final int fTo;
+        private final long fAlignment;
+        private final long fFirstAlignment;
+        private final long fSize;
+
+        public Run(int from, int to, long alignment, long firstAlignment, long size) {
+            fFrom = from;
+            fTo = to;
+            fAlignment = alignment;
+            fFirstAlignment = firstAlignment;
+            fSize = size;
+        }
+    }
+
+    private final String[] fFieldNames;
+    private final IDeclaration[] fFields;
+    /**
+     * The fields of the runs read directly from the byte buffer, the others
+     * are read by their declaration
+     */
+    private final boolean[] fDirect;
+
+    /**
+     * The offsets of the fields of the runs, in bits from the start of their
+     * run
+     */
+    private final long[] fOffsets;
+    private final @Nullable Run[] fRuns;
+
+    private StructDecoder(String[] fieldNames, IDeclaration[] fields, boolean[] direct, long[] offsets, @Nullable Run[] runs) {
+        fFieldNames = fieldNames;
+        fFields = fields;
+        fDirect = direct;
+        fOffsets = offsets;
+        fRuns = runs;
+    }
+
+    /**
+     * Compile the decoder of the fields of a struct
+     *
+     * @param fieldNames
+     *            the names of the fields
+     * @param fields
+     *            the declarations of the fields, they are not modified after
+     * @return the decoder
+     */
+    public static StructDecoder compile(String[] fieldNames, IDeclaration[] fields) {
+        int nbFields = fields.length;
+        boolean[] direct = new boolean[nbFields];
+        long[] offsets = new long[nbFields];
+        @Nullable Run[] runs = new @Nullable Run[nbFields];
+        List<Integer> run = new ArrayList<>();
+        for (int i = 0; i <= nbFields; i++) {
+            long size = (i < nbFields) ? getFixedSize(fields[i]) : -1;
+            if (size >= 0) {
+                run.add(i);
+                continue;
+            }
+            /* End of the run before this field */
+            addRun(run, fields, direct, offsets, runs);
+            run.clear();
+        }
+        return new StructDecoder(fieldNames, fields, direct, offsets, runs);
+    }
+
+    private static void addRun(List<Integer> run, IDeclaration[] fields, boolean[] direct, long[] offsets, @Nullable Run[] runs) {
+        if (run.isEmpty()) {
+            return;
+        }
+        int from = run.get(0);
+        int to = from + run.size();
+        long alignment = 1;
+        boolean hasDirect = false;
+        for (int i = from; i < to; i++) {
+            alignment = Math.max(alignment, fields[i].getAlignment());
+            hasDirect |= isDirect(fields[i]);
+        }
+        if (!hasDirect) {
+            /* Nothing to gain, keep the generic path */
+            return;
+        }
+        /* Offsets relative to a start aligned on the largest alignment */
+        long offset = 0;
+        for (int i = from; i < to; i++) {
+            offset = align(offset, fields[i].getAlignment());
+            offsets[i] = offset;
+            direct[i] = isDirect(fields[i]);
+            offset += getFixedSize(fields[i]);
+        }
+        runs[from] = new Run(from, to, alignment, fields[from].getAlignment(), offset);
+    }
+
+    /**
+     * Get the size of a field if it is always the same, whatever the data
+     *
+     * @return the size in bits, or -1 if it depends on the data
+     */
+    private static long getFixedSize(IDeclaration declaration) {
+        if (declaration instanceof IntegerDeclaration) {
+            return ((IntegerDeclaration) declaration).getLength();
+        }
+        if (declaration instanceof EnumDeclaration) {
+            return ((EnumDeclaration) declaration).getContainerType().getLength();
+        }
+        if (declaration instanceof ArrayDeclaration) {
+            ArrayDeclaration array = (ArrayDeclaration) declaration;
+            IDeclaration elementType = array.getElementType();
+            if (elementType instanceof IntegerDeclaration) {
+                long elementSize = ((IntegerDeclaration) elementType).getLength();
+                /* No padding between the elements */
+                if (elementSize % elementType.getAlignment() == 0) {
+                    return array.getLength() * elementSize;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDirect(IDeclaration declaration) {
+        IntegerDeclaration integer = null;
+        if (declaration instanceof IntegerDeclaration) {
+            integer = (IntegerDeclaration) declaration;
+        } else if (declaration instanceof EnumDeclaration) {
+            integer = ((EnumDeclaration) declaration).getContainerType();
+        }
+        if (integer == null || declaration.getAlignment() % BITS_PER_BYTE != 0) {
+            return false;
+        }
+        switch (integer.getLength()) {
+        case Byte.SIZE:
+        case Short.SIZE:
+        case Integer.SIZE:
+        case Long.SIZE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static long align(long position, long alignment) {
+        long mask = alignment - 1;
+        return (position + mask) & ~mask;
+    }
+
+    /**
+     * Decode the fields of a struct
+     *
+     * @param input
+     *            the input, positioned after the alignment of the struct
+     * @param definitions
+     *            the definitions of the fields to fill
+     * @param structDefinition
+     *            the definition of the struct, scope of the fields
+     * @throws CTFException
+     *             if the input cannot be read
+     */
+    public void decode(BitBuffer input, Definition[] definitions, StructDefinition structDefinition) throws CTFException {
+        int i = 0;
+        while (i < fFields.length) {
+            Run run = fRuns[i];
+            if (run == null) {
+                definitions[i] = fFields[i].createDefinition(structDefinition, fFieldNames[i], input);
+                i++;
+            } else {
+                decodeRun(run, input, definitions, structDefinition);
+                i = run.fTo;
+            }
+        }
+    }
+
+    private void decodeRun(Run run, BitBuffer input, Definition[] definitions, StructDefinition structDefinition) throws CTFException {
+        long start = align(input.position(), run.fFirstAlignment);
+        if ((start & (run.fAlignment - 1)) != 0 || !input.canRead((int) (start - input.position() + run.fSize))) {
+            /* The offsets are not the constant ones, or the data is missing */
+            for (int i = run.fFrom; i < run.fTo; i++) {
+                definitions[i] = fFields[i].createDefinition(structDefinition, fFieldNames[i], input);
+            }
+            return;
+        }
+        ByteBuffer buffer = input.getByteBuffer();
+        ByteOrder bufferOrder = buffer.order();
+        for (int i = run.fFrom; i < run.fTo; i++) {
+            long position = start + fOffsets[i];
+            IDeclaration field = fFields[i];
+            String fieldName = fFieldNames[i];
+            if (fDirect[i]) {
+                int index = (int) (position / BITS_PER_BYTE);
+                if (field instanceof EnumDeclaration) {
+                    EnumDeclaration enumDeclaration = (EnumDeclaration) field;
+                    IntegerDeclaration container = enumDeclaration.getContainerType();
+                    IntegerDefinition value = new IntegerDefinition(container, structDefinition, fieldName, read(buffer, index, container, bufferOrder));
+                    definitions[i] = new EnumDefinition(enumDeclaration, structDefinition, fieldName, value);
+                } else {
+                    IntegerDeclaration integer = (IntegerDeclaration) field;
+                    definitions[i] = new IntegerDefinition(integer, structDefinition, fieldName, read(buffer, index, integer, bufferOrder));
+                }
+            } else {
+                input.position(position);
+                definitions[i] = field.createDefinition(structDefinition, fieldName, input);
+            }
+        }
+        input.position(start + run.fSize);
+    }
+
+    private static long read(ByteBuffer buffer, int index, IntegerDeclaration declaration, ByteOrder bufferOrder) {
+        boolean swap = declaration.getByteOrder() != bufferOrder;
+        boolean signed = declaration.isSigned();
+        switch (declaration.getLength()) {
+        case Byte.SIZE: {
+            byte value = buffer.get(index);
+            return signed ? value : value & BYTE_MASK;
+        }
+        case Short.SIZE: {
+            short value = buffer.getShort(index);
+            if (swap) {
+                value = Short.reverseBytes(value);
+            }
+            return signed ? value : value & SHORT_MASK;
+        }
+        case Integer.SIZE: {
+            int value = buffer.getInt(index);
+            if (swap) {
+                value = Integer.reverseBytes(value);
+            }
+            return signed ? value : value & INT_MASK;
+        }
+        default: {
+            long value = buffer.getLong(index);
+            return swap ? Long.reverseBytes(value) : value;
+        }
+        }
+    }
+}
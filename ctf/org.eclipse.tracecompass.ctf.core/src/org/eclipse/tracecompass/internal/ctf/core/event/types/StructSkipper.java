@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+
+/**
+ * Skipper of the fields of a struct, which moves the input past the struct
+ * without creating its definition.
+ *
+ * Only the structs whose size does not depend on the value of their fields can
+ * be skipped: the integers, enums, floats, strings, arrays and structs of
+ * them. The strings are skipped by looking for their terminating null byte.
+ * The structs with variants or sequences have to be decoded to find their
+ * size.
+ *
+ * It is immutable, and can be shared by the threads reading the trace.
+ */
+@NonNullByDefault
+public final class StructSkipper {
+
+    private static final int BITS_PER_BYTE = Byte.SIZE;
+
+    private final long fAlignment;
+    private final IDeclaration[] fFields;
+
+    private StructSkipper(long alignment, IDeclaration[] fields) {
+        fAlignment = alignment;
+        fFields = fields;
+    }
+
+    /**
+     * Compile the skipper of a struct
+     *
+     * @param declaration
+     *            the declaration of the struct
+     * @return the skipper, or null if the struct has to be decoded to find its
+     *         size
+     */
+    public static @Nullable StructSkipper compile(StructDeclaration declaration) {
+        if (!canSkip(declaration)) {
+            return null;
+        }
+        List<IDeclaration> fields = new ArrayList<>();
+        for (String fieldName : declaration.getFieldsList()) {
+            IDeclaration field = declaration.getField(fieldName);
+            if (field == null) {
+                return null;
+            }
+            fields.add(field);
+        }
+        return new StructSkipper(declaration.getAlignment(), fields.toArray(new IDeclaration[fields.size()]));
+    }
+
+    private static boolean canSkip(IDeclaration declaration) {
+        if (declaration instanceof IntegerDeclaration) {
+            return ((IntegerDeclaration) declaration).getLength() <= Long.SIZE;
+        }
+        if (declaration instanceof EnumDeclaration) {
+            return canSkip(((EnumDeclaration) declaration).getContainerType());
+        }
+        if (declaration instanceof FloatDeclaration || declaration instanceof StringDeclaration) {
+            return true;
+        }
+        if (declaration instanceof ArrayDeclaration) {
+            return canSkip(((ArrayDeclaration) declaration).getElementType());
+        }
+        if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            for (String fieldName : struct.getFieldsList()) {
+                IDeclaration field = struct.getField(fieldName);
+                if (field == null || !canSkip(field)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skip the struct, moving the input to the end of the struct
+     *
+     * @param input
+     *            the input, at the start of the struct
+     * @throws CTFException
+     *             if the struct is beyond the end of the input
+     */
+    public void skip(BitBuffer input) throws CTFException {
+        align(input, fAlignment);
+        for (IDeclaration field : fFields) {
+            skip(field, input);
+        }
+    }
+
+    private static void skip(IDeclaration declaration, BitBuffer input) throws CTFException {
+        align(input, declaration.getAlignment());
+        if (declaration instanceof IntegerDeclaration) {
+            advance(input, ((IntegerDeclaration) declaration).getLength());
+        } else if (declaration instanceof EnumDeclaration) {
+            advance(input, ((EnumDeclaration) declaration).getContainerType().getLength());
+        } else if (declaration instanceof FloatDeclaration) {
+            FloatDeclaration floatDeclaration = (FloatDeclaration) declaration;
+            /* Only the floats of 32 and 64 bits are read */
+            int size = floatDeclaration.getExponent() + floatDeclaration.getMantissa();
+            if (size == Integer.SIZE || size == Long.SIZE) {
+                advance(input, size);
+            }
+        } else if (declaration instanceof StringDeclaration) {
+            skipString(input);
+        } else if (declaration instanceof ArrayDeclaration) {
+            skipArray((ArrayDeclaration) declaration, input);
+        } else if (declaration instanceof StructDeclaration) {
+            StructDeclaration struct = (StructDeclaration) declaration;
+            for (String fieldName : struct.getFieldsList()) {
+                IDeclaration field = struct.getField(fieldName);
+                if (field != null) {
+                    skip(field, input);
+                }
+            }
+        } else {
+            throw new IllegalStateException("Cannot skip " + declaration); //$NON-NLS-1$
+        }
+    }
+
+    private static void skipArray(ArrayDeclaration array, BitBuffer input) throws CTFException {
+        IDeclaration elementType = array.getElementType();
+        if (elementType instanceof IntegerDeclaration) {
+            long elementSize = ((IntegerDeclaration) elementType).getLength();
+            /* No padding between the elements */
+            if (elementSize % elementType.getAlignment() == 0) {
+                align(input, elementType.getAlignment());
+                advance(input, array.getLength() * elementSize);
+                return;
+            }
+        }
+        for (int i = 0; i < array.getLength(); i++) {
+            skip(elementType, input);
+        }
+    }
+
+    private static void skipString(BitBuffer input) throws CTFException {
+        ByteBuffer buffer = input.getByteBuffer();
+        int limit = buffer.limit();
+        int index = (int) (input.position() / BITS_PER_BYTE);
+        while (index < limit && buffer.get(index) != 0) {
+            index++;
+        }
+        if (index >= limit) {
+            throw new CTFException("Unterminated string at position " + input.position()); //$NON-NLS-1$
+        }
+        input.position((index + 1L) * BITS_PER_BYTE);
+    }
+
+    private static void align(BitBuffer input, long alignment) throws CTFException {
+        long mask = alignment - 1;
+        long position = input.position();
+        if ((position & mask) != 0) {
+            input.position((position + mask) & ~mask);
+        }
+    }
+
+    private static void advance(BitBuffer input, long length) throws CTFException {
+        input.position(input.position() + length);
+    }
+}
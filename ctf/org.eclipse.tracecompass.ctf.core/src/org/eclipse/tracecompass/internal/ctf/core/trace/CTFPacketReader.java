@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015 Ericsson
+ * Copyright (c) 2015, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.internal.ctf.core.trace;
 
+import java.util.BitSet;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -75,6 +76,17 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
 
     private @Nullable ICompositeDefinition fEventHeader;
 
+    /**
+     * Builder of the event index of the packet, as long as the packet is
+     * decoded from its beginning
+     */
+    private PacketEventIndex.@Nullable Builder fIndexBuilder = new PacketEventIndex.Builder();
+
+    /**
+     * The ids of the event declarations to read, null to read all the events
+     */
+    private @Nullable BitSet fEventFilter = null;
+
     /**
      * Constructor
      *
@@ -119,7 +131,6 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
 
     @Override
     public EventDefinition readNextEvent() throws CTFException {
-        int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
         final long posStart = fInput.position();
         /*
          * Return the Lost Event after all other events in this packet. We need
@@ -130,6 +141,33 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
             return createLostEvent(fPacketContext);
         }
 
+        int eventID = readEventHeader();
+        EventDeclaration declaration = getEventDeclaration(eventID);
+        EventDefinition eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+        PacketEventIndex.Builder indexBuilder = fIndexBuilder;
+        if (indexBuilder != null) {
+            indexBuilder.addEvent(eventDef.getTimestamp(), posStart, fLastTimestamp);
+        }
+        fLastTimestamp = eventDef.getTimestamp();
+        /*
+         * Set the event timestamp using the timestamp calculated by
+         * updateTimestamp.
+         */
+
+        if (posStart == fInput.position()) {
+            throw new CTFIOException("Empty event not allowed, event: " + eventDef.getDeclaration().getName()); //$NON-NLS-1$
+        }
+
+        return eventDef;
+    }
+
+    /**
+     * Read the header of the event at the current position
+     *
+     * @return the id of the event
+     */
+    private int readEventHeader() throws CTFException {
+        int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
         fEventHeader = null;
         /* Read the stream event header. */
         final IDeclaration streamEventHeaderDecl = fStreamEventHeaderDecl;
@@ -174,24 +212,109 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         if (eventID == IEventDeclaration.UNSET_EVENT_ID && fDeclarations.size() == 1) {
             eventID = 0;
         }
+        return eventID;
+    }
+
+    private EventDeclaration getEventDeclaration(int eventID) throws CTFException {
         /* Get the right event definition using the event id. */
         IEventDeclaration eventDeclaration = fDeclarations.get(eventID);
         if (!(eventDeclaration instanceof EventDeclaration)) {
             throw new CTFIOException("Incorrect event id : " + eventID); //$NON-NLS-1$
         }
-        EventDeclaration declaration = (EventDeclaration) eventDeclaration;
-        EventDefinition eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
-        fLastTimestamp = eventDef.getTimestamp();
-        /*
-         * Set the event timestamp using the timestamp calculated by
-         * updateTimestamp.
-         */
+        return (EventDeclaration) eventDeclaration;
+    }
 
-        if (posStart == fInput.position()) {
-            throw new CTFIOException("Empty event not allowed, event: " + eventDef.getDeclaration().getName()); //$NON-NLS-1$
+    /**
+     * Skip the events of the types that are filtered out, up to the next event
+     * to read. The events are skipped without creating their definition, but
+     * they are still indexed. The last event of the packet is never skipped,
+     * so the time of the end of the packet is known.
+     *
+     * @throws CTFException
+     *             if an event cannot be skipped
+     */
+    public void skipFilteredEvents() throws CTFException {
+        BitSet eventFilter = fEventFilter;
+        if (eventFilter == null) {
+            return;
         }
+        while (fInput.position() < fPacketContext.getContentSizeBits()) {
+            final long posStart = fInput.position();
+            int eventID = readEventHeader();
+            if (eventID < 0 || eventFilter.get(eventID)) {
+                /* Read again by readNextEvent() */
+                fInput.position(posStart);
+                fEventHeader = null;
+                return;
+            }
+            EventDeclaration declaration = getEventDeclaration(eventID);
+            long timestamp = declaration.skipDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+            if (fInput.position() >= fPacketContext.getContentSizeBits()) {
+                /* The last event of the packet is read, for the end time */
+                fInput.position(posStart);
+                fEventHeader = null;
+                return;
+            }
+            PacketEventIndex.Builder indexBuilder = fIndexBuilder;
+            if (indexBuilder != null) {
+                indexBuilder.addEvent(timestamp, posStart, fLastTimestamp);
+            }
+            fLastTimestamp = timestamp;
+            if (posStart == fInput.position()) {
+                throw new CTFIOException("Empty event not allowed, event: " + declaration.getName()); //$NON-NLS-1$
+            }
+        }
+    }
 
-        return eventDef;
+    /**
+     * Set the types of the events to read, the events of the other types are
+     * skipped by {@link #skipFilteredEvents()}. The lost events and the last
+     * event of the packet are always read.
+     *
+     * @param eventFilter
+     *            the ids of the event declarations to read, or null to read
+     *            all the events
+     */
+    public void setEventFilter(@Nullable BitSet eventFilter) {
+        fEventFilter = eventFilter;
+    }
+
+    /**
+     * Skip the events of the packet that are before a timestamp, using the
+     * event index of the packet. Decoding continues from the last indexed
+     * event before the timestamp, if it is after the current position.
+     *
+     * @param index
+     *            the event index of this packet
+     * @param timestamp
+     *            the timestamp to seek
+     * @throws CTFException
+     *             if the indexed position is out of the packet
+     */
+    public void skipTo(PacketEventIndex index, long timestamp) throws CTFException {
+        int entry = index.floor(timestamp);
+        if (entry < 0 || index.getPosition(entry) <= fInput.position()) {
+            return;
+        }
+        /* The index can no longer be built from the decoded events */
+        fIndexBuilder = null;
+        fInput.position(index.getPosition(entry));
+        fLastTimestamp = index.getLastTimestamp(entry);
+    }
+
+    /**
+     * Get the event index of the packet, once it has been decoded entirely
+     * from its beginning
+     *
+     * @return the event index, or null if the packet was not entirely decoded
+     *         or is too small to need one
+     */
+    public @Nullable PacketEventIndex getEventIndex() {
+        PacketEventIndex.Builder indexBuilder = fIndexBuilder;
+        if (indexBuilder == null || fInput.position() < fPacketContext.getContentSizeBits()) {
+            return null;
+        }
+        return indexBuilder.build();
     }
 
     private EventDefinition createLostEvent(final ICTFPacketDescriptor currentPacket) {
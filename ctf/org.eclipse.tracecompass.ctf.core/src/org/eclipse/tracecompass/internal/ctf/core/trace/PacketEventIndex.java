@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Sparse index of the events of a packet. It keeps the position of one event
+ * every {@link #STRIDE} events, with the timestamp needed to decode it, so
+ * that a seek in a large packet can start decoding close to its target
+ * instead of from the beginning of the packet.
+ *
+ * It is immutable once built, and can be shared by the readers of a stream.
+ */
+@NonNullByDefault
+public final class PacketEventIndex {
+
+    /**
+     * Number of events between two entries of the index
+     */
+    public static final int STRIDE = 256;
+
+    private final long[] fTimestamps;
+    private final long[] fPositions;
+    private final long[] fLastTimestamps;
+
+    private PacketEventIndex(long[] timestamps, long[] positions, long[] lastTimestamps) {
+        fTimestamps = timestamps;
+        fPositions = positions;
+        fLastTimestamps = lastTimestamps;
+    }
+
+    /**
+     * Get the number of entries in the index
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return fTimestamps.length;
+    }
+
+    /**
+     * Find the last entry of an event strictly before a timestamp. All the
+     * events before that entry are also before the timestamp, so they do not
+     * need to be decoded.
+     *
+     * @param timestamp
+     *            the timestamp to seek
+     * @return the index of the entry, or -1 if the first entry is not before
+     *         the timestamp
+     */
+    public int floor(long timestamp) {
+        int low = 0;
+        int high = fTimestamps.length - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (fTimestamps[mid] < timestamp) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the timestamp of the event of an entry
+     *
+     * @param entry
+     *            the index of the entry
+     * @return the timestamp of the event
+     */
+    public long getTimestamp(int entry) {
+        return fTimestamps[entry];
+    }
+
+    /**
+     * Get the position of the event of an entry in the packet
+     *
+     * @param entry
+     *            the index of the entry
+     * @return the position of the start of the event, in bits
+     */
+    public long getPosition(int entry) {
+        return fPositions[entry];
+    }
+
+    /**
+     * Get the timestamp of the event preceding the event of an entry, from
+     * which the timestamp of the event is decoded
+     *
+     * @param entry
+     *            the index of the entry
+     * @return the timestamp of the previous event, or the beginning of the
+     *         packet
+     */
+    public long getLastTimestamp(int entry) {
+        return fLastTimestamps[entry];
+    }
+
+    /**
+     * Builder of the index of a packet, fed with the events as the packet is
+     * decoded from its beginning
+     */
+    public static final class Builder {
+
+        private long[] fTimestamps = new long[8];
+        private long[] fPositions = new long[8];
+        private long[] fLastTimestamps = new long[8];
+        private int fSize = 0;
+        private long fNbEvents = 0;
+
+        /**
+         * Add the event that was just decoded
+         *
+         * @param timestamp
+         *            the timestamp of the event
+         * @param position
+         *            the position of the start of the event, in bits
+         * @param lastTimestamp
+         *            the timestamp of the previous event
+         */
+        public void addEvent(long timestamp, long position, long lastTimestamp) {
+            fNbEvents++;
+            if (fNbEvents % STRIDE != 0) {
+                return;
+            }
+            if (fSize == fTimestamps.length) {
+                fTimestamps = Arrays.copyOf(fTimestamps, fSize * 2);
+                fPositions = Arrays.copyOf(fPositions, fSize * 2);
+                fLastTimestamps = Arrays.copyOf(fLastTimestamps, fSize * 2);
+            }
+            fTimestamps[fSize] = timestamp;
+            fPositions[fSize] = position;
+            fLastTimestamps[fSize] = lastTimestamp;
+            fSize++;
+        }
+
+        /**
+         * Build the index
+         *
+         * @return the index, or null if the packet is too small to need one
+         */
+        public @Nullable PacketEventIndex build() {
+            if (fSize == 0) {
+                return null;
+            }
+            return new PacketEventIndex(Arrays.copyOf(fTimestamps, fSize), Arrays.copyOf(fPositions, fSize), Arrays.copyOf(fLastTimestamps, fSize));
+        }
+    }
+}
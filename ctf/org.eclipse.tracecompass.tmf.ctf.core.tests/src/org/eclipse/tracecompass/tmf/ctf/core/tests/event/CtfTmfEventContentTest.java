@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.ITmfIndexedEventContent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.ctf.core.CtfConstants;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEventFactory;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEventField;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the content of the CTF events, whose fields are created when they
+ * are read. It must be the same as a content with all the fields created from
+ * the definitions of the event up front.
+ */
+public class CtfTmfEventContentTest {
+
+    private static final @NonNull CtfTestTrace testTrace = CtfTestTrace.KERNEL;
+
+    private static final @NonNull String INT = "int";
+    private static final @NonNull String UNDERSCORE_INT = "_underscore";
+    private static final @NonNull String DOUBLE_UNDERSCORE_INT = "__double_underscore";
+    private static final @NonNull String ENUM = "enum";
+    private static final @NonNull String STR = "str";
+    private static final @NonNull String FLOAT = "float";
+    private static final @NonNull String ARRAY_INT = "array_int";
+    private static final @NonNull String STRUCT = "struct";
+    private static final @NonNull String TID = "tid";
+    private static final @NonNull String PROCNAME = "procname";
+    private static final @NonNull String MISSING = "missing";
+
+    private static final @NonNull String TEST_STRING = "two";
+    private static final int ARRAY_SIZE = 2;
+
+    private CtfTmfTrace fTrace;
+
+    /**
+     * Open the trace the events are created for
+     */
+    @Before
+    public void setUp() {
+        fTrace = CtfTmfTestTraceUtils.getTrace(testTrace);
+    }
+
+    /**
+     * Dispose the trace
+     */
+    @After
+    public void tearDown() {
+        fTrace.dispose();
+    }
+
+    /**
+     * Test the names of the fields, the payload ones without their leading
+     * underscore followed by the context ones with their prefix. Only one
+     * underscore is removed, and the names are those of the fields.
+     *
+     * @throws CTFException
+     *             error creating the definitions
+     */
+    @Test
+    public void testFieldNames() throws CTFException {
+        IEventDefinition eventDef = createEventDefinition(2);
+        ITmfEventField content = getContent(eventDef);
+        ITmfEventField expected = getEagerContent(eventDef);
+        assertEquals(new ArrayList<>(expected.getFieldNames()), new ArrayList<>(content.getFieldNames()));
+        assertTrue(content.getFieldNames().contains("underscore"));
+        assertTrue(content.getFieldNames().contains("_double_underscore"));
+        assertTrue(content.getFieldNames().contains(CtfConstants.CONTEXT_FIELD_PREFIX + TID));
+
+        List<String> fieldNames = new ArrayList<>();
+        for (ITmfEventField field : content.getFields()) {
+            fieldNames.add(field.getName());
+        }
+        assertEquals(new ArrayList<>(content.getFieldNames()), fieldNames);
+    }
+
+    /**
+     * Test getting the fields by name and by path, before and after all of
+     * them are created
+     *
+     * @throws CTFException
+     *             error creating the definitions
+     */
+    @Test
+    public void testGetField() throws CTFException {
+        IEventDefinition eventDef = createEventDefinition(2);
+        ITmfEventField content = getContent(eventDef);
+        ITmfEventField expected = getEagerContent(eventDef);
+
+        /* Sub-fields first, the others are not created yet */
+        assertEquals(expected.getField(STRUCT, STR), content.getField(STRUCT, STR));
+        assertEquals(expected.getField(STRUCT, INT), content.getField(STRUCT, INT));
+        assertEquals(expected.getField(CtfConstants.CONTEXT_FIELD_PREFIX + PROCNAME), content.getField(CtfConstants.CONTEXT_FIELD_PREFIX + PROCNAME));
+        for (String name : expected.getFieldNames()) {
+            assertEquals(expected.getField(name), content.getField(name));
+        }
+        assertEquals(new ArrayList<>(expected.getFields()), new ArrayList<>(content.getFields()));
+
+        assertNull(content.getField(MISSING));
+        assertNull(content.getField(STRUCT, MISSING));
+        assertNull(content.getField(MISSING, STR));
+        assertNull(content.getField(UNDERSCORE_INT));
+        assertNull(content.getField(DOUBLE_UNDERSCORE_INT));
+        assertNull(content.getField("double_underscore"));
+        assertNull(content.getField(TID));
+    }
+
+    /**
+     * Test that the contents of events with the same fields are equal and
+     * have the hash code of the eager content, and that those of events with
+     * different fields are not
+     *
+     * @throws CTFException
+     *             error creating the definitions
+     */
+    @Test
+    public void testEqualsHashCode() throws CTFException {
+        IEventDefinition eventDef = createEventDefinition(2);
+        ITmfEventField content = getContent(eventDef);
+        ITmfEventField same = getContent(createEventDefinition(2));
+        ITmfEventField other = getContent(createEventDefinition(3));
+        ITmfEventField expected = getEagerContent(eventDef);
+
+        assertEquals(expected.hashCode(), content.hashCode());
+        assertEquals(content, same);
+        assertEquals(same, content);
+        assertEquals(content.hashCode(), same.hashCode());
+        assertNotEquals(content, other);
+        assertNotEquals(other, content);
+        assertFalse(content.equals(null));
+
+        /* Reading a field does not change the equality */
+        other.getField(INT);
+        assertEquals(getEagerContent(createEventDefinition(3)).hashCode(), other.hashCode());
+        assertNotEquals(content, other);
+    }
+
+    /**
+     * Test the string of the content, the one of its fields
+     *
+     * @throws CTFException
+     *             error creating the definitions
+     */
+    @Test
+    public void testToString() throws CTFException {
+        IEventDefinition eventDef = createEventDefinition(2);
+        ITmfEventField content = getContent(eventDef);
+        ITmfEventField expected = getEagerContent(eventDef);
+        content.getField(FLOAT);
+        assertEquals(expected.toString(), content.toString());
+    }
+
+    /**
+     * Test reading the values by index, which must be those of the fields,
+     * and reading the integers without boxing them
+     *
+     * @throws CTFException
+     *             error creating the definitions
+     */
+    @Test
+    public void testIndexedValues() throws CTFException {
+        IEventDefinition eventDef = createEventDefinition(2);
+        ITmfIndexedEventContent content = (ITmfIndexedEventContent) getContent(eventDef);
+        ITmfEventField expected = getEagerContent(eventDef);
+
+        for (String name : expected.getFieldNames()) {
+            int index = content.getFieldIndex(name);
+            assertTrue(index >= 0);
+            ITmfEventField field = expected.getField(name);
+            assertEquals(field.getValue().getClass(), content.getFieldValue(index).getClass());
+            assertEquals(field.getFormattedValue(), content.getField(name).getFormattedValue());
+        }
+        assertEquals(2L, content.getFieldLongValue(content.getFieldIndex(INT), -1));
+        assertEquals(2L, content.getFieldLongValue(content.getFieldIndex("underscore"), -1));
+        assertEquals(3L, content.getFieldLongValue(content.getFieldIndex("_double_underscore"), -1));
+        assertEquals(42L, content.getFieldLongValue(content.getFieldIndex(CtfConstants.CONTEXT_FIELD_PREFIX + TID), -1));
+        assertEquals(-1, content.getFieldIndex(MISSING));
+        assertNull(content.getFieldValue(-1));
+        assertEquals(-1, content.getFieldLongValue(-1, -1));
+
+        /* Fields which are not integers, even if they are read as one */
+        assertEquals(-1, content.getFieldLongValue(content.getFieldIndex(ENUM), -1));
+        assertEquals(expected.getField(ENUM).getValue(), content.getFieldValue(content.getFieldIndex(ENUM)));
+        assertEquals(-1, content.getFieldLongValue(content.getFieldIndex(STR), -1));
+        assertEquals(-1, content.getFieldLongValue(content.getFieldIndex(FLOAT), -1));
+        assertEquals(-1, content.getFieldLongValue(content.getFieldIndex(ARRAY_INT), -1));
+        assertEquals(-1, content.getFieldLongValue(content.getFieldIndex(STRUCT), -1));
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private ITmfEventField getContent(IEventDefinition eventDef) {
+        return CtfTmfEventFactory.instance().createEvent(fTrace, eventDef, null).getContent();
+    }
+
+    /*
+     * The content as it was created before the fields were lazy, with all the
+     * fields created up front
+     */
+    private static ITmfEventField getEagerContent(IEventDefinition eventDef) {
+        List<CtfTmfEventField> fields = new ArrayList<>();
+        ICompositeDefinition structFields = eventDef.getFields();
+        for (String fn : structFields.getFieldNames()) {
+            fields.add(CtfTmfEventField.parseField((IDefinition) structFields.getDefinition(fn), fn));
+        }
+        ICompositeDefinition structContext = eventDef.getContext();
+        for (String contextName : structContext.getFieldNames()) {
+            String curContextName = CtfConstants.CONTEXT_FIELD_PREFIX + contextName;
+            fields.add(CtfTmfEventField.parseField((IDefinition) structContext.getDefinition(contextName), curContextName));
+        }
+        return new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields.toArray(new CtfTmfEventField[fields.size()]));
+    }
+
+    /*
+     * Create an event with integer, enum, string, float, array and struct
+     * fields, and a context
+     */
+    private static IEventDefinition createEventDefinition(int number) throws CTFException {
+        byte[] testStringBytes;
+        try {
+            testStringBytes = TEST_STRING.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer bb = ByteBuffer.allocateDirect(1024);
+
+        StringDeclaration strDec = StringDeclaration.getStringDeclaration(Encoding.UTF8);
+        IntegerDeclaration intDec = IntegerDeclaration.UINT_8_DECL;
+        FloatDeclaration flDec = new FloatDeclaration(8, 24, bb.order(), 8);
+        EnumDeclaration enumDec = new EnumDeclaration(intDec);
+        enumDec.add(0, 1, INT);
+        enumDec.add(2, 3, FLOAT);
+        ArrayDeclaration arrIntDec = new ArrayDeclaration(ARRAY_SIZE, intDec);
+        StructDeclaration structDec = new StructDeclaration(8);
+        structDec.addField(STR, strDec);
+        structDec.addField(INT, intDec);
+
+        StructDeclaration fieldsDec = new StructDeclaration(8);
+        fieldsDec.addField(INT, intDec);
+        bb.put((byte) number);
+        fieldsDec.addField(UNDERSCORE_INT, intDec);
+        bb.put((byte) 2);
+        fieldsDec.addField(DOUBLE_UNDERSCORE_INT, intDec);
+        bb.put((byte) 3);
+        fieldsDec.addField(ENUM, enumDec);
+        bb.put((byte) 2);
+        fieldsDec.addField(STR, strDec);
+        bb.put(testStringBytes);
+        bb.put((byte) 0);
+        fieldsDec.addField(FLOAT, flDec);
+        bb.putFloat(2);
+        fieldsDec.addField(ARRAY_INT, arrIntDec);
+        for (int i = 0; i < ARRAY_SIZE; i++) {
+            bb.put((byte) number);
+        }
+        fieldsDec.addField(STRUCT, structDec);
+        bb.put(testStringBytes);
+        bb.put((byte) 0);
+        bb.put((byte) number);
+
+        StructDeclaration contextDec = new StructDeclaration(8);
+        contextDec.addField(TID, intDec);
+        bb.put((byte) 42);
+        contextDec.addField(PROCNAME, strDec);
+        bb.put(testStringBytes);
+        bb.put((byte) 0);
+
+        bb.flip();
+        BitBuffer bitBuffer = new BitBuffer(bb);
+        ICompositeDefinition fields = fieldsDec.createDefinition(null, ITmfEventField.ROOT_FIELD_ID, bitBuffer);
+        ICompositeDefinition context = contextDec.createDefinition(null, ITmfEventField.ROOT_FIELD_ID, bitBuffer);
+
+        EventDeclaration declaration = new EventDeclaration();
+        declaration.setName("test_event");
+        declaration.setFields(fieldsDec);
+        declaration.setContext(contextDec);
+        return new EventDefinition(declaration, 0, 0, null, null, context, null, fields, null);
+    }
+}
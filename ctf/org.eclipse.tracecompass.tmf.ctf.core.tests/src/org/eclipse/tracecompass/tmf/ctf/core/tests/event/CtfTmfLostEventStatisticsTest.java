@@ -159,4 +159,28 @@ public class CtfTmfLostEventStatisticsTest {
         assertNotNull(lostEventsInRange);
         assertEquals(365752L, lostEventsInRange.longValue());
     }
+
+    /**
+     * Test the number of lost events reported in consecutive ranges. The
+     * events lost by each record are spread over its lost time range.
+     */
+    @Test
+    public void testLostEventsInRanges() {
+        TmfStateStatistics stats = (TmfStateStatistics) fStats;
+        long traceStart = fTrace.getStartTime().toNanos();
+        long traceEnd = fTrace.getEndTime().toNanos();
+        int nb = 10;
+        long duration = (traceEnd - traceStart) / nb + 1;
+        long[] lostEvents = stats.getLostEventsInRanges(traceStart, traceEnd, duration, nb);
+        long total = 0;
+        for (long lost : lostEvents) {
+            total += lost;
+        }
+        assertEquals(967700L, total);
+
+        /* The lost ranges may go beyond the range of the records */
+        long[] lostEventsInRange = stats.getLostEventsInRanges(rangeStart, rangeEnd, rangeEnd - rangeStart + 1, 1);
+        assertTrue(lostEventsInRange[0] > 0);
+        assertTrue(lostEventsInRange[0] <= 365752L);
+    }
 }
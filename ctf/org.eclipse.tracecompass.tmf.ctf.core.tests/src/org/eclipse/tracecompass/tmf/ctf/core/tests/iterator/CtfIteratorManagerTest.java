@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
+import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIteratorManager;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.ctf.core.context.CtfTmfContext;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link CtfIteratorManager} class
+ */
+public class CtfIteratorManagerTest {
+
+    private static final @NonNull CtfTestTrace testTrace = CtfTestTrace.KERNEL;
+
+    /* The size of the cache of the manager */
+    private static final int CACHE_SIZE = 100;
+
+    private CtfTmfTrace trace;
+    private CtfIteratorManager manager;
+
+    /**
+     * Perform pre-test initialization.
+     */
+    @Before
+    public void setUp() {
+        trace = CtfTmfTestTraceUtils.getTrace(testTrace);
+        manager = new CtfIteratorManager(trace);
+    }
+
+    /**
+     * Perform post-test clean-up.
+     */
+    @After
+    public void tearDown() {
+        if (manager != null) {
+            manager.dispose();
+        }
+        if (trace != null) {
+            trace.dispose();
+        }
+    }
+
+    /**
+     * Test that the iterator of a context is kept between two lookups
+     */
+    @Test
+    public void testHit() {
+        CtfTmfContext context = new CtfTmfContext(trace);
+        CtfIterator iterator = manager.getIterator(context);
+        assertSame(iterator, manager.getIterator(context));
+        assertEquals(1, manager.getMissCount());
+        assertEquals(1, manager.getHitCount());
+        assertEquals(0, manager.getEvictionCount());
+        assertEquals(1, manager.getSize());
+
+        manager.removeIterator(context);
+        assertEquals(0, manager.getSize());
+    }
+
+    /**
+     * Test that the least recently used context loses its iterator when the
+     * cache is full
+     */
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        List<CtfTmfContext> contexts = new ArrayList<>();
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            CtfTmfContext context = new CtfTmfContext(trace);
+            manager.getIterator(context);
+            contexts.add(context);
+        }
+        assertEquals(CACHE_SIZE, manager.getMissCount());
+        assertEquals(CACHE_SIZE, manager.getSize());
+
+        /* Use the first context again, the second one is now the oldest */
+        CtfIterator first = manager.getIterator(contexts.get(0));
+        CtfIterator second = manager.getIterator(contexts.get(1));
+        for (int i = 2; i < CACHE_SIZE; i++) {
+            manager.getIterator(contexts.get(i));
+        }
+        manager.getIterator(contexts.get(0));
+        assertEquals(CACHE_SIZE + 1, manager.getHitCount());
+
+        /* The new context takes the iterator of the second one */
+        assertSame(second, manager.getIterator(new CtfTmfContext(trace)));
+        assertEquals(1, manager.getEvictionCount());
+        assertEquals(CACHE_SIZE, manager.getSize());
+
+        assertSame(first, manager.getIterator(contexts.get(0)));
+        assertEquals(CACHE_SIZE + 1, manager.getMissCount());
+    }
+}
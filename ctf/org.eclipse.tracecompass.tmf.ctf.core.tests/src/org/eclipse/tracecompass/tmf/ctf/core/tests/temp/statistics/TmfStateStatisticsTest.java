@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.tmf.ctf.core.tests.temp.statistics;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -25,6 +26,7 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Test;
 
 /**
  * Unit tests for the {@link TmfStateStatistics}
@@ -78,4 +80,27 @@ public class TmfStateStatisticsTest extends TmfStatisticsTest {
         fEventTypesMod.dispose();
         fTrace.dispose();
     }
+
+    /**
+     * Test {@link TmfStateStatistics#getEventsInRanges} against the number of
+     * events in each range.
+     */
+    @Test
+    public void testGetEventsInRanges() {
+        final int NB_REQ = 10;
+        TmfStateStatistics stats = (TmfStateStatistics) backend;
+        ITmfStateSystem ss = stats.getTotalsSS();
+        long start = ss.getStartTime();
+        long duration = (ss.getCurrentEndTime() - start) / NB_REQ + 1;
+        long[] results = stats.getEventsInRanges(start, duration, NB_REQ);
+
+        assertEquals(NB_REQ, results.length);
+        long count = 0;
+        for (int i = 0; i < NB_REQ; i++) {
+            long rangeStart = start + i * duration;
+            assertEquals(stats.getEventsInRange(rangeStart, rangeStart + duration - 1), results[i]);
+            count += results[i];
+        }
+        assertEquals(stats.getEventsTotal(), count);
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2012, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -16,7 +16,10 @@ package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.equalsNullable;
 
+import java.util.function.Predicate;
+
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
@@ -154,6 +157,26 @@ public class CtfIterator extends CTFTraceReader
         return null;
     }
 
+    /**
+     * Set the filter on the names of the event types to read. The events of
+     * the other types are skipped by the CTF reader. The iterator has to be
+     * seeked after, even at its current location.
+     *
+     * @param eventTypeFilter
+     *            the filter on the event type names, or null to read all the
+     *            events
+     */
+    public synchronized void setEventTypeFilter(@Nullable Predicate<String> eventTypeFilter) {
+        if (eventTypeFilter == getEventFilter()) {
+            return;
+        }
+        setEventFilter(eventTypeFilter);
+        /* The current events are not filtered, force the next seek */
+        fCurLocation = NULL_LOCATION;
+        fPreviousLocation = null;
+        fPreviousEvent = null;
+    }
+
     /**
      * Return the current timestamp location pointed to by the iterator. This is
      * the timestamp for use in CtfLocation, not the event timestamp.
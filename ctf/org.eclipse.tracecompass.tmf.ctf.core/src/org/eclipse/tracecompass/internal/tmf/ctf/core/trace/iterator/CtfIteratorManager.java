@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -12,13 +12,9 @@
 
 package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator;
 
-import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -43,20 +39,34 @@ public class CtfIteratorManager {
      */
     private static final int MAX_SIZE = 100;
 
-    /** The map of the cache */
-    private final Map<CtfTmfContext, CtfIterator> fMap;
+    /**
+     * An iterator of the cache, with the time of its last use
+     */
+    private static final class Entry {
+        private final CtfIterator fIterator;
+        private volatile long fLastAccess;
 
-    /** An array pointing to the same cache. this allows fast "random" accesses */
-    private final List<CtfTmfContext> fRandomAccess;
+        public Entry(CtfIterator iterator, long lastAccess) {
+            fIterator = iterator;
+            fLastAccess = lastAccess;
+        }
+    }
+
+    /** The map of the cache, read without locking */
+    private final Map<CtfTmfContext, Entry> fMap = new ConcurrentHashMap<>();
 
-    /** Lock for when we access the two previous data structures */
+    /** Lock for when we add or remove elements of the cache */
     private final Lock fAccessLock = new ReentrantLock();
 
     /** The parent trace */
     private final CtfTmfTrace fTrace;
 
-    /** Random number generator */
-    private final Random fRnd;
+    /** Logical clock of the accesses, for the recency of the iterators */
+    private final AtomicLong fClock = new AtomicLong();
+
+    private final AtomicLong fHits = new AtomicLong();
+    private final AtomicLong fMisses = new AtomicLong();
+    private final AtomicLong fEvictions = new AtomicLong();
 
     /**
      * Constructor
@@ -65,9 +75,6 @@ public class CtfIteratorManager {
      *            The trace whose iterators this manager will manage
      */
     public CtfIteratorManager(CtfTmfTrace trace) {
-        fMap = new HashMap<>();
-        fRandomAccess = new ArrayList<>();
-        fRnd = new Random(System.nanoTime());
         fTrace = trace;
     }
 
@@ -77,10 +84,14 @@ public class CtfIteratorManager {
      * trace. This failed since there is a limit to how many file handles we can
      * have opened simultaneously. Then a round-robin scheme was implemented,
      * this lead up to a two competing contexts syncing up and using the same
-     * file handler, causing horrible slowdowns. Now a random replacement
-     * algorithm is selected. This is the same as used by arm processors, and it
-     * works quite well when many cores so this looks promising for very
-     * multi-threaded systems.
+     * file handler, causing horrible slowdowns. Then a random replacement
+     * algorithm was used, but it evicted the iterators of the contexts in use
+     * as often as the idle ones, and each eviction costs a seek to the context
+     * that lost its iterator. Now the least recently used iterator is
+     * replaced, the idle contexts losing their iterator first.
+     *
+     * The lookup of the iterator of a context does not lock, only the misses
+     * do.
      *
      * @param context
      *            the context to look up
@@ -90,36 +101,50 @@ public class CtfIteratorManager {
         /*
          * if the element is in the map, we don't need to do anything else.
          */
-        CtfIterator iter = fMap.get(context);
-        if (iter == null) {
+        Entry entry = fMap.get(context);
+        if (entry != null) {
+            entry.fLastAccess = fClock.incrementAndGet();
+            fHits.incrementAndGet();
+            return entry.fIterator;
+        }
 
-            fAccessLock.lock();
-            try {
+        fAccessLock.lock();
+        try {
+            /* Another thread may have assigned it in the meantime */
+            entry = fMap.get(context);
+            if (entry != null) {
+                entry.fLastAccess = fClock.incrementAndGet();
+                fHits.incrementAndGet();
+                return entry.fIterator;
+            }
+            fMisses.incrementAndGet();
+            /*
+             * Assign an iterator to a context.
+             */
+            CtfIterator iter;
+            if (fMap.size() < MAX_SIZE) {
+                /*
+                 * if we're not full yet, just add an element.
+                 */
+                iter = (CtfIterator) fTrace.createIterator();
+            } else {
                 /*
-                 * Assign an iterator to a context.
+                 * if we're full, take the iterator of the least recently used
+                 * context
                  */
-                if (fRandomAccess.size() < MAX_SIZE) {
-                    /*
-                     * if we're not full yet, just add an element.
-                     */
-                    iter = (CtfIterator) fTrace.createIterator();
-                    addElement(context, iter);
-
-                } else {
-                    /*
-                     * if we're full, randomly replace an element
-                     */
-                    iter = replaceRandomElement(context);
-                }
-                if (context.getLocation() != null) {
-                    final CtfLocationInfo location = (CtfLocationInfo) context.getLocation().getLocationInfo();
-                    iter.seek(location);
-                }
-            } finally {
-                fAccessLock.unlock();
+                iter = evictLeastRecentlyUsed();
+            }
+            /* The iterator may have been used with another filter */
+            iter.setEventTypeFilter(context.getEventTypeFilter());
+            if (context.getLocation() != null) {
+                final CtfLocationInfo location = (CtfLocationInfo) context.getLocation().getLocationInfo();
+                iter.seek(location);
             }
+            fMap.put(context, new Entry(iter, fClock.incrementAndGet()));
+            return iter;
+        } finally {
+            fAccessLock.unlock();
         }
-        return iter;
     }
 
     /**
@@ -131,77 +156,98 @@ public class CtfIteratorManager {
     public void removeIterator(CtfTmfContext context) {
         fAccessLock.lock();
         try {
-            /* The try below is only to auto-call CtfIterator.close() */
-            try (CtfIterator removed = fMap.remove(context)) {
-                // try with resource
+            Entry removed = fMap.remove(context);
+            if (removed != null) {
+                removed.fIterator.close();
             }
-            fRandomAccess.remove(context);
-
         } finally {
             fAccessLock.unlock();
         }
     }
 
     /**
-     * Add a pair of context and element to the hashmap and the arraylist.
+     * Remove the least recently used element, to reuse its iterator. Must be
+     * called with the lock held.
      *
-     * @param context
-     *            the context
-     * @param elem
-     *            the iterator
+     * @return the iterator of the removed element, or a new one if it was
+     *         closed
      */
-    private void addElement(final CtfTmfContext context,
-            final CtfIterator elem) {
-        fAccessLock.lock();
-        try {
-            fMap.put(context, elem);
-            fRandomAccess.add(context);
+    private CtfIterator evictLeastRecentlyUsed() {
+        /*
+         * The cache is small, a scan costs much less than the seek that an
+         * eviction implies. The closed iterators are taken first, they cannot
+         * be reused by their context anyway.
+         */
+        CtfTmfContext victim = null;
+        Entry victimEntry = null;
+        for (Map.Entry<CtfTmfContext, Entry> mapEntry : fMap.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            if (entry.fIterator.isClosed()) {
+                victim = mapEntry.getKey();
+                victimEntry = entry;
+                break;
+            }
+            if (victimEntry == null || entry.fLastAccess < victimEntry.fLastAccess) {
+                victim = mapEntry.getKey();
+                victimEntry = entry;
+            }
+        }
+        if (victim == null || victimEntry == null) {
+            return (CtfIterator) fTrace.createIterator();
+        }
+        fMap.remove(victim);
+        fEvictions.incrementAndGet();
+        CtfIterator elem = victimEntry.fIterator;
+        if (elem.isClosed()) {
+            /*
+             * In case the iterator streams have been closed, we need to
+             * replace it by a fresh new one to access the trace. We also
+             * report that as an error as it should not happen.
+             */
+            Activator.getDefault().logError("Found closed iterator in iterator manager for trace " + victim.getTrace()); //$NON-NLS-1$
 
-        } finally {
-            fAccessLock.unlock();
+            elem.dispose();
+            elem = (CtfIterator) fTrace.createIterator();
         }
+        victim.dispose();
+        return elem;
     }
 
     /**
-     * Replace a random element
+     * Get the number of lookups that found the iterator of their context
      *
-     * @param context
-     *            the context to swap in
-     * @return the iterator of the removed elements.
+     * @return the number of hits
      */
-    private CtfIterator replaceRandomElement(final CtfTmfContext context) {
-        /*
-         * This needs some explanation too: We need to select a random victim
-         * and remove it. The order of the elements is not important, so instead
-         * of just calling arraylist.remove(element) which has an O(n)
-         * complexity, we pick an random number. The element is swapped out of
-         * the array and removed and replaced in the hashmap.
-         */
-        fAccessLock.lock(); // just in case, should only be called when already locked
-        try {
-            final int size = fRandomAccess.size();
-            final int pos = fRnd.nextInt(size);
-            final CtfTmfContext victim = fRandomAccess.get(pos);
-            fRandomAccess.set(pos, context);
-            CtfIterator elem = checkNotNull(fMap.remove(victim));
-            if (elem.isClosed()) {
-                /*
-                 * In case the iterator streams have been closed, we need to
-                 * replace it by a fresh new one to access the trace. We also
-                 * report that as an error as it should not happen.
-                 */
-                Activator.getDefault().logError("Found closed iterator in iterator manager for trace " + victim.getTrace()); //$NON-NLS-1$
+    public long getHitCount() {
+        return fHits.get();
+    }
 
-                elem.dispose();
-                elem = (CtfIterator) fTrace.createIterator();
-            }
-            fMap.put(context, elem);
-            victim.dispose();
-            return elem;
+    /**
+     * Get the number of lookups that had to assign an iterator to their
+     * context, and seek it
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return fMisses.get();
+    }
 
-        } finally {
-            fAccessLock.unlock();
-        }
+    /**
+     * Get the number of iterators taken from a context to be given to another
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return fEvictions.get();
+    }
+
+    /**
+     * Get the number of iterators currently assigned to a context
+     *
+     * @return the number of iterators
+     */
+    public int getSize() {
+        return fMap.size();
     }
 
     /**
@@ -211,14 +257,13 @@ public class CtfIteratorManager {
     public void dispose() {
         fAccessLock.lock();
         try {
-            for (CtfIterator iterator : fMap.values()) {
-                iterator.dispose();
+            for (Entry entry : fMap.values()) {
+                entry.fIterator.dispose();
             }
             fMap.clear();
-            fRandomAccess.clear();
 
         } finally {
             fAccessLock.unlock();
         }
     }
-}
\ No newline at end of file
+}
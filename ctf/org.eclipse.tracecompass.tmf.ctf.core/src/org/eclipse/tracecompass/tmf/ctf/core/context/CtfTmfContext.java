@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2014 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -13,6 +13,9 @@
 
 package org.eclipse.tracecompass.tmf.ctf.core.context;
 
+import java.util.function.Predicate;
+
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -33,6 +36,7 @@ public class CtfTmfContext implements ITmfContext {
 
     private CtfLocation fCurLocation;
     private long fCurRank;
+    private @Nullable Predicate<String> fEventTypeFilter = null;
 
     private final CtfTmfTrace fTrace;
 
@@ -177,6 +181,42 @@ public class CtfTmfContext implements ITmfContext {
         return getIterator().seek(location);
     }
 
+    /**
+     * Gets the filter on the names of the event types read by this context
+     *
+     * @return the filter on the event type names, or null if all the events
+     *         are read
+     * @since 2.0
+     */
+    public @Nullable Predicate<String> getEventTypeFilter() {
+        return fEventTypeFilter;
+    }
+
+    /**
+     * Sets a filter on the names of the event types read by this context. The
+     * events of the other types are skipped, except the last event of each
+     * packet and the lost events. The context is seeked again at its current
+     * location, the index of the location then counts the events at its
+     * timestamp that are read with the filter. As the skipped events are not
+     * counted, the rank of the context becomes unknown.
+     *
+     * @param eventTypeFilter
+     *            the filter on the event type names, or null to read all the
+     *            events
+     * @since 2.0
+     */
+    public synchronized void setEventTypeFilter(@Nullable Predicate<String> eventTypeFilter) {
+        fEventTypeFilter = eventTypeFilter;
+        CtfIterator iterator = getIterator();
+        iterator.setEventTypeFilter(eventTypeFilter);
+        final CtfLocationInfo curLocationData = fCurLocation.getLocationInfo();
+        if (!curLocationData.equals(CtfLocation.INVALID_LOCATION)) {
+            iterator.seek(curLocationData);
+            fCurLocation = iterator.getLocation();
+        }
+        fCurRank = ITmfContext.UNKNOWN_RANK;
+    }
+
     // -------------------------------------------
     // Private helpers
     // -------------------------------------------
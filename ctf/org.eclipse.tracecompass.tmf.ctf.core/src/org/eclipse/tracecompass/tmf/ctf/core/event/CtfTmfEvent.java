@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2015 Ericsson
+ * Copyright (c) 2011, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -15,20 +15,15 @@ package org.eclipse.tracecompass.tmf.ctf.core.event;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
-import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
-import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
 import org.eclipse.tracecompass.tmf.core.event.ITmfCustomAttributes;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
@@ -277,41 +272,13 @@ public class CtfTmfEvent extends TmfEvent
     public synchronized ITmfEventField getContent() {
         ITmfEventField content = fContent;
         if (content == null) {
-            content = new TmfEventField(
-                    ITmfEventField.ROOT_FIELD_ID, null, parseFields(fEvent));
+            /* The fields are only created when they are read */
+            content = new CtfTmfEventContent(fEvent.getDeclaration(), fEvent);
             fContent = content;
         }
         return content;
     }
 
-    /**
-     * Extract the field information from the structDefinition haze-inducing
-     * mess, and put them into something ITmfEventField can cope with.
-     */
-    private static CtfTmfEventField[] parseFields(IEventDefinition eventDef) {
-        List<CtfTmfEventField> fields = new ArrayList<>();
-
-        ICompositeDefinition structFields = eventDef.getFields();
-        if (structFields != null) {
-            if (structFields.getFieldNames() != null) {
-                for (String fn : structFields.getFieldNames()) {
-                    fields.add(CtfTmfEventField.parseField((IDefinition) structFields.getDefinition(fn), fn));
-                }
-            }
-        }
-        /* Add context information as CtfTmfEventField */
-        ICompositeDefinition structContext = eventDef.getContext();
-        if (structContext != null) {
-            for (String contextName : structContext.getFieldNames()) {
-                /* Prefix field name */
-                String curContextName = CtfConstants.CONTEXT_FIELD_PREFIX + contextName;
-                fields.add(CtfTmfEventField.parseField((IDefinition) structContext.getDefinition(contextName), curContextName));
-            }
-        }
-
-        return fields.toArray(new @NonNull CtfTmfEventField[fields.size()]);
-    }
-
     // ------------------------------------------------------------------------
     // ITmfCustomAttributes
     // ------------------------------------------------------------------------
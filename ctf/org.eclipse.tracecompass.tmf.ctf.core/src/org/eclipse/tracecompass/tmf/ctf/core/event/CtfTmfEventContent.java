@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.event;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.ObjectUtils;
+import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.ITmfIndexedEventContent;
+import org.eclipse.tracecompass.tmf.ctf.core.CtfConstants;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The content of a CTF event, with the fields of its payload followed by the
+ * fields of its context. The fields are only created from the definitions of
+ * the event when they are read, and the integers and strings can be read by
+ * index without creating them.
+ */
+@NonNullByDefault
+final class CtfTmfEventContent implements ITmfIndexedEventContent {
+
+    private static final String UNDERSCORE = "_"; //$NON-NLS-1$
+
+    private final Object fLayout;
+    private final @Nullable ICompositeDefinition fPayload;
+    private final @Nullable ICompositeDefinition fContext;
+    private final List<String> fPayloadNames;
+    private final List<String> fContextNames;
+
+    /* Created when first read */
+    private @Nullable List<String> fFieldNames = null;
+    private @Nullable CtfTmfEventField @Nullable [] fFields = null;
+
+    /**
+     * Constructor
+     *
+     * @param layout
+     *            The layout of the fields, the same for all the events of the
+     *            same declaration
+     * @param eventDef
+     *            The event definition
+     */
+    public CtfTmfEventContent(Object layout, IEventDefinition eventDef) {
+        fLayout = layout;
+        ICompositeDefinition payload = eventDef.getFields();
+        fPayload = payload;
+        List<String> payloadNames = (payload == null) ? null : payload.getFieldNames();
+        fPayloadNames = (payloadNames == null) ? Collections.emptyList() : payloadNames;
+        ICompositeDefinition context = eventDef.getContext();
+        fContext = context;
+        fContextNames = (context == null) ? Collections.emptyList() : context.getFieldNames();
+    }
+
+    private int size() {
+        return fPayloadNames.size() + fContextNames.size();
+    }
+
+    private String getFieldName(int index) {
+        int nbPayloadFields = fPayloadNames.size();
+        if (index < nbPayloadFields) {
+            /* The fields strip the underscore from their name */
+            String name = fPayloadNames.get(index);
+            return name.startsWith(UNDERSCORE) ? name.substring(1) : name;
+        }
+        return CtfConstants.CONTEXT_FIELD_PREFIX + fContextNames.get(index - nbPayloadFields);
+    }
+
+    private static boolean isPayloadFieldName(String payloadName, String name) {
+        if (payloadName.startsWith(UNDERSCORE)) {
+            return payloadName.length() == name.length() + 1 && payloadName.startsWith(name, 1);
+        }
+        return payloadName.equals(name);
+    }
+
+    private @Nullable IDefinition getDefinition(int index) {
+        if (index < 0 || index >= size()) {
+            return null;
+        }
+        int nbPayloadFields = fPayloadNames.size();
+        ICompositeDefinition composite = (index < nbPayloadFields) ? fPayload : fContext;
+        int compositeIndex = (index < nbPayloadFields) ? index : index - nbPayloadFields;
+        if (composite instanceof StructDefinition) {
+            return ((StructDefinition) composite).getDefinition(compositeIndex);
+        }
+        if (composite == null) {
+            return null;
+        }
+        List<String> names = (index < nbPayloadFields) ? fPayloadNames : fContextNames;
+        return composite.getDefinition(names.get(compositeIndex));
+    }
+
+    private synchronized @Nullable CtfTmfEventField getField(int index) {
+        if (index < 0 || index >= size()) {
+            return null;
+        }
+        @Nullable CtfTmfEventField[] fields = fFields;
+        if (fields == null) {
+            fields = new @Nullable CtfTmfEventField[size()];
+            fFields = fields;
+        }
+        CtfTmfEventField field = fields[index];
+        if (field == null) {
+            /* The field strips the underscore itself, give it the raw name */
+            int nbPayloadFields = fPayloadNames.size();
+            String name = (index < nbPayloadFields) ? fPayloadNames.get(index) : getFieldName(index);
+            field = CtfTmfEventField.parseField(getDefinition(index), name);
+            fields[index] = field;
+        }
+        return field;
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfIndexedEventContent
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Object getLayout() {
+        return fLayout;
+    }
+
+    @Override
+    public int getFieldIndex(String name) {
+        if (!fContextNames.isEmpty() && name.startsWith(CtfConstants.CONTEXT_FIELD_PREFIX)) {
+            int index = fContextNames.indexOf(name.substring(CtfConstants.CONTEXT_FIELD_PREFIX.length()));
+            if (index >= 0) {
+                return fPayloadNames.size() + index;
+            }
+        }
+        for (int i = 0; i < fPayloadNames.size(); i++) {
+            if (isPayloadFieldName(fPayloadNames.get(i), name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public @Nullable Object getFieldValue(int index) {
+        IDefinition definition = getDefinition(index);
+        if (definition instanceof IntegerDefinition) {
+            return ((IntegerDefinition) definition).getValue();
+        }
+        if (definition instanceof StringDefinition) {
+            return ((StringDefinition) definition).getValue();
+        }
+        ITmfEventField field = getField(index);
+        return (field == null) ? null : field.getValue();
+    }
+
+    @Override
+    public long getFieldLongValue(int index, long defaultValue) {
+        IDefinition definition = getDefinition(index);
+        if (definition instanceof IntegerDefinition) {
+            return ((IntegerDefinition) definition).getValue();
+        }
+        return defaultValue;
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfEventField
+    // ------------------------------------------------------------------------
+
+    @Override
+    public String getName() {
+        return ITmfEventField.ROOT_FIELD_ID;
+    }
+
+    @Override
+    public @Nullable Object getValue() {
+        return null;
+    }
+
+    @Override
+    public String getFormattedValue() {
+        return String.valueOf(getValue());
+    }
+
+    @Override
+    public synchronized Collection<@NonNull String> getFieldNames() {
+        List<String> fieldNames = fFieldNames;
+        if (fieldNames == null) {
+            ImmutableList.Builder<String> builder = ImmutableList.builder();
+            for (int i = 0; i < size(); i++) {
+                builder.add(getFieldName(i));
+            }
+            fieldNames = builder.build();
+            fFieldNames = fieldNames;
+        }
+        return fieldNames;
+    }
+
+    @Override
+    public Collection<? extends ITmfEventField> getFields() {
+        ImmutableList.Builder<ITmfEventField> builder = ImmutableList.builder();
+        for (int i = 0; i < size(); i++) {
+            CtfTmfEventField field = getField(i);
+            if (field != null) {
+                builder.add(field);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public @Nullable ITmfEventField getField(String... path) {
+        if (path.length == 1) {
+            return getField(getFieldIndex(path[0]));
+        }
+        ITmfEventField field = this;
+        for (String name : path) {
+            field = field.getField(name);
+            if (field == null) {
+                return null;
+            }
+        }
+        return field;
+    }
+
+    // ------------------------------------------------------------------------
+    // Object
+    // ------------------------------------------------------------------------
+
+    @Override
+    public int hashCode() {
+        /* The same as the root TmfEventField of the same fields */
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + getName().hashCode();
+        result = prime * result + ObjectUtils.deepHashCode(getValue());
+        int fieldsHash = 0;
+        for (ITmfEventField field : getFields()) {
+            fieldsHash += field.getName().hashCode() ^ field.hashCode();
+        }
+        result = prime * result + fieldsHash;
+        return result;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        CtfTmfEventContent other = (CtfTmfEventContent) obj;
+        return getFieldNames().equals(other.getFieldNames()) && getFields().equals(other.getFields());
+    }
+
+    @Override
+    public String toString() {
+        /* Printed like the root field of the sub-fields */
+        return Joiner.on(", ").skipNulls().join(getFields()); //$NON-NLS-1$
+    }
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson, École Polytechnique de Montréal
+ * Copyright (c) 2012, 2016 Ericsson, École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -26,6 +26,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -49,6 +50,7 @@ import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.project.model.ITmfPropertiesProvider;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
@@ -317,6 +319,23 @@ public class CtfTmfTrace extends TmfTrace
         return CTF_ASPECTS;
     }
 
+    /**
+     * The events of the types that the request does not handle are skipped by
+     * the CTF reader, without being decoded. The context of a filtered request
+     * has an unknown rank, so it does not update the index of the trace.
+     *
+     * @since 2.0
+     */
+    @Override
+    public synchronized ITmfContext armRequest(final ITmfEventRequest request) {
+        ITmfContext context = super.armRequest(request);
+        Predicate<String> eventTypeFilter = request.getEventTypeFilter();
+        if (context instanceof CtfTmfContext && eventTypeFilter != null) {
+            ((CtfTmfContext) context).setEventTypeFilter(eventTypeFilter);
+        }
+        return context;
+    }
+
     /**
      * Method getCurrentLocation. This is not applicable in CTF
      *
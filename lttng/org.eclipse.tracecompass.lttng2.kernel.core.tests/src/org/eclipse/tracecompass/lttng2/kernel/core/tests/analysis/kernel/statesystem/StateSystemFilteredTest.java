@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.lttng2.kernel.core.tests.analysis.kernel.statesystem;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelAnalysisModule;
+import org.eclipse.tracecompass.analysis.os.linux.core.trace.DefaultEventLayout;
+import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
+import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelTrace;
+import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.KernelStateProvider;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test that the kernel state system built from the events accepted by the
+ * event type filter of its state provider is the same as the one built from
+ * all the events of the trace.
+ */
+public class StateSystemFilteredTest {
+
+    /** Timeout the tests after 2 minutes */
+    @Rule
+    public TestRule timeoutRule = new Timeout(2, TimeUnit.MINUTES);
+
+    private static final int NB_QUERIES = 100;
+
+    private static CtfTmfTrace fTrace;
+    private static KernelAnalysisModule fFilteredModule;
+    private static KernelAnalysisModule fUnfilteredModule;
+
+    /**
+     * Build the state systems, with and without filter
+     *
+     * @throws TmfAnalysisException
+     *             error setting the trace of the analyses
+     */
+    @BeforeClass
+    public static void initialize() throws TmfAnalysisException {
+        fTrace = CtfTmfTestTraceUtils.getTrace(StateSystemTest.testTrace);
+        fFilteredModule = build(new TestKernelAnalysisModule(true));
+        fUnfilteredModule = build(new TestKernelAnalysisModule(false));
+    }
+
+    /**
+     * Class cleanup
+     */
+    @AfterClass
+    public static void cleanup() {
+        if (fFilteredModule != null) {
+            fFilteredModule.dispose();
+        }
+        if (fUnfilteredModule != null) {
+            fUnfilteredModule.dispose();
+        }
+        if (fTrace != null) {
+            fTrace.dispose();
+        }
+        fFilteredModule = null;
+        fUnfilteredModule = null;
+        fTrace = null;
+    }
+
+    /**
+     * Test that both state systems have the same attributes and time range
+     */
+    @Test
+    public void testAttributes() {
+        ITmfStateSystem filtered = getStateSystem(fFilteredModule);
+        ITmfStateSystem unfiltered = getStateSystem(fUnfilteredModule);
+        assertEquals(unfiltered.getStartTime(), filtered.getStartTime());
+        assertEquals(unfiltered.getCurrentEndTime(), filtered.getCurrentEndTime());
+        assertEquals(getPaths(unfiltered).keySet(), getPaths(filtered).keySet());
+    }
+
+    /**
+     * Test that the full states of both state systems are the same, through
+     * the whole trace
+     *
+     * @throws StateSystemDisposedException
+     *             if a state system is disposed
+     */
+    @Test
+    public void testFullStates() throws StateSystemDisposedException {
+        ITmfStateSystem filtered = getStateSystem(fFilteredModule);
+        ITmfStateSystem unfiltered = getStateSystem(fUnfilteredModule);
+        Map<String, Integer> filteredPaths = getPaths(filtered);
+        Map<String, Integer> unfilteredPaths = getPaths(unfiltered);
+        long start = unfiltered.getStartTime();
+        long end = unfiltered.getCurrentEndTime();
+        for (int i = 0; i <= NB_QUERIES; i++) {
+            long time = start + (end - start) / NB_QUERIES * i;
+            if (i == NB_QUERIES) {
+                time = end;
+            }
+            List<ITmfStateInterval> filteredState = filtered.queryFullState(time);
+            List<ITmfStateInterval> unfilteredState = unfiltered.queryFullState(time);
+            for (Map.Entry<String, Integer> entry : unfilteredPaths.entrySet()) {
+                ITmfStateInterval expected = unfilteredState.get(entry.getValue());
+                Integer quark = filteredPaths.get(entry.getKey());
+                assertNotNull(entry.getKey(), quark);
+                ITmfStateInterval interval = filteredState.get(quark);
+                String message = entry.getKey() + " at " + time; //$NON-NLS-1$
+                assertEquals(message, expected.getStateValue(), interval.getStateValue());
+                assertEquals(message, expected.getStartTime(), interval.getStartTime());
+                assertEquals(message, expected.getEndTime(), interval.getEndTime());
+            }
+        }
+    }
+
+    private static KernelAnalysisModule build(KernelAnalysisModule module) throws TmfAnalysisException {
+        assertTrue(module.setTrace(fTrace));
+        module.schedule();
+        assertTrue(module.waitForCompletion());
+        return module;
+    }
+
+    private static ITmfStateSystem getStateSystem(KernelAnalysisModule module) {
+        ITmfStateSystem ss = module.getStateSystem();
+        assertNotNull(ss);
+        return ss;
+    }
+
+    /* The quarks may differ, the attributes are compared by their path */
+    private static Map<String, Integer> getPaths(ITmfStateSystem ss) {
+        Map<String, Integer> paths = new HashMap<>();
+        for (int quark = 0; quark < ss.getNbAttributes(); quark++) {
+            paths.put(ss.getFullAttributePath(quark), quark);
+        }
+        return paths;
+    }
+
+    private static class TestKernelAnalysisModule extends KernelAnalysisModule {
+
+        private final boolean fFiltered;
+
+        public TestKernelAnalysisModule(boolean filtered) {
+            fFiltered = filtered;
+        }
+
+        @Override
+        protected StateSystemBackendType getBackendType() {
+            return StateSystemBackendType.INMEM;
+        }
+
+        @Override
+        protected @NonNull ITmfStateProvider createStateProvider() {
+            ITmfStateProvider provider = super.createStateProvider();
+            if (fFiltered) {
+                assertNotNull(provider.getEventTypeFilter());
+                return provider;
+            }
+            ITmfTrace trace = checkNotNull(getTrace());
+            IKernelAnalysisEventLayout layout = DefaultEventLayout.getInstance();
+            if (trace instanceof IKernelTrace) {
+                layout = ((IKernelTrace) trace).getKernelEventLayout();
+            }
+            return new UnfilteredKernelStateProvider(trace, layout);
+        }
+    }
+
+    /* A kernel state provider handling all the events */
+    private static class UnfilteredKernelStateProvider extends KernelStateProvider {
+
+        private final IKernelAnalysisEventLayout fLayout;
+
+        public UnfilteredKernelStateProvider(ITmfTrace trace, IKernelAnalysisEventLayout layout) {
+            super(trace, layout);
+            fLayout = layout;
+        }
+
+        @Override
+        public @Nullable Predicate<String> getEventTypeFilter() {
+            return null;
+        }
+
+        @Override
+        public KernelStateProvider getNewInstance() {
+            return new UnfilteredKernelStateProvider(getTrace(), fLayout);
+        }
+    }
+}
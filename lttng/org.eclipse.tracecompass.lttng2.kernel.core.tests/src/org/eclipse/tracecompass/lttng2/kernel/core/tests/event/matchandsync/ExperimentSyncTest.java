@@ -13,16 +13,21 @@
 package org.eclipse.tracecompass.lttng2.kernel.core.tests.event.matchandsync;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.tracecompass.internal.lttng2.kernel.core.event.matching.TcpEventMatching;
 import org.eclipse.tracecompass.internal.lttng2.kernel.core.event.matching.TcpLttngEventMatching;
 import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatching;
 import org.eclipse.tracecompass.tmf.core.synchronization.ITmfTimestampTransform;
 import org.eclipse.tracecompass.tmf.core.synchronization.SynchronizationAlgorithm;
 import org.eclipse.tracecompass.tmf.core.synchronization.TimestampTransformFactory;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
@@ -86,6 +91,53 @@ public class ExperimentSyncTest {
         trace2.dispose();
     }
 
+    /**
+     * Test that the synchronization formula is applied to the timestamps of
+     * the trace with the precision of the BigDecimal computation of the
+     * formula
+     */
+    @Test
+    public void testExperimentSyncPrecision() {
+        CtfTmfTrace trace1 = CtfTmfTestTraceUtils.getTrace(CtfTestTrace.SYNC_SRC);
+        CtfTmfTrace trace2 = CtfTmfTestTraceUtils.getTrace(CtfTestTrace.SYNC_DEST);
+
+        /* Read the original timestamps before the trace is synchronized */
+        long[] timestamps = new long[1000];
+        int nbEvents = 0;
+        ITmfContext context = trace1.seekEvent(0L);
+        ITmfEvent event = trace1.getNext(context);
+        while (event != null) {
+            if (nbEvents == timestamps.length) {
+                long[] newTimestamps = new long[timestamps.length * 2];
+                System.arraycopy(timestamps, 0, newTimestamps, 0, nbEvents);
+                timestamps = newTimestamps;
+            }
+            timestamps[nbEvents++] = event.getTimestamp().toNanos();
+            event = trace1.getNext(context);
+        }
+        context.dispose();
+        assertTrue(nbEvents > 0);
+
+        ITmfTrace[] traces = { trace1, trace2 };
+        TmfExperiment experiment = new TmfExperiment(traces[0].getEventType(), EXPERIMENT, traces, BLOCK_SIZE, null);
+
+        SynchronizationAlgorithm syncAlgo = experiment.synchronizeTraces(true);
+        ITmfTimestampTransform tt1 = syncAlgo.getTimestampTransform(trace1);
+
+        /* The formula of testExperimentSync() */
+        BigDecimal alpha = new BigDecimal("0.9999413783703139011056845831168394");
+        BigDecimal beta = new BigDecimal("79796507913179.33347660124688298171");
+        for (int i = 0; i < nbEvents; i++) {
+            long expected = BigDecimal.valueOf(timestamps[i]).multiply(alpha, MathContext.DECIMAL128).add(beta).longValue();
+            long error = tt1.transform(timestamps[i]) - expected;
+            // allow only two ns of error
+            assertTrue("[" + error + "]", Math.abs(error) < 3);
+        }
+
+        trace1.dispose();
+        trace2.dispose();
+    }
+
     /**
      * Testing synchronization with 3 traces, one of which synchronizes with
      * both other
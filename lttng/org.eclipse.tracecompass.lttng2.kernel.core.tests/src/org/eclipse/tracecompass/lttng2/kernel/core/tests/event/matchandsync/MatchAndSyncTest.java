@@ -18,16 +18,28 @@ import static org.junit.Assert.fail;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.lttng2.kernel.core.event.matching.TcpEventMatching;
 import org.eclipse.tracecompass.internal.lttng2.kernel.core.event.matching.TcpLttngEventMatching;
 import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.matching.IMatchProcessingUnit;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventDependency;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatches;
 import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatching;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
 import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
 import org.junit.Test;
@@ -74,4 +86,146 @@ public class MatchAndSyncTest {
         }
     }
 
+    /**
+     * Testing the packet matching with a matching window larger than the
+     * traces, no match should be lost
+     */
+    @Test
+    public void testMatchingWindow() {
+        CtfTmfTrace trace1 = CtfTmfTestTraceUtils.getTrace(CtfTestTrace.SYNC_SRC);
+        CtfTmfTrace trace2 = CtfTmfTestTraceUtils.getTrace(CtfTestTrace.SYNC_DEST);
+
+        List<@NonNull ITmfTrace> tracearr = new LinkedList<>();
+        tracearr.add(trace1);
+        tracearr.add(trace2);
+
+        TmfEventMatching.registerMatchObject(new TcpEventMatching());
+        TmfEventMatching.registerMatchObject(new TcpLttngEventMatching());
+
+        IMatchProcessingUnit procUnit = new TmfEventMatches();
+        TmfEventMatching twoTraceMatch = new TmfEventMatching(tracearr, procUnit);
+        twoTraceMatch.setMatchingWindow(TimeUnit.DAYS.toNanos(1));
+        try {
+            assertTrue(twoTraceMatch.matchEvents());
+            assertEquals(46, procUnit.countMatches());
+        } finally {
+            trace1.dispose();
+            trace2.dispose();
+        }
+    }
+
+    /**
+     * Testing the packet matching with a matching window smaller than the
+     * network latency: the unmatched events expire before the events they
+     * would match are read, so no match is found
+     */
+    @Test
+    public void testMatchingSmallWindow() {
+        CtfTmfTrace trace1 = CtfTmfTestTraceUtils.getTrace(CtfTestTrace.SYNC_SRC);
+        CtfTmfTrace trace2 = CtfTmfTestTraceUtils.getTrace(CtfTestTrace.SYNC_DEST);
+        TmfExperiment experiment = createExperiment(trace1, trace2);
+
+        TmfEventMatching.registerMatchObject(new TcpEventMatching());
+        TmfEventMatching.registerMatchObject(new TcpLttngEventMatching());
+
+        try {
+            IMatchProcessingUnit procUnit = new TmfEventMatches();
+            TmfEventMatching twoTraceMatch = new TmfEventMatching(Collections.singleton(experiment), procUnit);
+            twoTraceMatch.setMatchingWindow(1);
+            assertTrue(twoTraceMatch.matchEvents());
+            assertEquals(0, procUnit.countMatches());
+
+            /* The same events read in the same order all match without window */
+            procUnit = new TmfEventMatches();
+            twoTraceMatch = new TmfEventMatching(Collections.singleton(experiment), procUnit);
+            assertTrue(twoTraceMatch.matchEvents());
+            assertEquals(46, procUnit.countMatches());
+        } finally {
+            experiment.dispose();
+            trace1.dispose();
+            trace2.dispose();
+        }
+    }
+
+    /**
+     * Testing that the events matched in sharded batches give the same
+     * matches, in the same order, as the events matched one by one
+     */
+    @Test
+    public void testShardedMatchingIsSequential() {
+        CtfTmfTrace trace1 = CtfTmfTestTraceUtils.getTrace(CtfTestTrace.SYNC_SRC);
+        CtfTmfTrace trace2 = CtfTmfTestTraceUtils.getTrace(CtfTestTrace.SYNC_DEST);
+        TmfExperiment experiment = createExperiment(trace1, trace2);
+
+        TmfEventMatching.registerMatchObject(new TcpEventMatching());
+        TmfEventMatching.registerMatchObject(new TcpLttngEventMatching());
+
+        try {
+            /* Match the events in batches, with the request of the matching */
+            MatchRecorder sharded = new MatchRecorder();
+            assertTrue(new TmfEventMatching(Collections.singleton(experiment), sharded).matchEvents());
+
+            /* Match the same events one by one */
+            MatchRecorder sequential = new MatchRecorder();
+            TmfEventMatching matching = new TmfEventMatching(Collections.singleton(experiment), sequential);
+            matching.initMatching();
+            TmfEventRequest request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY,
+                    0, ITmfEventRequest.ALL_DATA, ITmfEventRequest.ExecutionType.FOREGROUND) {
+                @Override
+                public void handleData(ITmfEvent event) {
+                    super.handleData(event);
+                    matching.matchEvent(event, event.getTrace(), new NullProgressMonitor());
+                }
+            };
+            experiment.sendRequest(request);
+            request.waitForCompletion();
+
+            assertEquals(46, sequential.fMatches.size());
+            assertEquals(sequential.fMatches, sharded.fMatches);
+        } catch (InterruptedException e) {
+            fail(e.getMessage());
+        } finally {
+            experiment.dispose();
+            trace1.dispose();
+            trace2.dispose();
+        }
+    }
+
+    private static TmfExperiment createExperiment(ITmfTrace trace1, ITmfTrace trace2) {
+        ITmfTrace[] traces = { trace1, trace2 };
+        return new TmfExperiment(ITmfEvent.class, "MatchingExperiment", traces, 1000, null);
+    }
+
+    /**
+     * Processing unit that keeps a description of the matches, in the order
+     * in which they are found
+     */
+    private static class MatchRecorder implements IMatchProcessingUnit {
+
+        private final List<String> fMatches = new ArrayList<>();
+
+        @Override
+        public void init(Collection<ITmfTrace> fTraces) {
+            fMatches.clear();
+        }
+
+        @Override
+        public void addMatch(TmfEventDependency match) {
+            fMatches.add(toString(match.getSourceEvent()) + " -> " + toString(match.getDestinationEvent()));
+        }
+
+        private static String toString(ITmfEvent event) {
+            return event.getTrace().getName() + "@" + event.getRank() + ":" + event.getTimestamp().getValue();
+        }
+
+        @Override
+        public void matchingEnded() {
+        }
+
+        @Override
+        public int countMatches() {
+            return fMatches.size();
+        }
+    }
+
 }
@@ -27,7 +27,6 @@ import org.eclipse.tracecompass.internal.lttng2.kernel.core.analysis.vm.model.Vi
 import org.eclipse.tracecompass.internal.lttng2.kernel.core.analysis.vm.model.VirtualMachine;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
-import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.aspect.TmfCpuAspect;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
@@ -100,7 +99,7 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
             machine = VirtualMachine.newHostMachine(hostId);
         } else if (eventName.equals(QemuKvmStrings.VMSYNC_GH_GUEST) || eventName.equals(QemuKvmStrings.VMSYNC_HG_GUEST)) {
             /* Those events are only present in the guests */
-            TmfEventField field = (TmfEventField) event.getContent();
+            ITmfEventField field = event.getContent();
             ITmfEventField data = field.getField(QemuKvmStrings.VM_UID_PAYLOAD);
             if (data != null) {
                 machine = VirtualMachine.newGuestMachine((Long) data.getValue(), hostId);
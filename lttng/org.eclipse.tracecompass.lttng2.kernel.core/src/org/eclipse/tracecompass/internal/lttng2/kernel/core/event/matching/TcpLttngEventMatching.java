@@ -19,7 +19,6 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.lttng2.kernel.core.TcpEventStrings;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
-import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.matching.IEventMatchingKey;
 import org.eclipse.tracecompass.tmf.core.event.matching.ITmfMatchEventDefinition;
 import org.eclipse.tracecompass.tmf.core.event.matching.TcpEventKey;
@@ -51,7 +50,7 @@ public class TcpLttngEventMatching implements ITmfMatchEventDefinition {
             TcpEventStrings.NETIF_RECEIVE_SKB);
 
     private static boolean canMatchPacket(final ITmfEvent event) {
-        TmfEventField field = (TmfEventField) event.getContent();
+        ITmfEventField field = event.getContent();
 
         String[] tcp_data = { TcpEventStrings.TRANSPORT_FIELDS, TcpEventStrings.TYPE_TCP };
         ITmfEventField data = field.getField(tcp_data);
@@ -91,7 +90,7 @@ public class TcpLttngEventMatching implements ITmfMatchEventDefinition {
 
     @Override
     public IEventMatchingKey getEventKey(ITmfEvent event) {
-        TmfEventField field = (TmfEventField) event.getContent();
+        ITmfEventField field = event.getContent();
         ITmfEventField data;
 
         long seq = -1, ackseq = -1, flags = -1;
@@ -133,4 +133,46 @@ public class PcapFileReadTest {
             assertNull(packet);
         }
     }
+
+    /**
+     * Test that seeks give the same packets whatever the density of the rank
+     * index, and whether the index is already built or not.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void FileSeekIndexStrideTest() throws IOException, BadPcapFileException, BadPacketException {
+
+        PcapTestTrace trace = PcapTestTrace.MOSTLY_UDP;
+        assumeTrue(trace.exists());
+
+        try (PcapFile reference = new PcapFile(trace.getPath(), 1);
+                PcapFile file = new PcapFile(trace.getPath(), 7);) {
+
+            long nbPackets = reference.getTotalNbPackets();
+            assertEquals(nbPackets, file.getTotalNbPackets());
+
+            /* Seek backwards, then forwards, to use the index both ways */
+            long[] ranks = { 58, 3, 0, 45, 46, 13, nbPackets - 1, 7, 14 };
+            for (long rank : ranks) {
+                reference.seekPacket(rank);
+                file.seekPacket(rank);
+                assertEquals(rank, file.getCurrentRank());
+                PcapPacket expected = reference.parseNextPacket();
+                PcapPacket packet = file.parseNextPacket();
+                if (expected == null || packet == null) {
+                    fail("FileSeekIndexStrideTest() failed!");
+                    return;
+                }
+                assertEquals(rank, packet.getIndex());
+                assertEquals(expected.getTimestamp(), packet.getTimestamp());
+                assertEquals(expected.getPayload(), packet.getPayload());
+            }
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.pcap.core.tests.packet;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
@@ -20,15 +22,22 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 import org.eclipse.tracecompass.internal.pcap.core.packet.BadPacketException;
+import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
 import org.eclipse.tracecompass.internal.pcap.core.protocol.ethernet2.EthernetIIPacket;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.ipv4.IPv4Packet;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.pcap.PcapPacket;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.tcp.TCPPacket;
 import org.eclipse.tracecompass.internal.pcap.core.trace.BadPcapFileException;
 import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFile;
+import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFileValues;
 import org.eclipse.tracecompass.pcap.core.tests.shared.PcapTestTrace;
 import org.junit.Before;
 import org.junit.Test;
 
 /**
- * JUnit Class that tests if BadPacketExceptions are thrown correctly.
+ * JUnit Class that tests if BadPacketExceptions are thrown and handled
+ * correctly.
  *
  * @author Vincent Perot
  */
@@ -86,4 +95,126 @@ public class BadPacketTest {
             fail("PacketExceptionTest has failed!");
         }
     }
+
+    /**
+     * Test that an erroneous child packet does not make its parent packet
+     * fail. Child packets are dissected on demand, so the erroneous payload is
+     * kept as an unknown packet.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void ChildPacketExceptionTest() throws BadPacketException, IOException, BadPcapFileException {
+        PcapTestTrace trace = PcapTestTrace.MOSTLY_TCP;
+        assumeTrue(trace.exists());
+        try (PcapFile dummy = new PcapFile(trace.getPath())) {
+            ByteBuffer payload = fEthernetPacket;
+            if (payload == null) {
+                fail("ChildPacketExceptionTest has failed!");
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(PcapFileValues.PACKET_HEADER_SIZE);
+            header.order(dummy.getByteOrder());
+            header.putInt(0).putInt(0).putInt(8).putInt(8);
+            header.flip();
+
+            PcapPacket packet = new PcapPacket(dummy, null, header, payload, 0);
+            Packet child = packet.getChildPacket();
+            if (child == null) {
+                fail("ChildPacketExceptionTest has failed!");
+                return;
+            }
+            assertEquals(PcapProtocol.UNKNOWN, child.getProtocol());
+            assertEquals(payload, child.getPayload());
+            assertFalse(packet.hasProtocol(PcapProtocol.ETHERNET_II));
+        }
+    }
+
+    /**
+     * Test that an IPv4 packet whose header length goes past the end of the
+     * packet is rejected, instead of failing when slicing its options.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Expected from the test.
+     */
+    @Test(expected = BadPacketException.class)
+    public void IPv4TruncatedOptionsTest() throws BadPacketException, IOException, BadPcapFileException {
+        PcapTestTrace trace = PcapTestTrace.MOSTLY_TCP;
+        assumeTrue(trace.exists());
+        try (PcapFile dummy = new PcapFile(trace.getPath())) {
+            // 20 bytes of header and 4 bytes of options, while the header
+            // length field announces 60 bytes.
+            ByteBuffer packet = ByteBuffer.allocate(24);
+            packet.put(0, (byte) 0x4F);
+            new IPv4Packet(dummy, null, packet);
+            fail("IPv4TruncatedOptionsTest has failed!");
+        }
+    }
+
+    /**
+     * Test that a TCP packet whose data offset goes past the end of the packet
+     * is rejected, instead of failing when slicing its options.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Expected from the test.
+     */
+    @Test(expected = BadPacketException.class)
+    public void TCPTruncatedOptionsTest() throws BadPacketException, IOException, BadPcapFileException {
+        PcapTestTrace trace = PcapTestTrace.MOSTLY_TCP;
+        assumeTrue(trace.exists());
+        try (PcapFile dummy = new PcapFile(trace.getPath())) {
+            // 20 bytes of header and 4 bytes of options, while the data
+            // offset field announces 60 bytes.
+            ByteBuffer packet = ByteBuffer.allocate(24);
+            packet.put(12, (byte) 0xF0);
+            new TCPPacket(dummy, null, packet);
+            fail("TCPTruncatedOptionsTest has failed!");
+        }
+    }
+
+    /**
+     * Test that an IPv4 payload with truncated options does not make the
+     * Ethernet frame carrying it fail, it is kept as an unknown packet.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void ChildTruncatedOptionsTest() throws BadPacketException, IOException, BadPcapFileException {
+        PcapTestTrace trace = PcapTestTrace.MOSTLY_TCP;
+        assumeTrue(trace.exists());
+        try (PcapFile dummy = new PcapFile(trace.getPath())) {
+            // Ethernet II header, with the IPv4 type, and a truncated IPv4
+            // packet
+            ByteBuffer frame = ByteBuffer.allocate(14 + 24);
+            frame.putShort(12, (short) 0x0800);
+            frame.put(14, (byte) 0x4F);
+
+            EthernetIIPacket packet = new EthernetIIPacket(dummy, null, frame);
+            Packet child = packet.getChildPacket();
+            if (child == null) {
+                fail("ChildTruncatedOptionsTest has failed!");
+                return;
+            }
+            assertEquals(PcapProtocol.UNKNOWN, child.getProtocol());
+            assertFalse(packet.hasProtocol(PcapProtocol.IPV4));
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -13,11 +13,16 @@
 package org.eclipse.tracecompass.pcap.core.tests.stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
 import org.eclipse.tracecompass.internal.pcap.core.stream.PacketStream;
 import org.eclipse.tracecompass.internal.pcap.core.stream.PacketStreamBuilder;
@@ -115,4 +120,94 @@ public class StreamBuildTest {
         }
 
     }
+
+    /**
+     * Test that streams built separately are merged correctly, as is done
+     * when a file is parsed in chunks.
+     */
+    @Test
+    public void StreamMergingTest() {
+        PcapTestTrace trace = PcapTestTrace.MOSTLY_TCP;
+        assumeTrue(trace.exists());
+
+        try {
+            PacketStreamBuilder ethBuilder = new PacketStreamBuilder(PcapProtocol.ETHERNET_II);
+            PacketStreamBuilder tcpBuilder = new PacketStreamBuilder(PcapProtocol.TCP);
+            assertTrue(PacketStreamBuilder.parsePcapFile(trace.getPath(), Arrays.asList(ethBuilder, tcpBuilder), new NullProgressMonitor()));
+            assertEquals(1, ethBuilder.getNbStreams());
+            assertEquals(2, tcpBuilder.getNbStreams());
+
+            // Merge the same streams twice, the statistics are doubled.
+            PacketStreamBuilder builder = new PacketStreamBuilder(PcapProtocol.TCP);
+            builder.addStreams(tcpBuilder.getStreams());
+            builder.addStreams(tcpBuilder.getStreams());
+            assertEquals(2, builder.getNbStreams());
+
+            PacketStream stream = builder.getStream(1);
+            if (stream == null) {
+                fail("StreamMergingTest has failed!");
+                return;
+            }
+            assertEquals(1, stream.getID());
+            assertEquals(14, stream.getNbPackets());
+            assertEquals(8238, stream.getNbBytes());
+            assertEquals(6, stream.getNbPacketsAtoB());
+            assertEquals(1766, stream.getNbBytesAtoB());
+            assertEquals(8, stream.getNbPacketsBtoA());
+            assertEquals(6472, stream.getNbBytesBtoA());
+            assertEquals(1084443430295515000L, stream.getStartTime());
+            assertEquals(1084443432088092000L, stream.getStopTime());
+        } catch (IOException | BadPcapFileException e) {
+            fail("StreamMergingTest has failed!");
+        }
+    }
+
+    /**
+     * Test that parsing a file in chunks of a few packets, so that the streams
+     * span several chunks, builds the same streams as parsing it in a single
+     * chunk.
+     */
+    @Test
+    public void StreamChunksTest() {
+        PcapTestTrace trace = PcapTestTrace.MOSTLY_TCP;
+        assumeTrue(trace.exists());
+
+        try {
+            List<PacketStreamBuilder> expected = parseInChunks(trace, PacketStreamBuilder.DEFAULT_CHUNK_SIZE);
+            for (int chunkSize : new int[] { 1, 5, 7, 42 }) {
+                List<PacketStreamBuilder> actual = parseInChunks(trace, chunkSize);
+                for (int i = 0; i < expected.size(); i++) {
+                    PacketStreamBuilder expectedBuilder = expected.get(i);
+                    PacketStreamBuilder actualBuilder = actual.get(i);
+                    assertEquals(expectedBuilder.getNbStreams(), actualBuilder.getNbStreams());
+                    for (int id = 0; id < expectedBuilder.getNbStreams(); id++) {
+                        PacketStream expectedStream = expectedBuilder.getStream(id);
+                        PacketStream actualStream = actualBuilder.getStream(id);
+                        if (expectedStream == null || actualStream == null) {
+                            fail("StreamChunksTest has failed!");
+                            return;
+                        }
+                        assertEquals(expectedStream.getEndpointPair(), actualStream.getEndpointPair());
+                        assertEquals(expectedStream.getNbPacketsAtoB(), actualStream.getNbPacketsAtoB());
+                        assertEquals(expectedStream.getNbBytesAtoB(), actualStream.getNbBytesAtoB());
+                        assertEquals(expectedStream.getNbPacketsBtoA(), actualStream.getNbPacketsBtoA());
+                        assertEquals(expectedStream.getNbBytesBtoA(), actualStream.getNbBytesBtoA());
+                        assertEquals(expectedStream.getStartTime(), actualStream.getStartTime());
+                        assertEquals(expectedStream.getStopTime(), actualStream.getStopTime());
+                    }
+                }
+            }
+        } catch (IOException | BadPcapFileException e) {
+            fail("StreamChunksTest has failed!");
+        }
+    }
+
+    private static List<PacketStreamBuilder> parseInChunks(PcapTestTrace trace, int chunkSize) throws IOException, BadPcapFileException {
+        List<PacketStreamBuilder> builders = new ArrayList<>();
+        for (PcapProtocol protocol : Arrays.asList(PcapProtocol.ETHERNET_II, PcapProtocol.IPV4, PcapProtocol.TCP, PcapProtocol.UDP)) {
+            builders.add(new PacketStreamBuilder(protocol));
+        }
+        assertTrue(PacketStreamBuilder.parsePcapFile(trace.getPath(), builders, new NullProgressMonitor(), chunkSize));
+        return builders;
+    }
 }
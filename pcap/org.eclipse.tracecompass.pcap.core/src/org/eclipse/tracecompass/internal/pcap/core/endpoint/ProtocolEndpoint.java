@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.internal.pcap.core.endpoint;
 
+import java.io.Serializable;
+
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
 
@@ -22,9 +24,14 @@ import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
  * combination of the MAC address and the IP address. This is useful for
  * building packet streams.
  *
+ * Endpoints only hold addresses, not the packets they come from, so they can
+ * be serialized along with the packet streams.
+ *
  * @author Vincent Perot
  */
-public abstract class ProtocolEndpoint {
+public abstract class ProtocolEndpoint implements Serializable {
+
+    private static final long serialVersionUID = 2799828715358311748L;
 
     /**
      * Empty string for child classes.
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.internal.pcap.core.endpoint;
 
+import java.io.Serializable;
+
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
 
@@ -21,7 +23,9 @@ import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
  *
  * @author Vincent Perot
  */
-public class ProtocolEndpointPair {
+public class ProtocolEndpointPair implements Serializable {
+
+    private static final long serialVersionUID = 1815168845569610206L;
 
     private final ProtocolEndpoint fEndpointA;
     private final ProtocolEndpoint fEndpointB;
@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.internal.pcap.core.packet;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.Map;
 
@@ -45,6 +46,10 @@ public abstract class Packet {
     /** The protocol that this packet uses */
     private final PcapProtocol fProtocol;
 
+    /** The child packet, found on the first call to getChildPacket() */
+    private @Nullable Packet fChildPacket;
+    private boolean fChildPacketFound;
+
     /**
      * Constructor of the Packet Class.
      *
@@ -59,6 +64,8 @@ public abstract class Packet {
         fPcapFile = file;
         fParentPacket = parent;
         fProtocol = protocol;
+        fChildPacket = null;
+        fChildPacketFound = false;
     }
 
     /**
@@ -86,9 +93,26 @@ public abstract class Packet {
      * method returns null if the packet is at the lowest level of
      * encapsulation.
      *
+     * The child packet is dissected on the first call to this method, so that
+     * the layers that are never looked at are never decoded. If the payload
+     * can't be dissected as the expected protocol, the child packet is an
+     * {@link UnknownPacket} containing the whole payload.
+     *
      * @return The child packet.
      */
-    public abstract @Nullable Packet getChildPacket();
+    public final synchronized @Nullable Packet getChildPacket() {
+        if (!fChildPacketFound) {
+            try {
+                fChildPacket = findChildPacket();
+            } catch (BadPacketException | BufferUnderflowException e) {
+                /* The payload is truncated or malformed */
+                ByteBuffer payload = getPayload();
+                fChildPacket = (payload == null ? null : new UnknownPacket(fPcapFile, this, payload.duplicate()));
+            }
+            fChildPacketFound = true;
+        }
+        return fChildPacket;
+    }
 
     /**
      * Getter method for the protocol of the packet.
@@ -202,7 +226,8 @@ public abstract class Packet {
 
     /**
      * Internal method that is used to find the child packet. This is protocol
-     * dependent and must be implemented by each packet class.
+     * dependent and must be implemented by each packet class. It is called
+     * once, by {@link #getChildPacket()}.
      *
      * @return The child packet.
      * @throws BadPacketException
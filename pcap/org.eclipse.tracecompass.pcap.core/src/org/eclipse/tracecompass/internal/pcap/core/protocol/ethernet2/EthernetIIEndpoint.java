@@ -26,6 +26,8 @@ import org.eclipse.tracecompass.internal.pcap.core.util.ConversionHelper;
  */
 public class EthernetIIEndpoint extends ProtocolEndpoint {
 
+    private static final long serialVersionUID = -3717461641472972929L;
+
     private final byte[] fMacAddress;
 
     /**
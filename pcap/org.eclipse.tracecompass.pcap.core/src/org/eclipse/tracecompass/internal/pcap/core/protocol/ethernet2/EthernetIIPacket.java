@@ -12,8 +12,6 @@
 
 package org.eclipse.tracecompass.internal.pcap.core.protocol.ethernet2;
 
-import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
-
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
@@ -41,13 +39,17 @@ import com.google.common.collect.ImmutableMap;
  */
 public class EthernetIIPacket extends Packet {
 
-    private final @Nullable Packet fChildPacket;
+    private static final int DESTINATION_MAC_ADDRESS_OFFSET = 0;
+    private static final int SOURCE_MAC_ADDRESS_OFFSET = EthernetIIValues.MAC_ADDRESS_SIZE;
+
     private final @Nullable ByteBuffer fPayload;
 
-    /* We store MAC addresses as byte arrays since
-     * there is no standard java class to store them. */
-    private final byte[] fSourceMacAddress;
-    private final byte[] fDestinationMacAddress;
+    /*
+     * The MAC addresses are not copied: they are read from the header when
+     * needed, as byte arrays since there is no standard java class to store
+     * them.
+     */
+    private final ByteBuffer fHeader;
 
     private final int fType;
 
@@ -71,7 +73,7 @@ public class EthernetIIPacket extends Packet {
     public EthernetIIPacket(PcapFile file, @Nullable Packet parent, ByteBuffer packet) throws BadPacketException {
         super(file, parent, PcapProtocol.ETHERNET_II);
 
-        if (packet.array().length <= EthernetIIValues.ETHERNET_II_MIN_SIZE) {
+        if (packet.limit() <= EthernetIIValues.ETHERNET_II_MIN_SIZE) {
             throw new BadPacketException("An Ethernet II packet can't be smaller than 14 bytes."); //$NON-NLS-1$
         }
 
@@ -82,37 +84,26 @@ public class EthernetIIPacket extends Packet {
 
         fFields = null;
 
-        fDestinationMacAddress = new byte[EthernetIIValues.MAC_ADDRESS_SIZE];
-        fSourceMacAddress = new byte[EthernetIIValues.MAC_ADDRESS_SIZE];
         packet.order(ByteOrder.BIG_ENDIAN);
         packet.position(0);
-        packet.get(fDestinationMacAddress);
-        packet.get(fSourceMacAddress);
+        fHeader = packet.duplicate();
+        packet.position(SOURCE_MAC_ADDRESS_OFFSET + EthernetIIValues.MAC_ADDRESS_SIZE);
         fType = ConversionHelper.unsignedShortToInt(packet.getShort());
 
         // Get payload if it exists.
-        if (packet.array().length - packet.position() > 0) {
-            byte[] array = new byte[packet.array().length - packet.position()];
-            packet.get(array);
-            ByteBuffer payload = ByteBuffer.wrap(array);
+        if (packet.limit() - packet.position() > 0) {
+            // Slice the payload out of the packet, without copying it.
+            ByteBuffer payload = packet.slice();
             payload.order(ByteOrder.BIG_ENDIAN);
-            payload.position(0);
             fPayload = payload;
-
         } else {
             fPayload = null;
         }
 
-        // Find child
-        fChildPacket = findChildPacket();
+        // The child packet is found on demand, see getChildPacket().
 
     }
 
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
-    }
-
     @Override
     public @Nullable ByteBuffer getPayload() {
         return fPayload;
@@ -124,7 +115,7 @@ public class EthernetIIPacket extends Packet {
      * @return The source MAC address.
      */
     public byte[] getSourceMacAddress() {
-        return checkNotNull(Arrays.copyOf(fSourceMacAddress, fSourceMacAddress.length));
+        return getMacAddress(SOURCE_MAC_ADDRESS_OFFSET);
     }
 
     /**
@@ -133,7 +124,15 @@ public class EthernetIIPacket extends Packet {
      * @return The destination MAC address.
      */
     public byte[] getDestinationMacAddress() {
-        return checkNotNull(Arrays.copyOf(fDestinationMacAddress, fDestinationMacAddress.length));
+        return getMacAddress(DESTINATION_MAC_ADDRESS_OFFSET);
+    }
+
+    private byte[] getMacAddress(int offset) {
+        byte[] address = new byte[EthernetIIValues.MAC_ADDRESS_SIZE];
+        ByteBuffer header = fHeader.duplicate();
+        header.position(offset);
+        header.get(address);
+        return address;
     }
 
     /**
@@ -155,18 +154,18 @@ public class EthernetIIPacket extends Packet {
         }
         switch (fType) {
         case EthertypeHelper.ETHERTYPE_IPV4:
-            return new IPv4Packet(getPcapFile(), this, payload);
+            return new IPv4Packet(getPcapFile(), this, payload.duplicate());
         default:
-            return new UnknownPacket(getPcapFile(), this, payload);
+            return new UnknownPacket(getPcapFile(), this, payload.duplicate());
         }
     }
 
     @Override
     public String toString() {
-        String string = getProtocol().getName() + ", Source: " + ConversionHelper.toMacAddress(fSourceMacAddress) + //$NON-NLS-1$
-                ", Destination: " + ConversionHelper.toMacAddress(fDestinationMacAddress) + ", Type: " + //$NON-NLS-1$ //$NON-NLS-2$
+        String string = getProtocol().getName() + ", Source: " + ConversionHelper.toMacAddress(getSourceMacAddress()) + //$NON-NLS-1$
+                ", Destination: " + ConversionHelper.toMacAddress(getDestinationMacAddress()) + ", Type: " + //$NON-NLS-1$ //$NON-NLS-2$
                 EthertypeHelper.toEtherType(fType) + "\n"; //$NON-NLS-1$
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -207,8 +206,8 @@ public class EthernetIIPacket extends Packet {
         Map<String, String> map = fFields;
         if (map == null) {
             ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
-            builder.put("Source MAC Address", ConversionHelper.toMacAddress(fSourceMacAddress)); //$NON-NLS-1$
-            builder.put("Destination MAC Address", ConversionHelper.toMacAddress(fDestinationMacAddress)); //$NON-NLS-1$
+            builder.put("Source MAC Address", ConversionHelper.toMacAddress(getSourceMacAddress())); //$NON-NLS-1$
+            builder.put("Destination MAC Address", ConversionHelper.toMacAddress(getDestinationMacAddress())); //$NON-NLS-1$
             builder.put("Ethertype", String.valueOf(EthertypeHelper.toEtherType(fType))); //$NON-NLS-1$
 
             fFields = builder.build();
@@ -219,32 +218,32 @@ public class EthernetIIPacket extends Packet {
 
     @Override
     public String getLocalSummaryString() {
-        return "Src: " + ConversionHelper.toMacAddress(fSourceMacAddress) + " , Dst: " + ConversionHelper.toMacAddress(fDestinationMacAddress); //$NON-NLS-1$ //$NON-NLS-2$
+        return "Src: " + ConversionHelper.toMacAddress(getSourceMacAddress()) + " , Dst: " + ConversionHelper.toMacAddress(getDestinationMacAddress()); //$NON-NLS-1$ //$NON-NLS-2$
     }
 
     @Override
     protected String getSignificationString() {
-        return "Source MAC: " + ConversionHelper.toMacAddress(fSourceMacAddress) + " , Destination MAC: " + ConversionHelper.toMacAddress(fDestinationMacAddress); //$NON-NLS-1$ //$NON-NLS-2$
+        return "Source MAC: " + ConversionHelper.toMacAddress(getSourceMacAddress()) + " , Destination MAC: " + ConversionHelper.toMacAddress(getDestinationMacAddress()); //$NON-NLS-1$ //$NON-NLS-2$
     }
 
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             result = prime * result + child.hashCode();
         } else {
             result = prime * result;
         }
-        result = prime * result + Arrays.hashCode(fDestinationMacAddress);
+        result = prime * result + Arrays.hashCode(getDestinationMacAddress());
         final ByteBuffer payload = fPayload;
         if (payload != null) {
             result = prime * result + payload.hashCode();
         } else {
             result = prime * result;
         }
-        result = prime * result + Arrays.hashCode(fSourceMacAddress);
+        result = prime * result + Arrays.hashCode(getSourceMacAddress());
         result = prime * result + fType;
         return result;
     }
@@ -261,17 +260,17 @@ public class EthernetIIPacket extends Packet {
             return false;
         }
         EthernetIIPacket other = (EthernetIIPacket) obj;
-        if(!NonNullUtils.equalsNullable(fChildPacket, other.fChildPacket)) {
+        if(!NonNullUtils.equalsNullable(getChildPacket(), other.getChildPacket())) {
             return false;
         }
-        if (!Arrays.equals(fDestinationMacAddress, other.fDestinationMacAddress)) {
+        if (!Arrays.equals(getDestinationMacAddress(), other.getDestinationMacAddress())) {
             return false;
         }
         if(!NonNullUtils.equalsNullable(fPayload, other.fPayload)) {
             return false;
         }
 
-        if (!Arrays.equals(fSourceMacAddress, other.fSourceMacAddress)) {
+        if (!Arrays.equals(getSourceMacAddress(), other.getSourceMacAddress())) {
             return false;
         }
         if (fType != other.fType) {
@@ -27,6 +27,8 @@ import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpoint;
  */
 public class IPv4Endpoint extends ProtocolEndpoint {
 
+    private static final long serialVersionUID = 2327593489810770186L;
+
     private final Inet4Address fIPAddress;
 
     /**
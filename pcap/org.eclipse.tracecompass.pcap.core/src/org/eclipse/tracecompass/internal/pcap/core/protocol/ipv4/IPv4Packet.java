@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -20,8 +20,8 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Arrays;
 import java.util.Map;
+import java.util.Objects;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -46,7 +46,6 @@ import com.google.common.collect.ImmutableMap.Builder;
  */
 public class IPv4Packet extends Packet {
 
-    private final @Nullable Packet fChildPacket;
     private final @Nullable ByteBuffer fPayload;
 
     private final int fVersion;
@@ -62,9 +61,13 @@ public class IPv4Packet extends Packet {
     private final int fTimeToLive;
     private final int fIpDatagramProtocol;
     private final int fHeaderChecksum;
-    private final Inet4Address fSourceIpAddress;
-    private final Inet4Address fDestinationIpAddress;
-    private final byte @Nullable [] fOptions;
+    private final int fSourceAddress;
+    private final int fDestinationAddress;
+    private final @Nullable ByteBuffer fOptions;
+
+    /* The address objects are only created when asked for */
+    private @Nullable Inet4Address fSourceIpAddress;
+    private @Nullable Inet4Address fDestinationIpAddress;
 
     private @Nullable IPv4Endpoint fSourceEndpoint;
     private @Nullable IPv4Endpoint fDestinationEndpoint;
@@ -89,6 +92,10 @@ public class IPv4Packet extends Packet {
     public IPv4Packet(PcapFile file, @Nullable Packet parent, ByteBuffer packet) throws BadPacketException {
         super(file, parent, PcapProtocol.IPV4);
 
+        if (packet.limit() < IPv4Values.DEFAULT_HEADER_LENGTH * IPv4Values.BLOCK_SIZE) {
+            throw new BadPacketException("An IPv4 packet can't be smaller than 20 bytes."); //$NON-NLS-1$
+        }
+
         // The endpoints are lazy loaded. They are defined in the get*Endpoint()
         // methods.
         fSourceEndpoint = null;
@@ -122,48 +129,32 @@ public class IPv4Packet extends Packet {
         fIpDatagramProtocol = ConversionHelper.unsignedByteToInt(packet.get());
         fHeaderChecksum = ConversionHelper.unsignedShortToInt(packet.getShort());
 
-        byte[] source = new byte[IPv4Values.IP_ADDRESS_SIZE];
-        byte[] destination = new byte[IPv4Values.IP_ADDRESS_SIZE];
-        packet.get(source);
-        packet.get(destination);
-
-        try {
-            fSourceIpAddress = (Inet4Address) checkNotNull(InetAddress.getByAddress(source));
-            fDestinationIpAddress = (Inet4Address) checkNotNull(InetAddress.getByAddress(destination));
-        } catch (UnknownHostException e) {
-            throw new BadPacketException("The IP Address size is not valid!"); //$NON-NLS-1$
-        }
+        fSourceAddress = packet.getInt();
+        fDestinationAddress = packet.getInt();
+        fSourceIpAddress = null;
+        fDestinationIpAddress = null;
 
         // Get options if there are any
         if (fInternetHeaderLength > IPv4Values.DEFAULT_HEADER_LENGTH) {
-            fOptions = new byte[(fInternetHeaderLength - IPv4Values.DEFAULT_HEADER_LENGTH) * IPv4Values.BLOCK_SIZE];
-            packet.get(fOptions);
+            fOptions = sliceOptions(packet, (fInternetHeaderLength - IPv4Values.DEFAULT_HEADER_LENGTH) * IPv4Values.BLOCK_SIZE);
         } else {
             fOptions = null;
         }
 
         // Get payload if any.
-        if (packet.array().length - packet.position() > 0) {
-            byte[] array = new byte[packet.array().length - packet.position()];
-            packet.get(array);
-            ByteBuffer payload = ByteBuffer.wrap(array);
+        if (packet.limit() - packet.position() > 0) {
+            // Slice the payload out of the packet, without copying it.
+            ByteBuffer payload = packet.slice();
             payload.order(ByteOrder.BIG_ENDIAN);
-            payload.position(0);
             fPayload = payload;
         } else {
             fPayload = null;
         }
 
-        // Find child
-        fChildPacket = findChildPacket();
+        // The child packet is found on demand, see getChildPacket().
 
     }
 
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
-    }
-
     @Override
     public @Nullable ByteBuffer getPayload() {
         return fPayload;
@@ -184,11 +175,11 @@ public class IPv4Packet extends Packet {
 
         switch (fIpDatagramProtocol) {
         case IPProtocolNumberHelper.PROTOCOL_NUMBER_TCP:
-            return new TCPPacket(getPcapFile(), this, payload);
+            return new TCPPacket(getPcapFile(), this, payload.duplicate());
         case IPProtocolNumberHelper.PROTOCOL_NUMBER_UDP:
-            return new UDPPacket(getPcapFile(), this, payload);
+            return new UDPPacket(getPcapFile(), this, payload.duplicate());
         default:
-            return new UnknownPacket(getPcapFile(), this, payload);
+            return new UnknownPacket(getPcapFile(), this, payload.duplicate());
         }
 
     }
@@ -223,13 +214,13 @@ public class IPv4Packet extends Packet {
         // TODO calculate the expected checksum from packet
         String checksumString = "Header Checksum: " + String.format("%s%04x", "0x", fHeaderChecksum); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-        String string = getProtocol().getName() + ", Source: " + fSourceIpAddress.getHostAddress() + ", Destination: " + fDestinationIpAddress.getHostAddress() + //$NON-NLS-1$ //$NON-NLS-2$
+        String string = getProtocol().getName() + ", Source: " + getSourceIpAddress().getHostAddress() + ", Destination: " + getDestinationIpAddress().getHostAddress() + //$NON-NLS-1$ //$NON-NLS-2$
                 "\nVersion: " + fVersion + ", Identification: " + String.format("%s%04x", "0x", fIdentification) + ", Header Length: " + getHeaderLength() + " bytes, Total Length: " + getTotalLength() + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
                 " bytes\nDifferentiated Services Code Point: " + String.format("%s%02x", "0x", fDSCP) + "; Explicit Congestion Notification: " + String.format("%s%02x", "0x", fExplicitCongestionNotification) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
                 + "\n" + flagString + "\nTime to live: " + fTimeToLive + //$NON-NLS-1$ //$NON-NLS-2$
                 "\nProtocol: " + fIpDatagramProtocol + "\n" //$NON-NLS-1$ //$NON-NLS-2$
                 + checksumString + "\n"; //$NON-NLS-1$
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -376,7 +367,12 @@ public class IPv4Packet extends Packet {
      * @return The source IP address, as a byte array in big-endian.
      */
     public Inet4Address getSourceIpAddress() {
-        return fSourceIpAddress;
+        Inet4Address address = fSourceIpAddress;
+        if (address == null) {
+            address = toInet4Address(fSourceAddress);
+            fSourceIpAddress = address;
+        }
+        return address;
     }
 
     /**
@@ -385,7 +381,36 @@ public class IPv4Packet extends Packet {
      * @return The destination IP address, as a byte array in big-endian.
      */
     public Inet4Address getDestinationIpAddress() {
-        return fDestinationIpAddress;
+        Inet4Address address = fDestinationIpAddress;
+        if (address == null) {
+            address = toInet4Address(fDestinationAddress);
+            fDestinationIpAddress = address;
+        }
+        return address;
+    }
+
+    private static Inet4Address toInet4Address(int address) {
+        byte[] bytes = ByteBuffer.allocate(IPv4Values.IP_ADDRESS_SIZE).putInt(address).array();
+        try {
+            return (Inet4Address) checkNotNull(InetAddress.getByAddress(bytes));
+        } catch (UnknownHostException e) {
+            /* Can't happen, the array has the size of an IPv4 address */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Slice the options out of the packet, without copying them, and move the
+     * position of the packet after them.
+     */
+    private static ByteBuffer sliceOptions(ByteBuffer packet, int length) throws BadPacketException {
+        if (length > packet.remaining()) {
+            throw new BadPacketException("The IPv4 header length is larger than the packet."); //$NON-NLS-1$
+        }
+        ByteBuffer options = packet.slice();
+        options.limit(length);
+        packet.position(packet.position() + length);
+        return options;
     }
 
     /**
@@ -395,11 +420,13 @@ public class IPv4Packet extends Packet {
      * @return The options of the packet.
      */
     public byte @Nullable [] getOptions() {
-        final byte[] options = fOptions;
+        final ByteBuffer options = fOptions;
         if (options == null) {
             return null;
         }
-        return Arrays.copyOf(options, options.length);
+        byte[] array = new byte[options.limit()];
+        options.duplicate().get(array);
+        return array;
     }
 
     @Override
@@ -450,9 +477,9 @@ public class IPv4Packet extends Packet {
                     .put("Time to live", String.valueOf(fTimeToLive)) //$NON-NLS-1$
                     .put("Protocol", IPProtocolNumberHelper.toString(fIpDatagramProtocol) + " (" + String.valueOf(fIpDatagramProtocol) + ")") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
                     .put("Checksum", String.format("%s%04x", "0x", fHeaderChecksum)) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-                    .put("Source IP Address", nullToEmptyString(fSourceIpAddress.getHostAddress())) //$NON-NLS-1$
-                    .put("Destination IP Address", nullToEmptyString(fDestinationIpAddress.getHostAddress())); //$NON-NLS-1$
-            byte[] options = fOptions;
+                    .put("Source IP Address", nullToEmptyString(getSourceIpAddress().getHostAddress())) //$NON-NLS-1$
+                    .put("Destination IP Address", nullToEmptyString(getDestinationIpAddress().getHostAddress())); //$NON-NLS-1$
+            byte[] options = getOptions();
             if (options == null) {
                 builder.put("Options", EMPTY_STRING); //$NON-NLS-1$
             } else {
@@ -467,15 +494,15 @@ public class IPv4Packet extends Packet {
 
     @Override
     public String getLocalSummaryString() {
-        return "Src: " + fSourceIpAddress.getHostAddress() + " , Dst: " + fDestinationIpAddress.getHostAddress(); //$NON-NLS-1$ //$NON-NLS-2$
+        return "Src: " + getSourceIpAddress().getHostAddress() + " , Dst: " + getDestinationIpAddress().getHostAddress(); //$NON-NLS-1$ //$NON-NLS-2$
     }
 
     @Override
     protected String getSignificationString() {
         StringBuilder sb = new StringBuilder();
-        sb.append(fSourceIpAddress.getHostAddress())
+        sb.append(getSourceIpAddress().getHostAddress())
                 .append(" > ") //$NON-NLS-1$
-                .append(fDestinationIpAddress.getHostAddress());
+                .append(getDestinationIpAddress().getHostAddress());
 
         String flags = generateFlagString();
         if (!(flags.equals(""))) { //$NON-NLS-1$
@@ -490,7 +517,7 @@ public class IPv4Packet extends Packet {
         final ByteBuffer payload = fPayload;
         if (payload != null) {
             sb.append(" Len=") //$NON-NLS-1$
-            .append(payload.array().length);
+            .append(payload.limit());
         } else {
             sb.append(" Len=0"); //$NON-NLS-1$
         }
@@ -522,14 +549,14 @@ public class IPv4Packet extends Packet {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             result = prime * result + child.hashCode();
         } else {
             result = prime * result;
         }
         result = prime * result + fDSCP;
-        result = prime * result + fDestinationIpAddress.hashCode();
+        result = prime * result + fDestinationAddress;
         result = prime * result + (fDontFragmentFlag ? 1231 : 1237);
         result = prime * result + fExplicitCongestionNotification;
         result = prime * result + fFragmentOffset;
@@ -538,7 +565,7 @@ public class IPv4Packet extends Packet {
         result = prime * result + fInternetHeaderLength;
         result = prime * result + fIpDatagramProtocol;
         result = prime * result + (fMoreFragmentFlag ? 1231 : 1237);
-        result = prime * result + Arrays.hashCode(fOptions);
+        result = prime * result + Objects.hashCode(fOptions);
         final ByteBuffer payload = fPayload;
         if (payload != null) {
             result = prime * result + payload.hashCode();
@@ -546,7 +573,7 @@ public class IPv4Packet extends Packet {
             result = prime * result;
         }
         result = prime * result + (fReservedFlag ? 1231 : 1237);
-        result = prime * result + fSourceIpAddress.hashCode();
+        result = prime * result + fSourceAddress;
         result = prime * result + fTimeToLive;
         result = prime * result + fTotalLength;
         result = prime * result + fVersion;
@@ -565,13 +592,13 @@ public class IPv4Packet extends Packet {
             return false;
         }
         IPv4Packet other = (IPv4Packet) obj;
-        if (!NonNullUtils.equalsNullable(fChildPacket, other.fChildPacket)) {
+        if (!NonNullUtils.equalsNullable(getChildPacket(), other.getChildPacket())) {
             return false;
         }
         if (fDSCP != other.fDSCP) {
             return false;
         }
-        if (!(fDestinationIpAddress.equals(other.fDestinationIpAddress))) {
+        if (fDestinationAddress != other.fDestinationAddress) {
             return false;
         }
         if (fDontFragmentFlag != other.fDontFragmentFlag) {
@@ -598,7 +625,7 @@ public class IPv4Packet extends Packet {
         if (fMoreFragmentFlag != other.fMoreFragmentFlag) {
             return false;
         }
-        if (!Arrays.equals(fOptions, other.fOptions)) {
+        if (!NonNullUtils.equalsNullable(fOptions, other.fOptions)) {
             return false;
         }
         if (!NonNullUtils.equalsNullable(fPayload, other.fPayload)) {
@@ -607,7 +634,7 @@ public class IPv4Packet extends Packet {
         if (fReservedFlag != other.fReservedFlag) {
             return false;
         }
-        if (!(fSourceIpAddress.equals(other.fSourceIpAddress))) {
+        if (fSourceAddress != other.fSourceAddress) {
             return false;
         }
         if (fTimeToLive != other.fTimeToLive) {
@@ -23,6 +23,8 @@ import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpoint;
  */
 public class PcapEndpoint extends ProtocolEndpoint {
 
+    private static final long serialVersionUID = -2138508619589716160L;
+
     /**
      * Constructor of the {@link PcapEndpoint} class. It takes a packet to get
      * its endpoint. Since every packet has two endpoints (source and
@@ -42,7 +42,6 @@ public class PcapPacket extends Packet {
     private static final int TIMESTAMP_MICROSECOND_MAX = 1000000;
     private static final int TIMESTAMP_NANOSECOND_MAX = 1000000000;
 
-    private final @Nullable Packet fChildPacket;
     private final @Nullable ByteBuffer fPayload;
 
     private final long fTimestamp; // In microseconds
@@ -74,8 +73,7 @@ public class PcapPacket extends Packet {
     public PcapPacket(PcapFile file, @Nullable Packet parent, ByteBuffer header, @Nullable ByteBuffer payload, long index) throws BadPacketException {
         super(file, parent, PcapProtocol.PCAP);
 
-        if (header.array().length < PcapFileValues.PACKET_HEADER_SIZE) {
-            fChildPacket = null;
+        if (header.limit() < PcapFileValues.PACKET_HEADER_SIZE) {
             throw new BadPacketException("The Pcap packet header is too small."); //$NON-NLS-1$
         }
 
@@ -97,14 +95,12 @@ public class PcapPacket extends Packet {
         switch (getTimestampScale()) {
         case MICROSECOND:
             if (timestampLeastSignificant > TIMESTAMP_MICROSECOND_MAX) {
-                fChildPacket = null;
                 throw new BadPacketException("The timestamp is erroneous."); //$NON-NLS-1$
             }
             fTimestamp = TIMESTAMP_MICROSECOND_MAX * timestampMostSignificant + timestampLeastSignificant;
             break;
         case NANOSECOND:
             if (timestampLeastSignificant > TIMESTAMP_NANOSECOND_MAX) {
-                fChildPacket = null;
                 throw new BadPacketException("The timestamp is erroneous."); //$NON-NLS-1$
             }
             fTimestamp = TIMESTAMP_NANOSECOND_MAX * timestampMostSignificant + timestampLeastSignificant;
@@ -119,7 +115,6 @@ public class PcapPacket extends Packet {
         // Set up payload
         final ByteBuffer pcapPacket = payload;
         if (pcapPacket == null) {
-            fChildPacket = null;
             fPayload = null;
             return;
         }
@@ -128,16 +123,10 @@ public class PcapPacket extends Packet {
         pcapPacket.position(0);
         fPayload = pcapPacket;
 
-        // Find Child Packet
-        fChildPacket = findChildPacket();
+        // The child packet is found on demand, see getChildPacket().
 
     }
 
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
-    }
-
     @Override
     public @Nullable ByteBuffer getPayload() {
         return fPayload;
@@ -198,7 +187,7 @@ public class PcapPacket extends Packet {
                 fIncludedLength + " bytes captured.\nArrival time: " +  //$NON-NLS-1$
                 ConversionHelper.toGMTTime(fTimestamp, getTimestampScale()) + "\n"; //$NON-NLS-1$
 
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -220,9 +209,9 @@ public class PcapPacket extends Packet {
 
         switch ((int) getPcapFile().getDataLinkType()) {
         case LinkTypeHelper.LINKTYPE_ETHERNET:
-            return new EthernetIIPacket(getPcapFile(), this, payload);
+            return new EthernetIIPacket(getPcapFile(), this, payload.duplicate());
         default: // TODO add more protocols
-            return new UnknownPacket(getPcapFile(), this, payload);
+            return new UnknownPacket(getPcapFile(), this, payload.duplicate());
         }
     }
 
@@ -288,7 +277,7 @@ public class PcapPacket extends Packet {
         final int prime = 31;
         int result = 1;
 
-        Packet child = fChildPacket;
+        Packet child = getChildPacket();
         if (child == null) {
             result = prime * result;
         } else {
@@ -322,7 +311,7 @@ public class PcapPacket extends Packet {
             return false;
         }
         PcapPacket other = (PcapPacket) obj;
-        if(!NonNullUtils.equalsNullable(fChildPacket, other.fChildPacket)){
+        if(!NonNullUtils.equalsNullable(getChildPacket(), other.getChildPacket())){
             return false;
         }
         if (fIncludedLength != other.fIncludedLength) {
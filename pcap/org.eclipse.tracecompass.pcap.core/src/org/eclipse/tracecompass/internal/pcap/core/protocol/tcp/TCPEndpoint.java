@@ -23,6 +23,8 @@ import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpoint;
  */
 public class TCPEndpoint extends ProtocolEndpoint {
 
+    private static final long serialVersionUID = -3111643539018958014L;
+
     private final int fPort;
 
     /**
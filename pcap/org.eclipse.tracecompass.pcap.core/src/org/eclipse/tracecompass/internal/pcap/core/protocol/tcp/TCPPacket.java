@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -14,8 +14,8 @@ package org.eclipse.tracecompass.internal.pcap.core.protocol.tcp;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Arrays;
 import java.util.Map;
+import java.util.Objects;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -37,7 +37,6 @@ import com.google.common.collect.ImmutableMap.Builder;
  */
 public class TCPPacket extends Packet {
 
-    private final @Nullable Packet fChildPacket;
     private final @Nullable ByteBuffer fPayload;
 
     private final int fSourcePort;
@@ -58,7 +57,7 @@ public class TCPPacket extends Packet {
     private final int fWindowSize;
     private final int fChecksum;
     private final int fUrgentPointer;
-    private final byte @Nullable [] fOptions; // TODO Interpret options.
+    private final @Nullable ByteBuffer fOptions; // TODO Interpret options.
 
     private @Nullable TCPEndpoint fSourceEndpoint;
     private @Nullable TCPEndpoint fDestinationEndpoint;
@@ -80,6 +79,10 @@ public class TCPPacket extends Packet {
     public TCPPacket(PcapFile file, @Nullable Packet parent, ByteBuffer packet) throws BadPacketException {
         super(file, parent, PcapProtocol.TCP);
 
+        if (packet.limit() < TCPValues.DEFAULT_HEADER_LENGTH * TCPValues.BLOCK_SIZE) {
+            throw new BadPacketException("A TCP packet can't be smaller than 20 bytes."); //$NON-NLS-1$
+        }
+
         // The endpoints are lazy loaded. They are defined in the get*Endpoint()
         // methods.
         fSourceEndpoint = null;
@@ -116,34 +119,33 @@ public class TCPPacket extends Packet {
 
         // Get options if any
         if (fDataOffset > TCPValues.DEFAULT_HEADER_LENGTH) {
-            fOptions = new byte[(fDataOffset - TCPValues.DEFAULT_HEADER_LENGTH) * TCPValues.BLOCK_SIZE];
-            packet.get(fOptions);
+            // Slice the options out of the packet, without copying them.
+            int length = (fDataOffset - TCPValues.DEFAULT_HEADER_LENGTH) * TCPValues.BLOCK_SIZE;
+            if (length > packet.remaining()) {
+                throw new BadPacketException("The TCP data offset is larger than the packet."); //$NON-NLS-1$
+            }
+            ByteBuffer options = packet.slice();
+            options.limit(length);
+            packet.position(packet.position() + length);
+            fOptions = options;
         } else {
             fOptions = null;
         }
 
         // Get payload if any.
-        if (packet.array().length - packet.position() > 0) {
-            byte[] array = new byte[packet.array().length - packet.position()];
-            packet.get(array);
-            ByteBuffer payload = ByteBuffer.wrap(array);
+        if (packet.limit() - packet.position() > 0) {
+            // Slice the payload out of the packet, without copying it.
+            ByteBuffer payload = packet.slice();
             payload.order(ByteOrder.BIG_ENDIAN);
-            payload.position(0);
             fPayload = payload;
         } else {
             fPayload = null;
         }
 
-        // find child packet
-        fChildPacket = findChildPacket();
+        // The child packet is found on demand, see getChildPacket().
 
     }
 
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
-    }
-
     @Override
     public @Nullable ByteBuffer getPayload() {
         return fPayload;
@@ -164,7 +166,7 @@ public class TCPPacket extends Packet {
             return null;
         }
 
-        return new UnknownPacket(getPcapFile(), this, payload);
+        return new UnknownPacket(getPcapFile(), this, payload.duplicate());
     }
 
     @Override
@@ -172,7 +174,7 @@ public class TCPPacket extends Packet {
         final ByteBuffer payload = fPayload;
         int length = 0;
         if (payload != null) {
-            length = payload.array().length;
+            length = payload.limit();
         }
 
         String flagString = ""; // TODO Finish it. Im just too lazy. //$NON-NLS-1$
@@ -181,7 +183,7 @@ public class TCPPacket extends Packet {
                 "\nHeader length: " + fDataOffset * TCPValues.BLOCK_SIZE + " bytes, Data length: " + length + //$NON-NLS-1$ //$NON-NLS-2$
                 "\n" + flagString + "Window size value: " + fWindowSize + ", Urgent Pointer: " + String.format("%s%04x", "0x", fUrgentPointer) + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
                 "\nChecksum: " + String.format("%s%04x", "0x", fChecksum) + "\n"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -382,11 +384,13 @@ public class TCPPacket extends Packet {
      * @return The options of the packet.
      */
     public byte @Nullable [] getOptions() {
-        byte[] options = fOptions;
+        ByteBuffer options = fOptions;
         if (options == null) {
             return null;
         }
-        return Arrays.copyOf(options, options.length);
+        byte[] array = new byte[options.limit()];
+        options.duplicate().get(array);
+        return array;
     }
 
     @Override
@@ -442,7 +446,7 @@ public class TCPPacket extends Packet {
                     .put("Window Size Value", String.valueOf(fWindowSize)) //$NON-NLS-1$
                     .put("Checksum", String.format("%s%04x", "0x", fChecksum)) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
                     .put("Urgent Pointer", String.format("%s%04x", "0x", fUrgentPointer)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-            byte[] options = fOptions;
+            byte[] options = getOptions();
             if (options == null) {
                 builder.put("Options", EMPTY_STRING); //$NON-NLS-1$
             } else {
@@ -566,7 +570,7 @@ public class TCPPacket extends Packet {
         result = prime * result + (int) (fAcknowledgmentNumber ^ (fAcknowledgmentNumber >>> 32));
         result = prime * result + (fCWRFlag ? 1231 : 1237);
         result = prime * result + fChecksum;
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             result = prime * result + child.hashCode();
         } else {
@@ -577,7 +581,7 @@ public class TCPPacket extends Packet {
         result = prime * result + (fECEFlag ? 1231 : 1237);
         result = prime * result + (fFINFlag ? 1231 : 1237);
         result = prime * result + (fNSFlag ? 1231 : 1237);
-        result = prime * result + Arrays.hashCode(fOptions);
+        result = prime * result + Objects.hashCode(fOptions);
         result = prime * result + (fPSHFlag ? 1231 : 1237);
         final ByteBuffer payload = fPayload;
         if (payload != null) {
@@ -620,7 +624,7 @@ public class TCPPacket extends Packet {
         if (fChecksum != other.fChecksum) {
             return false;
         }
-        if(!NonNullUtils.equalsNullable(fChildPacket, other.fChildPacket)){
+        if(!NonNullUtils.equalsNullable(getChildPacket(), other.getChildPacket())){
             return false;
         }
         if (fDataOffset != other.fDataOffset) {
@@ -638,7 +642,7 @@ public class TCPPacket extends Packet {
         if (fNSFlag != other.fNSFlag) {
             return false;
         }
-        if (!Arrays.equals(fOptions, other.fOptions)) {
+        if (!NonNullUtils.equalsNullable(fOptions, other.fOptions)) {
             return false;
         }
         if (fPSHFlag != other.fPSHFlag) {
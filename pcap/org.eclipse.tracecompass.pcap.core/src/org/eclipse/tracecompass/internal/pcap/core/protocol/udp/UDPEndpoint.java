@@ -23,6 +23,8 @@ import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpoint;
  */
 public class UDPEndpoint extends ProtocolEndpoint {
 
+    private static final long serialVersionUID = -4471367669653240054L;
+
     private final int fPort;
 
     /**
@@ -35,7 +35,9 @@ import com.google.common.collect.ImmutableMap;
  */
 public class UDPPacket extends Packet {
 
-    private final @Nullable Packet fChildPacket;
+    /** Size in bytes of a UDP header */
+    private static final int UDP_HEADER_SIZE = 8;
+
     private final @Nullable ByteBuffer fPayload;
 
     private final int fSourcePort;
@@ -63,6 +65,10 @@ public class UDPPacket extends Packet {
     public UDPPacket(PcapFile file, @Nullable Packet parent, ByteBuffer packet) throws BadPacketException {
         super(file, parent, PcapProtocol.UDP);
 
+        if (packet.limit() < UDP_HEADER_SIZE) {
+            throw new BadPacketException("A UDP packet can't be smaller than 8 bytes."); //$NON-NLS-1$
+        }
+
         // The endpoints are lazy loaded. They are defined in the get*Endpoint()
         // methods.
         fSourceEndpoint = null;
@@ -78,28 +84,19 @@ public class UDPPacket extends Packet {
         fTotalLength = ConversionHelper.unsignedShortToInt(packet.getShort());
         fChecksum = ConversionHelper.unsignedShortToInt(packet.getShort());
 
-        if (packet.array().length - packet.position() > 0) {
-            byte[] array = new byte[packet.array().length - packet.position()];
-            packet.get(array);
-
-            ByteBuffer payload = ByteBuffer.wrap(array);
+        if (packet.limit() - packet.position() > 0) {
+            // Slice the payload out of the packet, without copying it.
+            ByteBuffer payload = packet.slice();
             payload.order(ByteOrder.BIG_ENDIAN);
-            payload.position(0);
             fPayload = payload;
         } else {
             fPayload = null;
         }
 
-        // Find child
-        fChildPacket = findChildPacket();
+        // The child packet is found on demand, see getChildPacket().
 
     }
 
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
-    }
-
     @Override
     public @Nullable ByteBuffer getPayload() {
         return fPayload;
@@ -120,14 +117,14 @@ public class UDPPacket extends Packet {
             return null;
         }
 
-        return new UnknownPacket(getPcapFile(), this, payload);
+        return new UnknownPacket(getPcapFile(), this, payload.duplicate());
     }
 
     @Override
     public String toString() {
         String string = getProtocol().getName() + ", Source Port: " + fSourcePort + ", Destination Port: " + fDestinationPort + //$NON-NLS-1$ //$NON-NLS-2$
                 ", Length: " + fTotalLength + ", Checksum: " + fChecksum + "\n"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -233,7 +230,7 @@ public class UDPPacket extends Packet {
         final int prime = 31;
         int result = 1;
         result = prime * result + fChecksum;
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             result = prime * result + child.hashCode();
         } else {
@@ -266,7 +263,7 @@ public class UDPPacket extends Packet {
         if (fChecksum != other.fChecksum) {
             return false;
         }
-        if(!NonNullUtils.equalsNullable(fChildPacket, other.fChildPacket)){
+        if(!NonNullUtils.equalsNullable(getChildPacket(), other.getChildPacket())){
             return false;
         }
         if (fDestinationPort != other.fDestinationPort) {
@@ -23,6 +23,8 @@ import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpoint;
  */
 public class UnknownEndpoint extends ProtocolEndpoint {
 
+    private static final long serialVersionUID = -4134823989012857885L;
+
     /**
      * Constructor of the {@link UnknownEndpoint} class. It takes a packet to
      * get its endpoint. Since every packet has two endpoints (source and
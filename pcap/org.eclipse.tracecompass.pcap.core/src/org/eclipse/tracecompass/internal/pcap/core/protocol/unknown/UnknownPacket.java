@@ -12,8 +12,6 @@
 
 package org.eclipse.tracecompass.internal.pcap.core.protocol.unknown;
 
-import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
-
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.util.Map;
@@ -39,7 +37,6 @@ import com.google.common.collect.ImmutableMap.Builder;
  */
 public class UnknownPacket extends Packet {
 
-    private final @Nullable Packet fChildPacket;
     private final ByteBuffer fPayload;
 
     private @Nullable UnknownEndpoint fSourceEndpoint;
@@ -69,13 +66,6 @@ public class UnknownPacket extends Packet {
 
         // Header is not used. All data go into payload.
         fPayload = packet;
-
-        fChildPacket = findChildPacket();
-    }
-
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
     }
 
     @Override
@@ -90,9 +80,9 @@ public class UnknownPacket extends Packet {
 
     @Override
     public String toString() {
-        byte[] array = checkNotNull(fPayload.array());
+        byte[] array = getPayloadBytes();
         String string = "Payload: " + ConversionHelper.bytesToHex(array, true); //$NON-NLS-1$
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -133,7 +123,7 @@ public class UnknownPacket extends Packet {
     public Map<String, String> getFields() {
         Map<String, String> map = fFields;
         if (map == null) {
-            byte[] array = checkNotNull(fPayload.array());
+            byte[] array = getPayloadBytes();
 
             Builder<String, String> builder = ImmutableMap.<@NonNull String, @NonNull String> builder()
                     .put("Binary", ConversionHelper.bytesToHex(array, true)); //$NON-NLS-1$
@@ -151,12 +141,24 @@ public class UnknownPacket extends Packet {
 
     @Override
     public String getLocalSummaryString() {
-        return "Len: " + fPayload.array().length + " bytes"; //$NON-NLS-1$ //$NON-NLS-2$
+        return "Len: " + fPayload.limit() + " bytes"; //$NON-NLS-1$ //$NON-NLS-2$
     }
 
     @Override
     protected String getSignificationString() {
-        return "Data: " + fPayload.array().length + " bytes"; //$NON-NLS-1$ //$NON-NLS-2$
+        return "Data: " + fPayload.limit() + " bytes"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Copy the payload into an array. The payload may be a slice of a larger
+     * buffer, or a direct buffer, so its backing array can't be used.
+     */
+    private byte[] getPayloadBytes() {
+        ByteBuffer payload = fPayload.duplicate();
+        payload.position(0);
+        byte[] array = new byte[payload.limit()];
+        payload.get(array);
+        return array;
     }
 
     @Override
@@ -172,7 +174,7 @@ public class UnknownPacket extends Packet {
     public int hashCode() {
         final int prime = 31;
         int result = prime;
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             result += child.hashCode();
         }
@@ -192,7 +194,7 @@ public class UnknownPacket extends Packet {
             return false;
         }
         UnknownPacket other = (UnknownPacket) obj;
-        if (!NonNullUtils.equalsNullable(fChildPacket, other.fChildPacket)) {
+        if (!NonNullUtils.equalsNullable(getChildPacket(), other.getChildPacket())) {
             return false;
         }
         if (!fPayload.equals(other.fPayload)) {
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.internal.pcap.core.stream;
 
+import java.io.Serializable;
+
 import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpointPair;
 import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
 import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
@@ -29,9 +31,14 @@ import com.google.common.math.DoubleMath;
  * For example, a TCP stream is a collection of packets that share the same MAC
  * address, IP address, and Port couple.
  *
+ * A stream only holds its endpoints and statistics, so it can be serialized to
+ * be reused the next time the file is opened.
+ *
  * @author Vincent Perot
  */
-public class PacketStream {
+public class PacketStream implements Serializable {
+
+    private static final long serialVersionUID = -1618412939735208361L;
 
     private static final double SECOND_TO_NANOSECOND = 1000000000.0;
     private static final double DELTA = 0.000000001;
@@ -112,6 +119,34 @@ public class PacketStream {
         fEndTime = Math.max(fEndTime, timestamp);
     }
 
+    /**
+     * Add the statistics of another stream with the same endpoints, built on
+     * another part of the file, to this stream.
+     *
+     * @param other
+     *            The stream to merge into this one.
+     */
+    synchronized void merge(PacketStream other) {
+        if (!fEndpointPair.equals(other.fEndpointPair)) {
+            throw new IllegalArgumentException();
+        }
+
+        /* The other stream may have seen its endpoints in the other order */
+        if (fEndpointPair.getFirstEndpoint().equals(other.fEndpointPair.getFirstEndpoint())) {
+            fNbPacketsAtoB += other.getNbPacketsAtoB();
+            fNbPacketsBtoA += other.getNbPacketsBtoA();
+            fNbBytesAtoB += other.getNbBytesAtoB();
+            fNbBytesBtoA += other.getNbBytesBtoA();
+        } else {
+            fNbPacketsAtoB += other.getNbPacketsBtoA();
+            fNbPacketsBtoA += other.getNbPacketsAtoB();
+            fNbBytesAtoB += other.getNbBytesBtoA();
+            fNbBytesBtoA += other.getNbBytesAtoB();
+        }
+        fStartTime = Math.min(fStartTime, other.getStartTime());
+        fEndTime = Math.max(fEndTime, other.getStopTime());
+    }
+
     /**
      * Get the Protocol of this stream.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -16,10 +16,21 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpoint;
 import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpointPair;
@@ -35,10 +46,17 @@ import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFile;
 /**
  * Class that parse an entire pcap file to build the different streams.
  *
+ * Large files are parsed in chunks of packets, concurrently. Each chunk builds
+ * its own partial streams, which are then merged in file order so that the
+ * stream IDs are the same as if the file was parsed sequentially.
+ *
  * @author Vincent Perot
  */
 public class PacketStreamBuilder {
 
+    /** Default number of packets parsed by a single task */
+    public static final int DEFAULT_CHUNK_SIZE = 100000;
+
     private final IPacketFilter fPacketFilter;
     private final PcapProtocol fProtocol;
 
@@ -128,6 +146,36 @@ public class PacketStreamBuilder {
         return;
     }
 
+    /**
+     * Method that adds streams built separately, for example on another part
+     * of the file, to this builder. A stream with the same endpoints as an
+     * existing stream is merged into it. The other streams are added, in the
+     * order of their IDs, after the existing ones.
+     *
+     * @param streams
+     *            The streams to add. They must be of the protocol of this
+     *            builder.
+     */
+    public synchronized void addStreams(Iterable<PacketStream> streams) {
+        List<PacketStream> sorted = new ArrayList<>();
+        streams.forEach(sorted::add);
+        sorted.sort(Comparator.comparingInt(PacketStream::getID));
+
+        for (PacketStream other : sorted) {
+            if (other.getProtocol() != fProtocol) {
+                throw new IllegalArgumentException();
+            }
+            ProtocolEndpointPair endpointSet = other.getEndpointPair();
+            Integer id = fIDs.get(endpointSet);
+            if (id == null) {
+                id = fCurrentId++;
+                fIDs.put(endpointSet, id);
+                fStreams.put(id, new PacketStream(fProtocol, id, endpointSet));
+            }
+            checkNotNull(fStreams.get(id)).merge(other);
+        }
+    }
+
     /**
      * Getter method for the protocol of the stream builder.
      *
@@ -166,21 +214,145 @@ public class PacketStreamBuilder {
      * @throws BadPcapFileException
      *             When the PcapFile is not valid.
      */
-    public synchronized void parsePcapFile(Path filePath) throws IOException, BadPcapFileException {
+    public void parsePcapFile(Path filePath) throws IOException, BadPcapFileException {
+        parsePcapFile(filePath, Collections.singletonList(this), new NullProgressMonitor());
+    }
+
+    /**
+     * Method that parse an entire file and build the streams of several
+     * builders at once. The file is split in chunks that are parsed
+     * concurrently, and the partial streams of each chunk are added to the
+     * builders in file order.
+     *
+     * @param filePath
+     *            The file path.
+     * @param builders
+     *            The builders to fill, one per protocol.
+     * @param monitor
+     *            The progress monitor, to cancel the parsing.
+     * @return Whether the whole file was parsed, false if it was cancelled.
+     * @throws IOException
+     *             When an IO error occurs.
+     * @throws BadPcapFileException
+     *             When the PcapFile is not valid.
+     */
+    public static boolean parsePcapFile(Path filePath, Collection<PacketStreamBuilder> builders, IProgressMonitor monitor) throws IOException, BadPcapFileException {
+        return parsePcapFile(filePath, builders, monitor, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Method that parse an entire file and build the streams of several
+     * builders at once, with a given number of packets per chunk.
+     *
+     * @param filePath
+     *            The file path.
+     * @param builders
+     *            The builders to fill, one per protocol.
+     * @param monitor
+     *            The progress monitor, to cancel the parsing.
+     * @param chunkSize
+     *            The number of packets parsed by a single task.
+     * @return Whether the whole file was parsed, false if it was cancelled.
+     * @throws IOException
+     *             When an IO error occurs.
+     * @throws BadPcapFileException
+     *             When the PcapFile is not valid.
+     */
+    public static boolean parsePcapFile(Path filePath, Collection<PacketStreamBuilder> builders, IProgressMonitor monitor, int chunkSize) throws IOException, BadPcapFileException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive."); //$NON-NLS-1$
+        }
+        List<PcapProtocol> protocols = new ArrayList<>();
+        for (PacketStreamBuilder builder : builders) {
+            protocols.add(builder.getProtocol());
+        }
+
+        /*
+         * Find where each chunk starts. This only reads the packet headers, and
+         * lets each task jump directly to its first packet.
+         */
+        List<Long> positions = new ArrayList<>();
+        long nbPackets;
+        try (PcapFile pcapFile = new PcapFile(filePath);) {
+            nbPackets = pcapFile.getTotalNbPackets();
+            for (long rank = 0; rank < nbPackets; rank += chunkSize) {
+                pcapFile.seekPacket(rank);
+                positions.add(pcapFile.getCurrentPosition());
+            }
+        }
+        if (positions.isEmpty()) {
+            return true;
+        }
+
+        int nbThreads = Math.min(positions.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<List<PacketStreamBuilder>>> chunks = new ArrayList<>();
+            for (int i = 0; i < positions.size(); i++) {
+                long position = positions.get(i);
+                long startRank = (long) i * chunkSize;
+                long endRank = Math.min(startRank + chunkSize, nbPackets);
+                chunks.add(executor.submit(() -> parseChunk(filePath, protocols, position, startRank, endRank, monitor)));
+            }
+
+            for (Future<List<PacketStreamBuilder>> chunk : chunks) {
+                List<PacketStreamBuilder> partialBuilders = chunk.get();
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+                int i = 0;
+                for (PacketStreamBuilder builder : builders) {
+                    builder.addStreams(partialBuilders.get(i++).getStreams());
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof BadPcapFileException) {
+                throw (BadPcapFileException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            executor.shutdownNow();
+        }
+        return true;
+    }
+
+    private static List<PacketStreamBuilder> parseChunk(Path filePath, List<PcapProtocol> protocols,
+            long position, long startRank, long endRank, IProgressMonitor monitor) throws IOException, BadPcapFileException {
+        List<PacketStreamBuilder> builders = new ArrayList<>();
+        for (PcapProtocol protocol : protocols) {
+            builders.add(new PacketStreamBuilder(checkNotNull(protocol)));
+        }
+
         try (PcapFile pcapFile = new PcapFile(filePath);) {
-            while (pcapFile.hasNextPacket()) { // not eof
-                PcapPacket packet;
+            pcapFile.seekPosition(position, startRank);
+            while (pcapFile.getCurrentRank() < endRank && pcapFile.hasNextPacket()) {
+                if (monitor.isCanceled()) {
+                    break;
+                }
+                long rank = pcapFile.getCurrentRank();
                 try {
-                    packet = pcapFile.parseNextPacket();
+                    PcapPacket packet = pcapFile.parseNextPacket();
                     if (packet == null) {
-                        return;
+                        break;
+                    }
+                    for (PacketStreamBuilder builder : builders) {
+                        builder.addPacketToStream(packet);
                     }
-                    addPacketToStream(packet);
                 } catch (BadPacketException e) {
-                    // Ignore packet. Do nothing.
+                    // Ignore packet. Make sure not to read it again.
+                    if (pcapFile.getCurrentRank() == rank) {
+                        pcapFile.skipNextPacket();
+                    }
                 }
             }
         }
-
+        return builders;
     }
 }
@@ -18,10 +18,13 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.TreeMap;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.pcap.core.packet.BadPacketException;
@@ -32,16 +35,29 @@ import org.eclipse.tracecompass.internal.pcap.core.util.PcapTimestampScale;
 /**
  * Class that allows the interaction with a pcap file.
  *
+ * The file is memory-mapped by windows, and the buffers of the packets are
+ * slices of those windows: reading a packet does not copy its data. The
+ * position of the packets are kept in a sparse index, one position every
+ * <code>indexStride</code> packets, and a seek to an arbitrary rank skips the
+ * packets following the closest indexed one.
+ *
  * @author Vincent Perot
  */
 public class PcapFile implements Closeable {
 
     // TODO add pcapng support.
-    // TODO Make parsing faster by buffering the data.
+
+    /** Default number of packets between two entries of the rank index */
+    public static final int DEFAULT_INDEX_STRIDE = 64;
+
+    /** Size of a mapped window of the file */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final int INITIAL_INDEX_SIZE = 1024;
 
     private final Path fPcapFilePath;
     private final ByteOrder fByteOrder;
-    private final SeekableByteChannel fFileChannel;
+    private final FileChannel fFileChannel;
     private final PcapTimestampScale fTimestampPrecision;
 
     private final int fMajorVersion;
@@ -51,8 +67,19 @@ public class PcapFile implements Closeable {
     private final long fSnapshotLength;
     private final long fDataLinkType;
 
-    private final TreeMap<Long, Long> fFileIndex;
+    /*
+     * fRankIndex[i] is the position of the packet of rank i * fIndexStride.
+     * The first fIndexSize entries are valid.
+     */
+    private final int fIndexStride;
+    private long[] fRankIndex;
+    private int fIndexSize;
+
+    private @Nullable MappedByteBuffer fWindow;
+    private long fWindowStart;
 
+    private long fFileSize;
+    private long fPosition;
     private long fCurrentRank;
     private long fTotalNumberPackets;
 
@@ -68,8 +95,32 @@ public class PcapFile implements Closeable {
      *             Thrown if there is an IO error while reading the file.
      */
     public PcapFile(Path filePath) throws BadPcapFileException, IOException {
+        this(filePath, DEFAULT_INDEX_STRIDE);
+    }
+
+    /**
+     * Constructor of the PcapFile Class, with a given density of the rank
+     * index.
+     *
+     * @param filePath
+     *            The path to the pcap file.
+     * @param indexStride
+     *            The number of packets between two entries of the rank index.
+     *            A smaller stride makes seeks faster but uses more memory.
+     *
+     * @throws BadPcapFileException
+     *             Thrown if the Pcap File is not valid.
+     * @throws IOException
+     *             Thrown if there is an IO error while reading the file.
+     */
+    public PcapFile(Path filePath, int indexStride) throws BadPcapFileException, IOException {
+        if (indexStride <= 0) {
+            throw new IllegalArgumentException("The index stride must be positive."); //$NON-NLS-1$
+        }
 
-        fFileIndex = new TreeMap<>();
+        fIndexStride = indexStride;
+        fRankIndex = new long[INITIAL_INDEX_SIZE];
+        fIndexSize = 0;
         fCurrentRank = 0;
         fTotalNumberPackets = -1;
         fPcapFilePath = filePath;
@@ -85,15 +136,13 @@ public class PcapFile implements Closeable {
         }
 
         // File is not empty. Try to open.
-        fFileChannel = checkNotNull(Files.newByteChannel(fPcapFilePath));
+        fFileChannel = checkNotNull(FileChannel.open(fPcapFilePath, StandardOpenOption.READ));
+        fFileSize = fFileChannel.size();
 
         // Parse the global header.
         // Read the magic number (4 bytes) from the input stream
         // and determine the mode (big endian or little endian)
-        ByteBuffer globalHeader = ByteBuffer.allocate(PcapFileValues.GLOBAL_HEADER_SIZE);
-        globalHeader.clear();
-        fFileChannel.read(globalHeader);
-        globalHeader.flip();
+        ByteBuffer globalHeader = getBuffer(0, PcapFileValues.GLOBAL_HEADER_SIZE);
         int magicNumber = globalHeader.getInt();
 
         switch (magicNumber) {
@@ -129,8 +178,84 @@ public class PcapFile implements Closeable {
         fSnapshotLength = ConversionHelper.unsignedIntToLong(globalHeader.getInt());
         fDataLinkType = ConversionHelper.unsignedIntToLong(globalHeader.getInt());
 
-        fFileIndex.put(fCurrentRank, fFileChannel.position());
+        fPosition = PcapFileValues.GLOBAL_HEADER_SIZE;
+        addIndexEntry();
+
+    }
+
+    /**
+     * Get a buffer on a region of the file. The buffer is a slice of a mapped
+     * window of the file, its position is 0 and its limit is the length of
+     * the region.
+     */
+    private ByteBuffer getBuffer(long position, int length) throws IOException {
+        MappedByteBuffer window = fWindow;
+        if (window == null || position < fWindowStart || position + length > fWindowStart + window.capacity()) {
+            /*
+             * Map a new window starting at the region. The previous window
+             * stays mapped as long as slices of it are referenced.
+             */
+            long size = Math.min(Math.max(WINDOW_SIZE, length), fFileSize - position);
+            window = checkNotNull(fFileChannel.map(MapMode.READ_ONLY, position, size));
+            fWindow = window;
+            fWindowStart = position;
+        }
+        ByteBuffer buffer = window.duplicate();
+        int offset = (int) (position - fWindowStart);
+        buffer.limit(offset + length);
+        buffer.position(offset);
+        return checkNotNull(buffer.slice());
+    }
+
+    /**
+     * Get the number of bytes remaining after the current position. The size
+     * of the file is only queried again when the cached size is reached, in
+     * case the file is still being written.
+     */
+    private long getRemainingBytes() throws IOException {
+        if (fPosition >= fFileSize) {
+            fFileSize = fFileChannel.size();
+        }
+        return fFileSize - fPosition;
+    }
+
+    /**
+     * Add the current position to the rank index if the current rank is the
+     * next one to index.
+     */
+    private void addIndexEntry() {
+        if (fCurrentRank % fIndexStride != 0 || fCurrentRank / fIndexStride != fIndexSize) {
+            return;
+        }
+        if (fIndexSize == fRankIndex.length) {
+            fRankIndex = Arrays.copyOf(fRankIndex, fRankIndex.length * 2);
+        }
+        fRankIndex[fIndexSize++] = fPosition;
+    }
+
+    /**
+     * Read the included length of the packet at the current position, and
+     * check that the file contains the whole packet.
+     *
+     * @return The included length, or -1 if the end of the file is reached.
+     */
+    private long readIncludedLength() throws IOException, BadPcapFileException {
+        long remaining = getRemainingBytes();
+        if (remaining == 0) {
+            return -1;
+        }
+        if (remaining < PcapFileValues.PACKET_HEADER_SIZE) {
+            throw new BadPcapFileException("A pcap header is invalid."); //$NON-NLS-1$
+        }
+
+        ByteBuffer pcapPacketHeader = getBuffer(fPosition, PcapFileValues.PACKET_HEADER_SIZE);
+        pcapPacketHeader.order(fByteOrder);
+        long includedPacketLength = ConversionHelper.unsignedIntToLong(pcapPacketHeader.getInt(PcapFileValues.INCLUDED_LENGTH_POSITION));
 
+        if (remaining - PcapFileValues.PACKET_HEADER_SIZE < includedPacketLength) {
+            throw new BadPcapFileException("A packet header is invalid."); //$NON-NLS-1$
+        }
+        return includedPacketLength;
     }
 
     /**
@@ -147,39 +272,26 @@ public class PcapFile implements Closeable {
     public synchronized @Nullable PcapPacket parseNextPacket() throws IOException, BadPcapFileException, BadPacketException {
 
         // Parse the packet header
-        if (fFileChannel.size() - fFileChannel.position() == 0) {
+        long includedPacketLength = readIncludedLength();
+        if (includedPacketLength < 0) {
             return null;
         }
-        if (fFileChannel.size() - fFileChannel.position() < PcapFileValues.PACKET_HEADER_SIZE) {
-            throw new BadPcapFileException("A pcap header is invalid."); //$NON-NLS-1$
-        }
-
-        ByteBuffer pcapPacketHeader = ByteBuffer.allocate(PcapFileValues.PACKET_HEADER_SIZE);
-        pcapPacketHeader.clear();
-        pcapPacketHeader.order(fByteOrder);
-
-        fFileChannel.read(pcapPacketHeader);
-
-        pcapPacketHeader.flip();
-        pcapPacketHeader.position(PcapFileValues.INCLUDED_LENGTH_POSITION);
-        long includedPacketLength = ConversionHelper.unsignedIntToLong(pcapPacketHeader.getInt());
-
-        if (fFileChannel.size() - fFileChannel.position() < includedPacketLength) {
-            throw new BadPcapFileException("A packet header is invalid."); //$NON-NLS-1$
-        }
 
-        if (includedPacketLength > Integer.MAX_VALUE) {
+        if (includedPacketLength > Integer.MAX_VALUE - PcapFileValues.PACKET_HEADER_SIZE) {
             throw new BadPacketException("Packets that are bigger than 2^31-1 bytes are not supported."); //$NON-NLS-1$
         }
 
-        ByteBuffer pcapPacketData = ByteBuffer.allocate((int) includedPacketLength);
-        pcapPacketData.clear();
-        pcapPacketHeader.order(ByteOrder.BIG_ENDIAN); // Not really needed.
-        fFileChannel.read(pcapPacketData);
+        // Map the header and the data together, then split them.
+        ByteBuffer packet = getBuffer(fPosition, PcapFileValues.PACKET_HEADER_SIZE + (int) includedPacketLength);
+        packet.limit(PcapFileValues.PACKET_HEADER_SIZE);
+        ByteBuffer pcapPacketHeader = checkNotNull(packet.slice());
+        packet.limit(packet.capacity());
+        packet.position(PcapFileValues.PACKET_HEADER_SIZE);
+        ByteBuffer pcapPacketData = checkNotNull(packet.slice());
 
-        pcapPacketData.flip();
-
-        fFileIndex.put(++fCurrentRank, fFileChannel.position());
+        fPosition += PcapFileValues.PACKET_HEADER_SIZE + includedPacketLength;
+        fCurrentRank++;
+        addIndexEntry();
 
         return new PcapPacket(this, null, pcapPacketHeader, pcapPacketData, fCurrentRank - 1);
 
@@ -195,31 +307,14 @@ public class PcapFile implements Closeable {
      */
     public synchronized void skipNextPacket() throws IOException, BadPcapFileException {
 
-        // Parse the packet header
-        if (fFileChannel.size() - fFileChannel.position() == 0) {
+        long includedPacketLength = readIncludedLength();
+        if (includedPacketLength < 0) {
             return;
         }
-        if (fFileChannel.size() - fFileChannel.position() < PcapFileValues.PACKET_HEADER_SIZE) {
-            throw new BadPcapFileException("A pcap header is invalid."); //$NON-NLS-1$
-        }
-
-        ByteBuffer pcapPacketHeader = ByteBuffer.allocate(PcapFileValues.PACKET_HEADER_SIZE);
-        pcapPacketHeader.clear();
-        pcapPacketHeader.order(fByteOrder);
-
-        fFileChannel.read(pcapPacketHeader);
-
-        pcapPacketHeader.flip();
-        pcapPacketHeader.position(PcapFileValues.INCLUDED_LENGTH_POSITION);
-        long includedPacketLength = ConversionHelper.unsignedIntToLong(pcapPacketHeader.getInt());
-
-        if (fFileChannel.size() - fFileChannel.position() < includedPacketLength) {
-            throw new BadPcapFileException("A packet header is invalid."); //$NON-NLS-1$
-        }
 
-        fFileChannel.position(fFileChannel.position() + includedPacketLength);
-
-        fFileIndex.put(++fCurrentRank, fFileChannel.position());
+        fPosition += PcapFileValues.PACKET_HEADER_SIZE + includedPacketLength;
+        fCurrentRank++;
+        addIndexEntry();
 
     }
 
@@ -241,21 +336,41 @@ public class PcapFile implements Closeable {
             throw new IllegalArgumentException();
         }
 
-        Long positionInBytes = fFileIndex.get(rank);
+        // Start from the current position if it is closer than the index.
+        long indexedRank = Math.min(rank / fIndexStride, fIndexSize - 1) * fIndexStride;
+        if (rank < fCurrentRank || fCurrentRank < indexedRank) {
+            int entry = (int) (indexedRank / fIndexStride);
+            fPosition = fRankIndex[entry];
+            fCurrentRank = indexedRank;
+        }
 
-        if (positionInBytes != null) {
-            // Index is known. Move to position.
-            fFileChannel.position(positionInBytes.longValue());
-            fCurrentRank = rank;
-        } else {
-            // Index is unknown. Find the corresponding position.
-            // Find closest index
-            fCurrentRank = fFileIndex.floorKey(rank);
-            // skip until wanted packet is found
-            do {
-                skipNextPacket();
-            } while (fCurrentRank != rank && hasNextPacket());
+        // skip until wanted packet is found
+        while (fCurrentRank != rank && hasNextPacket()) {
+            skipNextPacket();
+        }
+    }
+
+    /**
+     * Method that moves the position to a packet whose position in the file
+     * is already known, for example one returned by
+     * {@link #getCurrentPosition()} on another instance of the same file. This
+     * allows to start reading in the middle of a file without skipping all the
+     * packets before it.
+     *
+     * @param position
+     *            The position in the file of the packet header.
+     * @param rank
+     *            The rank of the packet at that position.
+     */
+    public synchronized void seekPosition(long position, long rank) {
+
+        // Verify arguments
+        if (position < PcapFileValues.GLOBAL_HEADER_SIZE || rank < 0) {
+            throw new IllegalArgumentException();
         }
+
+        fPosition = position;
+        fCurrentRank = rank;
     }
 
     /**
@@ -267,7 +382,7 @@ public class PcapFile implements Closeable {
      *             If some IO error occurs.
      */
     public synchronized boolean hasNextPacket() throws IOException {
-        return ((fFileChannel.size() - fFileChannel.position()) > 0);
+        return (getRemainingBytes() > 0);
     }
 
     /**
@@ -355,19 +470,31 @@ public class PcapFile implements Closeable {
     public synchronized long getTotalNbPackets() throws IOException, BadPcapFileException {
         if (fTotalNumberPackets == -1) {
             long rank = fCurrentRank;
-            fCurrentRank = fFileIndex.floorKey(rank);
+            long position = fPosition;
 
-            // skip until end of file.
+            // skip from the last indexed packet until end of file.
+            fPosition = fRankIndex[fIndexSize - 1];
+            fCurrentRank = (long) (fIndexSize - 1) * fIndexStride;
             while (hasNextPacket()) {
                 skipNextPacket();
             }
             fTotalNumberPackets = fCurrentRank;
             fCurrentRank = rank;
-            seekPacket(rank);
+            fPosition = position;
         }
         return fTotalNumberPackets;
     }
 
+    /**
+     * Getter method that returns the position in the file of the next packet
+     * to read.
+     *
+     * @return The current position, in bytes.
+     */
+    public synchronized long getCurrentPosition() {
+        return fPosition;
+    }
+
     /**
      * Getter method that returns the current rank in the file (the packet
      * number).
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -19,6 +19,13 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+
 import org.eclipse.tracecompass.internal.tmf.pcap.core.analysis.StreamListAnalysis;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.event.TmfPacketStreamBuilder;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.protocol.TmfPcapProtocol;
@@ -26,6 +33,7 @@ import org.eclipse.tracecompass.internal.tmf.pcap.core.trace.PcapTrace;
 import org.eclipse.tracecompass.pcap.core.tests.shared.PcapTestTrace;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.junit.Test;
 
 /**
@@ -130,4 +138,52 @@ public class StreamListAnalysisTest {
         pcapTrace.dispose();
     }
 
+    /**
+     * Method that verifies that streams saved for other files are not used,
+     * and are rebuilt from the trace.
+     *
+     * @throws TmfAnalysisException
+     *             Thrown when an analysis error occurs during the setup or
+     *             execution. Fails the test.
+     * @throws TmfTraceException
+     *             Thrown when the trace cannot be initialized. Fails the test.
+     * @throws IOException
+     *             Thrown when the saved streams cannot be written. Fails the
+     *             test.
+     */
+    @Test
+    public void staleStreamsTest() throws TmfAnalysisException, TmfTraceException, IOException {
+        PcapTestTrace trace = PcapTestTrace.MOSTLY_TCP;
+        assumeTrue(trace.exists());
+        String path = trace.getPath().toString();
+        PcapTrace pcapTrace = new PcapTrace();
+        StreamListAnalysis analysis = new StreamListAnalysis();
+
+        pcapTrace.initTrace(null, path, null);
+        analysis.setId(StreamListAnalysis.ID);
+
+        // Save no streams, for files that are not the ones of the trace.
+        Path file = Paths.get(TmfTraceManager.getSupplementaryFileDir(pcapTrace), StreamListAnalysis.ID + ".streams");
+        Files.createDirectories(file.getParent());
+        try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(file))) {
+            oos.writeObject("other.pcap,0,0\n");
+            oos.writeObject(new HashMap<>());
+        }
+
+        analysis.setTrace(pcapTrace);
+        analysis.schedule();
+        assertTrue(analysis.waitForCompletion());
+        assertTrue(analysis.isFinished());
+
+        TmfPacketStreamBuilder builder = analysis.getBuilder(TmfPcapProtocol.TCP);
+        if (builder == null) {
+            fail("The PacketStreamBuilder is null!");
+            return;
+        }
+        assertEquals(2, builder.getNbStreams());
+
+        analysis.dispose();
+        pcapTrace.dispose();
+    }
+
 }
@@ -37,6 +37,8 @@ import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * JUnit that test the PcapEventField class.
  *
@@ -47,6 +49,7 @@ public class PcapEventFieldTest {
     private static final @NonNull String EMPTY_STRING = "";
     private static PcapEventField fRegularField;
     private static PcapRootEventField fRootField;
+    private static PcapRootEventField fLazyRootField;
 
     /**
      * Initialize the Packet and the Event.
@@ -122,6 +125,7 @@ public class PcapEventFieldTest {
             ITmfEventField[] fieldArray = generatePacketFields(packet);
             fRegularField = new PcapEventField("Regular Field", EMPTY_STRING, fieldArray, packet);
             fRootField = new PcapRootEventField(fieldArray, packet);
+            fLazyRootField = new PcapRootEventField(packet);
         }
 
     }
@@ -193,6 +197,20 @@ public class PcapEventFieldTest {
 
     }
 
+    /**
+     * Method that tests that a root field dissecting the layers on demand has
+     * the same fields as a root field created with all its layers.
+     */
+    @Test
+    public void lazyRootFieldTest() {
+        assertEquals(fRootField.getField("Internet Protocol Version 4"), fLazyRootField.getField("Internet Protocol Version 4"));
+        assertEquals(fRootField.getFieldNames(), fLazyRootField.getFieldNames());
+        assertEquals(ImmutableList.copyOf(fRootField.getFields()), ImmutableList.copyOf(fLazyRootField.getFields()));
+        assertEquals(fRootField, fLazyRootField);
+        assertEquals(fRootField.hashCode(), fLazyRootField.hashCode());
+        assertEquals(fRootField.toString(), fLazyRootField.toString());
+    }
+
     /**
      * Method that teststhe toString() method for a non-root field.
      */
@@ -22,19 +22,27 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.unknown.UnknownPacket;
 import org.eclipse.tracecompass.internal.pcap.core.trace.BadPcapFileException;
 import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFile;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.event.PcapEvent;
+import org.eclipse.tracecompass.internal.tmf.pcap.core.event.PcapEventType;
+import org.eclipse.tracecompass.internal.tmf.pcap.core.event.PcapRootEventField;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.protocol.TmfPcapProtocol;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.trace.PcapTrace;
 import org.eclipse.tracecompass.pcap.core.tests.shared.PcapTestTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * JUnit that test the PcapEvent class.
@@ -152,4 +160,64 @@ public class PcapEventTest {
         assertEquals("Src: 145.254.160.237 , Dst: 65.208.228.223", fEvent.toString(TmfPcapProtocol.IPV4));
     }
 
+    /**
+     * Method that tests the type of PcapEvent, found from its most
+     * encapsulated protocol.
+     */
+    @Test
+    public void getTypeTest() {
+        assertEquals(PcapEventType.DEFAULT_PCAP_TYPE_ID + ":tcp", fEvent.getName());
+    }
+
+    /**
+     * Method that tests that reading the timestamp or the outermost layer of
+     * a PcapEvent does not dissect the encapsulated packets.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the pcap file is erroneous.
+     * @throws IOException
+     *             Thrown when an IO error occurs.
+     */
+    @Test
+    public void lazyDissectionTest() throws IOException, BadPcapFileException {
+        PcapTestTrace trace = PcapTestTrace.MOSTLY_TCP;
+        assumeTrue(trace.exists());
+        try (PcapFile pcap = new PcapFile(trace.getPath());) {
+            CountingPacket packet = new CountingPacket(pcap);
+            PcapEvent event = new PcapEvent(fEvent.getTrace(), 0, TmfTimestamp.fromNanos(42), "source",
+                    new PcapRootEventField(packet), "reference", packet);
+
+            assertEquals(42, event.getTimestamp().getValue());
+            ITmfEventField layer = event.getContent().getField(PcapProtocol.UNKNOWN.getName());
+            if (layer == null) {
+                fail("lazyDissectionTest() failed because the outermost layer is null!");
+                return;
+            }
+            assertEquals(packet.getFields().keySet(), ImmutableSet.copyOf(layer.getFieldNames()));
+            assertEquals(0, packet.fDissections);
+
+            /* Reading all the layers dissects the encapsulated packet */
+            assertEquals(2, event.getContent().getFields().size());
+            assertEquals(1, packet.fDissections);
+        }
+    }
+
+    /**
+     * Packet counting how many times its child packet is dissected
+     */
+    private static class CountingPacket extends UnknownPacket {
+
+        private int fDissections = 0;
+
+        public CountingPacket(PcapFile file) {
+            super(file, null, ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }));
+        }
+
+        @Override
+        protected Packet findChildPacket() {
+            fDissections++;
+            return new UnknownPacket(getPcapFile(), this, ByteBuffer.wrap(new byte[] { 3, 4 }));
+        }
+    }
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -12,6 +12,15 @@
 
 package org.eclipse.tracecompass.internal.tmf.pcap.core.analysis;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,22 +28,29 @@ import java.util.Map;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tracecompass.internal.tmf.pcap.core.event.PcapEvent;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
+import org.eclipse.tracecompass.internal.pcap.core.stream.PacketStream;
+import org.eclipse.tracecompass.internal.pcap.core.stream.PacketStreamBuilder;
+import org.eclipse.tracecompass.internal.pcap.core.trace.BadPcapFileException;
+import org.eclipse.tracecompass.internal.tmf.pcap.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.event.TmfPacketStreamBuilder;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.protocol.TmfPcapProtocol;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.trace.PcapTrace;
 import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
-import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
-import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
-import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
-import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 
 /**
  * A pcap-specific analysis that parse an entire trace to find all the streams.
  *
+ * The pcap files are parsed directly, in chunks that are processed
+ * concurrently, rather than through an event request. The resulting streams
+ * are saved in the trace's supplementary files, so that they are available
+ * immediately the next time the trace is opened. The saved streams are only
+ * used if the size and modification time of the pcap files did not change.
+ *
  * @author Vincent Perot
  */
 public class StreamListAnalysis extends TmfAbstractAnalysisModule {
@@ -44,7 +60,9 @@ public class StreamListAnalysis extends TmfAbstractAnalysisModule {
      */
     public static final String ID = "org.eclipse.linuxtools.tmf.pcap.core.analysis.stream"; //$NON-NLS-1$
 
-    private @Nullable ITmfEventRequest fRequest;
+    private static final String DATA_FILE_EXTENSION = ".streams"; //$NON-NLS-1$
+
+    private volatile boolean fFinished = false;
     private final Map<TmfPcapProtocol, TmfPacketStreamBuilder> fBuilders;
 
     /**
@@ -95,48 +113,124 @@ public class StreamListAnalysis extends TmfAbstractAnalysisModule {
             return false;
         }
 
-        ITmfEventRequest request = fRequest;
-        if ((request != null) && (!request.isCompleted())) {
-            request.cancel();
+        fFinished = false;
+        boolean finished = buildStreams(trace, mon);
+        fFinished = finished;
+        return finished;
+    }
+
+    private boolean buildStreams(ITmfTrace trace, IProgressMonitor mon) {
+        List<PacketStreamBuilder> builders = new ArrayList<>();
+        for (TmfPacketStreamBuilder builder : fBuilders.values()) {
+            PacketStreamBuilder packetStreamBuilder = builder.getPacketStreamBuilder();
+            packetStreamBuilder.clear();
+            builders.add(packetStreamBuilder);
         }
 
-        request = new TmfEventRequest(PcapEvent.class,
-                TmfTimeRange.ETERNITY, 0L, ITmfEventRequest.ALL_DATA,
-                ITmfEventRequest.ExecutionType.BACKGROUND) {
+        Collection<PcapTrace> pcapTraces = getPcapTraces(trace);
+        String stamp;
+        try {
+            stamp = getStamp(pcapTraces);
+        } catch (IOException e) {
+            Activator.logError("Error reading the files of trace " + trace.getName(), e); //$NON-NLS-1$
+            return false;
+        }
 
-            @Override
-            public void handleData(ITmfEvent data) {
-                // Called for each event
-                super.handleData(data);
-                if (!(data instanceof PcapEvent)) {
-                    return;
+        /* See if the streams of the same files were already saved on disk */
+        String dir = TmfTraceManager.getSupplementaryFileDir(trace);
+        final Path file = Paths.get(dir, getId() + DATA_FILE_EXTENSION);
+        if (Files.exists(file)) {
+            try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(file))) {
+                if (!stamp.equals(ois.readObject())) {
+                    throw new InvalidObjectException("The streams were saved for other files"); //$NON-NLS-1$
                 }
-                PcapEvent event = (PcapEvent) data;
-                for (Map.Entry<TmfPcapProtocol, TmfPacketStreamBuilder> entry : fBuilders.entrySet()) {
-                    entry.getValue().addEventToStream(event);
+                @SuppressWarnings("unchecked")
+                Map<PcapProtocol, List<PacketStream>> streams = (Map<PcapProtocol, List<PacketStream>>) ois.readObject();
+                for (PacketStreamBuilder builder : builders) {
+                    List<PacketStream> protocolStreams = streams.get(builder.getProtocol());
+                    if (protocolStreams != null) {
+                        builder.addStreams(protocolStreams);
+                    }
                 }
+                return true;
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                /*
+                 * We did not manage to read the file successfully, we will
+                 * just fall-through to rebuild a new one.
+                 */
+                builders.forEach(PacketStreamBuilder::clear);
+                try {
+                    Files.delete(file);
+                } catch (IOException e1) {
+                }
+            }
+        }
 
+        /* Parse the pcap files, in the order of the experiment */
+        for (PcapTrace pcapTrace : pcapTraces) {
+            try {
+                if (!PacketStreamBuilder.parsePcapFile(Paths.get(pcapTrace.getPath()), builders, mon)) {
+                    return false;
+                }
+            } catch (IOException | BadPcapFileException e) {
+                Activator.logError("Error building the streams of trace " + pcapTrace.getName(), e); //$NON-NLS-1$
+                return false;
             }
-        };
-        trace.sendRequest(request);
-        fRequest = request;
-        try {
-            request.waitForCompletion();
-        } catch (InterruptedException e) {
-            // Request was canceled.
+        }
+        if (mon.isCanceled()) {
             return false;
         }
 
-        return !mon.isCanceled() && !request.isCancelled() && !request.isFailed();
+        /* Serialize the streams to disk for future usage */
+        HashMap<PcapProtocol, ArrayList<PacketStream>> streams = new HashMap<>();
+        for (PacketStreamBuilder builder : builders) {
+            ArrayList<PacketStream> protocolStreams = new ArrayList<>();
+            builder.getStreams().forEach(protocolStreams::add);
+            streams.put(builder.getProtocol(), protocolStreams);
+        }
+        try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(file))) {
+            oos.writeObject(stamp);
+            oos.writeObject(streams);
+        } catch (IOException e) {
+            /*
+             * Didn't work, oh well. We will just rebuild it next time
+             */
+        }
+        return true;
+    }
+
+    /**
+     * Get a string identifying the contents of the pcap files, saved with the
+     * streams so that streams of modified or replaced files are not used.
+     */
+    private static String getStamp(Collection<PcapTrace> pcapTraces) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (PcapTrace pcapTrace : pcapTraces) {
+            Path path = Paths.get(pcapTrace.getPath());
+            sb.append(path.toAbsolutePath()).append(',')
+                    .append(Files.size(path)).append(',')
+                    .append(Files.getLastModifiedTime(path).toMillis()).append('\n');
+        }
+        return sb.toString();
+    }
 
+    private static Collection<PcapTrace> getPcapTraces(ITmfTrace trace) {
+        List<PcapTrace> pcapTraces = new ArrayList<>();
+        if (trace instanceof PcapTrace) {
+            pcapTraces.add((PcapTrace) trace);
+        } else if (trace instanceof TmfExperiment) {
+            for (ITmfTrace expTrace : ((TmfExperiment) trace).getTraces()) {
+                if (expTrace instanceof PcapTrace) {
+                    pcapTraces.add((PcapTrace) expTrace);
+                }
+            }
+        }
+        return pcapTraces;
     }
 
     @Override
     protected void canceling() {
-        ITmfEventRequest req = fRequest;
-        if ((req != null) && (!req.isCompleted())) {
-            req.cancel();
-        }
+        /* The parsing checks the progress monitor */
     }
 
     /**
@@ -157,11 +251,7 @@ public class StreamListAnalysis extends TmfAbstractAnalysisModule {
      * @return Whether the analysis is finished or not.
      */
     public boolean isFinished() {
-        ITmfEventRequest req = fRequest;
-        if (req == null) {
-            return false;
-        }
-        return req.isCompleted();
+        return fFinished;
     }
 
 }
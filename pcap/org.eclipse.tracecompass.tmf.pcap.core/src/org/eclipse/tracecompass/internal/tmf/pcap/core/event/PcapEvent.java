@@ -21,8 +21,10 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
 import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.protocol.TmfPcapProtocol;
+import org.eclipse.tracecompass.internal.tmf.pcap.core.util.PcapEventFactory;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.util.ProtocolConversion;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
@@ -56,6 +58,11 @@ public class PcapEvent extends TmfEvent {
      */
     private transient @Nullable Collection<TmfPcapProtocol> fProtocols;
 
+    /**
+     * Lazy-loaded type, when it was not given to the constructor
+     */
+    private transient @Nullable ITmfEventType fType;
+
     /**
      * Full constructor.
      *
@@ -91,6 +98,54 @@ public class PcapEvent extends TmfEvent {
         fReference = reference;
     }
 
+    /**
+     * Constructor of an event whose type is found from its packet when it is
+     * first read. The type depends on the most encapsulated protocol, so
+     * finding it dissects all the layers of the packet.
+     *
+     * @param trace
+     *            the parent trace
+     * @param rank
+     *            the event rank (in the trace)
+     * @param timestamp
+     *            the event timestamp
+     * @param source
+     *            the event source
+     * @param content
+     *            the event content (payload)
+     * @param reference
+     *            the event reference
+     * @param packet
+     *            The packet contained in this event
+     */
+    public PcapEvent(ITmfTrace trace,
+            long rank,
+            ITmfTimestamp timestamp,
+            String source,
+            ITmfEventField content,
+            String reference,
+            Packet packet) {
+
+        super(trace, rank, timestamp, null, content);
+        fPacket = packet;
+        fSource = source;
+        fReference = reference;
+    }
+
+    @Override
+    public ITmfEventType getType() {
+        ITmfEventType type = super.getType();
+        if (type != null) {
+            return type;
+        }
+        type = fType;
+        if (type == null) {
+            type = PcapEventFactory.getEventType(fPacket.getMostEcapsulatedPacket().getProtocol());
+            fType = type;
+        }
+        return type;
+    }
+
     /**
      * Return this event's source.
      *
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.internal.tmf.pcap.core.event;
 
+import java.util.Map;
+
 import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
@@ -24,6 +26,8 @@ import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
  */
 public class PcapEventField extends TmfEventField {
 
+    private static final String EMPTY_STRING = ""; //$NON-NLS-1$
+
     private final String fSummaryString;
 
     /**
@@ -56,6 +60,25 @@ public class PcapEventField extends TmfEventField {
         fSummaryString = field.fSummaryString;
     }
 
+    /**
+     * Create the field of a protocol layer, with the fields of the packet of
+     * that layer as subfields. Only the header of this layer is read, the
+     * encapsulated packets are not dissected.
+     *
+     * @param packet
+     *            The packet of the layer
+     * @return The field of the layer
+     */
+    public static PcapEventField createLayerField(Packet packet) {
+        Map<String, String> packetFields = packet.getFields();
+        ITmfEventField[] subfields = new ITmfEventField[packetFields.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : packetFields.entrySet()) {
+            subfields[i++] = new TmfEventField(entry.getKey(), entry.getValue(), null);
+        }
+        return new PcapEventField(packet.getProtocol().getName(), EMPTY_STRING, subfields, packet);
+    }
+
     @Override
     public String toString() {
         return fSummaryString;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2015 Ericsson
+ * Copyright (c) 2014, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -13,22 +13,46 @@
 
 package org.eclipse.tracecompass.internal.tmf.pcap.core.event;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.ObjectUtils;
 import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * Class that represents the root node of Pcap Event Field.
  *
+ * The root field has one sub-field per protocol layer of the packet. When it
+ * is created from a packet alone, the layers are only dissected when their
+ * field is read: looking up the field of a layer only dissects the packet
+ * down to that layer, and the inner layers are never decoded if only the
+ * outer ones are read.
+ *
  * @author Vincent Perot
  */
-public class PcapRootEventField extends TmfEventField {
+public class PcapRootEventField implements ITmfEventField {
+
+    private final Packet fPacket;
+
+    /* The fields of the layers dissected so far, in encapsulation order */
+    private final List<ITmfEventField> fLayers;
+    /* The packet of the last dissected layer, null once all are dissected */
+    private @Nullable Packet fLastPacket;
 
-    private final TmfEventField fPacketSourceField;
-    private final TmfEventField fPacketDestinationField;
-    private final TmfEventField fProtocolField;
-    private final String fSummaryString;
+    /* Created when first read */
+    private @Nullable TmfEventField fPacketSourceField = null;
+    private @Nullable TmfEventField fPacketDestinationField = null;
+    private @Nullable TmfEventField fProtocolField = null;
 
     /**
      * Full constructor
@@ -41,14 +65,25 @@ public class PcapRootEventField extends TmfEventField {
      *             If 'name' is null, or if 'fields' has duplicate field names.
      */
     public PcapRootEventField(ITmfEventField[] fields, Packet packet) {
-        super(ITmfEventField.ROOT_FIELD_ID, null, fields);
-        fPacketSourceField = new TmfEventField(PcapEvent.EVENT_FIELD_PACKET_SOURCE,
-                packet.getMostEcapsulatedPacket().getSourceEndpoint().toString(), null);
-        fPacketDestinationField = new TmfEventField(PcapEvent.EVENT_FIELD_PACKET_DESTINATION,
-                packet.getMostEcapsulatedPacket().getDestinationEndpoint().toString(), null);
-        fProtocolField = new TmfEventField(PcapEvent.EVENT_FIELD_PACKET_PROTOCOL,
-                packet.getMostEcapsulatedPacket().getProtocol().getShortName().toUpperCase(), null);
-        fSummaryString = packet.getGlobalSummaryString();
+        fPacket = packet;
+        fLayers = new ArrayList<>(Arrays.asList(fields));
+        if (fLayers.size() != toMap(fLayers).size()) {
+            throw new IllegalArgumentException("Duplicate field names"); //$NON-NLS-1$
+        }
+        fLastPacket = null;
+    }
+
+    /**
+     * Constructor of a root field whose layers are dissected on demand
+     *
+     * @param packet
+     *            The outermost packet, whose layers are the subfields.
+     */
+    public PcapRootEventField(Packet packet) {
+        fPacket = packet;
+        fLayers = new ArrayList<>();
+        fLayers.add(PcapEventField.createLayerField(packet));
+        fLastPacket = packet;
     }
 
     /**
@@ -58,32 +93,185 @@ public class PcapRootEventField extends TmfEventField {
      *            the other event field
      */
     public PcapRootEventField(final PcapRootEventField field) {
-        super(field);
-        fPacketSourceField = field.fPacketSourceField;
-        fPacketDestinationField = field.fPacketDestinationField;
-        fProtocolField = field.fProtocolField;
-        fSummaryString = field.fSummaryString;
+        fPacket = field.fPacket;
+        synchronized (field) {
+            fLayers = new ArrayList<>(field.fLayers);
+            fLastPacket = field.fLastPacket;
+        }
+    }
+
+    /**
+     * Dissect the next layer of the packet
+     *
+     * @return The field of the next layer, or <code>null</code> if all the
+     *         layers are dissected
+     */
+    private @Nullable ITmfEventField dissectNextLayer() {
+        Packet lastPacket = fLastPacket;
+        if (lastPacket == null) {
+            return null;
+        }
+        Packet child = lastPacket.getChildPacket();
+        fLastPacket = child;
+        if (child == null) {
+            return null;
+        }
+        ITmfEventField field = PcapEventField.createLayerField(child);
+        fLayers.add(field);
+        return field;
     }
 
+    private synchronized @Nullable ITmfEventField getLayer(String name) {
+        for (ITmfEventField layer : fLayers) {
+            if (layer.getName().equals(name)) {
+                return layer;
+            }
+        }
+        ITmfEventField layer = dissectNextLayer();
+        while (layer != null) {
+            if (layer.getName().equals(name)) {
+                return layer;
+            }
+            layer = dissectNextLayer();
+        }
+        return null;
+    }
+
+    private synchronized List<ITmfEventField> getLayers() {
+        while (dissectNextLayer() != null) {
+            /* Dissect all the layers */
+        }
+        return ImmutableList.copyOf(fLayers);
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfEventField
+    // ------------------------------------------------------------------------
+
     @Override
-    public String toString() {
-        return fSummaryString;
+    public String getName() {
+        return ITmfEventField.ROOT_FIELD_ID;
+    }
+
+    @Override
+    public @Nullable Object getValue() {
+        return null;
+    }
+
+    @Override
+    public String getFormattedValue() {
+        return String.valueOf(getValue());
+    }
+
+    @Override
+    public Collection<@NonNull String> getFieldNames() {
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        for (ITmfEventField layer : getLayers()) {
+            builder.add(layer.getName());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public Collection<? extends ITmfEventField> getFields() {
+        return getLayers();
     }
 
     @Override
     public @Nullable ITmfEventField getField(String... path) {
         if (path.length != 1) {
-            return super.getField(path);
+            ITmfEventField field = this;
+            for (String name : path) {
+                field = field.getField(name);
+                if (field == null) {
+                    return null;
+                }
+            }
+            return field;
         }
         switch (path[0]) {
         case PcapEvent.EVENT_FIELD_PACKET_SOURCE:
-            return fPacketSourceField;
+            return getPacketSourceField();
         case PcapEvent.EVENT_FIELD_PACKET_DESTINATION:
-            return fPacketDestinationField;
+            return getPacketDestinationField();
         case PcapEvent.EVENT_FIELD_PACKET_PROTOCOL:
-            return fProtocolField;
+            return getProtocolField();
         default:
-            return super.getField(path);
+            return getLayer(path[0]);
+        }
+    }
+
+    private synchronized TmfEventField getPacketSourceField() {
+        TmfEventField field = fPacketSourceField;
+        if (field == null) {
+            field = new TmfEventField(PcapEvent.EVENT_FIELD_PACKET_SOURCE,
+                    fPacket.getMostEcapsulatedPacket().getSourceEndpoint().toString(), null);
+            fPacketSourceField = field;
+        }
+        return field;
+    }
+
+    private synchronized TmfEventField getPacketDestinationField() {
+        TmfEventField field = fPacketDestinationField;
+        if (field == null) {
+            field = new TmfEventField(PcapEvent.EVENT_FIELD_PACKET_DESTINATION,
+                    fPacket.getMostEcapsulatedPacket().getDestinationEndpoint().toString(), null);
+            fPacketDestinationField = field;
+        }
+        return field;
+    }
+
+    private synchronized TmfEventField getProtocolField() {
+        TmfEventField field = fProtocolField;
+        if (field == null) {
+            field = new TmfEventField(PcapEvent.EVENT_FIELD_PACKET_PROTOCOL,
+                    fPacket.getMostEcapsulatedPacket().getProtocol().getShortName().toUpperCase(), null);
+            fProtocolField = field;
         }
+        return field;
+    }
+
+    // ------------------------------------------------------------------------
+    // Object
+    // ------------------------------------------------------------------------
+
+    @Override
+    public int hashCode() {
+        /* The same as the root TmfEventField of the same fields */
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + getName().hashCode();
+        result = prime * result + ObjectUtils.deepHashCode(getValue());
+        int fieldsHash = 0;
+        for (ITmfEventField field : getFields()) {
+            fieldsHash += field.getName().hashCode() ^ field.hashCode();
+        }
+        result = prime * result + fieldsHash;
+        return result;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        PcapRootEventField other = (PcapRootEventField) obj;
+        return toMap(getLayers()).equals(toMap(other.getLayers()));
+    }
+
+    private static Map<String, ITmfEventField> toMap(List<ITmfEventField> layers) {
+        Map<String, ITmfEventField> map = new LinkedHashMap<>();
+        for (ITmfEventField layer : layers) {
+            map.put(layer.getName(), layer);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return fPacket.getGlobalSummaryString();
     }
 }
@@ -42,6 +42,16 @@ public class TmfPacketStreamBuilder {
         fBuilder = new PacketStreamBuilder(ProtocolConversion.unwrap(protocol));
     }
 
+    /**
+     * Getter method for the wrapped stream builder, to fill it directly from
+     * the pcap file instead of event by event.
+     *
+     * @return The wrapped stream builder.
+     */
+    public PacketStreamBuilder getPacketStreamBuilder() {
+        return fBuilder;
+    }
+
     /**
      * Method that adds an event to this builder.
      *
@@ -15,26 +15,21 @@ package org.eclipse.tracecompass.internal.tmf.pcap.core.util;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
 import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
 import org.eclipse.tracecompass.internal.pcap.core.protocol.pcap.PcapPacket;
 import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFile;
 import org.eclipse.tracecompass.internal.pcap.core.util.LinkTypeHelper;
 import org.eclipse.tracecompass.internal.pcap.core.util.PcapTimestampScale;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.event.PcapEvent;
-import org.eclipse.tracecompass.internal.tmf.pcap.core.event.PcapEventField;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.event.PcapEventType;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.event.PcapRootEventField;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.trace.PcapTrace;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
-import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
@@ -48,7 +43,7 @@ public class PcapEventFactory {
 
     private static final String EMPTY_STRING = ""; //$NON-NLS-1$
 
-    private static final Map<PcapProtocol, TmfEventType> fEventTypes = new HashMap<>();
+    private static final Map<PcapProtocol, TmfEventType> fEventTypes = new ConcurrentHashMap<>();
 
     private PcapEventFactory() {
     }
@@ -86,40 +81,26 @@ public class PcapEventFactory {
 
         String dataLink = Messages.PcapEventFactory_LinkType + ':' + LinkTypeHelper.toString((int) pcapPacket.getPcapFile().getDataLinkType());
 
-        ITmfEventField[] fields = generatePacketFields(pcapPacket);
-        ITmfEventField field = new PcapRootEventField(fields, pcapPacket);
-        Packet packet = pcapPacket.getMostEcapsulatedPacket();
-        if (!fEventTypes.containsKey(packet.getProtocol())) {
-            String typeIdString = PcapEventType.DEFAULT_PCAP_TYPE_ID + ':' + packet.getProtocol().getShortName();
-            fEventTypes.put(packet.getProtocol(), new PcapEventType(typeIdString, null));
-        }
-        TmfEventType eventType = fEventTypes.get(packet.getProtocol());
-        if (eventType == null) {
-            eventType = new TmfEventType();
-        }
-        return new PcapEvent(trace, rank, tmfTimestamp, dataLink, eventType, field, fileName, packet);
-
+        /*
+         * The layers of the packet are only dissected when the fields or the
+         * type of the event are read.
+         */
+        ITmfEventField field = new PcapRootEventField(pcapPacket);
+        return new PcapEvent(trace, rank, tmfTimestamp, dataLink, field, fileName, pcapPacket);
     }
 
-    private static ITmfEventField[] generatePacketFields(Packet packet) {
-        // TODO This is SOOOOOOOOOOOOOOOOOOOOOOOOOOOOOOOOOO slow. Must find a
-        // way to use less intermediate data structures.
-        List<ITmfEventField> fieldList = new ArrayList<>();
-        List<ITmfEventField> subfieldList = new ArrayList<>();
-        Packet localPacket = packet.getPacket(PcapProtocol.PCAP);
-
-        while (localPacket != null) {
-            subfieldList.clear();
-            for (Map.Entry<String, String> entry : localPacket.getFields().entrySet()) {
-                String key = entry.getKey();
-                String value = entry.getValue();
-                subfieldList.add(new TmfEventField(key, value, null));
-            }
-            ITmfEventField[] subfieldArray = subfieldList.toArray(new ITmfEventField[subfieldList.size()]);
-            fieldList.add(new PcapEventField(localPacket.getProtocol().getName(), EMPTY_STRING, subfieldArray, localPacket));
-            localPacket = localPacket.getChildPacket();
-        }
-
-        return fieldList.toArray(new ITmfEventField[fieldList.size()]);
+    /**
+     * Get the event type of the events whose most encapsulated packet uses a
+     * given protocol.
+     *
+     * @param protocol
+     *            The protocol of the most encapsulated packet
+     * @return The event type
+     */
+    public static TmfEventType getEventType(PcapProtocol protocol) {
+        return checkNotNull(fEventTypes.computeIfAbsent(protocol, p -> {
+            String typeIdString = PcapEventType.DEFAULT_PCAP_TYPE_ID + ':' + p.getShortName();
+            return new PcapEventType(typeIdString, null);
+        }));
     }
 }
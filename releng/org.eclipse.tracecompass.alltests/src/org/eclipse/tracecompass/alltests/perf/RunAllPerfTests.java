@@ -22,6 +22,7 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
     org.eclipse.tracecompass.ctf.core.tests.perf.trace.TraceReadBenchmark.class,
     org.eclipse.tracecompass.ctf.core.tests.perf.trace.TraceSeekBenchmark.class,
+    org.eclipse.tracecompass.ctf.core.tests.perf.types.StructDecodeBenchmark.class,
 
     org.eclipse.tracecompass.lttng2.kernel.core.tests.perf.analysis.kernel.KernelAnalysisBenchmark.class,
     org.eclipse.tracecompass.lttng2.kernel.core.tests.perf.analysis.kernel.KernelAnalysisUsageBenchmark.class,
@@ -35,8 +36,12 @@ import org.junit.runners.Suite;
 
     org.eclipse.tracecompass.statesystem.core.tests.perf.historytree.HistoryTreeBackendBenchmark.class,
 
+    org.eclipse.tracecompass.tmf.core.tests.perf.filter.FilterBenchmark.class,
+    org.eclipse.tracecompass.tmf.core.tests.perf.statesystem.MipmapBenchmark.class,
     org.eclipse.tracecompass.tmf.core.tests.perf.synchronization.TimestampTransformBenchmark.class,
 
+    org.eclipse.tracecompass.tmf.analysis.xml.core.tests.perf.XmlStateProviderBenchmark.class,
+
     org.eclipse.tracecompass.tmf.ctf.core.tests.perf.experiment.ExperimentBenchmark.class
 })
 public class RunAllPerfTests {
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2016 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.analysis.xml.core.tests.perf;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
+import org.eclipse.tracecompass.tmf.analysis.xml.core.stateprovider.XmlStateSystemModule;
+import org.eclipse.tracecompass.tmf.analysis.xml.core.tests.common.TmfXmlTestFiles;
+import org.eclipse.tracecompass.tmf.analysis.xml.core.tests.module.XmlUtilsTest;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTraceUtils;
+import org.junit.Test;
+
+/**
+ * Benchmarks the time to build the state system of the XML analyses shipped
+ * with the tests. The XML model is built once when the module is created, so
+ * this measures the per-event cost of evaluating the state changes.
+ */
+public class XmlStateProviderBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.tracecompass#XML state provider#";
+    private static final int LOOP_COUNT = 25;
+    private static final int SMALL_TRACE_LOOP_COUNT = 500;
+
+    private static final @NonNull String TEST_TRACE_1 = "test_traces/testTrace1.xml";
+    private static final @NonNull String TEST_TRACE_2 = "test_traces/testTrace2.xml";
+
+    /**
+     * Run the kernel state provider of the valid test file on the "kernel"
+     * test trace
+     */
+    @Test
+    public void testValidFileKernelTrace() {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + "Valid file (kernel)");
+        perf.tagAsSummary(pm, "XML State Provider: Valid file (kernel)", Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            ITmfTrace trace = CtfTmfTestTraceUtils.getTrace(CtfTestTrace.KERNEL);
+            runOnce(pm, trace, TmfXmlTestFiles.VALID_FILE);
+            CtfTmfTestTraceUtils.dispose(CtfTestTrace.KERNEL);
+        }
+        pm.commit();
+    }
+
+    /**
+     * Run the state attribute test file, which uses all types of state
+     * attributes, on a small XML trace
+     */
+    @Test
+    public void testAttributes() {
+        runXmlTrace("Attributes", TmfXmlTestFiles.ATTRIBUTE_FILE, TEST_TRACE_1);
+    }
+
+    /**
+     * Run the conditions test file, which uses nested conditions, on a small
+     * XML trace
+     */
+    @Test
+    public void testConditions() {
+        runXmlTrace("Conditions", TmfXmlTestFiles.CONDITION_FILE, TEST_TRACE_2);
+    }
+
+    private static void runXmlTrace(String testName, TmfXmlTestFiles xmlFile, @NonNull String traceFile) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName);
+        perf.tagAsSummary(pm, "XML State Provider: " + testName, Dimension.CPU_TIME);
+
+        for (int i = 0; i < SMALL_TRACE_LOOP_COUNT; i++) {
+            ITmfTrace trace = XmlUtilsTest.initializeTrace(traceFile);
+            runOnce(pm, trace, xmlFile);
+            trace.dispose();
+        }
+        pm.commit();
+    }
+
+    private static void runOnce(PerformanceMeter pm, ITmfTrace trace, TmfXmlTestFiles xmlFile) {
+        XmlStateSystemModule module = XmlUtilsTest.initializeModule(xmlFile);
+        try {
+            module.setTrace(trace);
+
+            pm.start();
+            module.schedule();
+            assertTrue(module.waitForCompletion(new NullProgressMonitor()));
+            pm.stop();
+        } catch (TmfAnalysisException e) {
+            fail(e.getMessage());
+        } finally {
+            module.dispose();
+            /*
+             * Delete the supplementary files, so that the next iteration
+             * rebuilds the state system.
+             */
+            File suppDir = new File(TmfTraceManager.getSupplementaryFileDir(trace));
+            for (File file : suppDir.listFiles()) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@ package org.eclipse.tracecompass.tmf.analysis.xml.core.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -54,10 +55,13 @@ import org.w3c.dom.Element;
 public class TmfXmlCondition implements ITmfXmlCondition {
 
     private final List<TmfXmlCondition> fConditions = new ArrayList<>();
+    private final TmfXmlCondition[] fConditionArray;
     private final List<ITmfXmlStateValue> fStateValues;
     private final LogicalOperator fOperator;
     private final IXmlStateSystemContainer fContainer;
     private final ConditionOperator fConditionOperator;
+    /* Test on the result of compareTo, bound to the condition operator */
+    private final IntPredicate fComparison;
     private ConditionType fType;
     private @Nullable TmfXmlTimestampCondition fTimeCondition;
 
@@ -174,7 +178,31 @@ public class TmfXmlCondition implements ITmfXmlCondition {
         fTimeCondition = timeCondition;
         fContainer = container;
         fConditions.addAll(conditions);
+        fConditionArray = conditions.toArray(new TmfXmlCondition[conditions.size()]);
         fConditionOperator = conditionOperator;
+        fComparison = getComparison(conditionOperator);
+    }
+
+    private static IntPredicate getComparison(ConditionOperator operator) {
+        switch (operator) {
+        case EQ:
+            return result -> result == 0;
+        case NE:
+            return result -> result != 0;
+        case GE:
+            return result -> result >= 0;
+        case GT:
+            return result -> result > 0;
+        case LE:
+            return result -> result <= 0;
+        case LT:
+            return result -> result < 0;
+        case NONE:
+        default:
+            return result -> {
+                throw new IllegalArgumentException("TmfXmlCondition: invalid comparison operator."); //$NON-NLS-1$
+            };
+        }
     }
 
     private static void getStateValuesForXmlCondition(ITmfXmlModelFactory modelFactory, List<@Nullable Element> childElements, List<ITmfXmlStateValue> stateValues, IXmlStateSystemContainer container) {
@@ -242,11 +270,11 @@ public class TmfXmlCondition implements ITmfXmlCondition {
             if (fTimeCondition != null) {
                 return fTimeCondition.test(event, scenarioInfo);
             }
-        } else if (!fConditions.isEmpty()) {
+        } else if (fConditionArray.length != 0) {
             /* Verify a condition tree */
             switch (fOperator) {
             case AND:
-                for (ITmfXmlCondition childCondition : fConditions) {
+                for (ITmfXmlCondition childCondition : fConditionArray) {
                     if (!childCondition.test(event, scenarioInfo)) {
                         return false;
                     }
@@ -255,9 +283,9 @@ public class TmfXmlCondition implements ITmfXmlCondition {
             case NONE:
                 break;
             case NOT:
-                return !fConditions.get(0).test(event, scenarioInfo);
+                return !fConditionArray[0].test(event, scenarioInfo);
             case OR:
-                for (ITmfXmlCondition childCondition : fConditions) {
+                for (ITmfXmlCondition childCondition : fConditionArray) {
                     if (childCondition.test(event, scenarioInfo)) {
                         return true;
                     }
@@ -300,7 +328,7 @@ public class TmfXmlCondition implements ITmfXmlCondition {
             /* Get the value to compare to from the XML file */
             ITmfStateValue valueXML;
             valueXML = filter.getValue(event, scenarioInfo);
-            return compare(valueState, valueXML, fConditionOperator);
+            return fComparison.test(valueState.compareTo(valueXML));
         }
         /* Get the two values needed for the comparison */
         ITmfStateValue valuesXML1 = fStateValues.get(0).getValue(event, scenarioInfo);
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.Activator;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
@@ -48,6 +49,8 @@ public class TmfXmlEventHandler {
     /* list of states changes */
     private final List<TmfXmlStateChange> fStateChangeList = new ArrayList<>();
     private final String fName;
+    /* Prefix to match if the name ends with a wildcard, null otherwise */
+    private final @Nullable String fPrefix;
     private final IXmlStateSystemContainer fParent;
 
     /**
@@ -64,6 +67,7 @@ public class TmfXmlEventHandler {
         fParent = parent;
         String name = node.getAttribute(TmfXmlStrings.HANDLER_EVENT_NAME);
         fName = name;
+        fPrefix = name.endsWith(TmfXmlStrings.WILDCARD) ? name.replace(TmfXmlStrings.WILDCARD, TmfXmlStrings.NULL) : null;
 
         List<@NonNull Element> childElements = XmlUtils.getChildElements(node, TmfXmlStrings.STATE_CHANGE);
         /* load state changes */
@@ -74,18 +78,27 @@ public class TmfXmlEventHandler {
     }
 
     private boolean appliesToEvent(ITmfEvent event) {
-        String eventName = event.getName();
+        return appliesToEventName(event.getName());
+    }
 
+    /**
+     * Get whether this event handler applies to events of a given name
+     *
+     * @param eventName
+     *            The name of the event
+     * @return <code>true</code> if events of this name are handled by this
+     *         handler
+     * @since 2.0
+     */
+    public boolean appliesToEventName(String eventName) {
         /* test for full name */
         if (eventName.equals(fName)) {
             return true;
         }
 
         /* test for the wildcard at the end */
-        if ((fName.endsWith(TmfXmlStrings.WILDCARD) && eventName.startsWith(fName.replace(TmfXmlStrings.WILDCARD, TmfXmlStrings.NULL)))) {
-            return true;
-        }
-        return false;
+        String prefix = fPrefix;
+        return (prefix != null && eventName.startsWith(prefix));
     }
 
     /**
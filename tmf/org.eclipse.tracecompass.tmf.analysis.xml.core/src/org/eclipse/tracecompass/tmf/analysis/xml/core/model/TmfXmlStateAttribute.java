@@ -12,11 +12,11 @@
 
 package org.eclipse.tracecompass.tmf.analysis.xml.core.model;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
-import static org.eclipse.tracecompass.common.core.NonNullUtils.nullToEmptyString;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import org.eclipse.tracecompass.internal.tmf.analysis.xml.core.Activator;
@@ -78,6 +78,38 @@ public abstract class TmfXmlStateAttribute implements ITmfXmlStateAttribute {
 
     private final IXmlStateSystemContainer fContainer;
 
+    /** Resolver bound to the type of this attribute */
+    private final IQuarkResolver fResolver;
+
+    /** Locations referred to by a location attribute, resolved on first use */
+    private volatile TmfXmlLocation @Nullable [] fLocations = null;
+
+    /** Last quark resolved by a constant attribute */
+    private volatile @Nullable ResolvedQuark fLastResolved = null;
+
+    /**
+     * Resolves the quark of this attribute for an event. An implementation is
+     * chosen when the model is built, so that handling an event does not need
+     * to look at the attribute type again.
+     */
+    @FunctionalInterface
+    private interface IQuarkResolver {
+        int getQuark(@Nullable ITmfEvent event, int startQuark, @Nullable TmfXmlScenarioInfo scenarioInfo) throws AttributeNotFoundException;
+    }
+
+    /** A quark resolved from a given starting quark in a given state system */
+    private static final class ResolvedQuark {
+        private final @Nullable ITmfStateSystem fStateSystem;
+        private final int fStartQuark;
+        private final int fQuark;
+
+        public ResolvedQuark(@Nullable ITmfStateSystem ss, int startQuark, int quark) {
+            fStateSystem = ss;
+            fStartQuark = startQuark;
+            fQuark = quark;
+        }
+    }
+
     /**
      * Constructor
      *
@@ -131,6 +163,7 @@ public abstract class TmfXmlStateAttribute implements ITmfXmlStateAttribute {
         default:
             throw new IllegalArgumentException("TmfXmlStateAttribute constructor: The XML element is not of the right type"); //$NON-NLS-1$
         }
+        fResolver = createResolver();
     }
 
     /**
@@ -192,140 +225,9 @@ public abstract class TmfXmlStateAttribute implements ITmfXmlStateAttribute {
         if (ss == null) {
             throw new IllegalStateException("The state system hasn't been initialized yet"); //$NON-NLS-1$
         }
-        String name = nullToEmptyString(fName);
-        if (name.length() > 0 && name.charAt(0) == '#' && scenarioInfo == null) {
-            throw new IllegalStateException("XML Attribute needs " + fName + " but the data is not available.");  //$NON-NLS-1$//$NON-NLS-2$
-        }
-        name = name.equals(CURRENT_STATE) ? checkNotNull(scenarioInfo).getActiveState()
-                        : fName;
 
         try {
-            switch (fType) {
-            case CONSTANT: {
-                int quark;
-                if (name == null) {
-                    throw new IllegalStateException("Invalid attribute name"); //$NON-NLS-1$
-                }
-                if (name.equals(CURRENT_SCENARIO)) {
-                    return checkNotNull(scenarioInfo).getQuark();
-                }
-                if (startQuark == IXmlStateSystemContainer.ROOT_QUARK) {
-                    quark = getQuarkAbsoluteAndAdd(name);
-                } else {
-                    quark = getQuarkRelativeAndAdd(startQuark, name);
-                }
-                return quark;
-            }
-            case EVENTFIELD: {
-                int quark = IXmlStateSystemContainer.ERROR_QUARK;
-                if (event == null) {
-                    Activator.logWarning("XML State attribute: looking for an event field, but event is null"); //$NON-NLS-1$
-                    return quark;
-                }
-                if (name == null) {
-                    throw new IllegalStateException("Invalid attribute name"); //$NON-NLS-1$
-                }
-                if (name.equals(TmfXmlStrings.CPU)) {
-                    /* See if the event advertises a CPU aspect */
-                    Integer cpu = TmfTraceUtils.resolveIntEventAspectOfClassForEvent(
-                            event.getTrace(), TmfCpuAspect.class, event);
-                    if (cpu != null) {
-                        quark = getQuarkRelativeAndAdd(startQuark, cpu.toString());
-                    }
-                } else {
-                    final ITmfEventField content = event.getContent();
-                    /* stop if the event field doesn't exist */
-                    if (content.getField(name) == null) {
-                        return IXmlStateSystemContainer.ERROR_QUARK;
-                    }
-
-                    Object field = content.getField(name).getValue();
-
-                    if (field instanceof String) {
-                        String fieldString = (String) field;
-                        quark = getQuarkRelativeAndAdd(startQuark, fieldString);
-                    } else if (field instanceof Long) {
-                        Long fieldLong = (Long) field;
-                        quark = getQuarkRelativeAndAdd(startQuark, fieldLong.toString());
-                    } else if (field instanceof Integer) {
-                        Integer fieldInterger = (Integer) field;
-                        quark = getQuarkRelativeAndAdd(startQuark, fieldInterger.toString());
-                    }
-                }
-                return quark;
-            }
-            case QUERY: {
-                int quark;
-                ITmfStateValue value = TmfStateValue.nullValue();
-                int quarkQuery = IXmlStateSystemContainer.ROOT_QUARK;
-
-                for (ITmfXmlStateAttribute attrib : fQueryList) {
-                    quarkQuery = attrib.getAttributeQuark(event, quarkQuery, scenarioInfo);
-                    if (quarkQuery == IXmlStateSystemContainer.ERROR_QUARK) {
-                        break;
-                    }
-                }
-
-                // the query may fail: for example CurrentThread if there
-                // has not been a sched_switch event
-                if (quarkQuery != IXmlStateSystemContainer.ERROR_QUARK) {
-                    value = ss.queryOngoingState(quarkQuery);
-                }
-
-                switch (value.getType()) {
-                case INTEGER: {
-                    int result = value.unboxInt();
-                    quark = getQuarkRelativeAndAdd(startQuark, String.valueOf(result));
-                    break;
-                }
-                case LONG: {
-                    long result = value.unboxLong();
-                    quark = getQuarkRelativeAndAdd(startQuark, String.valueOf(result));
-                    break;
-                }
-                case STRING: {
-                    String result = value.unboxStr();
-                    quark = getQuarkRelativeAndAdd(startQuark, result);
-                    break;
-                }
-                case DOUBLE:
-                case NULL:
-                default:
-                    quark = IXmlStateSystemContainer.ERROR_QUARK; // error
-                    break;
-                }
-                return quark;
-            }
-            case LOCATION: {
-                int quark = startQuark;
-                String idLocation = name;
-
-                /* TODO: Add a fContainer.getLocation(id) method */
-                for (TmfXmlLocation location : fContainer.getLocations()) {
-                    if (location.getId().equals(idLocation)) {
-                        quark = location.getLocationQuark(event, quark, scenarioInfo);
-                        if (quark == IXmlStateSystemContainer.ERROR_QUARK) {
-                            break;
-                        }
-                    }
-                }
-                return quark;
-            }
-            case EVENTNAME: {
-                int quark = IXmlStateSystemContainer.ERROR_QUARK;
-                if (event == null) {
-                    Activator.logWarning("XML State attribute: looking for an eventname, but event is null"); //$NON-NLS-1$
-                    return quark;
-                }
-                quark = getQuarkRelativeAndAdd(startQuark, event.getName());
-                return quark;
-            }
-            case SELF:
-                return startQuark;
-            case NONE:
-            default:
-                return startQuark;
-            }
+            return fResolver.getQuark(event, startQuark, scenarioInfo);
         } catch (AttributeNotFoundException ae) {
             /*
              * This can be happen before the creation of the node for a query in
@@ -342,6 +244,227 @@ public abstract class TmfXmlStateAttribute implements ITmfXmlStateAttribute {
         }
     }
 
+    // ------------------------------------------------------------------------
+    // Pre-bound resolvers
+    // ------------------------------------------------------------------------
+
+    /**
+     * Build the resolver for this attribute. The type of the attribute and its
+     * name are known once the XML element is parsed, so everything that does
+     * not depend on the event is decided here instead of at every event.
+     */
+    private IQuarkResolver createResolver() {
+        final String name = fName;
+        if (name != null && name.length() > 0 && name.charAt(0) == '#') {
+            /* The name depends on the scenario, resolve it at event time */
+            return (event, startQuark, scenarioInfo) -> {
+                if (scenarioInfo == null) {
+                    throw new IllegalStateException("XML Attribute needs " + name + " but the data is not available."); //$NON-NLS-1$//$NON-NLS-2$
+                }
+                String scenarioName = name.equals(CURRENT_STATE) ? scenarioInfo.getActiveState() : name;
+                return resolveDynamic(scenarioName, event, startQuark, scenarioInfo);
+            };
+        }
+
+        switch (fType) {
+        case CONSTANT:
+            if (name == null) {
+                return (event, startQuark, scenarioInfo) -> {
+                    throw new IllegalStateException("Invalid attribute name"); //$NON-NLS-1$
+                };
+            }
+            return (event, startQuark, scenarioInfo) -> getCachedConstantQuark(name, startQuark);
+        case EVENTFIELD:
+            if (name == null) {
+                return (event, startQuark, scenarioInfo) -> {
+                    throw new IllegalStateException("Invalid attribute name"); //$NON-NLS-1$
+                };
+            }
+            if (name.equals(TmfXmlStrings.CPU)) {
+                return (event, startQuark, scenarioInfo) -> getCpuQuark(event, startQuark);
+            }
+            return (event, startQuark, scenarioInfo) -> getEventFieldQuark(name, event, startQuark);
+        case QUERY: {
+            final ITmfXmlStateAttribute[] query = fQueryList.toArray(new ITmfXmlStateAttribute[fQueryList.size()]);
+            return (event, startQuark, scenarioInfo) -> getQueryQuark(query, event, startQuark, scenarioInfo);
+        }
+        case LOCATION:
+            return (event, startQuark, scenarioInfo) -> getLocationQuark(getLocations(), event, startQuark, scenarioInfo);
+        case EVENTNAME:
+            return (event, startQuark, scenarioInfo) -> getEventNameQuark(event, startQuark);
+        case SELF:
+        case NONE:
+        default:
+            return (event, startQuark, scenarioInfo) -> startQuark;
+        }
+    }
+
+    /*
+     * Resolve the quark for a name that is only known at event time. This path
+     * is only taken by attributes referring to the scenario.
+     */
+    private int resolveDynamic(@Nullable String name, @Nullable ITmfEvent event, int startQuark, TmfXmlScenarioInfo scenarioInfo) throws AttributeNotFoundException {
+        switch (fType) {
+        case CONSTANT:
+            if (name == null) {
+                throw new IllegalStateException("Invalid attribute name"); //$NON-NLS-1$
+            }
+            if (name.equals(CURRENT_SCENARIO)) {
+                return scenarioInfo.getQuark();
+            }
+            return getConstantQuark(name, startQuark);
+        case EVENTFIELD:
+            if (name == null) {
+                throw new IllegalStateException("Invalid attribute name"); //$NON-NLS-1$
+            }
+            return getEventFieldQuark(name, event, startQuark);
+        case LOCATION:
+            return getLocationQuark(findLocations(name), event, startQuark, scenarioInfo);
+        case EVENTNAME:
+            return getEventNameQuark(event, startQuark);
+        case QUERY:
+        case SELF:
+        case NONE:
+        default:
+            return startQuark;
+        }
+    }
+
+    private int getCachedConstantQuark(String name, int startQuark) throws AttributeNotFoundException {
+        /*
+         * Attributes are never removed from the attribute tree, so the last
+         * resolved quark can be reused as long as the state system and the
+         * starting point are the same.
+         */
+        ITmfStateSystem ss = getStateSystem();
+        ResolvedQuark last = fLastResolved;
+        if (last != null && last.fStartQuark == startQuark && last.fStateSystem == ss) {
+            return last.fQuark;
+        }
+        int quark = getConstantQuark(name, startQuark);
+        fLastResolved = new ResolvedQuark(ss, startQuark, quark);
+        return quark;
+    }
+
+    private int getConstantQuark(String name, int startQuark) throws AttributeNotFoundException {
+        if (startQuark == IXmlStateSystemContainer.ROOT_QUARK) {
+            return getQuarkAbsoluteAndAdd(name);
+        }
+        return getQuarkRelativeAndAdd(startQuark, name);
+    }
+
+    private int getCpuQuark(@Nullable ITmfEvent event, int startQuark) throws AttributeNotFoundException {
+        if (event == null) {
+            Activator.logWarning("XML State attribute: looking for an event field, but event is null"); //$NON-NLS-1$
+            return IXmlStateSystemContainer.ERROR_QUARK;
+        }
+        /* See if the event advertises a CPU aspect */
+        Integer cpu = TmfTraceUtils.resolveIntEventAspectOfClassForEvent(
+                event.getTrace(), TmfCpuAspect.class, event);
+        if (cpu == null) {
+            return IXmlStateSystemContainer.ERROR_QUARK;
+        }
+        return getQuarkRelativeAndAdd(startQuark, cpu.toString());
+    }
+
+    private int getEventFieldQuark(String name, @Nullable ITmfEvent event, int startQuark) throws AttributeNotFoundException {
+        if (event == null) {
+            Activator.logWarning("XML State attribute: looking for an event field, but event is null"); //$NON-NLS-1$
+            return IXmlStateSystemContainer.ERROR_QUARK;
+        }
+        if (name.equals(TmfXmlStrings.CPU)) {
+            return getCpuQuark(event, startQuark);
+        }
+        final ITmfEventField field = event.getContent().getField(name);
+        /* stop if the event field doesn't exist */
+        if (field == null) {
+            return IXmlStateSystemContainer.ERROR_QUARK;
+        }
+
+        Object value = field.getValue();
+        if (value instanceof String) {
+            return getQuarkRelativeAndAdd(startQuark, (String) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            return getQuarkRelativeAndAdd(startQuark, value.toString());
+        }
+        return IXmlStateSystemContainer.ERROR_QUARK;
+    }
+
+    private int getQueryQuark(ITmfXmlStateAttribute[] query, @Nullable ITmfEvent event, int startQuark, @Nullable TmfXmlScenarioInfo scenarioInfo) throws AttributeNotFoundException {
+        ITmfStateSystem ss = checkNotNull(getStateSystem());
+        ITmfStateValue value = TmfStateValue.nullValue();
+        int quarkQuery = IXmlStateSystemContainer.ROOT_QUARK;
+
+        for (ITmfXmlStateAttribute attrib : query) {
+            quarkQuery = attrib.getAttributeQuark(event, quarkQuery, scenarioInfo);
+            if (quarkQuery == IXmlStateSystemContainer.ERROR_QUARK) {
+                break;
+            }
+        }
+
+        // the query may fail: for example CurrentThread if there
+        // has not been a sched_switch event
+        if (quarkQuery != IXmlStateSystemContainer.ERROR_QUARK) {
+            value = ss.queryOngoingState(quarkQuery);
+        }
+
+        switch (value.getType()) {
+        case INTEGER:
+            return getQuarkRelativeAndAdd(startQuark, String.valueOf(value.unboxInt()));
+        case LONG:
+            return getQuarkRelativeAndAdd(startQuark, String.valueOf(value.unboxLong()));
+        case STRING:
+            return getQuarkRelativeAndAdd(startQuark, value.unboxStr());
+        case DOUBLE:
+        case NULL:
+        default:
+            return IXmlStateSystemContainer.ERROR_QUARK; // error
+        }
+    }
+
+    private static int getLocationQuark(TmfXmlLocation[] locations, @Nullable ITmfEvent event, int startQuark, @Nullable TmfXmlScenarioInfo scenarioInfo) {
+        int quark = startQuark;
+        for (TmfXmlLocation location : locations) {
+            quark = location.getLocationQuark(event, quark, scenarioInfo);
+            if (quark == IXmlStateSystemContainer.ERROR_QUARK) {
+                break;
+            }
+        }
+        return quark;
+    }
+
+    private int getEventNameQuark(@Nullable ITmfEvent event, int startQuark) throws AttributeNotFoundException {
+        if (event == null) {
+            Activator.logWarning("XML State attribute: looking for an eventname, but event is null"); //$NON-NLS-1$
+            return IXmlStateSystemContainer.ERROR_QUARK;
+        }
+        return getQuarkRelativeAndAdd(startQuark, event.getName());
+    }
+
+    /*
+     * The locations of a container do not change once it is built, but they
+     * may not all be available yet when this attribute is constructed, so they
+     * are looked up by id the first time they are needed.
+     */
+    private TmfXmlLocation[] getLocations() {
+        TmfXmlLocation[] locations = fLocations;
+        if (locations == null) {
+            locations = findLocations(fName);
+            fLocations = locations;
+        }
+        return locations;
+    }
+
+    private TmfXmlLocation[] findLocations(@Nullable String id) {
+        List<TmfXmlLocation> locations = new ArrayList<>();
+        for (TmfXmlLocation location : fContainer.getLocations()) {
+            if (location.getId().equals(id)) {
+                locations.add(location);
+            }
+        }
+        return locations.toArray(new TmfXmlLocation[locations.size()]);
+    }
+
     @Override
     public String toString() {
         return "TmfXmlStateAttribute " + fType + ": " + fName; //$NON-NLS-1$ //$NON-NLS-2$
@@ -50,6 +50,7 @@ public abstract class TmfXmlStateValue implements ITmfXmlStateValue {
 
     /* Path in the State System */
     private final List<ITmfXmlStateAttribute> fPath;
+    private final ITmfXmlStateAttribute[] fPathArray;
     /* Event field to match with this state value */
     private final @Nullable String fEventField;
 
@@ -112,6 +113,7 @@ public abstract class TmfXmlStateValue implements ITmfXmlStateValue {
      */
     protected TmfXmlStateValue(ITmfXmlModelFactory modelFactory, Element node, IXmlStateSystemContainer container, List<ITmfXmlStateAttribute> attributes, @Nullable String eventField) {
         fPath = attributes;
+        fPathArray = attributes.toArray(new ITmfXmlStateAttribute[attributes.size()]);
         fContainer = container;
         fEventField = eventField;
         if (!node.getNodeName().equals(TmfXmlStrings.STATE_VALUE)) {
@@ -265,11 +267,12 @@ public abstract class TmfXmlStateValue implements ITmfXmlStateValue {
         if (fieldName.equals(TmfXmlStrings.TIMESTAMP)) {
             return TmfStateValue.newValueLong(event.getTimestamp().getValue());
         }
-        if (content.getField(fieldName) == null) {
+        final ITmfEventField eventField = content.getField(fieldName);
+        if (eventField == null) {
             return value;
         }
 
-        Object field = content.getField(fieldName).getValue();
+        Object field = eventField.getValue();
 
         /*
          * Try to find the right type. The type can be forced by
@@ -373,7 +376,7 @@ public abstract class TmfXmlStateValue implements ITmfXmlStateValue {
     public void handleEvent(@NonNull ITmfEvent event, @Nullable TmfXmlScenarioInfo scenarioInfo) throws AttributeNotFoundException, StateValueTypeException, TimeRangeException {
         int quark = IXmlStateSystemContainer.ROOT_QUARK;
 
-        for (ITmfXmlStateAttribute attribute : fPath) {
+        for (ITmfXmlStateAttribute attribute : fPathArray) {
             quark = attribute.getAttributeQuark(event, quark, scenarioInfo);
             /* the query is not valid, we stop the state change */
             if (quark == IXmlStateSystemContainer.ERROR_QUARK) {
@@ -49,6 +49,9 @@ public class XmlStateProvider extends AbstractTmfStateProvider implements IXmlSt
     /** List of all Event Handlers */
     private final List<TmfXmlEventHandler> fEventHandlers = new ArrayList<>();
 
+    /** Event handlers applying to each event name seen so far */
+    private final Map<String, List<TmfXmlEventHandler>> fHandlersByEventName = new HashMap<>();
+
     /** List of all Locations */
     private final @NonNull Set<@NonNull TmfXmlLocation> fLocations;
 
@@ -145,11 +148,29 @@ public class XmlStateProvider extends AbstractTmfStateProvider implements IXmlSt
 
     @Override
     protected void eventHandle(ITmfEvent event) {
-        for (TmfXmlEventHandler eventHandler : fEventHandlers) {
+        for (TmfXmlEventHandler eventHandler : getEventHandlers(event.getName())) {
             eventHandler.handleEvent(event);
         }
     }
 
+    /*
+     * The handlers matching an event name only depend on the name, so they are
+     * computed the first time an event of that name is seen.
+     */
+    private List<TmfXmlEventHandler> getEventHandlers(String eventName) {
+        List<TmfXmlEventHandler> handlers = fHandlersByEventName.get(eventName);
+        if (handlers == null) {
+            handlers = new ArrayList<>();
+            for (TmfXmlEventHandler eventHandler : fEventHandlers) {
+                if (eventHandler.appliesToEventName(eventName)) {
+                    handlers.add(eventHandler);
+                }
+            }
+            fHandlersByEventName.put(eventName, handlers);
+        }
+        return handlers;
+    }
+
     @Override
     public ITmfStateSystem getStateSystem() {
         return getStateSystemBuilder();
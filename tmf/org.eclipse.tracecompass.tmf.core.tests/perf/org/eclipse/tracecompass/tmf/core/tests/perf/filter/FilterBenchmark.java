@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.perf.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCompiledFilter;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfContentFieldAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.junit.Test;
+
+/**
+ * Benchmark of the evaluation of a filter tree, compared to the same filter
+ * compiled by {@link TmfCompiledFilter}
+ */
+public class FilterBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.tracecompass#Filter#";
+    private static final String TEST_SUMMARY = "Filter: ";
+
+    private static final @NonNull String NAME = "name";
+    private static final @NonNull String CPU = "cpu";
+    private static final @NonNull String FILENAME = "filename";
+    private static final String[] NAMES = { "open", "close", "read", "write", "mmap", "futex" };
+
+    /** Number of events checked by each run */
+    private static final int NB_EVENTS = 100000;
+    private static final int LOOP_COUNT = 10;
+
+    /**
+     * Benchmark a filter with a regex, a numerical comparison and string
+     * equalities on the same fields
+     */
+    @Test
+    public void testFilterPerformance() {
+        List<ITmfEvent> events = createEvents();
+        ITmfFilterTreeNode tree = createFilter();
+        runFilter("Filter tree", tree, events);
+        runFilter("Compiled filter", TmfCompiledFilter.compile(tree), events);
+    }
+
+    private static List<ITmfEvent> createEvents() {
+        Random random = new Random(0);
+        List<ITmfEvent> events = new ArrayList<>(NB_EVENTS);
+        for (int i = 0; i < NB_EVENTS; i++) {
+            ITmfEventField[] fields = new ITmfEventField[] {
+                    new TmfEventField(NAME, NAMES[random.nextInt(NAMES.length)], null),
+                    new TmfEventField(CPU, Long.valueOf(random.nextInt(8)), null),
+                    new TmfEventField(FILENAME, "/usr/lib/lib" + random.nextInt(1000) + ".so", null)
+            };
+            ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields);
+            events.add(new TmfEvent(null, i, TmfTimestamp.fromNanos(i * 1000L), null, content));
+        }
+        return events;
+    }
+
+    /**
+     * (filename matches "lib[0-9]*7\.so" and cpu > 3) or name == "open" or
+     * name == "close"
+     */
+    private static ITmfFilterTreeNode createFilter() {
+        TmfContentFieldAspect nameAspect = new TmfContentFieldAspect(NAME, NAME);
+        ITmfFilterTreeNode root = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(root);
+        TmfFilterAndNode and = new TmfFilterAndNode(or);
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(and);
+        matches.setEventAspect(new TmfContentFieldAspect(FILENAME, FILENAME));
+        matches.setRegex("lib[0-9]*7\\.so");
+        TmfFilterCompareNode compare = new TmfFilterCompareNode(and);
+        compare.setEventAspect(new TmfContentFieldAspect(CPU, CPU));
+        compare.setType(Type.NUM);
+        compare.setValue("3");
+        compare.setResult(1);
+        TmfFilterEqualsNode open = new TmfFilterEqualsNode(or);
+        open.setEventAspect(nameAspect);
+        open.setValue("open");
+        TmfFilterEqualsNode close = new TmfFilterEqualsNode(or);
+        close.setEventAspect(nameAspect);
+        close.setValue("close");
+        return root;
+    }
+
+    private static void runFilter(String testName, ITmfFilter filter, List<ITmfEvent> events) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName);
+        perf.tagAsSummary(pm, TEST_SUMMARY + testName, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            int count = 0;
+            pm.start();
+            for (ITmfEvent event : events) {
+                if (filter.matches(event)) {
+                    count++;
+                }
+            }
+            pm.stop();
+            if (count == 0) {
+                throw new IllegalStateException();
+            }
+        }
+        pm.commit();
+    }
+}
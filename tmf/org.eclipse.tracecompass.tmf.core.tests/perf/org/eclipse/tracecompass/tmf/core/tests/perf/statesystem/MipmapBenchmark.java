@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.perf.statesystem;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.statesystem.mipmap.AbstractTmfMipmapStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.mipmap.TmfStateSystemOperations;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.Test;
+
+/**
+ * Benchmark of the range queries of {@link TmfStateSystemOperations} on a
+ * mipmapped attribute, compared to the iteration of the state intervals of the
+ * same range
+ */
+public class MipmapBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.tracecompass#Mipmap#";
+    private static final String TEST_SUMMARY = "Mipmap: ";
+
+    private static final @NonNull String SSID = "mipmap-benchmark";
+    private static final @NonNull String ATTRIBUTE = "attribute";
+
+    /** Number of state changes of the attribute */
+    private static final int NB_VALUES = 100000;
+    private static final long INTERVAL = 1000L;
+    private static final int RESOLUTION = 16;
+    /** Number of random ranges queried by each run */
+    private static final int NB_QUERIES = 20;
+    /** Number of sub-ranges of a downsampling, as for a chart */
+    private static final int NB_PIXELS = 1000;
+    private static final int LOOP_COUNT = 10;
+
+    /**
+     * Benchmark the maximum and sum of random ranges, and the downsampling of
+     * the whole range
+     */
+    @Test
+    public void testMipmapPerformance() {
+        ITmfStateSystem ss = buildStateSystem();
+        try {
+            int quark = ss.getQuarkAbsolute(ATTRIBUTE);
+            long[][] ranges = createRanges(ss);
+            runRangeMax("Range max (mipmap)", ss, quark, ranges, true);
+            runRangeMax("Range max (iteration)", ss, quark, ranges, false);
+            runRangeSum("Range sum (mipmap)", ss, quark, ranges, true);
+            runRangeSum("Range sum (iteration)", ss, quark, ranges, false);
+            runDownsample("Downsample (mipmap)", ss, quark, true);
+            runDownsample("Downsample (iteration)", ss, quark, false);
+        } catch (AttributeNotFoundException | StateValueTypeException | StateSystemDisposedException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    private static ITmfStateSystem buildStateSystem() {
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend(SSID, 0));
+        MipmapStateProvider provider = new MipmapStateProvider();
+        provider.assignTargetStateSystem(ss);
+        Random random = new Random(0);
+        for (int i = 1; i <= NB_VALUES; i++) {
+            ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, TmfStateValue.newValueLong(random.nextInt(1000000)), null);
+            provider.processEvent(new TmfEvent(null, ITmfContext.UNKNOWN_RANK, TmfTimestamp.fromNanos(i * INTERVAL), null, content));
+        }
+        provider.dispose();
+        ss.waitUntilBuilt();
+        return ss;
+    }
+
+    private static long[][] createRanges(ITmfStateSystem ss) {
+        Random random = new Random(1);
+        long duration = ss.getCurrentEndTime() - ss.getStartTime();
+        long[][] ranges = new long[NB_QUERIES][];
+        for (int i = 0; i < NB_QUERIES; i++) {
+            long t1 = ss.getStartTime() + (long) (random.nextDouble() * duration);
+            long t2 = t1 + (long) (random.nextDouble() * (ss.getCurrentEndTime() - t1));
+            ranges[i] = new long[] { t1, t2 };
+        }
+        return ranges;
+    }
+
+    private static void runRangeMax(String testName, ITmfStateSystem ss, int quark, long[][] ranges, boolean mipmap)
+            throws AttributeNotFoundException, StateValueTypeException, StateSystemDisposedException {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName);
+        perf.tagAsSummary(pm, TEST_SUMMARY + testName, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            pm.start();
+            for (long[] range : ranges) {
+                long max = mipmap ? TmfStateSystemOperations.queryRangeMax(ss, range[0], range[1], quark).unboxLong() : iterateMax(ss, quark, range[0], range[1]);
+                if (max < 0) {
+                    throw new IllegalStateException();
+                }
+            }
+            pm.stop();
+        }
+        pm.commit();
+        for (long[] range : ranges) {
+            assertEquals(iterateMax(ss, quark, range[0], range[1]), TmfStateSystemOperations.queryRangeMax(ss, range[0], range[1], quark).unboxLong());
+        }
+    }
+
+    private static void runRangeSum(String testName, ITmfStateSystem ss, int quark, long[][] ranges, boolean mipmap)
+            throws AttributeNotFoundException, StateValueTypeException, StateSystemDisposedException {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName);
+        perf.tagAsSummary(pm, TEST_SUMMARY + testName, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            pm.start();
+            for (long[] range : ranges) {
+                long sum = mipmap ? TmfStateSystemOperations.queryRangeSum(ss, range[0], range[1], quark).unboxLong() : iterateSum(ss, quark, range[0], range[1]);
+                if (sum < 0) {
+                    throw new IllegalStateException();
+                }
+            }
+            pm.stop();
+        }
+        pm.commit();
+        for (long[] range : ranges) {
+            assertEquals(iterateSum(ss, quark, range[0], range[1]), TmfStateSystemOperations.queryRangeSum(ss, range[0], range[1], quark).unboxLong());
+        }
+    }
+
+    private static void runDownsample(String testName, ITmfStateSystem ss, int quark, boolean mipmap)
+            throws AttributeNotFoundException, StateValueTypeException, StateSystemDisposedException {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName);
+        perf.tagAsSummary(pm, TEST_SUMMARY + testName, Dimension.CPU_TIME);
+
+        long start = ss.getStartTime();
+        long end = ss.getCurrentEndTime();
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            pm.start();
+            if (mipmap) {
+                ITmfStateValue[] values = TmfStateSystemOperations.downsampleMax(ss, start, end, quark, NB_PIXELS);
+                if (values.length != NB_PIXELS) {
+                    throw new IllegalStateException();
+                }
+            } else {
+                long[] values = new long[NB_PIXELS];
+                double duration = end - start;
+                for (ITmfStateInterval interval : StateSystemUtils.queryHistoryRange(ss, quark, start, end)) {
+                    if (interval.getStateValue().isNull()) {
+                        continue;
+                    }
+                    long value = interval.getStateValue().unboxLong();
+                    int first = (int) Math.min(NB_PIXELS - 1, (Math.max(start, interval.getStartTime()) - start) * NB_PIXELS / duration);
+                    int last = (int) Math.min(NB_PIXELS - 1, (Math.min(end, interval.getEndTime()) - start) * NB_PIXELS / duration);
+                    for (int pixel = first; pixel <= last; pixel++) {
+                        values[pixel] = Math.max(values[pixel], value);
+                    }
+                }
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
+
+    private static long iterateMax(ITmfStateSystem ss, int quark, long t1, long t2)
+            throws AttributeNotFoundException, StateSystemDisposedException {
+        long max = Long.MIN_VALUE;
+        for (ITmfStateInterval interval : StateSystemUtils.queryHistoryRange(ss, quark, t1, t2)) {
+            if (!interval.getStateValue().isNull()) {
+                max = Math.max(max, interval.getStateValue().unboxLong());
+            }
+        }
+        return max;
+    }
+
+    private static long iterateSum(ITmfStateSystem ss, int quark, long t1, long t2)
+            throws AttributeNotFoundException, StateSystemDisposedException {
+        long sum = 0;
+        for (ITmfStateInterval interval : StateSystemUtils.queryHistoryRange(ss, quark, t1, t2)) {
+            if (!interval.getStateValue().isNull()) {
+                sum += interval.getStateValue().unboxLong();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * State provider assigning the value of the content of each event to a
+     * mipmapped attribute
+     */
+    private static class MipmapStateProvider extends AbstractTmfMipmapStateProvider {
+
+        public MipmapStateProvider() {
+            super(new TmfTraceStub(), SSID);
+        }
+
+        @Override
+        protected void eventHandle(ITmfEvent event) {
+            ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
+            try {
+                int quark = ss.getQuarkAbsoluteAndAdd(ATTRIBUTE);
+                ITmfStateValue value = (ITmfStateValue) event.getContent().getValue();
+                modifyMipmapAttribute(event.getTimestamp().toNanos(), value, quark, MAX | SUM, RESOLUTION);
+            } catch (TimeRangeException | AttributeNotFoundException | StateValueTypeException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int getVersion() {
+            return 0;
+        }
+
+        @Override
+        public MipmapStateProvider getNewInstance() {
+            return new MipmapStateProvider();
+        }
+    }
+}
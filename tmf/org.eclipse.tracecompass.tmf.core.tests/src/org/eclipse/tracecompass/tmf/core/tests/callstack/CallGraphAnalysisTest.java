@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.callstack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.tracecompass.tmf.core.callstack.CallGraphAnalysis;
+import org.eclipse.tracecompass.tmf.core.callstack.CallGraphNode;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.analysis.TestCallStackAnalysis;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub2;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test the {@link CallGraphAnalysis} class, with the calls of the
+ * {@link TestCallStackAnalysis} stub.
+ */
+public class CallGraphAnalysisTest {
+
+    /** Time-out tests after 1 minute. */
+    @Rule
+    public TestRule globalTimeout = new Timeout(1, TimeUnit.MINUTES);
+
+    private TmfTraceStub fTrace;
+    private CallGraphAnalysis fModule;
+
+    /**
+     * Setup the test trace and the analysis
+     *
+     * @throws TmfAnalysisException
+     *             If the analysis cannot be set on the trace
+     */
+    @Before
+    public void setUp() throws TmfAnalysisException {
+        fTrace = (TmfTraceStub) TmfTestTrace.A_TEST_10K.getTrace();
+        TmfSignalManager.deregister(fTrace);
+        fTrace.traceOpened(new TmfTraceOpenedSignal(this, fTrace, null));
+
+        fModule = new CallGraphAnalysis();
+        fModule.setTrace(fTrace);
+    }
+
+    /**
+     * Dispose the analysis and the trace
+     */
+    @After
+    public void tearDown() {
+        fModule.dispose();
+        TmfTestTrace.A_TEST_10K.dispose();
+    }
+
+    /**
+     * Test that the analysis only executes on traces with a call stack
+     * analysis
+     */
+    @Test
+    public void testCanExecute() {
+        assertTrue(fModule.canExecute(fTrace));
+        TmfTraceStub2 trace = new TmfTraceStub2();
+        try {
+            assertFalse(fModule.canExecute(trace));
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    /**
+     * Test the tree of the whole trace, with the calls of both threads
+     * aggregated
+     */
+    @Test
+    public void testWholeTrace() {
+        assertNull(fModule.getCallGraph());
+        fModule.schedule();
+        assertTrue(fModule.waitForCompletion());
+        CallGraphNode root = fModule.getCallGraph();
+        assertNotNull(root);
+        assertNull(root.getSymbol());
+        assertEquals(0, root.getDepth());
+        assertEquals(80, root.getTotalTime());
+        assertEquals(1, root.getChildren().size());
+
+        CallGraphNode main = root.getChild("main");
+        assertNotNull(main);
+        assertEquals(1, main.getDepth());
+        assertEquals(2, main.getCallCount());
+        assertEquals(80, main.getTotalTime());
+        assertEquals(50, main.getSelfTime());
+        assertEquals(30, main.getMinDuration());
+        assertEquals(50, main.getMaxDuration());
+        assertEquals(40.0, main.getAverageDuration(), 0.0);
+        assertEquals(2, main.getChildren().size());
+
+        CallGraphNode foo = main.getChild("foo");
+        assertNotNull(foo);
+        assertEquals(2, foo.getDepth());
+        assertEquals(2, foo.getCallCount());
+        assertEquals(20, foo.getTotalTime());
+        assertEquals(20, foo.getSelfTime());
+        assertEquals(10, foo.getMinDuration());
+        assertEquals(10, foo.getMaxDuration());
+        assertTrue(foo.getChildren().isEmpty());
+
+        CallGraphNode bar = main.getChild("bar");
+        assertNotNull(bar);
+        assertEquals(2, bar.getDepth());
+        assertEquals(1, bar.getCallCount());
+        assertEquals(10, bar.getTotalTime());
+        assertEquals(10, bar.getSelfTime());
+    }
+
+    /**
+     * Test the tree of a time range, where the calls crossing the bounds of
+     * the range are only counted for their part inside the range
+     */
+    @Test
+    public void testTimeRange() {
+        CallGraphNode root = fModule.getCallGraph(25, 42, new NullProgressMonitor());
+        assertNotNull(root);
+        assertEquals(34, root.getTotalTime());
+
+        CallGraphNode main = root.getChild("main");
+        assertNotNull(main);
+        assertEquals(2, main.getCallCount());
+        assertEquals(34, main.getTotalTime());
+        assertEquals(17, main.getSelfTime());
+
+        CallGraphNode foo = main.getChild("foo");
+        assertNotNull(foo);
+        assertEquals(2, foo.getCallCount());
+        assertEquals(7, foo.getTotalTime());
+        assertEquals(2, foo.getMinDuration());
+        assertEquals(5, foo.getMaxDuration());
+
+        CallGraphNode bar = main.getChild("bar");
+        assertNotNull(bar);
+        assertEquals(1, bar.getCallCount());
+        assertEquals(10, bar.getTotalTime());
+    }
+
+    /**
+     * Test that a range without calls gives an empty tree
+     */
+    @Test
+    public void testEmptyRange() {
+        CallGraphNode root = fModule.getCallGraph(100, 200, new NullProgressMonitor());
+        assertNotNull(root);
+        assertEquals(0, root.getTotalTime());
+        assertTrue(root.getChildren().isEmpty());
+    }
+}
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.event.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex;
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.Postings;
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.Term;
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndexQuery;
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndexWriter;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfContentFieldAspect;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfEventIndex} class, built by the
+ * {@link TmfEventIndexWriter} and queried by the {@link TmfEventIndexQuery}.
+ */
+@SuppressWarnings("javadoc")
+public class TmfEventIndexTest {
+
+    private static final String NAME = "name";
+    private static final String TID = "tid";
+    private static final String FILE = "file";
+    private static final String MESSAGE = "message";
+    private static final String[] NAMES = { "open", "openat", "close", "read", "write", "sched_switch" };
+    private static final int NB_EVENTS = 20000;
+    /* Small enough to write many segments */
+    private static final long SPILL_SIZE = 4096;
+
+    private final Map<String, ITmfEventAspect<?>> fAspects = new LinkedHashMap<>();
+    private final List<ITmfEvent> fEvents = new ArrayList<>();
+    private Path fDirectory;
+    private TmfEventIndex fIndex;
+
+    @Before
+    public void setUp() throws IOException {
+        fAspects.put(NAME, new TmfContentFieldAspect(NAME, NAME));
+        fAspects.put(TID, new TmfContentFieldAspect(TID, TID));
+        fAspects.put(FILE, new TmfContentFieldAspect(FILE, FILE));
+
+        Random random = new Random(0);
+        for (int i = 0; i < NB_EVENTS; i++) {
+            List<ITmfEventField> fields = new ArrayList<>();
+            /* Rare names and frequent names */
+            String name = NAMES[Math.min(random.nextInt(20), NAMES.length - 1)];
+            fields.add(new TmfEventField(NAME, name, null));
+            fields.add(new TmfEventField(TID, Long.valueOf(random.nextInt(200) - 10), null));
+            /* Some events have no file */
+            if (random.nextInt(3) != 0) {
+                fields.add(new TmfEventField(FILE, "/usr/lib/lib" + random.nextInt(300) + ".so", null));
+            }
+            ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields.toArray(new ITmfEventField[fields.size()]));
+            fEvents.add(new TmfEvent(null, i, TmfTimestamp.fromNanos(i), null, content));
+        }
+
+        fDirectory = Files.createTempDirectory("event-index");
+        TmfEventIndexWriter writer = new TmfEventIndexWriter(new ArrayList<>(fAspects.keySet()), fDirectory, SPILL_SIZE);
+        ITmfEventAspect<?>[] aspects = fAspects.values().toArray(new ITmfEventAspect<?>[fAspects.size()]);
+        for (ITmfEvent event : fEvents) {
+            Object[] values = new Object[aspects.length];
+            for (int i = 0; i < aspects.length; i++) {
+                values[i] = aspects[i].resolve(event);
+            }
+            writer.addEvent(values);
+        }
+        Path file = fDirectory.resolve("index.idx");
+        writer.write(file);
+        fIndex = TmfEventIndex.open(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        fIndex.close();
+        try (Stream<Path> files = Files.list(fDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(fDirectory);
+    }
+
+    private Object resolve(String field, int rank) {
+        return fAspects.get(field).resolve(fEvents.get(rank));
+    }
+
+    private void verifyPostings(Postings postings, boolean[] expected) throws IOException {
+        /* The next and previous matching rank from every rank */
+        long next = -1;
+        for (int rank = expected.length - 1; rank >= 0; rank--) {
+            if (expected[rank]) {
+                next = rank;
+            }
+            assertEquals(next, postings.next(rank));
+        }
+        long previous = -1;
+        for (int rank = 0; rank < expected.length; rank++) {
+            if (expected[rank]) {
+                previous = rank;
+            }
+            assertEquals(previous, postings.previous(rank));
+        }
+        assertEquals(-1, postings.next(expected.length));
+    }
+
+    @Test
+    public void testTerms() throws IOException {
+        assertEquals(NB_EVENTS, fIndex.getNbEvents());
+        assertTrue(fIndex.isIndexed(NAME));
+        assertFalse(fIndex.isIndexed("other"));
+        assertNull(fIndex.getTerm(NAME, "unknown"));
+        assertNull(fIndex.getMissingTerm(NAME));
+
+        for (String name : NAMES) {
+            Term term = fIndex.getTerm(NAME, name);
+            assertNotNull(term);
+            boolean[] expected = new boolean[NB_EVENTS];
+            int count = 0;
+            for (int rank = 0; rank < NB_EVENTS; rank++) {
+                expected[rank] = name.equals(resolve(NAME, rank));
+                count += expected[rank] ? 1 : 0;
+            }
+            assertEquals(count, term.getCount());
+            verifyPostings(fIndex.getPostings(term), expected);
+        }
+
+        Term missing = fIndex.getMissingTerm(FILE);
+        assertNotNull(missing);
+        boolean[] expected = new boolean[NB_EVENTS];
+        for (int rank = 0; rank < NB_EVENTS; rank++) {
+            expected[rank] = resolve(FILE, rank) == null;
+        }
+        verifyPostings(fIndex.getPostings(missing), expected);
+    }
+
+    @Test
+    public void testLookups() {
+        List<Term> terms = fIndex.getTermsWithPrefix(NAME, "open");
+        assertEquals(2, terms.size());
+        assertEquals("open", terms.get(0).getValue());
+        assertEquals("openat", terms.get(1).getValue());
+        assertTrue(fIndex.getTermsWithPrefix(NAME, "zzz").isEmpty());
+
+        terms = fIndex.getTermsInRange(TID, -5, 5);
+        assertEquals(11, terms.size());
+        for (int i = 0; i < terms.size(); i++) {
+            assertEquals(Long.valueOf(i - 5), terms.get(i).getNumber());
+        }
+        assertTrue(fIndex.getTermsInRange(TID, 1000, 2000).isEmpty());
+        assertTrue(fIndex.getTermsInRange(NAME, 0, Long.MAX_VALUE).isEmpty());
+        assertEquals(300, fIndex.getTerms(FILE, term -> term.getValue().endsWith(".so")).size());
+    }
+
+    @Test
+    public void testQueries() throws IOException {
+        List<ITmfFilterTreeNode> filters = new ArrayList<>();
+
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(null);
+        matches.setEventAspect(fAspects.get(NAME));
+        matches.setRegex("^open");
+        filters.add(matches);
+
+        TmfFilterMatchesNode notMatches = new TmfFilterMatchesNode(null);
+        notMatches.setEventAspect(fAspects.get(FILE));
+        notMatches.setRegex("lib1");
+        notMatches.setNot(true);
+        filters.add(notMatches);
+
+        TmfFilterEqualsNode equals = new TmfFilterEqualsNode(null);
+        equals.setEventAspect(fAspects.get(NAME));
+        equals.setValue("CLOSE");
+        equals.setIgnoreCase(true);
+        filters.add(equals);
+
+        TmfFilterContainsNode contains = new TmfFilterContainsNode(null);
+        contains.setEventAspect(fAspects.get(FILE));
+        contains.setValue("b12");
+        filters.add(contains);
+
+        for (int result = -1; result <= 1; result++) {
+            TmfFilterCompareNode compare = new TmfFilterCompareNode(null);
+            compare.setEventAspect(fAspects.get(TID));
+            compare.setType(Type.NUM);
+            compare.setValue("0x10");
+            compare.setResult(result);
+            filters.add(compare);
+        }
+
+        /* tid == 7 and name == "write", or file compares before "/usr/lib/lib2" */
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(root);
+        TmfFilterAndNode and = new TmfFilterAndNode(or);
+        TmfFilterCompareNode tid = new TmfFilterCompareNode(and);
+        tid.setEventAspect(fAspects.get(TID));
+        tid.setType(Type.NUM);
+        tid.setValue("7");
+        TmfFilterEqualsNode write = new TmfFilterEqualsNode(and);
+        write.setEventAspect(fAspects.get(NAME));
+        write.setValue("write");
+        TmfFilterCompareNode alpha = new TmfFilterCompareNode(or);
+        alpha.setEventAspect(fAspects.get(FILE));
+        alpha.setType(Type.ALPHA);
+        alpha.setValue("/usr/lib/lib2");
+        alpha.setResult(-1);
+        filters.add(root);
+
+        for (ITmfFilterTreeNode filter : filters) {
+            Postings postings = TmfEventIndexQuery.create(fIndex, fAspects, filter);
+            assertNotNull(filter.toString(), postings);
+            boolean[] expected = new boolean[NB_EVENTS];
+            for (int rank = 0; rank < NB_EVENTS; rank++) {
+                expected[rank] = filter.matches(fEvents.get(rank));
+            }
+            verifyPostings(postings, expected);
+        }
+    }
+
+    @Test
+    public void testMultiLineQuery() throws IOException {
+        /* Values spanning several lines, the regex dot must match the newlines */
+        String[] messages = { "first line\nsecond line", "first line", "second line\nfirst line", "first\nline" };
+        Map<String, ITmfEventAspect<?>> aspects = Collections.singletonMap(MESSAGE, new TmfContentFieldAspect(MESSAGE, MESSAGE));
+        List<ITmfEvent> events = new ArrayList<>();
+        TmfEventIndexWriter writer = new TmfEventIndexWriter(new ArrayList<>(aspects.keySet()), fDirectory, SPILL_SIZE);
+        for (int i = 0; i < messages.length; i++) {
+            ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null,
+                    new ITmfEventField[] { new TmfEventField(MESSAGE, messages[i], null) });
+            ITmfEvent event = new TmfEvent(null, i, TmfTimestamp.fromNanos(i), null, content);
+            events.add(event);
+            writer.addEvent(new Object[] { aspects.get(MESSAGE).resolve(event) });
+        }
+        Path file = fDirectory.resolve("multiline.idx");
+        writer.write(file);
+
+        try (TmfEventIndex index = TmfEventIndex.open(file)) {
+            for (String regex : new String[] { "first.*second", "^first.line$", "line.second" }) {
+                TmfFilterMatchesNode matches = new TmfFilterMatchesNode(null);
+                matches.setEventAspect(aspects.get(MESSAGE));
+                matches.setRegex(regex);
+                Postings postings = TmfEventIndexQuery.create(index, aspects, matches);
+                assertNotNull(regex, postings);
+                boolean[] expected = new boolean[events.size()];
+                for (int rank = 0; rank < events.size(); rank++) {
+                    expected[rank] = matches.matches(events.get(rank));
+                }
+                assertTrue(regex, expected[0] || expected[3]);
+                verifyPostings(postings, expected);
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedQueries() {
+        /* An aspect that is not indexed */
+        TmfFilterEqualsNode equals = new TmfFilterEqualsNode(null);
+        equals.setEventAspect(new TmfContentFieldAspect("other", "other"));
+        equals.setValue("open");
+        assertNull(TmfEventIndexQuery.create(fIndex, fAspects, equals));
+
+        /* A node that does not filter on values */
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        new TmfFilterTraceTypeNode(root);
+        assertNull(TmfEventIndexQuery.create(fIndex, fAspects, root));
+
+        /* A negated conjunction */
+        TmfFilterAndNode and = new TmfFilterAndNode(null);
+        and.setNot(true);
+        TmfFilterEqualsNode child = new TmfFilterEqualsNode(and);
+        child.setEventAspect(fAspects.get(NAME));
+        child.setValue("open");
+        assertNull(TmfEventIndexQuery.create(fIndex, fAspects, and));
+    }
+
+    @Test
+    public void testDroppedField() throws IOException {
+        TmfEventIndexWriter writer = new TmfEventIndexWriter(Arrays.asList(NAME, FILE), fDirectory);
+        char[] chars = new char[2000];
+        Arrays.fill(chars, 'a');
+        writer.addEvent(new Object[] { "open", "short" });
+        writer.addEvent(new Object[] { "close", new String(chars) });
+        writer.addEvent(new Object[] { "open", "short" });
+        Path file = fDirectory.resolve("dropped.idx");
+        writer.write(file);
+        try (TmfEventIndex index = TmfEventIndex.open(file)) {
+            assertEquals(3, index.getNbEvents());
+            assertTrue(index.isIndexed(NAME));
+            assertFalse(index.isIndexed(FILE));
+            Term open = index.getTerm(NAME, "open");
+            assertNotNull(open);
+            verifyPostings(index.getPostings(open), new boolean[] { true, false, true });
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws IOException {
+        Path file = fDirectory.resolve("invalid.idx");
+        Files.write(file, new byte[64]);
+        TmfEventIndex.open(file).close();
+    }
+}
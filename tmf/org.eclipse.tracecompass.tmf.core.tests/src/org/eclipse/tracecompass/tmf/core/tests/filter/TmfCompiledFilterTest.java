@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCompiledFilter;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfContentFieldAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAspectNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterObjectNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfCompiledFilter} class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfCompiledFilterTest {
+
+    private static final @NonNull String NUM = "num";
+    private static final @NonNull String DBL = "dbl";
+    private static final @NonNull String STR = "str";
+    private static final String[] WORDS = { "alpha", "Beta", "gamma 12", "0x1F", "3.5", "-7", "", "1.25" };
+    private static final String[] REGEXES = { "a", "^B", "\\d+", "[", "m{2}", ".*" };
+
+    private static final ITmfEventAspect<?>[] ASPECTS = {
+            new TmfContentFieldAspect(NUM, NUM),
+            new TmfContentFieldAspect(DBL, DBL),
+            new TmfContentFieldAspect(STR, STR),
+            new TmfContentFieldAspect("missing", "missing"),
+            ITmfEventAspect.BaseAspects.TIMESTAMP
+    };
+
+    /**
+     * Aspect that counts its resolutions
+     */
+    private static final class CountingAspect implements ITmfEventAspect<Object> {
+        private final AtomicInteger fCount = new AtomicInteger();
+
+        @Override
+        public String getName() {
+            return "count";
+        }
+
+        @Override
+        public String getHelpText() {
+            return "";
+        }
+
+        @Override
+        public @Nullable Object resolve(ITmfEvent event) {
+            fCount.incrementAndGet();
+            ITmfEventField field = event.getContent().getField(STR);
+            return field == null ? null : field.getValue();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private static List<ITmfEvent> createEvents(Random random, int count) {
+        List<ITmfEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<ITmfEventField> fields = new ArrayList<>();
+            if (random.nextInt(5) > 0) {
+                fields.add(new TmfEventField(NUM, Long.valueOf(random.nextInt(21) - 10), null));
+            }
+            if (random.nextInt(5) > 0) {
+                fields.add(new TmfEventField(DBL, Double.valueOf((random.nextInt(21) - 10) / 4.0), null));
+            }
+            if (random.nextInt(5) > 0) {
+                fields.add(new TmfEventField(STR, WORDS[random.nextInt(WORDS.length)], null));
+            }
+            ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields.toArray(new ITmfEventField[fields.size()]));
+            events.add(new TmfEvent(null, i, TmfTimestamp.fromNanos(random.nextInt(400) * 10000000L), null, content));
+        }
+        return events;
+    }
+
+    private static void createRandomNode(Random random, ITmfFilterTreeNode parent, int depth) {
+        int kind = random.nextInt(depth > 2 ? 5 : 7);
+        TmfFilterAspectNode aspectNode;
+        switch (kind) {
+        case 0: {
+            TmfFilterMatchesNode node = new TmfFilterMatchesNode(parent);
+            node.setNot(random.nextBoolean());
+            node.setRegex(REGEXES[random.nextInt(REGEXES.length)]);
+            aspectNode = node;
+            break;
+        }
+        case 1: {
+            TmfFilterContainsNode node = new TmfFilterContainsNode(parent);
+            node.setNot(random.nextBoolean());
+            node.setIgnoreCase(random.nextBoolean());
+            String word = WORDS[random.nextInt(WORDS.length)];
+            node.setValue(word.substring(0, random.nextInt(word.length() + 1)));
+            aspectNode = node;
+            break;
+        }
+        case 2: {
+            TmfFilterEqualsNode node = new TmfFilterEqualsNode(parent);
+            node.setNot(random.nextBoolean());
+            node.setIgnoreCase(random.nextBoolean());
+            node.setValue(WORDS[random.nextInt(WORDS.length)]);
+            aspectNode = node;
+            break;
+        }
+        case 3:
+        case 4: {
+            TmfFilterCompareNode node = new TmfFilterCompareNode(parent);
+            node.setNot(random.nextBoolean());
+            node.setResult(random.nextInt(3) - 1);
+            Type type = Type.values()[random.nextInt(Type.values().length)];
+            node.setType(type);
+            node.setValue(type == Type.TIMESTAMP ? "2" : WORDS[random.nextInt(WORDS.length)]);
+            aspectNode = node;
+            break;
+        }
+        case 5: {
+            TmfFilterAndNode node = new TmfFilterAndNode(parent);
+            node.setNot(random.nextBoolean());
+            int children = random.nextInt(4);
+            for (int i = 0; i < children; i++) {
+                createRandomNode(random, node, depth + 1);
+            }
+            return;
+        }
+        default: {
+            TmfFilterOrNode node = new TmfFilterOrNode(parent);
+            node.setNot(random.nextBoolean());
+            int children = random.nextInt(4);
+            for (int i = 0; i < children; i++) {
+                createRandomNode(random, node, depth + 1);
+            }
+            return;
+        }
+        }
+        aspectNode.setEventAspect(ASPECTS[random.nextInt(ASPECTS.length)]);
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testSameMatches() {
+        Random random = new Random(42);
+        List<ITmfEvent> events = createEvents(random, 200);
+        for (int i = 0; i < 500; i++) {
+            ITmfFilterTreeNode root = new TmfFilterRootNode();
+            int children = 1 + random.nextInt(3);
+            for (int j = 0; j < children; j++) {
+                createRandomNode(random, root, 0);
+            }
+            ITmfFilter compiled = TmfCompiledFilter.compile(root);
+            for (ITmfEvent event : events) {
+                assertEquals(root.toString(), root.matches(event), compiled.matches(event));
+            }
+        }
+    }
+
+    @Test
+    public void testNotTree() {
+        ITmfFilter filter = event -> true;
+        assertSame(filter, TmfCompiledFilter.compile(filter));
+    }
+
+    @Test
+    public void testAspectResolvedOnce() {
+        CountingAspect aspect = new CountingAspect();
+        ITmfFilterTreeNode root = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(root);
+        TmfFilterEqualsNode equals = new TmfFilterEqualsNode(or);
+        equals.setEventAspect(aspect);
+        equals.setValue("none");
+        TmfFilterContainsNode contains = new TmfFilterContainsNode(or);
+        contains.setEventAspect(aspect);
+        contains.setValue("none");
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(or);
+        matches.setEventAspect(aspect);
+        matches.setRegex("a");
+
+        ITmfFilter compiled = TmfCompiledFilter.compile(root);
+        List<ITmfEvent> events = createEvents(new Random(1), 100);
+        for (ITmfEvent event : events) {
+            compiled.matches(event);
+        }
+        assertEquals(events.size(), aspect.fCount.get());
+    }
+
+    @Test
+    public void testCheapConditionFirst() {
+        CountingAspect aspect = new CountingAspect();
+        ITmfFilterTreeNode root = new TmfFilterRootNode();
+        TmfFilterAndNode and = new TmfFilterAndNode(root);
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(and);
+        matches.setEventAspect(aspect);
+        matches.setRegex("a");
+        TmfFilterEqualsNode equals = new TmfFilterEqualsNode(and);
+        equals.setEventAspect(ASPECTS[0]);
+        equals.setValue("none");
+
+        ITmfFilter compiled = TmfCompiledFilter.compile(root);
+        for (ITmfEvent event : createEvents(new Random(2), 100)) {
+            assertFalse(compiled.matches(event));
+        }
+        /* The regex is never evaluated, since the equality never matches */
+        assertEquals(0, aspect.fCount.get());
+    }
+
+    @Test
+    public void testDelegateOrder() {
+        List<String> calls = new ArrayList<>();
+        ITmfFilterTreeNode root = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(root);
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(or);
+        matches.setEventAspect(ASPECTS[2]);
+        matches.setRegex("a");
+        new TmfFilterObjectNode(or, event -> calls.add("object") && false);
+
+        ITmfFilter compiled = TmfCompiledFilter.compile(root);
+        for (ITmfEvent event : createEvents(new Random(3), 100)) {
+            calls.clear();
+            assertEquals(root.matches(event), compiled.matches(event));
+            int expected = calls.size();
+            calls.clear();
+            compiled.matches(event);
+            /* The stateful node is called exactly as by the tree */
+            assertEquals(expected, calls.size());
+        }
+    }
+
+    @Test
+    public void testConcurrentMatches() throws Exception {
+        Random random = new Random(4);
+        List<ITmfEvent> events = createEvents(random, 2000);
+        ITmfFilterTreeNode root = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(root);
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(or);
+        matches.setEventAspect(ASPECTS[2]);
+        matches.setRegex("\\d+");
+        TmfFilterCompareNode compare = new TmfFilterCompareNode(or);
+        compare.setEventAspect(ASPECTS[0]);
+        compare.setType(Type.NUM);
+        compare.setValue("3");
+        compare.setResult(1);
+        ITmfFilter compiled = TmfCompiledFilter.compile(root);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    for (ITmfEvent event : events) {
+                        if (root.matches(event) != compiled.matches(event)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterRankBitmap;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfFilterRankBitmap} class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfFilterRankBitmapTest {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Build the bits of a few blocks: an empty block, a sparse block, a dense
+     * block, a full block and a partial block
+     */
+    private static BitSet createBits(Random random, int length) {
+        BitSet bits = new BitSet(length);
+        for (int i = 0; i < length; i++) {
+            int block = i / BLOCK_SIZE;
+            boolean set;
+            switch (block % 4) {
+            case 0:
+                set = false;
+                break;
+            case 1:
+                set = random.nextInt(100) == 0;
+                break;
+            case 2:
+                set = random.nextBoolean();
+                break;
+            default:
+                set = true;
+                break;
+            }
+            bits.set(i, set);
+        }
+        return bits;
+    }
+
+    private static void verify(BitSet expected, TmfFilterRankBitmap bitmap, int length) {
+        assertEquals(length, bitmap.size());
+        assertEquals(expected.get(0, length).cardinality(), bitmap.getCardinality());
+        long index = 0;
+        for (int rank = 0; rank < length; rank++) {
+            assertEquals(expected.get(rank), bitmap.contains(rank));
+            assertEquals(index, bitmap.rank(rank));
+            if (expected.get(rank)) {
+                assertEquals(rank, bitmap.select(index));
+                index++;
+            }
+        }
+        assertEquals(-1, bitmap.select(index));
+        assertEquals(-1, bitmap.select(-1));
+        assertEquals(index, bitmap.rank(length));
+        assertEquals(false, bitmap.contains(length));
+        assertEquals(false, bitmap.contains(-1));
+    }
+
+    @Test
+    public void testEmpty() {
+        TmfFilterRankBitmap bitmap = TmfFilterRankBitmap.EMPTY;
+        assertEquals(0, bitmap.size());
+        assertEquals(0, bitmap.getCardinality());
+        assertEquals(false, bitmap.contains(0));
+        assertEquals(0, bitmap.rank(10));
+        assertEquals(-1, bitmap.select(0));
+    }
+
+    @Test
+    public void testBuild() {
+        int length = 5 * BLOCK_SIZE + 1234;
+        BitSet bits = createBits(new Random(1), length);
+        TmfFilterRankBitmap.Builder builder = new TmfFilterRankBitmap.Builder();
+        builder.append(bits, length);
+        verify(bits, builder.build(), length);
+    }
+
+    @Test
+    public void testAppendChunks() {
+        int length = 6 * BLOCK_SIZE + 17;
+        BitSet bits = createBits(new Random(2), length);
+        TmfFilterRankBitmap.Builder builder = new TmfFilterRankBitmap.Builder();
+        int chunk = 10000;
+        for (int start = 0; start < length; start += chunk) {
+            int end = Math.min(length, start + chunk);
+            builder.append(bits.get(start, end), end - start);
+            /* Each intermediate bitmap covers the events appended so far */
+            verify(bits, builder.build(), end);
+        }
+    }
+
+    @Test
+    public void testContinuePrefix() {
+        int length = 4 * BLOCK_SIZE + 100;
+        BitSet bits = createBits(new Random(3), length);
+        int prefixLength = 2 * BLOCK_SIZE + 500;
+        TmfFilterRankBitmap.Builder builder = new TmfFilterRankBitmap.Builder();
+        builder.append(bits.get(0, prefixLength), prefixLength);
+        TmfFilterRankBitmap prefix = builder.build();
+
+        TmfFilterRankBitmap.Builder next = new TmfFilterRankBitmap.Builder(prefix);
+        assertEquals(prefixLength, next.size());
+        next.append(bits.get(prefixLength, length), length - prefixLength);
+        verify(bits, next.build(), length);
+        /* The prefix is not modified */
+        verify(bits, prefix, prefixLength);
+    }
+
+    @Test
+    public void testSerialization() throws IOException {
+        int length = 7 * BLOCK_SIZE + 3;
+        BitSet bits = createBits(new Random(4), length);
+        TmfFilterRankBitmap.Builder builder = new TmfFilterRankBitmap.Builder();
+        builder.append(bits, length);
+        TmfFilterRankBitmap bitmap = builder.build();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            bitmap.writeTo(out);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            verify(bits, TmfFilterRankBitmap.readFrom(in), length);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidSerialization() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(BLOCK_SIZE);
+            out.writeInt(5);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            TmfFilterRankBitmap.readFrom(in);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterRankBitmap;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterRankIndex;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterObjectNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfFilterRankIndex} class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfFilterRankIndexTest {
+
+    private static final TmfTestTrace TEST_TRACE = TmfTestTrace.A_TEST_10K;
+
+    private TmfTraceStub fTrace;
+    private ITmfFilterTreeNode fFilter;
+
+    @Before
+    public void setUp() {
+        fTrace = (TmfTraceStub) TEST_TRACE.getTrace();
+        fTrace.indexTrace(true);
+        deleteResults();
+
+        /* Events before 2s or after 7s */
+        fFilter = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(fFilter);
+        TmfFilterCompareNode before = new TmfFilterCompareNode(or);
+        before.setEventAspect(ITmfEventAspect.BaseAspects.TIMESTAMP);
+        before.setType(Type.TIMESTAMP);
+        before.setValue("2");
+        before.setResult(-1);
+        TmfFilterCompareNode after = new TmfFilterCompareNode(or);
+        after.setEventAspect(ITmfEventAspect.BaseAspects.TIMESTAMP);
+        after.setType(Type.TIMESTAMP);
+        after.setValue("7");
+        after.setResult(1);
+    }
+
+    @After
+    public void tearDown() {
+        deleteResults();
+        TEST_TRACE.dispose();
+    }
+
+    private void deleteResults() {
+        File[] files = new File(TmfTraceManager.getSupplementaryFileDir(fTrace)).listFiles((dir, name) -> name.endsWith(".ranks"));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testGetKey() {
+        String key = TmfFilterRankIndex.getKey(fFilter);
+        assertNotNull(key);
+        assertEquals(key, TmfFilterRankIndex.getKey(fFilter.clone()));
+
+        ITmfFilterTreeNode root = new TmfFilterRootNode();
+        new TmfFilterObjectNode(root, event -> true);
+        assertNull(TmfFilterRankIndex.getKey(root));
+    }
+
+    @Test
+    public void testGetRanks() {
+        String key = TmfFilterRankIndex.getKey(fFilter);
+        assertNotNull(key);
+        TmfFilterRankBitmap ranks = TmfFilterRankIndex.getRanks(fTrace, fFilter, key, new NullProgressMonitor(), null);
+        assertEquals(fTrace.getNbEvents(), ranks.size());
+
+        ITmfContext context = fTrace.seekEvent(0);
+        long rank = 0;
+        ITmfEvent event = fTrace.getNext(context);
+        while (event != null) {
+            assertEquals(fFilter.matches(event), ranks.contains(rank));
+            rank++;
+            event = fTrace.getNext(context);
+        }
+        context.dispose();
+        assertEquals(rank, ranks.size());
+        assertTrue(ranks.getCardinality() > 0);
+        assertTrue(ranks.getCardinality() < rank);
+    }
+
+    @Test
+    public void testReuseRanks() {
+        String key = TmfFilterRankIndex.getKey(fFilter);
+        assertNotNull(key);
+        TmfFilterRankBitmap ranks = TmfFilterRankIndex.getRanks(fTrace, fFilter, key, new NullProgressMonitor(), null);
+
+        /* The saved results are returned without reading the trace */
+        NullProgressMonitor cancelled = new NullProgressMonitor();
+        cancelled.setCanceled(true);
+        TmfFilterRankBitmap saved = TmfFilterRankIndex.getRanks(fTrace, fFilter, key, cancelled, null);
+        assertEquals(ranks.size(), saved.size());
+        assertEquals(ranks.getCardinality(), saved.getCardinality());
+
+        /* Another filter does not reuse them */
+        ITmfFilterTreeNode other = new TmfFilterRootNode();
+        TmfFilterCompareNode compare = new TmfFilterCompareNode(other);
+        compare.setEventAspect(ITmfEventAspect.BaseAspects.TIMESTAMP);
+        compare.setType(Type.TIMESTAMP);
+        compare.setValue("5");
+        String otherKey = TmfFilterRankIndex.getKey(other);
+        assertNotNull(otherKey);
+        assertEquals(0, TmfFilterRankIndex.getRanks(fTrace, other, otherKey, cancelled, null).size());
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -29,7 +29,9 @@ import org.eclipse.tracecompass.internal.tmf.core.component.TmfProviderManager;
 import org.eclipse.tracecompass.internal.tmf.core.request.TmfCoalescedEventRequest;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignal;
@@ -40,6 +42,7 @@ import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.tests.stubs.request.TmfEventRequestStub;
 import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
 import org.junit.Before;
@@ -219,6 +222,83 @@ public class TmfCoalescedEventRequestTest {
         assertEquals("addRequest", 2147483647, coalescedRequest.getNbRequested());
     }
 
+    @Test
+    public void testAddEventSaturation() {
+        int nbRequested = Integer.MAX_VALUE - 10;
+        TmfCoalescedEventRequest coalescedRequest = new TmfCoalescedEventRequest(ITmfEvent.class, range1, 100, nbRequested, ExecutionType.FOREGROUND);
+        TmfEventRequest req1 = new TmfEventRequestStub(ITmfEvent.class, range1, 100, nbRequested, 200);
+        TmfEventRequest req2 = new TmfEventRequestStub(ITmfEvent.class, range1, 0, nbRequested, 200);
+
+        coalescedRequest.addRequest(req1);
+        assertEquals("addRequest", nbRequested, coalescedRequest.getNbRequested());
+        coalescedRequest.addRequest(req2);
+
+        /* 100 + MAX_VALUE - 10 events saturate instead of overflowing */
+        assertEquals("addRequest", 0, coalescedRequest.getIndex());
+        assertEquals("addRequest", ITmfEventRequest.ALL_DATA, coalescedRequest.getNbRequested());
+    }
+
+    @Test
+    public void testAddEventLargeIndex() {
+        long index = 3000000000L;
+        TmfCoalescedEventRequest coalescedRequest = new TmfCoalescedEventRequest(ITmfEvent.class, range1, index, 100, ExecutionType.FOREGROUND);
+        TmfEventRequest req1 = new TmfEventRequestStub(ITmfEvent.class, range1, index, 100, 200);
+        TmfEventRequest req2 = new TmfEventRequestStub(ITmfEvent.class, range1, 0, 100, 200);
+
+        coalescedRequest.addRequest(req1);
+        assertEquals("addRequest", index, coalescedRequest.getIndex());
+        assertEquals("addRequest", 100, coalescedRequest.getNbRequested());
+        coalescedRequest.addRequest(req2);
+
+        assertEquals("addRequest", 0, coalescedRequest.getIndex());
+        assertEquals("addRequest", ITmfEventRequest.ALL_DATA, coalescedRequest.getNbRequested());
+    }
+
+    @Test
+    public void testDispatchLargeIndex() {
+        final long index = 3L * Integer.MAX_VALUE;
+        final Vector<ITmfEvent> events1 = new Vector<>();
+        final Vector<ITmfEvent> events2 = new Vector<>();
+        TmfEventRequest req1 = new TmfEventRequest(ITmfEvent.class, range1, index, 2, ExecutionType.FOREGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                events1.add(event);
+            }
+        };
+        TmfEventRequest req2 = new TmfEventRequest(ITmfEvent.class, range1, index + 1, ITmfEventRequest.ALL_DATA, ExecutionType.FOREGROUND) {
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                events2.add(event);
+            }
+        };
+        req1.setProviderFilter(event -> true);
+        req2.setProviderFilter(event -> true);
+
+        TmfCoalescedEventRequest coalescedRequest = new TmfCoalescedEventRequest(ITmfEvent.class, range1, index, 2, ExecutionType.FOREGROUND);
+        coalescedRequest.addRequest(req1);
+        coalescedRequest.addRequest(req2);
+        assertEquals("addRequest", ITmfEventRequest.ALL_DATA, coalescedRequest.getNbRequested());
+
+        ITmfTrace trace = TmfTestTrace.A_TEST_10K.getTrace();
+        try {
+            for (long rank = index; rank < index + 4; rank++) {
+                coalescedRequest.handleData(new TmfEvent(trace, rank, TmfTimestamp.fromNanos(rank), null, null));
+            }
+        } finally {
+            trace.dispose();
+        }
+
+        assertEquals("getNbRead", 4, coalescedRequest.getNbRead());
+        assertEquals("getNbRead", 2, req1.getNbRead());
+        assertEquals("getNbRead", 3, req2.getNbRead());
+        assertEquals("handleData", index, events1.get(0).getRank());
+        assertEquals("handleData", index + 1, events1.get(1).getRank());
+        assertEquals("handleData", index + 1, events2.get(0).getRank());
+        assertEquals("handleData", index + 3, events2.get(2).getRank());
+    }
+
     // ------------------------------------------------------------------------
     // done
     // ------------------------------------------------------------------------
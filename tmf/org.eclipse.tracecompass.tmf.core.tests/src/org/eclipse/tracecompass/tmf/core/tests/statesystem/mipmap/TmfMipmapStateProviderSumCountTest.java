@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statesystem.mipmap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue.Type;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.statesystem.mipmap.TmfStateSystemOperations;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests of the sum and count mipmap features
+ */
+public class TmfMipmapStateProviderSumCountTest {
+
+    @NonNull private static final String SSID = "mimap-sum-count-test";
+    private static final String TEST_ATTRIBUTE_NAME = TmfMipmapStateProviderStub.TEST_ATTRIBUTE_NAME;
+    private static final long START_TIME = 1000L;
+    private static final long END_TIME = 100000000L;
+    private static final long INTERVAL = 1000L;
+    private static final int RESOLUTION = 16;
+    private static final long TEST_TIMESTAMP = 12345000L;
+    private static ITmfStateSystemBuilder ssq;
+
+    /**
+     * Startup code, build a state system with an attribute always going up
+     * linearly
+     */
+    @BeforeClass
+    public static void init() {
+        TmfMipmapSumCountStateProviderStub mmp = new TmfMipmapSumCountStateProviderStub(RESOLUTION, Type.LONG);
+        IStateHistoryBackend be = StateHistoryBackendFactory.createInMemoryBackend(SSID, 0);
+        ITmfStateSystemBuilder ssb = StateSystemFactory.newStateSystem(be);
+        mmp.assignTargetStateSystem(ssb);
+        ssq = ssb;
+
+        for (long time = START_TIME; time <= END_TIME; time += INTERVAL) {
+            long value = time / INTERVAL;
+            ITmfEvent event = mmp.createEvent(time, value);
+            mmp.processEvent(event);
+        }
+        mmp.dispose();
+        ssq.waitUntilBuilt();
+    }
+
+    /**
+     * Test a query range to the state system to get the sum of the values in
+     * the range, compared to the sum of the values of the base attribute
+     *
+     * Make sure the state system has data.
+     *
+     */
+    @Test
+    public void testQueryMipmapRangeSum() {
+        assertNotNull(ssq);
+        try {
+            int quark = ssq.getQuarkAbsolute(TEST_ATTRIBUTE_NAME);
+            long[][] ranges = {
+                    { 0, START_TIME },
+                    { START_TIME, START_TIME },
+                    { START_TIME, END_TIME / 2 },
+                    { 0, END_TIME },
+                    { END_TIME / 2, END_TIME },
+                    { START_TIME - INTERVAL / 2, END_TIME / 2 + INTERVAL / 2 },
+                    { TEST_TIMESTAMP, TEST_TIMESTAMP + 7 * INTERVAL + INTERVAL / 3 }
+            };
+            for (long[] range : ranges) {
+                long sum = 0;
+                for (ITmfStateInterval interval : StateSystemUtils.queryHistoryRange(ssq, quark, range[0], range[1])) {
+                    if (!interval.getStateValue().isNull()) {
+                        sum += interval.getStateValue().unboxLong();
+                    }
+                }
+                assertEquals(sum, TmfStateSystemOperations.queryRangeSum(ssq, range[0], range[1], quark).unboxLong());
+            }
+
+        } catch (AttributeNotFoundException e) {
+            fail(e.getMessage());
+        } catch (TimeRangeException e) {
+            fail(e.getMessage());
+        } catch (StateValueTypeException e) {
+            fail(e.getMessage());
+        } catch (StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Test a query range to the state system to get the number of values in
+     * the range
+     *
+     * Make sure the state system has data.
+     *
+     */
+    @Test
+    public void testQueryMipmapRangeCount() {
+        assertNotNull(ssq);
+        try {
+            long count;
+            int quark = ssq.getQuarkAbsolute(TEST_ATTRIBUTE_NAME);
+
+            count = TmfStateSystemOperations.queryRangeCount(ssq, 0, START_TIME, quark);
+            assertEquals(1, count);
+
+            count = TmfStateSystemOperations.queryRangeCount(ssq, START_TIME, START_TIME, quark);
+            assertEquals(1, count);
+
+            count = TmfStateSystemOperations.queryRangeCount(ssq, START_TIME, END_TIME / 2 - 1, quark);
+            assertEquals((END_TIME / 2 - START_TIME) / INTERVAL, count);
+
+            count = TmfStateSystemOperations.queryRangeCount(ssq, 0, END_TIME, quark);
+            assertEquals((END_TIME - START_TIME) / INTERVAL + 1, count);
+
+            count = TmfStateSystemOperations.queryRangeCount(ssq, END_TIME / 2, END_TIME, quark);
+            assertEquals((END_TIME / 2) / INTERVAL + 1, count);
+
+        } catch (AttributeNotFoundException e) {
+            fail(e.getMessage());
+        } catch (TimeRangeException e) {
+            fail(e.getMessage());
+        } catch (StateValueTypeException e) {
+            fail(e.getMessage());
+        }
+    }
+}
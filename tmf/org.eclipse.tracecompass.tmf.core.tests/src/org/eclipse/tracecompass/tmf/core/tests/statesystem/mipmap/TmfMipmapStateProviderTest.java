@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -22,8 +22,6 @@ import java.util.List;
 import java.util.Random;
 
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap.AbstractTmfMipmapStateProvider;
-import org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap.TmfStateSystemOperations;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
@@ -33,8 +31,11 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedE
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue.Type;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.statesystem.mipmap.AbstractTmfMipmapStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.mipmap.TmfStateSystemOperations;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -539,4 +540,42 @@ public class TmfMipmapStateProviderTest {
             fail(e.getMessage());
         }
     }
+
+    /**
+     * Test the downsampling of the attribute in sub-ranges, compared to the
+     * range queries of each sub-range
+     *
+     * Make sure the state system has data.
+     *
+     */
+    @Test
+    public void testDownsample() {
+        assertNotNull(ssq);
+        try {
+            int nb = 100;
+            int quark = ssq.getQuarkAbsolute(TEST_ATTRIBUTE_NAME);
+            ITmfStateValue[] max = TmfStateSystemOperations.downsampleMax(ssq, START_TIME, END_TIME, quark, nb);
+            ITmfStateValue[] min = TmfStateSystemOperations.downsampleMin(ssq, START_TIME, END_TIME, quark, nb);
+            double[] avg = TmfStateSystemOperations.downsampleAverage(ssq, START_TIME, END_TIME, quark, nb);
+            assertEquals(nb, max.length);
+            assertEquals(nb, min.length);
+            assertEquals(nb, avg.length);
+
+            long duration = (END_TIME - START_TIME) / nb;
+            for (int i = 0; i < nb; i++) {
+                long start = START_TIME + i * duration;
+                long end = (i == nb - 1) ? END_TIME : start + duration - 1;
+                assertEquals(start / INTERVAL, min[i].unboxLong());
+                assertEquals(end / INTERVAL, max[i].unboxLong());
+                assertEquals(TmfStateSystemOperations.queryRangeAverage(ssq, start, (i == nb - 1) ? END_TIME : start + duration, quark), avg[i], DELTA);
+            }
+
+        } catch (AttributeNotFoundException e) {
+            fail(e.getMessage());
+        } catch (TimeRangeException e) {
+            fail(e.getMessage());
+        } catch (StateValueTypeException e) {
+            fail(e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statesystem.mipmap;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+
+/**
+ * A mipmap state provider for test, with the sum and count features
+ */
+class TmfMipmapSumCountStateProviderStub extends TmfMipmapStateProviderStub {
+
+    private final int fResolution;
+    private final ITmfStateValue.Type fType;
+
+    /**
+     * Constructor
+     *
+     * @param resolution
+     *            the mipmap resolution
+     * @param type
+     *            the type of value to use
+     */
+    public TmfMipmapSumCountStateProviderStub(int resolution, ITmfStateValue.Type type) {
+        super(resolution, type);
+        fResolution = resolution;
+        fType = type;
+    }
+
+    @Override
+    protected void eventHandle(ITmfEvent ev) {
+        ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
+        final long ts = ev.getTimestamp().toNanos();
+        try {
+            int quark = ss.getQuarkAbsoluteAndAdd(TEST_ATTRIBUTE_NAME);
+            ITmfStateValue value = (ITmfStateValue) ev.getContent().getValue();
+            modifyMipmapAttribute(ts, value, quark, SUM | COUNT, fResolution);
+        } catch (TimeRangeException | AttributeNotFoundException | StateValueTypeException e) {
+            Activator.logError("Error : Invalid mipmap event", e); //$NON-NLS-1$
+        }
+    }
+
+    @Override
+    public TmfMipmapSumCountStateProviderStub getNewInstance() {
+        return new TmfMipmapSumCountStateProviderStub(fResolution, fType);
+    }
+}
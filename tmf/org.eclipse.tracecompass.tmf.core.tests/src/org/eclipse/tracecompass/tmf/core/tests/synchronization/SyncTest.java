@@ -126,6 +126,41 @@ public class SyncTest {
         assertEquals(SyncQuality.FAIL, syncAlgo.getSynchronizationQuality(t1, t2));
     }
 
+    /**
+     * Testing fully incremental algorithm with nanosecond timestamps since
+     * epoch, one second apart, where the products of the coordinates of the
+     * hull points do not fit in a long
+     */
+    @Test
+    public void testFullyIncrementalLargeTimestamps() {
+
+        SynchronizationAlgorithm syncAlgo = SynchronizationAlgorithmFactory.getFullyIncrementalAlgorithm();
+
+        syncAlgo.init(fTraces);
+
+        addSyncMatchNanos(syncAlgo, t2, 1, t1, 1);
+        addSyncMatchNanos(syncAlgo, t1, 1, t2, 3);
+        addSyncMatchNanos(syncAlgo, t2, 2, t1, 3);
+        assertEquals("SyncAlgorithmFullyIncremental [Between t1 and t2 [ alpha 1 beta 500000000 ]]", syncAlgo.toString());
+        assertEquals(SyncQuality.APPROXIMATE, syncAlgo.getSynchronizationQuality(t1, t2));
+
+        addSyncMatchNanos(syncAlgo, t1, 3, t2, 5);
+        assertEquals("SyncAlgorithmFullyIncremental [Between t1 and t2 [ alpha 0.75 beta 340414474500000000.0 ]]", syncAlgo.toString());
+        assertEquals(SyncQuality.ACCURATE, syncAlgo.getSynchronizationQuality(t1, t2));
+
+        addSyncMatchNanos(syncAlgo, t1, 4, t2, 8);
+        addSyncMatchNanos(syncAlgo, t2, 4, t1, 5);
+        addSyncMatchNanos(syncAlgo, t2, 4, t1, 6);
+        addSyncMatchNanos(syncAlgo, t1, 6, t2, 7);
+        assertEquals("SyncAlgorithmFullyIncremental [Between t1 and t2 [ alpha 0.725 beta 374455921850000000.00 ]]", syncAlgo.toString());
+        assertEquals(SyncQuality.ACCURATE, syncAlgo.getSynchronizationQuality(t1, t2));
+
+        /* Make the two hulls intersect */
+        addSyncMatchNanos(syncAlgo, t1, 7, t2, 4);
+        addSyncMatchNanos(syncAlgo, t2, 7, t1, 3);
+        assertEquals(SyncQuality.FAIL, syncAlgo.getSynchronizationQuality(t1, t2));
+    }
+
     /**
      * Testing the fully incremental synchronization algorithm when
      * communication goes in only one direction
@@ -200,6 +235,20 @@ public class SyncTest {
                 ));
     }
 
+    /**
+     * Add a match with timestamps in seconds after a base time in nanoseconds
+     * since epoch
+     */
+    private static void addSyncMatchNanos(SynchronizationAlgorithm algo, ITmfTrace sender, long sendTs, ITmfTrace receiver, long receiveTs) {
+        final long base = 1361657893000000000L;
+        final long second = 1000000000L;
+        algo.addMatch(
+                new TmfEventDependency(
+                        new TmfSyncEventStub(sender, TmfTimestamp.fromNanos(base + sendTs * second)),
+                        new TmfSyncEventStub(receiver, TmfTimestamp.fromNanos(base + receiveTs * second))
+                ));
+    }
+
     /**
      * Testing the serialization of the fully incremental synchronization
      * algorithm
@@ -17,6 +17,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -70,6 +71,41 @@ public class TsTransformTest {
         assertEquals(680828946763187045L, ttl.transform(oTs).getValue());
     }
 
+    /**
+     * Test that the linear transform gives exactly the same results as the
+     * BigDecimal computation of the formula, with the formulas of the
+     * synchronization test traces and their inverse
+     */
+    @Test
+    public void testLinearTransformPrecision() {
+        String[][] formulas = {
+                { "0.9999413783703139011056845831168394", "79796507913179.33347660124688298171" },
+                { "0.9999996313017589597204633828681240", "498490309972.0038068817738527724192" },
+                { "1.000000119014882262265342419815932", "-166652893534.6189900382736187431134" },
+                { "0.725", "374455921850000000.00" },
+                { "3.141592653589793", "1234" }
+        };
+        MathContext mc = MathContext.DECIMAL128;
+        for (String[] formula : formulas) {
+            BigDecimal alpha = new BigDecimal(formula[0]);
+            BigDecimal beta = new BigDecimal(formula[1]);
+            checkPrecision(alpha, beta);
+            checkPrecision(BigDecimal.ONE.divide(alpha, mc), beta.negate().divide(alpha, mc));
+        }
+    }
+
+    private static void checkPrecision(BigDecimal alpha, BigDecimal beta) {
+        TmfTimestampTransformLinear ttl = new TmfTimestampTransformLinear(alpha, beta);
+        long[] starts = { ts, -ts, 0, Long.MAX_VALUE / 2 };
+        for (long start : starts) {
+            for (long i = 0; i < 10000; i++) {
+                long time = start + i * 104729 + (i * i) % 1000;
+                long expected = BigDecimal.valueOf(time).multiply(alpha, MathContext.DECIMAL128).add(beta).longValue();
+                assertEquals(alpha + " " + beta + " " + time, expected, ttl.transform(time));
+            }
+        }
+    }
+
     /**
      * Test for the identity transform
      */
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.tests.stubs.analysis;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.callstack.ICallStackAnalysis;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Stub call stack analysis, with fixed calls of two threads pushed at the
+ * timestamps of the events of the test trace:
+ *
+ * <pre>
+ * Thread 1: main [10, 60) calls foo [20, 30) and foo [40, 50)
+ * Thread 2: main [15, 45) calls bar [25, 35)
+ * </pre>
+ */
+public class TestCallStackAnalysis extends TmfStateSystemAnalysisModule implements ICallStackAnalysis {
+
+    private static final String THREADS = "Threads";
+    private static final String CALL_STACK = "CallStack";
+
+    @Override
+    protected @NonNull ITmfStateProvider createStateProvider() {
+        return new CallStackProviderStub(checkNotNull(getTrace()));
+    }
+
+    @Override
+    protected @NonNull StateSystemBackendType getBackendType() {
+        return StateSystemBackendType.INMEM;
+    }
+
+    @Override
+    public String[] getThreadsPattern() {
+        return new String[] { THREADS, "*" };
+    }
+
+    @Override
+    public String[] getCallStackPath() {
+        return new String[] { CALL_STACK };
+    }
+
+    private static class CallStackProviderStub extends AbstractTmfStateProvider {
+
+        public CallStackProviderStub(@NonNull ITmfTrace trace) {
+            super(trace, "Stub Call Stack");
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public ITmfStateProvider getNewInstance() {
+            return new CallStackProviderStub(getTrace());
+        }
+
+        @Override
+        protected void eventHandle(@Nullable ITmfEvent event) {
+            if (event == null) {
+                return;
+            }
+            ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
+            long ts = event.getTimestamp().getValue();
+            switch ((int) ts) {
+            case 10:
+                call(ss, ts, "1", 1, TmfStateValue.newValueString("main"));
+                break;
+            case 15:
+                call(ss, ts, "2", 1, TmfStateValue.newValueString("main"));
+                break;
+            case 20:
+            case 40:
+                call(ss, ts, "1", 2, TmfStateValue.newValueString("foo"));
+                break;
+            case 25:
+                call(ss, ts, "2", 2, TmfStateValue.newValueString("bar"));
+                break;
+            case 30:
+            case 50:
+                call(ss, ts, "1", 2, TmfStateValue.nullValue());
+                break;
+            case 35:
+                call(ss, ts, "2", 2, TmfStateValue.nullValue());
+                break;
+            case 45:
+                call(ss, ts, "2", 1, TmfStateValue.nullValue());
+                break;
+            case 60:
+                call(ss, ts, "1", 1, TmfStateValue.nullValue());
+                break;
+            default:
+                break;
+            }
+        }
+
+        private static void call(ITmfStateSystemBuilder ss, long ts, String thread, int depth, ITmfStateValue value) {
+            int quark = ss.getQuarkAbsoluteAndAdd(THREADS, thread, CALL_STACK, String.valueOf(depth));
+            try {
+                ss.modifyAttribute(ts, value, quark);
+            } catch (AttributeNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
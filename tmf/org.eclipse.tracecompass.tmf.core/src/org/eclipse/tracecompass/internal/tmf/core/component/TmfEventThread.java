@@ -197,8 +197,12 @@ public class TmfEventThread implements Runnable {
                     latch.await();
                 }
 
-                // To avoid an unnecessary read passed the last event requested
-                if (++nbRead < nbRequested) {
+                /*
+                 * To avoid an unnecessary read passed the last event requested.
+                 * ALL_DATA is not counted, so that it does not stop at the
+                 * largest int in traces with more events.
+                 */
+                if (nbRequested == ITmfEventRequest.ALL_DATA || ++nbRead < nbRequested) {
                     event = fProvider.getNext(context);
                 }
             }
@@ -0,0 +1,695 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.event.index;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index of the values of the event aspects of a trace, kept in the
+ * supplementary files of the trace. For each indexed aspect, it maps the
+ * string value of the aspect to the ranks of the events having that value, so
+ * that the next or previous event with a given value is found without reading
+ * the trace.
+ *
+ * The term dictionary of each aspect is kept in memory, sorted by value for
+ * exact and prefix lookups and by number for numeric range lookups. The
+ * posting lists stay on disk: they are delta-encoded in blocks of
+ * {@value #BLOCK_SIZE} ranks, with a skip table giving the first rank and the
+ * offset of each block, so a lookup reads a few bytes of the skip table and a
+ * single block.
+ *
+ * The file is created by {@link TmfEventIndexWriter}. Instances are safe to
+ * use from many threads, and must be closed when no longer needed.
+ */
+public final class TmfEventIndex implements AutoCloseable {
+
+    static final int MAGIC = 0x54454958; // "TEIX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int BLOCK_SIZE = 64;
+    static final int SKIP_ENTRY_SIZE = 16;
+
+    /* Kinds of terms */
+    static final byte KIND_MISSING = 0;
+    static final byte KIND_STRING = 1;
+    static final byte KIND_LONG = 2;
+    static final byte KIND_DOUBLE = 3;
+
+    /** Maximum size of the encoded deltas of a block */
+    private static final int MAX_BLOCK_BYTES = (BLOCK_SIZE - 1) * 10;
+
+    private static final Comparator<Term> LONG_ORDER = (t1, t2) -> Long.compare(t1.fNumber, t2.fNumber);
+
+    /** Postings that contain no rank */
+    public static final Postings EMPTY = new Postings() {
+        @Override
+        public long next(long rank) {
+            return -1;
+        }
+
+        @Override
+        public long previous(long rank) {
+            return -1;
+        }
+    };
+
+    private final FileChannel fChannel;
+    private final long fNbEvents;
+    private final Map<String, Field> fFields;
+
+    /**
+     * A value of an indexed aspect, with the number of events that have it
+     */
+    public static final class Term {
+
+        private final String fValue;
+        private final byte fKind;
+        private final long fNumber;
+        private final long fCount;
+        private final long fSkipOffset;
+
+        Term(String value, byte kind, long number, long count, long skipOffset) {
+            fValue = value;
+            fKind = kind;
+            fNumber = number;
+            fCount = count;
+            fSkipOffset = skipOffset;
+        }
+
+        /**
+         * Get the string value of the aspect
+         *
+         * @return The value
+         */
+        public String getValue() {
+            return fValue;
+        }
+
+        /**
+         * Get the numerical value of the aspect, as interpreted by a numerical
+         * comparison
+         *
+         * @return The number, or null if the value is not a number
+         */
+        public Number getNumber() {
+            switch (fKind) {
+            case KIND_LONG:
+                return fNumber;
+            case KIND_DOUBLE:
+                return Double.longBitsToDouble(fNumber);
+            default:
+                return null;
+            }
+        }
+
+        /**
+         * Get the number of events that have this value
+         *
+         * @return The number of events
+         */
+        public long getCount() {
+            return fCount;
+        }
+
+        @Override
+        public String toString() {
+            return fValue + '[' + fCount + ']';
+        }
+    }
+
+    /**
+     * Cursor on a set of ranks. A cursor keeps the part of the index it last
+     * read, it must not be used by many threads at once.
+     */
+    public abstract static class Postings {
+
+        /**
+         * Get the first rank of the set that is not before a rank
+         *
+         * @param rank
+         *            The rank from which to search
+         * @return The found rank, or -1 if there is none
+         * @throws IOException
+         *             If the index could not be read
+         */
+        public abstract long next(long rank) throws IOException;
+
+        /**
+         * Get the last rank of the set that is not after a rank
+         *
+         * @param rank
+         *            The rank from which to search
+         * @return The found rank, or -1 if there is none
+         * @throws IOException
+         *             If the index could not be read
+         */
+        public abstract long previous(long rank) throws IOException;
+    }
+
+    private static final class Field {
+        private final Term fMissing;
+        private final Term[] fTerms;
+        private final Term[] fLongTerms;
+
+        public Field(Term missing, Term[] terms) {
+            fMissing = missing;
+            fTerms = terms;
+            fLongTerms = Arrays.stream(terms).filter(term -> term.fKind == KIND_LONG).sorted(LONG_ORDER).toArray(Term[]::new);
+        }
+    }
+
+    private TmfEventIndex(FileChannel channel, long nbEvents, Map<String, Field> fields) {
+        fChannel = channel;
+        fNbEvents = nbEvents;
+        fFields = fields;
+    }
+
+    /**
+     * Open an index file
+     *
+     * @param file
+     *            The index file
+     * @return The index
+     * @throws IOException
+     *             If the file could not be read or is not a valid index
+     */
+    public static TmfEventIndex open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Invalid event index " + file); //$NON-NLS-1$
+            }
+            long nbEvents = header.getLong();
+            long skipSection = header.getLong();
+            long dictionary = header.getLong();
+            if (nbEvents < 0 || skipSection < HEADER_SIZE || dictionary < skipSection || dictionary > channel.size()) {
+                throw new IOException("Invalid event index " + file); //$NON-NLS-1$
+            }
+
+            Map<String, Field> fields = new HashMap<>();
+            channel.position(dictionary);
+            /* The stream is not closed, it would close the channel */
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            int nbFields = in.readInt();
+            for (int i = 0; i < nbFields; i++) {
+                String name = in.readUTF();
+                int nbTerms = in.readInt();
+                Term missing = null;
+                List<Term> terms = new ArrayList<>(nbTerms);
+                for (int j = 0; j < nbTerms; j++) {
+                    String value = in.readUTF();
+                    byte kind = in.readByte();
+                    long number = in.readLong();
+                    long count = in.readLong();
+                    long skipOffset = skipSection + in.readLong();
+                    if (kind < KIND_MISSING || kind > KIND_DOUBLE || count <= 0) {
+                        throw new IOException("Invalid event index " + file); //$NON-NLS-1$
+                    }
+                    Term term = new Term(value, kind, number, count, skipOffset);
+                    if (kind == KIND_MISSING) {
+                        missing = term;
+                    } else {
+                        terms.add(term);
+                    }
+                }
+                fields.put(name, new Field(missing, terms.toArray(new Term[terms.size()])));
+            }
+            return new TmfEventIndex(channel, nbEvents, fields);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        fChannel.close();
+    }
+
+    /**
+     * Get the number of events covered by this index
+     *
+     * @return The number of events
+     */
+    public long getNbEvents() {
+        return fNbEvents;
+    }
+
+    /**
+     * Get the names of the indexed aspects
+     *
+     * @return The aspect names
+     */
+    public Set<String> getFields() {
+        return Collections.unmodifiableSet(fFields.keySet());
+    }
+
+    /**
+     * Check if an aspect is indexed
+     *
+     * @param field
+     *            The aspect name
+     * @return True if the values of this aspect are indexed
+     */
+    public boolean isIndexed(String field) {
+        return fFields.containsKey(field);
+    }
+
+    // ------------------------------------------------------------------------
+    // Term lookups
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the term of a value
+     *
+     * @param field
+     *            The aspect name
+     * @param value
+     *            The string value of the aspect
+     * @return The term, or null if no event has this value
+     */
+    public Term getTerm(String field, String value) {
+        Field f = fFields.get(field);
+        if (f == null) {
+            return null;
+        }
+        int index = lowerBound(f.fTerms, value);
+        if (index < f.fTerms.length && f.fTerms[index].fValue.equals(value)) {
+            return f.fTerms[index];
+        }
+        return null;
+    }
+
+    /**
+     * Get the terms of the events whose aspect resolves to null
+     *
+     * @param field
+     *            The aspect name
+     * @return The term, or null if there are no such events
+     */
+    public Term getMissingTerm(String field) {
+        Field f = fFields.get(field);
+        return f == null ? null : f.fMissing;
+    }
+
+    /**
+     * Get the terms whose value starts with a prefix
+     *
+     * @param field
+     *            The aspect name
+     * @param prefix
+     *            The prefix
+     * @return The terms, in value order
+     */
+    public List<Term> getTermsWithPrefix(String field, String prefix) {
+        Field f = fFields.get(field);
+        if (f == null) {
+            return Collections.emptyList();
+        }
+        List<Term> terms = new ArrayList<>();
+        for (int i = lowerBound(f.fTerms, prefix); i < f.fTerms.length && f.fTerms[i].fValue.startsWith(prefix); i++) {
+            terms.add(f.fTerms[i]);
+        }
+        return terms;
+    }
+
+    /**
+     * Get the terms whose value is an integer within a range
+     *
+     * @param field
+     *            The aspect name
+     * @param min
+     *            The minimum value, inclusive
+     * @param max
+     *            The maximum value, inclusive
+     * @return The terms, in numerical order
+     */
+    public List<Term> getTermsInRange(String field, long min, long max) {
+        Field f = fFields.get(field);
+        if (f == null || min > max) {
+            return Collections.emptyList();
+        }
+        Term[] terms = f.fLongTerms;
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].fNumber < min) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<Term> result = new ArrayList<>();
+        for (int i = low; i < terms.length && terms[i].fNumber <= max; i++) {
+            result.add(terms[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Get the terms that satisfy a condition. This checks every term of the
+     * aspect.
+     *
+     * @param field
+     *            The aspect name
+     * @param condition
+     *            The condition on the terms
+     * @return The terms, in value order
+     */
+    public List<Term> getTerms(String field, Predicate<Term> condition) {
+        Field f = fFields.get(field);
+        if (f == null) {
+            return Collections.emptyList();
+        }
+        List<Term> terms = new ArrayList<>();
+        for (Term term : f.fTerms) {
+            if (condition.test(term)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static int lowerBound(Term[] terms, String value) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].fValue.compareTo(value) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // ------------------------------------------------------------------------
+    // Postings
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get a cursor on the ranks of the events that have a value
+     *
+     * @param term
+     *            A term of this index
+     * @return The ranks of the events
+     */
+    public Postings getPostings(Term term) {
+        return new TermPostings(term);
+    }
+
+    /**
+     * Get the union of sets of ranks
+     *
+     * @param postings
+     *            The sets of ranks
+     * @return The ranks that are in any of the sets
+     */
+    public static Postings union(List<Postings> postings) {
+        if (postings.isEmpty()) {
+            return EMPTY;
+        } else if (postings.size() == 1) {
+            return postings.get(0);
+        }
+        Postings[] array = postings.toArray(new Postings[postings.size()]);
+        return new Postings() {
+            @Override
+            public long next(long rank) throws IOException {
+                long result = -1;
+                for (Postings p : array) {
+                    long next = p.next(rank);
+                    if (next == rank) {
+                        return next;
+                    }
+                    if (next >= 0 && (result < 0 || next < result)) {
+                        result = next;
+                    }
+                }
+                return result;
+            }
+
+            @Override
+            public long previous(long rank) throws IOException {
+                long result = -1;
+                for (Postings p : array) {
+                    long previous = p.previous(rank);
+                    if (previous == rank) {
+                        return previous;
+                    }
+                    result = Math.max(result, previous);
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Get the intersection of sets of ranks
+     *
+     * @param postings
+     *            The sets of ranks, there must be at least one
+     * @return The ranks that are in all of the sets
+     */
+    public static Postings intersection(List<Postings> postings) {
+        if (postings.size() == 1) {
+            return postings.get(0);
+        }
+        Postings[] array = postings.toArray(new Postings[postings.size()]);
+        return new Postings() {
+            @Override
+            public long next(long rank) throws IOException {
+                long candidate = rank;
+                boolean agreed = false;
+                while (!agreed) {
+                    agreed = true;
+                    for (Postings p : array) {
+                        long next = p.next(candidate);
+                        if (next < 0) {
+                            return -1;
+                        }
+                        if (next != candidate) {
+                            candidate = next;
+                            agreed = false;
+                        }
+                    }
+                }
+                return candidate;
+            }
+
+            @Override
+            public long previous(long rank) throws IOException {
+                long candidate = rank;
+                boolean agreed = false;
+                while (!agreed) {
+                    agreed = true;
+                    for (Postings p : array) {
+                        long previous = p.previous(candidate);
+                        if (previous < 0) {
+                            return -1;
+                        }
+                        if (previous != candidate) {
+                            candidate = previous;
+                            agreed = false;
+                        }
+                    }
+                }
+                return candidate;
+            }
+        };
+    }
+
+    /**
+     * The ranks of a term, read from the file. Block b holds the ranks
+     * [b * BLOCK_SIZE, (b + 1) * BLOCK_SIZE) of the term: its first rank is in
+     * the skip table, the other ones are encoded as variable-length deltas.
+     * The last block read is kept, since successive lookups are usually close.
+     */
+    private final class TermPostings extends Postings {
+
+        private final Term fTerm;
+        private final int fNbBlocks;
+
+        /* The ranks of the last block read, and the first rank after it */
+        private long[] fRanks = null;
+        private long fNextRank;
+
+        public TermPostings(Term term) {
+            fTerm = term;
+            fNbBlocks = (int) ((term.fCount + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        }
+
+        @Override
+        public long next(long rank) throws IOException {
+            long[] ranks = getBlock(rank);
+            if (ranks == null) {
+                return firstRank(0);
+            }
+            for (long r : ranks) {
+                if (r >= rank) {
+                    return r;
+                }
+            }
+            return fNextRank;
+        }
+
+        @Override
+        public long previous(long rank) throws IOException {
+            long[] ranks = getBlock(rank);
+            if (ranks == null) {
+                return -1;
+            }
+            long result = ranks[0];
+            for (long r : ranks) {
+                if (r > rank) {
+                    break;
+                }
+                result = r;
+            }
+            return result;
+        }
+
+        /**
+         * Get the ranks of the last block whose first rank is not after a
+         * rank, or null if there is none
+         */
+        private long[] getBlock(long rank) throws IOException {
+            long[] ranks = fRanks;
+            if (ranks != null && ranks[0] <= rank && (fNextRank < 0 || rank < fNextRank)) {
+                return ranks;
+            }
+            int low = 0;
+            int high = fNbBlocks - 1;
+            int block = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (firstRank(mid) <= rank) {
+                    block = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (block < 0) {
+                return null;
+            }
+            fRanks = readBlock(block);
+            fNextRank = (block + 1 < fNbBlocks) ? firstRank(block + 1) : -1;
+            return fRanks;
+        }
+
+        private long firstRank(int block) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            readFully(fChannel, buffer, fTerm.fSkipOffset + (long) block * SKIP_ENTRY_SIZE);
+            return buffer.getLong();
+        }
+
+        private long[] readBlock(int block) throws IOException {
+            ByteBuffer entry = ByteBuffer.allocate(SKIP_ENTRY_SIZE);
+            readFully(fChannel, entry, fTerm.fSkipOffset + (long) block * SKIP_ENTRY_SIZE);
+            long rank = entry.getLong();
+            long offset = entry.getLong();
+            int size = (int) Math.min(BLOCK_SIZE, fTerm.fCount - (long) block * BLOCK_SIZE);
+            long[] ranks = new long[size];
+            ranks[0] = rank;
+            if (size > 1) {
+                ByteBuffer data = ByteBuffer.allocate(MAX_BLOCK_BYTES);
+                long pos = offset;
+                int read = 0;
+                while (data.hasRemaining() && read >= 0) {
+                    read = fChannel.read(data, pos);
+                    pos += read;
+                }
+                data.flip();
+                for (int i = 1; i < size; i++) {
+                    rank += readVarLong(data);
+                    ranks[i] = rank;
+                }
+            }
+            return ranks;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, pos);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            pos += read;
+        }
+        buffer.flip();
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new EOFException();
+            }
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid posting list"); //$NON-NLS-1$
+    }
+
+    /**
+     * Get the number of a value, the same way as a numerical comparison of
+     * {@link org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode}
+     *
+     * @param value
+     *            The value
+     * @return The number, or null if the value is not a number
+     */
+    static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        try {
+            return Long.decode(value.toString());
+        } catch (NumberFormatException e) {
+        }
+        try {
+            return NumberFormat.getInstance().parse(value.toString());
+        } catch (ParseException e) {
+        }
+        return null;
+    }
+}
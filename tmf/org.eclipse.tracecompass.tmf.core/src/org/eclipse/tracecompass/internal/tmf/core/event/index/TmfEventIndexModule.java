@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.event.index;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+
+/**
+ * Analysis building the {@link TmfEventIndex} of a trace, so that searching
+ * events by the value of their aspects does not read the whole trace. The
+ * index is saved in the supplementary files of the trace.
+ *
+ * All the event aspects of the trace are indexed, except the timestamp, which
+ * the trace can already seek, and the contents, whose values are the whole
+ * event fields.
+ */
+public class TmfEventIndexModule extends TmfAbstractAnalysisModule {
+
+    /** The ID of this analysis */
+    public static final String ID = "org.eclipse.tracecompass.tmf.core.eventindex"; //$NON-NLS-1$
+
+    private static final String DATA_FILE_EXTENSION = ".idx"; //$NON-NLS-1$
+
+    private volatile TmfEventIndex fIndex = null;
+    private volatile ITmfEventRequest fRequest = null;
+
+    /**
+     * Get the index built by this analysis
+     *
+     * @return The index, or null if it is not built yet
+     */
+    public TmfEventIndex getIndex() {
+        return fIndex;
+    }
+
+    /**
+     * Get the aspects of a trace that are indexed
+     *
+     * @param trace
+     *            The trace
+     * @return The indexed aspects, by name
+     */
+    public static Map<String, ITmfEventAspect<?>> getIndexedAspects(ITmfTrace trace) {
+        Map<String, ITmfEventAspect<?>> aspects = new LinkedHashMap<>();
+        Set<String> duplicates = new HashSet<>();
+        for (ITmfEventAspect<?> aspect : trace.getEventAspects()) {
+            if (aspect == ITmfEventAspect.BaseAspects.TIMESTAMP || aspect == ITmfEventAspect.BaseAspects.CONTENTS) {
+                continue;
+            }
+            /* Aspects that share a name cannot be told apart in the index */
+            if (aspects.put(aspect.getName(), aspect) != null) {
+                duplicates.add(aspect.getName());
+            }
+        }
+        aspects.keySet().removeAll(duplicates);
+        return aspects;
+    }
+
+    @Override
+    protected boolean executeAnalysis(IProgressMonitor monitor) {
+        ITmfTrace trace = checkNotNull(getTrace());
+        String dir = TmfTraceManager.getSupplementaryFileDir(trace);
+        Path file = Paths.get(dir, getId() + DATA_FILE_EXTENSION);
+
+        /* See if an index of the whole trace already exists on disk */
+        if (Files.exists(file)) {
+            try {
+                TmfEventIndex index = TmfEventIndex.open(file);
+                if (index.getNbEvents() >= trace.getNbEvents()) {
+                    fIndex = index;
+                    return true;
+                }
+                index.close();
+            } catch (IOException e) {
+                /* Rebuild it */
+            }
+        }
+
+        Map<String, ITmfEventAspect<?>> aspects = getIndexedAspects(trace);
+        ITmfEventAspect<?>[] aspectArray = aspects.values().toArray(new ITmfEventAspect<?>[aspects.size()]);
+        TmfEventIndexWriter writer = new TmfEventIndexWriter(new ArrayList<>(aspects.keySet()), Paths.get(dir));
+        List<IOException> errors = new ArrayList<>(1);
+        TmfEventRequest request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY, 0,
+                ITmfEventRequest.ALL_DATA, ITmfEventRequest.ExecutionType.BACKGROUND) {
+
+            private final Object[] fValues = new Object[aspectArray.length];
+
+            @Override
+            public void handleData(ITmfEvent event) {
+                super.handleData(event);
+                if (monitor.isCanceled()) {
+                    cancel();
+                    return;
+                }
+                for (int i = 0; i < aspectArray.length; i++) {
+                    fValues[i] = aspectArray[i].resolve(event);
+                }
+                try {
+                    writer.addEvent(fValues);
+                } catch (IOException e) {
+                    errors.add(e);
+                    cancel();
+                }
+            }
+        };
+        fRequest = request;
+        trace.sendRequest(request);
+        try {
+            request.waitForCompletion();
+            if (request.isCancelled() || request.isFailed()) {
+                writer.dispose();
+                if (!errors.isEmpty()) {
+                    Activator.logError("Error indexing trace " + trace.getName(), errors.get(0)); //$NON-NLS-1$
+                }
+                return false;
+            }
+            writer.write(file);
+            fIndex = TmfEventIndex.open(file);
+        } catch (InterruptedException e) {
+            writer.dispose();
+            return false;
+        } catch (IOException e) {
+            Activator.logError("Error writing the event index of trace " + trace.getName(), e); //$NON-NLS-1$
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected void canceling() {
+        ITmfEventRequest request = fRequest;
+        if (request != null && !request.isCompleted()) {
+            request.cancel();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        TmfEventIndex index = fIndex;
+        fIndex = null;
+        if (index != null) {
+            try {
+                index.close();
+            } catch (IOException e) {
+                /* Nothing to do, the index is no longer used */
+            }
+        }
+    }
+}
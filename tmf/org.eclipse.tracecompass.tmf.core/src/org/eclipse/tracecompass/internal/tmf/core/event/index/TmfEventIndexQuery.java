@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.event.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.Postings;
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.Term;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAspectNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+
+/**
+ * Translates a filter tree into the ranks of the matching events in a
+ * {@link TmfEventIndex}, so that the events matching a search are found
+ * without evaluating the filter on every event.
+ *
+ * Only the filters that the index can answer exactly are translated: the
+ * conditions on the values of indexed aspects, and their conjunctions and
+ * disjunctions. The values of a condition are found with a term lookup when
+ * possible (equality, regular expression with a literal prefix, numerical
+ * comparison), or else by checking every term of the aspect.
+ */
+public final class TmfEventIndexQuery {
+
+    /** Maximum number of posting lists merged for a single condition */
+    private static final int MAX_TERMS = 1024;
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}"; //$NON-NLS-1$
+    private static final String REGEX_QUANTIFIERS = "?*+{"; //$NON-NLS-1$
+
+    private final TmfEventIndex fIndex;
+    private final Map<String, ITmfEventAspect<?>> fAspects;
+
+    private TmfEventIndexQuery(TmfEventIndex index, Map<String, ITmfEventAspect<?>> aspects) {
+        fIndex = index;
+        fAspects = aspects;
+    }
+
+    /**
+     * Get the ranks of the events that match a filter
+     *
+     * @param index
+     *            The event index of the trace
+     * @param aspects
+     *            The indexed aspects of the trace, by name, as returned by
+     *            {@link TmfEventIndexModule#getIndexedAspects}
+     * @param filter
+     *            The filter
+     * @return The ranks of the matching events, or null if the index cannot
+     *         answer this filter
+     */
+    public static Postings create(TmfEventIndex index, Map<String, ITmfEventAspect<?>> aspects, ITmfFilter filter) {
+        if (!(filter instanceof ITmfFilterTreeNode)) {
+            return null;
+        }
+        return new TmfEventIndexQuery(index, aspects).translate((ITmfFilterTreeNode) filter);
+    }
+
+    private Postings translate(ITmfFilterTreeNode node) {
+        /* Subclasses could match differently */
+        Class<?> nodeClass = node.getClass();
+        if (nodeClass == TmfFilterRootNode.class) {
+            return intersection(node);
+        } else if (nodeClass == TmfFilterAndNode.class) {
+            return ((TmfFilterAndNode) node).isNot() ? null : intersection(node);
+        } else if (nodeClass == TmfFilterNode.class) {
+            return union(node);
+        } else if (nodeClass == TmfFilterOrNode.class) {
+            /* A negated OR node never matches */
+            return ((TmfFilterOrNode) node).isNot() ? TmfEventIndex.EMPTY : union(node);
+        } else if (nodeClass == TmfFilterMatchesNode.class) {
+            return translate((TmfFilterMatchesNode) node);
+        } else if (nodeClass == TmfFilterEqualsNode.class) {
+            return translate((TmfFilterEqualsNode) node);
+        } else if (nodeClass == TmfFilterContainsNode.class) {
+            return translate((TmfFilterContainsNode) node);
+        } else if (nodeClass == TmfFilterCompareNode.class) {
+            return translate((TmfFilterCompareNode) node);
+        }
+        return null;
+    }
+
+    private Postings intersection(ITmfFilterTreeNode node) {
+        if (!node.hasChildren()) {
+            /* Every event matches, the index does not help */
+            return null;
+        }
+        List<Postings> children = new ArrayList<>();
+        for (ITmfFilterTreeNode child : node.getChildren()) {
+            Postings postings = translate(child);
+            if (postings == null) {
+                return null;
+            }
+            if (postings == TmfEventIndex.EMPTY) {
+                return TmfEventIndex.EMPTY;
+            }
+            children.add(postings);
+        }
+        return TmfEventIndex.intersection(children);
+    }
+
+    private Postings union(ITmfFilterTreeNode node) {
+        List<Postings> children = new ArrayList<>();
+        for (ITmfFilterTreeNode child : node.getChildren()) {
+            Postings postings = translate(child);
+            if (postings == null) {
+                return null;
+            }
+            if (postings != TmfEventIndex.EMPTY) {
+                children.add(postings);
+            }
+        }
+        return TmfEventIndex.union(children);
+    }
+
+    // ------------------------------------------------------------------------
+    // Conditions
+    // ------------------------------------------------------------------------
+
+    private Postings translate(TmfFilterMatchesNode node) {
+        String field = getField(node);
+        if (field == null || node.getRegex() == null) {
+            return null;
+        }
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(node.getRegex(), Pattern.DOTALL);
+        } catch (PatternSyntaxException e) {
+            return node.isNot() ? null : TmfEventIndex.EMPTY;
+        }
+        boolean not = node.isNot();
+        Predicate<Term> condition = term -> pattern.matcher(term.getValue()).find() ^ not;
+        String prefix = not ? null : getLiteralPrefix(node.getRegex());
+        List<Term> terms = (prefix == null) ?
+                fIndex.getTerms(field, condition) :
+                filter(fIndex.getTermsWithPrefix(field, prefix), condition);
+        return postings(field, terms, not);
+    }
+
+    private Postings translate(TmfFilterEqualsNode node) {
+        String field = getField(node);
+        if (field == null) {
+            return null;
+        }
+        String value = node.getValue();
+        boolean not = node.isNot();
+        if (value != null && !not && !node.isIgnoreCase()) {
+            Term term = fIndex.getTerm(field, value);
+            return postings(field, term == null ? Collections.emptyList() : Collections.singletonList(term), false);
+        }
+        boolean ignoreCase = node.isIgnoreCase();
+        return postings(field, fIndex.getTerms(field, term -> (ignoreCase ?
+                term.getValue().equalsIgnoreCase(value) :
+                term.getValue().equals(value)) ^ not), not);
+    }
+
+    private Postings translate(TmfFilterContainsNode node) {
+        String field = getField(node);
+        String value = node.getValue();
+        if (field == null || value == null) {
+            return null;
+        }
+        boolean not = node.isNot();
+        if (node.isIgnoreCase()) {
+            String upperCase = value.toUpperCase();
+            return postings(field, fIndex.getTerms(field, term -> term.getValue().toUpperCase().contains(upperCase) ^ not), not);
+        }
+        return postings(field, fIndex.getTerms(field, term -> term.getValue().contains(value) ^ not), not);
+    }
+
+    private Postings translate(TmfFilterCompareNode node) {
+        String field = getField(node);
+        String value = node.getValue();
+        if (field == null || value == null) {
+            return null;
+        }
+        int result = node.getResult();
+        boolean not = node.isNot();
+        /* The events without value never match a comparison */
+        if (node.getType() == Type.ALPHA) {
+            return postings(field, fIndex.getTerms(field, term -> ((int) Math.signum(term.getValue().compareTo(value)) == result) ^ not), false);
+        } else if (node.getType() != Type.NUM) {
+            return null;
+        }
+        Number number = TmfEventIndex.toNumber(value);
+        if (number == null) {
+            return TmfEventIndex.EMPTY;
+        }
+        if (number instanceof Double) {
+            double d = number.doubleValue();
+            return postings(field, fIndex.getTerms(field, term -> term.getNumber() != null &&
+                    ((Double.compare(term.getNumber().doubleValue(), d) == result) ^ not)), false);
+        }
+        long l = number.longValue();
+        Predicate<Term> condition = term -> {
+            Number n = term.getNumber();
+            if (n instanceof Double) {
+                return (Double.compare(n.doubleValue(), number.doubleValue()) == result) ^ not;
+            }
+            return n != null && ((Long.compare(n.longValue(), l) == result) ^ not);
+        };
+        if (not) {
+            return postings(field, fIndex.getTerms(field, condition), false);
+        }
+        /* Integer values are found by range, the others are checked */
+        List<Term> terms;
+        if (result < 0) {
+            terms = (l == Long.MIN_VALUE) ? new ArrayList<>() : fIndex.getTermsInRange(field, Long.MIN_VALUE, l - 1);
+        } else if (result > 0) {
+            terms = (l == Long.MAX_VALUE) ? new ArrayList<>() : fIndex.getTermsInRange(field, l + 1, Long.MAX_VALUE);
+        } else {
+            terms = fIndex.getTermsInRange(field, l, l);
+        }
+        terms.addAll(fIndex.getTerms(field, term -> term.getNumber() instanceof Double && condition.test(term)));
+        return postings(field, terms, false);
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the indexed field of a condition, or null if the values of its
+     * aspect are not in the index
+     */
+    private String getField(TmfFilterAspectNode node) {
+        ITmfEventAspect<?> aspect = node.getEventAspect();
+        if (aspect == null) {
+            return null;
+        }
+        String name = aspect.getName();
+        if (!aspect.equals(fAspects.get(name)) || !fIndex.isIndexed(name)) {
+            return null;
+        }
+        return name;
+    }
+
+    /**
+     * Get the union of the postings of terms. If the condition is negated,
+     * the events without value also match.
+     */
+    private Postings postings(String field, List<Term> terms, boolean includeMissing) {
+        if (terms.size() > MAX_TERMS) {
+            return null;
+        }
+        List<Postings> postings = new ArrayList<>(terms.size() + 1);
+        for (Term term : terms) {
+            postings.add(fIndex.getPostings(term));
+        }
+        Term missing = fIndex.getMissingTerm(field);
+        if (includeMissing && missing != null) {
+            postings.add(fIndex.getPostings(missing));
+        }
+        return TmfEventIndex.union(postings);
+    }
+
+    private static List<Term> filter(List<Term> terms, Predicate<Term> condition) {
+        terms.removeIf(condition.negate());
+        return terms;
+    }
+
+    /**
+     * Get the literal prefix of the values matched by a regular expression
+     * anchored at the beginning, or null if it has none
+     */
+    static String getLiteralPrefix(String regex) {
+        /* An alternative would not need the prefix */
+        if (!regex.startsWith("^") || regex.indexOf('|') >= 0) { //$NON-NLS-1$
+            return null;
+        }
+        int end = 1;
+        while (end < regex.length() && REGEX_METACHARACTERS.indexOf(regex.charAt(end)) < 0) {
+            end++;
+        }
+        /* A quantifier applies to the last literal character */
+        if (end < regex.length() && REGEX_QUANTIFIERS.indexOf(regex.charAt(end)) >= 0) {
+            end--;
+        }
+        if (end <= 1) {
+            return null;
+        }
+        return regex.substring(1, end);
+    }
+}
@@ -0,0 +1,495 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.event.index;
+
+import static org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.BLOCK_SIZE;
+import static org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.HEADER_SIZE;
+import static org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.KIND_DOUBLE;
+import static org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.KIND_LONG;
+import static org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.KIND_MISSING;
+import static org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.KIND_STRING;
+import static org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.SKIP_ENTRY_SIZE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link TmfEventIndex} file from the values of the indexed aspects
+ * of each event, in rank order.
+ *
+ * The posting lists are accumulated in memory and written to temporary
+ * segment files whenever they exceed a given size, so the memory used
+ * does not depend on the size of the trace. The segments are merged into the
+ * final file at the end. An aspect that has too many distinct values, or too
+ * long values, is not indexed: its values would be better searched by reading
+ * the trace.
+ */
+public final class TmfEventIndexWriter {
+
+    /** Maximum number of distinct values of an indexed aspect */
+    private static final int MAX_TERMS = 100000;
+    /** Maximum length of the values of an indexed aspect */
+    private static final int MAX_TERM_LENGTH = 1024;
+    /** Default size of the encoded postings kept in memory */
+    private static final long SPILL_SIZE = 32 << 20;
+    private static final String SEGMENT_PREFIX = "event-index"; //$NON-NLS-1$
+    private static final String SEGMENT_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+    /** Missing values first, then the values in string order */
+    private static final Comparator<TermBuilder> TERM_ORDER = Comparator
+            .comparing((TermBuilder term) -> term.fKind != KIND_MISSING)
+            .thenComparing(term -> term.fValue);
+
+    private final Path fDirectory;
+    private final long fSpillSize;
+    private final FieldBuilder[] fFields;
+    private final List<Path> fSegments = new ArrayList<>();
+    private long fRank = 0;
+    private long fSegmentEvents = 0;
+    private long fBufferedBytes = 0;
+
+    private static final class FieldBuilder {
+        private final String fName;
+        private final Map<String, TermBuilder> fTerms = new HashMap<>();
+        private TermBuilder fMissing;
+        private boolean fDropped;
+
+        public FieldBuilder(String name) {
+            fName = name;
+        }
+
+        public List<TermBuilder> getSortedTerms(boolean segmentOnly) {
+            List<TermBuilder> terms = new ArrayList<>(fTerms.size() + 1);
+            if (fMissing != null) {
+                terms.add(fMissing);
+            }
+            terms.addAll(fTerms.values());
+            if (segmentOnly) {
+                terms.removeIf(term -> term.fSegmentCount == 0);
+            }
+            terms.sort(TERM_ORDER);
+            return terms;
+        }
+    }
+
+    private static final class TermBuilder {
+        private final String fValue;
+        private final byte fKind;
+        private final long fNumber;
+        private long fCount;
+        private long fSkipOffset;
+
+        /* Postings of the current segment */
+        private long fSegmentCount;
+        private long fFirstRank;
+        private long fLastRank;
+        private byte[] fBuffer = new byte[8];
+        private int fLength;
+
+        public TermBuilder(String value, byte kind, long number) {
+            fValue = value;
+            fKind = kind;
+            fNumber = number;
+        }
+
+        public static TermBuilder create(String value, Object object) {
+            Number number = TmfEventIndex.toNumber(object);
+            if (number instanceof Double || number instanceof Float) {
+                return new TermBuilder(value, KIND_DOUBLE, Double.doubleToLongBits(number.doubleValue()));
+            } else if (number != null) {
+                return new TermBuilder(value, KIND_LONG, number.longValue());
+            }
+            return new TermBuilder(value, KIND_STRING, 0);
+        }
+
+        /** Add a rank, and return the number of bytes added to the buffer */
+        public int add(long rank) {
+            fCount++;
+            if (fSegmentCount++ == 0) {
+                fFirstRank = rank;
+                fLastRank = rank;
+                return 0;
+            }
+            if (fLength + 10 > fBuffer.length) {
+                fBuffer = Arrays.copyOf(fBuffer, fBuffer.length * 2);
+            }
+            int length = fLength;
+            long delta = rank - fLastRank;
+            while ((delta & ~0x7fL) != 0) {
+                fBuffer[fLength++] = (byte) (delta | 0x80);
+                delta >>>= 7;
+            }
+            fBuffer[fLength++] = (byte) delta;
+            fLastRank = rank;
+            return fLength - length;
+        }
+
+        public void clearSegment() {
+            fSegmentCount = 0;
+            fLength = 0;
+            if (fBuffer.length > 1024) {
+                fBuffer = new byte[8];
+            }
+        }
+    }
+
+    /** Output stream that knows its position */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long fCount = 0;
+
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            fCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            fCount += len;
+        }
+
+        public long getCount() {
+            return fCount;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fieldNames
+     *            The names of the indexed aspects
+     * @param directory
+     *            The directory where to write the temporary files
+     */
+    public TmfEventIndexWriter(List<String> fieldNames, Path directory) {
+        this(fieldNames, directory, SPILL_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fieldNames
+     *            The names of the indexed aspects
+     * @param directory
+     *            The directory where to write the temporary files
+     * @param spillSize
+     *            The size of the encoded postings kept in memory before
+     *            writing them to a temporary file
+     */
+    public TmfEventIndexWriter(List<String> fieldNames, Path directory, long spillSize) {
+        fDirectory = directory;
+        fSpillSize = spillSize;
+        fFields = fieldNames.stream().map(FieldBuilder::new).toArray(FieldBuilder[]::new);
+    }
+
+    /**
+     * Add the next event
+     *
+     * @param values
+     *            The values of the aspects of the event, in the same order as
+     *            the field names
+     * @throws IOException
+     *             If a segment could not be written
+     */
+    public void addEvent(Object[] values) throws IOException {
+        for (int i = 0; i < fFields.length; i++) {
+            FieldBuilder field = fFields[i];
+            if (field.fDropped) {
+                continue;
+            }
+            Object value = values[i];
+            TermBuilder term;
+            if (value == null) {
+                term = field.fMissing;
+                if (term == null) {
+                    term = new TermBuilder("", KIND_MISSING, 0); //$NON-NLS-1$
+                    field.fMissing = term;
+                }
+            } else {
+                String string = value.toString();
+                term = field.fTerms.get(string);
+                if (term == null) {
+                    if (string.length() > MAX_TERM_LENGTH || field.fTerms.size() >= MAX_TERMS) {
+                        drop(field);
+                        continue;
+                    }
+                    term = TermBuilder.create(string, value);
+                    field.fTerms.put(string, term);
+                }
+            }
+            fBufferedBytes += term.add(fRank);
+        }
+        fRank++;
+        fSegmentEvents++;
+        if (fBufferedBytes > fSpillSize) {
+            spill();
+        }
+    }
+
+    private void drop(FieldBuilder field) {
+        for (TermBuilder term : field.getSortedTerms(true)) {
+            fBufferedBytes -= term.fLength;
+        }
+        field.fTerms.clear();
+        field.fMissing = null;
+        field.fDropped = true;
+    }
+
+    /**
+     * Write the postings of the current segment to a temporary file. For each
+     * field, the terms that occurred in the segment are written in the order
+     * of the final dictionary.
+     */
+    private void spill() throws IOException {
+        if (fSegmentEvents == 0) {
+            return;
+        }
+        Path segment = Files.createTempFile(fDirectory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        fSegments.add(segment);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(segment)))) {
+            for (FieldBuilder field : fFields) {
+                List<TermBuilder> terms = field.getSortedTerms(true);
+                out.writeInt(terms.size());
+                for (TermBuilder term : terms) {
+                    out.writeByte(term.fKind);
+                    out.writeUTF(term.fValue);
+                    out.writeLong(term.fSegmentCount);
+                    out.writeLong(term.fFirstRank);
+                    out.writeInt(term.fLength);
+                    out.write(term.fBuffer, 0, term.fLength);
+                    term.clearSegment();
+                }
+            }
+        }
+        fBufferedBytes = 0;
+        fSegmentEvents = 0;
+    }
+
+    /**
+     * Write the index file. The writer cannot be used afterwards.
+     *
+     * @param file
+     *            The index file
+     * @throws IOException
+     *             If the file could not be written
+     */
+    public void write(Path file) throws IOException {
+        spill();
+        Path tmpFile = file.resolveSibling(file.getFileName() + SEGMENT_SUFFIX);
+        Path skipFile = Files.createTempFile(fDirectory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        List<DataInputStream> segments = new ArrayList<>();
+        try {
+            for (Path segment : fSegments) {
+                segments.add(new DataInputStream(new BufferedInputStream(Files.newInputStream(segment))));
+            }
+            long skipSection;
+            long dictionary;
+            try (CountingOutputStream data = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)));
+                    DataOutputStream skip = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(skipFile)))) {
+                data.write(new byte[HEADER_SIZE]);
+                long skipOffset = 0;
+                for (FieldBuilder field : fFields) {
+                    skipOffset = merge(field, segments, data, skip, skipOffset);
+                }
+                skip.flush();
+
+                skipSection = data.getCount();
+                Files.copy(skipFile, data);
+                dictionary = data.getCount();
+                DataOutputStream out = new DataOutputStream(data);
+                writeDictionary(out);
+                out.flush();
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(TmfEventIndex.MAGIC);
+            header.putInt(TmfEventIndex.VERSION);
+            header.putLong(fRank);
+            header.putLong(skipSection);
+            header.putLong(dictionary);
+            header.flip();
+            try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            for (DataInputStream segment : segments) {
+                segment.close();
+            }
+            Files.deleteIfExists(skipFile);
+            Files.deleteIfExists(tmpFile);
+            dispose();
+        }
+    }
+
+    /**
+     * Delete the temporary files of this writer
+     */
+    public void dispose() {
+        for (Path segment : fSegments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                /* Leave it, it is in the supplementary files of the trace */
+            }
+        }
+        fSegments.clear();
+    }
+
+    /**
+     * Merge the postings of a field from all the segments, and return the new
+     * offset in the skip section
+     */
+    private static long merge(FieldBuilder field, List<DataInputStream> segments, CountingOutputStream data, DataOutputStream skip, long skipOffset) throws IOException {
+        int[] remaining = new int[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            remaining[i] = segments.get(i).readInt();
+        }
+        if (field.fDropped) {
+            for (int i = 0; i < segments.size(); i++) {
+                DataInputStream in = segments.get(i);
+                for (; remaining[i] > 0; remaining[i]--) {
+                    in.readByte();
+                    in.readUTF();
+                    in.readLong();
+                    in.readLong();
+                    in.readFully(new byte[in.readInt()]);
+                }
+            }
+            return skipOffset;
+        }
+
+        /* The header of the current term of each segment */
+        byte[] kinds = new byte[segments.size()];
+        String[] values = new String[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            readTermHeader(segments.get(i), remaining[i], kinds, values, i);
+        }
+
+        long offset = skipOffset;
+        for (TermBuilder term : field.getSortedTerms(false)) {
+            term.fSkipOffset = offset;
+            long index = 0;
+            long previous = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                if (remaining[i] == 0 || kinds[i] != term.fKind || !values[i].equals(term.fValue)) {
+                    continue;
+                }
+                DataInputStream in = segments.get(i);
+                long count = in.readLong();
+                long rank = in.readLong();
+                in.readInt();
+                for (long j = 0; j < count; j++) {
+                    if (j > 0) {
+                        rank += readVarLong(in);
+                    }
+                    if (index % BLOCK_SIZE == 0) {
+                        skip.writeLong(rank);
+                        skip.writeLong(data.getCount());
+                        offset += SKIP_ENTRY_SIZE;
+                    } else {
+                        writeVarLong(data, rank - previous);
+                    }
+                    previous = rank;
+                    index++;
+                }
+                remaining[i]--;
+                readTermHeader(in, remaining[i], kinds, values, i);
+            }
+            if (index != term.fCount) {
+                throw new IOException("Inconsistent event index segments for " + field.fName); //$NON-NLS-1$
+            }
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            if (remaining[i] != 0) {
+                throw new IOException("Inconsistent event index segments for " + field.fName); //$NON-NLS-1$
+            }
+        }
+        return offset;
+    }
+
+    private static void readTermHeader(DataInputStream in, int remaining, byte[] kinds, String[] values, int i) throws IOException {
+        if (remaining > 0) {
+            kinds[i] = in.readByte();
+            values[i] = in.readUTF();
+        }
+    }
+
+    private void writeDictionary(DataOutputStream out) throws IOException {
+        int nbFields = 0;
+        for (FieldBuilder field : fFields) {
+            if (!field.fDropped) {
+                nbFields++;
+            }
+        }
+        out.writeInt(nbFields);
+        for (FieldBuilder field : fFields) {
+            if (field.fDropped) {
+                continue;
+            }
+            List<TermBuilder> terms = field.getSortedTerms(false);
+            out.writeUTF(field.fName);
+            out.writeInt(terms.size());
+            for (TermBuilder term : terms) {
+                out.writeUTF(term.fValue);
+                out.writeByte(term.fKind);
+                out.writeLong(term.fNumber);
+                out.writeLong(term.fCount);
+                out.writeLong(term.fSkipOffset);
+            }
+        }
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        long v = value;
+        while ((v & ~0x7fL) != 0) {
+            out.write((int) (v | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid event index segment"); //$NON-NLS-1$
+    }
+}
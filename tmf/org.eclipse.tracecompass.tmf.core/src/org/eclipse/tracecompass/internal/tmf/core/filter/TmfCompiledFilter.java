@@ -0,0 +1,643 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAspectNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestampFormat;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * A filter compiled from a tree of filter nodes. It matches the same events
+ * as the tree, but:
+ * <ul>
+ * <li>each distinct aspect of the tree is resolved, and converted to a
+ * string, at most once per event, even if several nodes use it,</li>
+ * <li>the values of the nodes are parsed once, and numbers are compared
+ * without boxing,</li>
+ * <li>the conditions of the AND and OR nodes are reordered so that the cheap
+ * ones (trace type, equality) are checked before the regular expressions,
+ * </li>
+ * <li>each thread reuses its own regex matchers and timestamp format.</li>
+ * </ul>
+ *
+ * The compiled filter is a snapshot of the tree, it does not follow later
+ * changes of the tree. It can be used by several threads at the same time,
+ * unless the tree contains nodes of other types, which are delegated to.
+ */
+public final class TmfCompiledFilter implements ITmfFilter {
+
+    private static final String TIMESTAMP_PATTERN = "T.SSSSSSSSS"; //$NON-NLS-1$
+
+    /** Marker of an aspect that was not resolved yet for the current event */
+    private static final Object UNRESOLVED = new Object();
+
+    /* Relative costs of the conditions */
+    private static final int COST_TRACE_TYPE = 1;
+    private static final int COST_STRING = 2;
+    private static final int COST_PARSE = 3;
+    private static final int COST_REGEX = 5;
+    private static final int COST_DELEGATE = 10;
+
+    private final ITmfFilterTreeNode fTree;
+    private final Condition fRoot;
+    private final ITmfEventAspect<?>[] fAspects;
+    private final int fNbMatchers;
+    private final ThreadLocal<Evaluation> fEvaluation = ThreadLocal.withInitial(this::createEvaluation);
+
+    private TmfCompiledFilter(ITmfFilterTreeNode tree) {
+        fTree = tree;
+        Compiler compiler = new Compiler();
+        fRoot = compiler.compile(tree);
+        fAspects = compiler.fAspects.toArray(new ITmfEventAspect<?>[compiler.fAspects.size()]);
+        fNbMatchers = compiler.fPatterns.size();
+    }
+
+    /**
+     * Compile a filter. Filters that are not trees of filter nodes are
+     * returned as is.
+     *
+     * @param filter
+     *            The filter
+     * @return The compiled filter
+     */
+    public static ITmfFilter compile(ITmfFilter filter) {
+        if (filter instanceof ITmfFilterTreeNode) {
+            return new TmfCompiledFilter((ITmfFilterTreeNode) filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Get the tree this filter was compiled from
+     *
+     * @return The tree of filter nodes
+     */
+    public ITmfFilterTreeNode getTree() {
+        return fTree;
+    }
+
+    @Override
+    public boolean matches(ITmfEvent event) {
+        Evaluation evaluation = fEvaluation.get();
+        evaluation.reset(event);
+        try {
+            return fRoot.test(evaluation);
+        } finally {
+            evaluation.fEvent = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return fTree.toString();
+    }
+
+    private Evaluation createEvaluation() {
+        return new Evaluation(fAspects.length, fNbMatchers);
+    }
+
+    // ------------------------------------------------------------------------
+    // Evaluation state
+    // ------------------------------------------------------------------------
+
+    /**
+     * The state of the evaluation of one event, kept by each thread
+     */
+    private final class Evaluation {
+        private ITmfEvent fEvent;
+        private final Object[] fValues;
+        private final String[] fStrings;
+        private final Matcher[] fMatchers;
+        private TmfTimestampFormat fTimestampFormat;
+
+        public Evaluation(int nbAspects, int nbMatchers) {
+            fValues = new Object[nbAspects];
+            fStrings = new String[nbAspects];
+            fMatchers = new Matcher[nbMatchers];
+        }
+
+        public void reset(ITmfEvent event) {
+            fEvent = event;
+            Arrays.fill(fValues, UNRESOLVED);
+            Arrays.fill(fStrings, null);
+        }
+
+        public Object getValue(int aspect) {
+            Object value = fValues[aspect];
+            if (value == UNRESOLVED) {
+                value = fAspects[aspect].resolve(fEvent);
+                fValues[aspect] = value;
+            }
+            return value;
+        }
+
+        /* Only called when the value is not null */
+        public String getString(int aspect) {
+            String string = fStrings[aspect];
+            if (string == null) {
+                string = getValue(aspect).toString();
+                fStrings[aspect] = string;
+            }
+            return string;
+        }
+
+        public Matcher getMatcher(int index, Pattern pattern) {
+            Matcher matcher = fMatchers[index];
+            if (matcher == null) {
+                matcher = pattern.matcher(""); //$NON-NLS-1$
+                fMatchers[index] = matcher;
+            }
+            return matcher;
+        }
+
+        public TmfTimestampFormat getTimestampFormat() {
+            if (fTimestampFormat == null) {
+                fTimestampFormat = new TmfTimestampFormat(TIMESTAMP_PATTERN);
+            }
+            return fTimestampFormat;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Conditions
+    // ------------------------------------------------------------------------
+
+    private abstract static class Condition {
+        private final int fCost;
+        private final boolean fPure;
+
+        protected Condition(int cost, boolean pure) {
+            fCost = cost;
+            fPure = pure;
+        }
+
+        /**
+         * @return The relative cost of the evaluation of this condition
+         */
+        public int getCost() {
+            return fCost;
+        }
+
+        /**
+         * @return true if the condition has no side effects, so it can be
+         *         evaluated in any order, or not at all
+         */
+        public boolean isPure() {
+            return fPure;
+        }
+
+        public abstract boolean test(Evaluation evaluation);
+    }
+
+    private static int sumCost(Condition[] conditions) {
+        int cost = 0;
+        for (Condition condition : conditions) {
+            cost = Math.min(COST_DELEGATE * 100, cost + condition.getCost());
+        }
+        return cost;
+    }
+
+    private static boolean allPure(Condition[] conditions) {
+        for (Condition condition : conditions) {
+            if (!condition.isPure()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** All the conditions must match, as the root, AND and trace type nodes */
+    private static final class AllCondition extends Condition {
+        private final Condition[] fConditions;
+        private final boolean fNot;
+
+        public AllCondition(Condition[] conditions, boolean not) {
+            super(sumCost(conditions), allPure(conditions));
+            fConditions = conditions;
+            fNot = not;
+        }
+
+        @Override
+        public boolean test(Evaluation evaluation) {
+            for (Condition condition : fConditions) {
+                if (!condition.test(evaluation)) {
+                    return fNot;
+                }
+            }
+            return !fNot;
+        }
+    }
+
+    /** Any condition must match, as the filter and OR nodes */
+    private static final class AnyCondition extends Condition {
+        private final Condition[] fConditions;
+        private final boolean fNot;
+
+        public AnyCondition(Condition[] conditions, boolean not) {
+            super(sumCost(conditions), allPure(conditions));
+            fConditions = conditions;
+            fNot = not;
+        }
+
+        @Override
+        public boolean test(Evaluation evaluation) {
+            for (Condition condition : fConditions) {
+                if (condition.test(evaluation)) {
+                    return !fNot;
+                }
+            }
+            /* Same as TmfFilterOrNode, which does not match when no child does */
+            return false;
+        }
+    }
+
+    private static final class TraceTypeCondition extends Condition {
+        private final Class<? extends ITmfTrace> fTraceClass;
+        private final String fTraceTypeId;
+        private final Condition fChildren;
+
+        public TraceTypeCondition(TmfFilterTraceTypeNode node, Condition children) {
+            super(COST_TRACE_TYPE + children.getCost(), children.isPure());
+            fTraceClass = node.getTraceClass();
+            fTraceTypeId = node.getTraceTypeId();
+            fChildren = children;
+        }
+
+        @Override
+        public boolean test(Evaluation evaluation) {
+            ITmfTrace trace = evaluation.fEvent.getTrace();
+            if (!trace.getClass().equals(fTraceClass)) {
+                return false;
+            }
+            if (fTraceTypeId != null && !fTraceTypeId.equals(trace.getTraceTypeId())) {
+                return false;
+            }
+            return fChildren.test(evaluation);
+        }
+    }
+
+    private static final class ConstantCondition extends Condition {
+        private final boolean fResult;
+
+        public ConstantCondition(boolean result) {
+            super(0, true);
+            fResult = result;
+        }
+
+        @Override
+        public boolean test(Evaluation evaluation) {
+            return fResult;
+        }
+    }
+
+    /** A node of another type, that evaluates itself */
+    private static final class DelegateCondition extends Condition {
+        private final ITmfFilterTreeNode fNode;
+
+        public DelegateCondition(ITmfFilterTreeNode node) {
+            super(COST_DELEGATE, false);
+            fNode = node;
+        }
+
+        @Override
+        public boolean test(Evaluation evaluation) {
+            return fNode.matches(evaluation.fEvent);
+        }
+    }
+
+    /** A condition on the value of an aspect */
+    private abstract static class AspectCondition extends Condition {
+        private final int fAspect;
+        private final boolean fMissing;
+
+        /**
+         * @param missing
+         *            The result of the condition when the event or the value
+         *            of the aspect is null
+         */
+        protected AspectCondition(int cost, int aspect, boolean missing) {
+            super(cost, true);
+            fAspect = aspect;
+            fMissing = missing;
+        }
+
+        @Override
+        public final boolean test(Evaluation evaluation) {
+            if (evaluation.fEvent == null || evaluation.getValue(fAspect) == null) {
+                return fMissing;
+            }
+            return test(evaluation, fAspect);
+        }
+
+        protected abstract boolean test(Evaluation evaluation, int aspect);
+    }
+
+    private static final class MatchesCondition extends AspectCondition {
+        private final Pattern fPattern;
+        private final int fMatcher;
+        private final boolean fNot;
+
+        public MatchesCondition(int aspect, Pattern pattern, int matcher, boolean not) {
+            super(COST_REGEX, aspect, not);
+            fPattern = pattern;
+            fMatcher = matcher;
+            fNot = not;
+        }
+
+        @Override
+        protected boolean test(Evaluation evaluation, int aspect) {
+            Matcher matcher = evaluation.getMatcher(fMatcher, fPattern);
+            return matcher.reset(evaluation.getString(aspect)).find() ^ fNot;
+        }
+    }
+
+    private static final class ContainsCondition extends AspectCondition {
+        private final String fValue;
+        private final boolean fIgnoreCase;
+        private final boolean fNot;
+
+        public ContainsCondition(int aspect, TmfFilterContainsNode node) {
+            super(COST_STRING, aspect, node.isNot());
+            fIgnoreCase = node.isIgnoreCase();
+            String value = node.getValue();
+            fValue = (fIgnoreCase && value != null) ? value.toUpperCase() : value;
+            fNot = node.isNot();
+        }
+
+        @Override
+        protected boolean test(Evaluation evaluation, int aspect) {
+            String string = evaluation.getString(aspect);
+            if (fIgnoreCase) {
+                string = string.toUpperCase();
+            }
+            return string.contains(fValue) ^ fNot;
+        }
+    }
+
+    private static final class EqualsCondition extends AspectCondition {
+        private final String fValue;
+        private final boolean fIgnoreCase;
+        private final boolean fNot;
+
+        public EqualsCondition(int aspect, TmfFilterEqualsNode node) {
+            super(COST_STRING, aspect, node.isNot());
+            fValue = node.getValue();
+            fIgnoreCase = node.isIgnoreCase();
+            fNot = node.isNot();
+        }
+
+        @Override
+        protected boolean test(Evaluation evaluation, int aspect) {
+            String string = evaluation.getString(aspect);
+            return (fIgnoreCase ? string.equalsIgnoreCase(fValue) : string.equals(fValue)) ^ fNot;
+        }
+    }
+
+    private static final class CompareNumberCondition extends AspectCondition {
+        private final boolean fDouble;
+        private final long fLongValue;
+        private final double fDoubleValue;
+        private final int fResult;
+        private final boolean fNot;
+
+        public CompareNumberCondition(int aspect, Number value, int result, boolean not) {
+            super(COST_PARSE, aspect, false);
+            fDouble = (value instanceof Double);
+            fLongValue = value.longValue();
+            fDoubleValue = value.doubleValue();
+            fResult = result;
+            fNot = not;
+        }
+
+        @Override
+        protected boolean test(Evaluation evaluation, int aspect) {
+            Object value = evaluation.getValue(aspect);
+            Number number;
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                number = (Number) value;
+            } else if (value instanceof Double || value instanceof Float) {
+                return (Double.compare(((Number) value).doubleValue(), fDoubleValue) == fResult) ^ fNot;
+            } else {
+                number = toNumber(value);
+                if (number == null) {
+                    return false;
+                }
+                if (number instanceof Double || number instanceof Float) {
+                    return (Double.compare(number.doubleValue(), fDoubleValue) == fResult) ^ fNot;
+                }
+            }
+            if (fDouble) {
+                return (Double.compare(number.doubleValue(), fDoubleValue) == fResult) ^ fNot;
+            }
+            return (Long.compare(number.longValue(), fLongValue) == fResult) ^ fNot;
+        }
+    }
+
+    private static final class CompareStringCondition extends AspectCondition {
+        private final String fValue;
+        private final int fResult;
+        private final boolean fNot;
+
+        public CompareStringCondition(int aspect, String value, int result, boolean not) {
+            super(COST_STRING, aspect, false);
+            fValue = value;
+            fResult = result;
+            fNot = not;
+        }
+
+        @Override
+        protected boolean test(Evaluation evaluation, int aspect) {
+            int comp = Integer.signum(evaluation.getString(aspect).compareTo(fValue));
+            return (comp == fResult) ^ fNot;
+        }
+    }
+
+    private static final class CompareTimestampCondition extends AspectCondition {
+        private final ITmfTimestamp fValue;
+        private final int fResult;
+        private final boolean fNot;
+
+        public CompareTimestampCondition(int aspect, ITmfTimestamp value, int result, boolean not) {
+            super(COST_PARSE, aspect, false);
+            fValue = value;
+            fResult = result;
+            fNot = not;
+        }
+
+        @Override
+        protected boolean test(Evaluation evaluation, int aspect) {
+            Object value = evaluation.getValue(aspect);
+            ITmfTimestamp timestamp;
+            if (value instanceof ITmfTimestamp) {
+                timestamp = (ITmfTimestamp) value;
+            } else {
+                try {
+                    timestamp = TmfTimestamp.fromNanos(evaluation.getTimestampFormat().parseValue(evaluation.getString(aspect)));
+                } catch (ParseException e) {
+                    return false;
+                }
+            }
+            int comp = Integer.signum(timestamp.compareTo(fValue));
+            return (comp == fResult) ^ fNot;
+        }
+    }
+
+    /**
+     * Same conversion as {@link TmfFilterCompareNode}
+     */
+    private static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        try {
+            return Long.decode(value.toString());
+        } catch (NumberFormatException e) {
+        }
+        try {
+            return NumberFormat.getInstance().parse(value.toString());
+        } catch (ParseException e) {
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+    // Compiler
+    // ------------------------------------------------------------------------
+
+    private static final class Compiler {
+        private final List<ITmfEventAspect<?>> fAspects = new ArrayList<>();
+        private final List<Pattern> fPatterns = new ArrayList<>();
+
+        public Condition compile(ITmfFilterTreeNode node) {
+            /* Exact classes, subclasses may override matches() */
+            Class<?> nodeClass = node.getClass();
+            if (nodeClass == TmfFilterRootNode.class) {
+                return new AllCondition(compileChildren(node), false);
+            } else if (nodeClass == TmfFilterNode.class) {
+                return new AnyCondition(compileChildren(node), false);
+            } else if (nodeClass == TmfFilterAndNode.class) {
+                return new AllCondition(compileChildren(node), ((TmfFilterAndNode) node).isNot());
+            } else if (nodeClass == TmfFilterOrNode.class) {
+                return new AnyCondition(compileChildren(node), ((TmfFilterOrNode) node).isNot());
+            } else if (nodeClass == TmfFilterTraceTypeNode.class) {
+                return new TraceTypeCondition((TmfFilterTraceTypeNode) node, new AllCondition(compileChildren(node), false));
+            } else if (nodeClass == TmfFilterMatchesNode.class) {
+                return compileMatches((TmfFilterMatchesNode) node);
+            } else if (nodeClass == TmfFilterContainsNode.class) {
+                TmfFilterContainsNode contains = (TmfFilterContainsNode) node;
+                if (contains.getEventAspect() == null) {
+                    return new ConstantCondition(contains.isNot());
+                }
+                return new ContainsCondition(getAspect(contains), contains);
+            } else if (nodeClass == TmfFilterEqualsNode.class) {
+                TmfFilterEqualsNode equals = (TmfFilterEqualsNode) node;
+                if (equals.getEventAspect() == null) {
+                    return new ConstantCondition(equals.isNot());
+                }
+                return new EqualsCondition(getAspect(equals), equals);
+            } else if (nodeClass == TmfFilterCompareNode.class) {
+                return compileCompare((TmfFilterCompareNode) node);
+            }
+            return new DelegateCondition(node);
+        }
+
+        private Condition[] compileChildren(ITmfFilterTreeNode node) {
+            ITmfFilterTreeNode[] children = node.getChildren();
+            Condition[] conditions = new Condition[children.length];
+            for (int i = 0; i < children.length; i++) {
+                conditions[i] = compile(children[i]);
+            }
+            /* Conditions with side effects must be evaluated in order */
+            if (allPure(conditions)) {
+                Arrays.sort(conditions, Comparator.comparingInt(Condition::getCost));
+            }
+            return conditions;
+        }
+
+        private Condition compileMatches(TmfFilterMatchesNode node) {
+            if (node.getEventAspect() == null || node.getRegex() == null) {
+                return new ConstantCondition(node.isNot());
+            }
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(node.getRegex(), Pattern.DOTALL);
+            } catch (PatternSyntaxException e) {
+                return new ConstantCondition(node.isNot());
+            }
+            fPatterns.add(pattern);
+            return new MatchesCondition(getAspect(node), pattern, fPatterns.size() - 1, node.isNot());
+        }
+
+        private Condition compileCompare(TmfFilterCompareNode node) {
+            String value = node.getValue();
+            if (node.getEventAspect() == null || value == null) {
+                return new ConstantCondition(false);
+            }
+            switch (node.getType()) {
+            case NUM:
+                Number number = toNumber(value);
+                if (number == null) {
+                    return new ConstantCondition(false);
+                }
+                return new CompareNumberCondition(getAspect(node), number, node.getResult(), node.isNot());
+            case ALPHA:
+                return new CompareStringCondition(getAspect(node), value, node.getResult(), node.isNot());
+            case TIMESTAMP:
+                try {
+                    ITmfTimestamp timestamp = TmfTimestamp.fromNanos(new TmfTimestampFormat(TIMESTAMP_PATTERN).parseValue(value));
+                    return new CompareTimestampCondition(getAspect(node), timestamp, node.getResult(), node.isNot());
+                } catch (ParseException e) {
+                    return new ConstantCondition(false);
+                }
+            default:
+                return new DelegateCondition(node);
+            }
+        }
+
+        /**
+         * Get the index of the aspect of a node, equal aspects share the same
+         * index so they are resolved once per event
+         */
+        private int getAspect(TmfFilterAspectNode node) {
+            ITmfEventAspect<?> aspect = node.getEventAspect();
+            int index = fAspects.indexOf(aspect);
+            if (index < 0) {
+                fAspects.add(aspect);
+                index = fAspects.size() - 1;
+            }
+            return index;
+        }
+    }
+}
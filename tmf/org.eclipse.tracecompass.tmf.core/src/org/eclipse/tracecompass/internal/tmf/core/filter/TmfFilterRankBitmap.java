@@ -0,0 +1,421 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Compressed bitmap of the ranks of the events that match a filter, for the
+ * first {@link #size()} events of a trace.
+ *
+ * The ranks are split in blocks of 65536 ranks. A block with few matching
+ * events keeps their offsets in a sorted char array, a block with more
+ * matching events keeps a bit for each rank. Empty blocks take no space.
+ *
+ * Instances of this class are immutable, use a {@link Builder} to create them.
+ */
+public final class TmfFilterRankBitmap {
+
+    private static final int BLOCK_BITS = 16;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int WORDS_PER_BLOCK = BLOCK_SIZE / Long.SIZE;
+
+    /** Largest number of ranks of a block kept in a char array */
+    private static final int MAX_SPARSE_CARDINALITY = 4096;
+
+    private static final byte EMPTY_BLOCK = 0;
+    private static final byte SPARSE_BLOCK = 1;
+    private static final byte DENSE_BLOCK = 2;
+
+    /** The bitmap of a trace where no event was checked yet */
+    public static final TmfFilterRankBitmap EMPTY = new Builder().build();
+
+    /** For each block, the sorted offsets of its ranks, or null */
+    private final char[][] fSparse;
+    /** For each block, the bits of its ranks, or null */
+    private final long[][] fDense;
+    /** For each block, the number of ranks in the previous blocks */
+    private final long[] fCumulative;
+    private final long fSize;
+    private final long fCardinality;
+
+    private TmfFilterRankBitmap(char[][] sparse, long[][] dense, long[] cumulative, long size) {
+        fSparse = sparse;
+        fDense = dense;
+        fCumulative = cumulative;
+        fSize = size;
+        fCardinality = cumulative[cumulative.length - 1];
+    }
+
+    /**
+     * Get the number of events covered by this bitmap. The events of higher
+     * ranks were not checked against the filter.
+     *
+     * @return The number of events
+     */
+    public long size() {
+        return fSize;
+    }
+
+    /**
+     * Get the number of events that match the filter
+     *
+     * @return The number of matching events
+     */
+    public long getCardinality() {
+        return fCardinality;
+    }
+
+    /**
+     * Check if an event matches the filter
+     *
+     * @param rank
+     *            The rank of the event
+     * @return true if the event matches the filter, false if it does not or if
+     *         it is not covered by this bitmap
+     */
+    public boolean contains(long rank) {
+        if (rank < 0 || rank >= fSize) {
+            return false;
+        }
+        int block = (int) (rank >>> BLOCK_BITS);
+        int offset = (int) (rank & BLOCK_MASK);
+        char[] sparse = fSparse[block];
+        if (sparse != null) {
+            return Arrays.binarySearch(sparse, (char) offset) >= 0;
+        }
+        long[] dense = fDense[block];
+        if (dense != null) {
+            return (dense[offset >>> 6] & (1L << offset)) != 0;
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of matching events before a rank. It is also the index
+     * of the event of this rank among the matching events, if it matches.
+     *
+     * @param rank
+     *            The rank
+     * @return The number of matching events of lower rank
+     */
+    public long rank(long rank) {
+        if (rank <= 0) {
+            return 0;
+        }
+        if (rank >= fSize) {
+            return fCardinality;
+        }
+        int block = (int) (rank >>> BLOCK_BITS);
+        int offset = (int) (rank & BLOCK_MASK);
+        long count = fCumulative[block];
+        char[] sparse = fSparse[block];
+        if (sparse != null) {
+            int index = Arrays.binarySearch(sparse, (char) offset);
+            return count + ((index >= 0) ? index : -index - 1);
+        }
+        long[] dense = fDense[block];
+        if (dense != null) {
+            int word = offset >>> 6;
+            for (int i = 0; i < word; i++) {
+                count += Long.bitCount(dense[i]);
+            }
+            count += Long.bitCount(dense[word] & ((1L << offset) - 1));
+        }
+        return count;
+    }
+
+    /**
+     * Get the rank of a matching event from its index among the matching
+     * events
+     *
+     * @param index
+     *            The index of the matching event, starting at 0
+     * @return The rank of the event, or -1 if there are not that many matching
+     *         events
+     */
+    public long select(long index) {
+        if (index < 0 || index >= fCardinality) {
+            return -1;
+        }
+        /* Find the last block that starts before the index */
+        int low = 0;
+        int high = fCumulative.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (fCumulative[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int block = low;
+        int remaining = (int) (index - fCumulative[block]);
+        long base = (long) block << BLOCK_BITS;
+        char[] sparse = fSparse[block];
+        if (sparse != null) {
+            return base + sparse[remaining];
+        }
+        long[] dense = fDense[block];
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            long word = dense[i];
+            int bits = Long.bitCount(word);
+            if (remaining < bits) {
+                for (int j = 0; j < remaining; j++) {
+                    word &= word - 1;
+                }
+                return base + (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+            remaining -= bits;
+        }
+        return -1;
+    }
+
+    // ------------------------------------------------------------------------
+    // Serialization
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write this bitmap
+     *
+     * @param out
+     *            The output to write to
+     * @throws IOException
+     *             If the bitmap could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(fSize);
+        out.writeInt(fSparse.length);
+        for (int block = 0; block < fSparse.length; block++) {
+            char[] sparse = fSparse[block];
+            long[] dense = fDense[block];
+            if (sparse != null) {
+                out.writeByte(SPARSE_BLOCK);
+                out.writeShort(sparse.length);
+                for (char offset : sparse) {
+                    out.writeChar(offset);
+                }
+            } else if (dense != null) {
+                out.writeByte(DENSE_BLOCK);
+                for (long word : dense) {
+                    out.writeLong(word);
+                }
+            } else {
+                out.writeByte(EMPTY_BLOCK);
+            }
+        }
+    }
+
+    /**
+     * Read a bitmap written by {@link #writeTo(DataOutput)}
+     *
+     * @param in
+     *            The input to read from
+     * @return The bitmap
+     * @throws IOException
+     *             If the bitmap could not be read, or is not valid
+     */
+    public static TmfFilterRankBitmap readFrom(DataInput in) throws IOException {
+        long size = in.readLong();
+        int nbBlocks = in.readInt();
+        if (size < 0 || nbBlocks < 0 || nbBlocks != (int) ((size + BLOCK_MASK) >>> BLOCK_BITS)) {
+            throw new IOException("Invalid rank bitmap size"); //$NON-NLS-1$
+        }
+        char[][] sparseBlocks = new char[nbBlocks][];
+        long[][] denseBlocks = new long[nbBlocks][];
+        long[] cumulative = new long[nbBlocks + 1];
+        for (int block = 0; block < nbBlocks; block++) {
+            byte type = in.readByte();
+            int count = 0;
+            if (type == SPARSE_BLOCK) {
+                char[] sparse = new char[in.readUnsignedShort()];
+                for (int i = 0; i < sparse.length; i++) {
+                    sparse[i] = in.readChar();
+                }
+                sparseBlocks[block] = sparse;
+                count = sparse.length;
+            } else if (type == DENSE_BLOCK) {
+                long[] dense = new long[WORDS_PER_BLOCK];
+                for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+                    dense[i] = in.readLong();
+                    count += Long.bitCount(dense[i]);
+                }
+                denseBlocks[block] = dense;
+            } else if (type != EMPTY_BLOCK) {
+                throw new IOException("Invalid rank bitmap block"); //$NON-NLS-1$
+            }
+            cumulative[block + 1] = cumulative[block] + count;
+        }
+        return new TmfFilterRankBitmap(sparseBlocks, denseBlocks, cumulative, size);
+    }
+
+    @SuppressWarnings("nls")
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [size=" + fSize + ", cardinality=" + fCardinality + "]";
+    }
+
+    // ------------------------------------------------------------------------
+    // Builder
+    // ------------------------------------------------------------------------
+
+    /**
+     * Builds a rank bitmap by appending the results of consecutive ranges of
+     * events. The blocks that are complete are shared with the bitmaps built
+     * so far, so a bitmap of the current results can be built often.
+     */
+    public static final class Builder {
+
+        private final List<char[]> fSparseBlocks = new ArrayList<>();
+        private final List<long[]> fDenseBlocks = new ArrayList<>();
+        private long[] fCumulative = new long[16];
+
+        /** The bits of the block being built */
+        private final long[] fCurrent = new long[WORDS_PER_BLOCK];
+        private int fCurrentCount = 0;
+        private long fSize = 0;
+
+        /**
+         * Constructor for an empty builder
+         */
+        public Builder() {
+        }
+
+        /**
+         * Constructor for a builder that continues an existing bitmap
+         *
+         * @param prefix
+         *            The bitmap of the first events
+         */
+        public Builder(TmfFilterRankBitmap prefix) {
+            int complete = (int) (prefix.fSize >>> BLOCK_BITS);
+            for (int block = 0; block < complete; block++) {
+                addBlock(prefix.fSparse[block], prefix.fDense[block], (int) (prefix.fCumulative[block + 1] - prefix.fCumulative[block]));
+            }
+            if (complete < prefix.fSparse.length) {
+                long base = (long) complete << BLOCK_BITS;
+                long end = prefix.fSize;
+                for (long rank = base; rank < end; rank++) {
+                    if (prefix.contains(rank)) {
+                        setCurrent((int) (rank - base));
+                    }
+                }
+            }
+            fSize = prefix.fSize;
+        }
+
+        /**
+         * Get the number of events covered by the builder
+         *
+         * @return The number of events
+         */
+        public long size() {
+            return fSize;
+        }
+
+        /**
+         * Append the results of the next range of events
+         *
+         * @param matches
+         *            The bits of the matching events, bit 0 is the event of
+         *            rank {@link #size()}
+         * @param length
+         *            The number of events in the range
+         */
+        public void append(BitSet matches, int length) {
+            long start = fSize;
+            for (int i = matches.nextSetBit(0); i >= 0 && i < length; i = matches.nextSetBit(i + 1)) {
+                long rank = start + i;
+                while ((rank >>> BLOCK_BITS) > fSparseBlocks.size()) {
+                    finishBlock();
+                }
+                setCurrent((int) (rank & BLOCK_MASK));
+            }
+            fSize = start + length;
+            while ((fSize >>> BLOCK_BITS) > fSparseBlocks.size()) {
+                finishBlock();
+            }
+        }
+
+        /**
+         * Build the bitmap of the events appended so far
+         *
+         * @return The bitmap
+         */
+        public TmfFilterRankBitmap build() {
+            int complete = fSparseBlocks.size();
+            boolean partial = (fSize > ((long) complete << BLOCK_BITS));
+            int nbBlocks = partial ? complete + 1 : complete;
+            char[][] sparse = fSparseBlocks.toArray(new char[nbBlocks][]);
+            long[][] dense = fDenseBlocks.toArray(new long[nbBlocks][]);
+            long[] cumulative = Arrays.copyOf(fCumulative, nbBlocks + 1);
+            if (partial) {
+                if (fCurrentCount > 0 && fCurrentCount <= MAX_SPARSE_CARDINALITY) {
+                    sparse[complete] = toSparse(fCurrent, fCurrentCount);
+                } else if (fCurrentCount > 0) {
+                    dense[complete] = Arrays.copyOf(fCurrent, WORDS_PER_BLOCK);
+                }
+                cumulative[nbBlocks] = cumulative[complete] + fCurrentCount;
+            }
+            return new TmfFilterRankBitmap(sparse, dense, cumulative, fSize);
+        }
+
+        private void setCurrent(int offset) {
+            long bit = 1L << offset;
+            int word = offset >>> 6;
+            if ((fCurrent[word] & bit) == 0) {
+                fCurrent[word] |= bit;
+                fCurrentCount++;
+            }
+        }
+
+        private void finishBlock() {
+            if (fCurrentCount == 0) {
+                addBlock(null, null, 0);
+            } else if (fCurrentCount <= MAX_SPARSE_CARDINALITY) {
+                addBlock(toSparse(fCurrent, fCurrentCount), null, fCurrentCount);
+            } else {
+                addBlock(null, Arrays.copyOf(fCurrent, WORDS_PER_BLOCK), fCurrentCount);
+            }
+            Arrays.fill(fCurrent, 0);
+            fCurrentCount = 0;
+        }
+
+        private void addBlock(char[] sparse, long[] dense, int count) {
+            int block = fSparseBlocks.size();
+            fSparseBlocks.add(sparse);
+            fDenseBlocks.add(dense);
+            if (block + 2 > fCumulative.length) {
+                fCumulative = Arrays.copyOf(fCumulative, fCumulative.length * 2);
+            }
+            fCumulative[block + 1] = fCumulative[block] + count;
+        }
+
+        private static char[] toSparse(long[] bits, int count) {
+            char[] sparse = new char[count];
+            int index = 0;
+            for (int i = 0; i < bits.length; i++) {
+                long word = bits[i];
+                while (word != 0) {
+                    sparse[index++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return sparse;
+        }
+    }
+}
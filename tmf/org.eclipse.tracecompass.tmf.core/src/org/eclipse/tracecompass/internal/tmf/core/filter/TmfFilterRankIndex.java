@@ -0,0 +1,361 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.filter.xml.TmfFilterXMLWriter;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+
+/**
+ * Computes the {@link TmfFilterRankBitmap} of a filter on a trace, and keeps
+ * it in the supplementary files of the trace so that applying the same filter
+ * again, even in another session, does not read the trace again.
+ *
+ * The events are checked against the filter in parallel, in chunks that start
+ * at a checkpoint of the trace index so that seeking them is cheap. Reading
+ * the trace itself is still serialized by the trace, only the evaluation of
+ * the filter is done concurrently.
+ */
+public final class TmfFilterRankIndex {
+
+    private static final int MAGIC = 0x54465242; // "TFRB"
+    private static final int VERSION = 1;
+    private static final String FILE_PREFIX = "filter-"; //$NON-NLS-1$
+    private static final String FILE_SUFFIX = ".ranks"; //$NON-NLS-1$
+    private static final String THREAD_NAME = "Filter Rank Index"; //$NON-NLS-1$
+    private static final String KEY_ELEMENT = "FILTER_KEY"; //$NON-NLS-1$
+
+    /** Minimal number of events in a chunk */
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    /** Minimal time between two notifications of the listener, in ms */
+    private static final long NOTIFY_INTERVAL = 250;
+
+    /**
+     * The filter nodes that are fully described by their XML, and that do not
+     * keep state between events
+     */
+    private static final ImmutableSet<Class<?>> KEYED_NODES = ImmutableSet.of(
+            TmfFilterRootNode.class,
+            TmfFilterNode.class,
+            TmfFilterTraceTypeNode.class,
+            TmfFilterAndNode.class,
+            TmfFilterOrNode.class,
+            TmfFilterContainsNode.class,
+            TmfFilterEqualsNode.class,
+            TmfFilterMatchesNode.class,
+            TmfFilterCompareNode.class);
+
+    private TmfFilterRankIndex() {
+    }
+
+    /**
+     * Get the key that identifies the results of a filter. Two filters with
+     * the same key match the same events.
+     *
+     * @param filter
+     *            The filter
+     * @return The key, or null if the results of this filter cannot be
+     *         indexed
+     */
+    public static String getKey(ITmfFilterTreeNode filter) {
+        if (!isKeyed(filter)) {
+            return null;
+        }
+        try {
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            Element rootElement = document.createElement(KEY_ELEMENT);
+            document.appendChild(rootElement);
+            TmfFilterXMLWriter.buildXMLTree(document, filter, rootElement);
+            StringWriter writer = new StringWriter();
+            TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(writer));
+            return writer.toString();
+        } catch (ParserConfigurationException | TransformerException e) {
+            Activator.logError("Error getting the key of filter " + filter, e); //$NON-NLS-1$
+            return null;
+        }
+    }
+
+    private static boolean isKeyed(ITmfFilterTreeNode node) {
+        if (!KEYED_NODES.contains(node.getClass())) {
+            return false;
+        }
+        for (ITmfFilterTreeNode child : node.getChildren()) {
+            if (!isKeyed(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the ranks of the events of a trace that match a filter. The results
+     * saved by a previous call are reused, only the events that were not
+     * checked yet are read. The results are saved when this method returns,
+     * even if it was cancelled.
+     *
+     * @param trace
+     *            The trace
+     * @param filter
+     *            The filter
+     * @param key
+     *            The key of the filter, from {@link #getKey}
+     * @param monitor
+     *            The monitor used to cancel the computation
+     * @param listener
+     *            Called with the results so far, as they are computed, or
+     *            null
+     * @return The ranks of the matching events. If the computation is
+     *         cancelled or fails, only the events before
+     *         {@link TmfFilterRankBitmap#size()} were checked.
+     */
+    public static TmfFilterRankBitmap getRanks(ITmfTrace trace, ITmfFilterTreeNode filter, String key,
+            IProgressMonitor monitor, Consumer<TmfFilterRankBitmap> listener) {
+        File file = getFile(trace, key);
+        String transform = trace.getTimestampTransform().toString();
+        TmfFilterRankBitmap saved = load(file, key, transform);
+        if (saved == null) {
+            saved = TmfFilterRankBitmap.EMPTY;
+        }
+        long end = trace.getNbEvents();
+        if (saved.size() >= end) {
+            if (listener != null) {
+                listener.accept(saved);
+            }
+            return saved;
+        }
+
+        TmfFilterRankBitmap.Builder builder = new TmfFilterRankBitmap.Builder(saved);
+        TmfFilterRankBitmap ranks = saved;
+        if (listener != null) {
+            listener.accept(ranks);
+        }
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads, r -> {
+            Thread thread = new Thread(r, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            ranks = computeRanks(trace, filter, builder, end, executor, 2 * nbThreads, monitor, listener);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (ranks.size() > saved.size()) {
+            save(file, key, transform, ranks);
+        }
+        return ranks;
+    }
+
+    private static TmfFilterRankBitmap computeRanks(ITmfTrace trace, ITmfFilterTreeNode filter, TmfFilterRankBitmap.Builder builder,
+            long end, ExecutorService executor, int maxPending, IProgressMonitor monitor, Consumer<TmfFilterRankBitmap> listener) {
+        int cacheSize = Math.max(1, trace.getCacheSize());
+        long chunkSize = ((MIN_CHUNK_SIZE + cacheSize - 1) / cacheSize) * (long) cacheSize;
+        /* The filter only has known nodes, the compiled filter is thread-safe */
+        ITmfFilter compiledFilter = TmfCompiledFilter.compile(filter);
+        Deque<Chunk> pending = new ArrayDeque<>();
+        long next = builder.size();
+        long lastNotify = System.currentTimeMillis();
+        TmfFilterRankBitmap ranks = builder.build();
+        try {
+            while (next < end || !pending.isEmpty()) {
+                while (next < end && pending.size() < maxPending) {
+                    /* The first chunk may start after a checkpoint, realign */
+                    long chunkEnd = Math.min(end, (next / chunkSize + 1) * chunkSize);
+                    Chunk chunk = new Chunk(trace, compiledFilter, next, (int) (chunkEnd - next), monitor);
+                    chunk.fFuture = executor.submit(chunk::evaluate);
+                    pending.add(chunk);
+                    next = chunkEnd;
+                }
+                Chunk chunk = pending.remove();
+                int count = chunk.fFuture.get();
+                builder.append(chunk.fMatches, count);
+                if (count < chunk.fLength) {
+                    /* Cancelled, or the trace has less events than expected */
+                    break;
+                }
+                long now = System.currentTimeMillis();
+                if (listener != null && now - lastNotify >= NOTIFY_INTERVAL) {
+                    lastNotify = now;
+                    ranks = builder.build();
+                    listener.accept(ranks);
+                }
+            }
+        } catch (ExecutionException e) {
+            Activator.logError("Error filtering trace " + trace.getName(), e.getCause()); //$NON-NLS-1$
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Chunk chunk : pending) {
+            chunk.fFuture.cancel(false);
+        }
+        ranks = builder.build();
+        if (listener != null) {
+            listener.accept(ranks);
+        }
+        return ranks;
+    }
+
+    /**
+     * A range of consecutive events checked by one task
+     */
+    private static final class Chunk {
+        private final ITmfTrace fTrace;
+        private final ITmfFilter fFilter;
+        private final long fStart;
+        private final int fLength;
+        private final IProgressMonitor fMonitor;
+        private final BitSet fMatches = new BitSet();
+        private Future<Integer> fFuture;
+
+        public Chunk(ITmfTrace trace, ITmfFilter filter, long start, int length, IProgressMonitor monitor) {
+            fTrace = trace;
+            fFilter = filter;
+            fStart = start;
+            fLength = length;
+            fMonitor = monitor;
+        }
+
+        /**
+         * Check the events of the chunk
+         *
+         * @return The number of events checked
+         */
+        public Integer evaluate() {
+            ITmfContext context = fTrace.seekEvent(fStart);
+            try {
+                for (int i = 0; i < fLength; i++) {
+                    if (fMonitor.isCanceled()) {
+                        return i;
+                    }
+                    ITmfEvent event = fTrace.getNext(context);
+                    if (event == null) {
+                        return i;
+                    }
+                    if (fFilter.matches(event)) {
+                        fMatches.set(i);
+                    }
+                }
+                return fLength;
+            } finally {
+                context.dispose();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Supplementary file
+    // ------------------------------------------------------------------------
+
+    private static File getFile(ITmfTrace trace, String key) {
+        String hash = Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).toString();
+        return new File(TmfTraceManager.getSupplementaryFileDir(trace), FILE_PREFIX + hash + FILE_SUFFIX);
+    }
+
+    private static TmfFilterRankBitmap load(File file, String key, String transform) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            /* Different filters can have the same hash, compare the keys */
+            if (!key.equals(readString(in)) || !transform.equals(readString(in))) {
+                return null;
+            }
+            return TmfFilterRankBitmap.readFrom(in);
+        } catch (IOException e) {
+            Activator.logWarning("Error reading filter results " + file, e); //$NON-NLS-1$
+            return null;
+        }
+    }
+
+    private static void save(File file, String key, String transform, TmfFilterRankBitmap ranks) {
+        File tmpFile = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, key);
+                writeString(out, transform);
+                ranks.writeTo(out);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Activator.logError("Error saving filter results " + file, e); //$NON-NLS-1$
+            tmpFile.delete();
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length"); //$NON-NLS-1$
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
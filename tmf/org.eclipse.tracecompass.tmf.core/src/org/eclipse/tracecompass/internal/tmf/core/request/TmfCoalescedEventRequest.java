@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -20,6 +20,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -101,6 +102,24 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         return fRange;
     }
 
+    /**
+     * The coalesced request handles the event types of all its sub-requests.
+     * The events are dispatched to the sub-requests by rank, so the events
+     * can only be filtered if all the sub-requests start at the same rank.
+     */
+    @Override
+    public Predicate<String> getEventTypeFilter() {
+        Predicate<String> filter = null;
+        for (ITmfEventRequest request : fRequests) {
+            Predicate<String> requestFilter = request.getEventTypeFilter();
+            if (requestFilter == null || request.getIndex() != getIndex()) {
+                return null;
+            }
+            filter = (filter == null) ? requestFilter : filter.or(requestFilter);
+        }
+        return filter;
+    }
+
     // ------------------------------------------------------------------------
     // Management
     // ------------------------------------------------------------------------
@@ -159,11 +178,11 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
 
     private void merge(ITmfEventRequest request) {
         long start = request.getIndex();
-        long end = Math.min(start + request.getNbRequested(), ITmfEventRequest.ALL_DATA);
+        long end = start + request.getNbRequested();
 
         if (start < fIndex) {
             if (fNbRequested != ITmfEventRequest.ALL_DATA) {
-                fNbRequested += (fIndex - start);
+                fNbRequested = (int) Math.min(fNbRequested + (fIndex - start), ITmfEventRequest.ALL_DATA);
             }
             fIndex = start;
         }
@@ -171,7 +190,7 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
                 (fNbRequested == ITmfEventRequest.ALL_DATA)) {
             fNbRequested = ITmfEventRequest.ALL_DATA;
         } else {
-            fNbRequested = (int) Math.max(end - fIndex, fNbRequested);
+            fNbRequested = (int) Math.min(Math.max(end - fIndex, fNbRequested), ITmfEventRequest.ALL_DATA);
         }
 
         ITmfTimestamp startTime = request.getRange().getStartTime();
@@ -227,7 +246,8 @@ public class TmfCoalescedEventRequest extends TmfEventRequest {
         // dispatch event to relevant requests
         for (ITmfEventRequest request : requests) {
             long start = request.getIndex();
-            if (!request.isCompleted() && index >= start && request.getNbRead() < request.getNbRequested()) {
+            if (!request.isCompleted() && index >= start &&
+                    (request.getNbRequested() == ITmfEventRequest.ALL_DATA || request.getNbRead() < request.getNbRequested())) {
                 ITmfTimestamp ts = data.getTimestamp();
                 if (request.getRange().contains(ts)) {
                     if (request.getDataType().isInstance(data)) {
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap;
+
+import java.util.List;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+
+/**
+ * The count mipmap feature.
+ *
+ * Each mipmap state value is the running count of non-null base attribute
+ * state intervals up to the end of the mipmap interval, that is the number of
+ * times the base attribute was assigned a new non-null value. The count of a
+ * mipmap interval is the difference with the value of the previous interval
+ * of the same level. Running counts always increase, so the state system
+ * never merges consecutive intervals. The state value is a Long.
+ */
+public class CountMipmapFeature extends TmfMipmapFeature {
+
+    private long fTotal = 0;
+
+    /**
+     * Constructor
+     *
+     * @param baseQuark
+     *            The quark for the attribute we want to mipmap
+     * @param mipmapQuark
+     *            The quark of the mipmap feature attribute
+     * @param mipmapResolution
+     *            The resolution that will be use in the mipmap
+     * @param ss
+     *            The state system in which to insert the state changes
+     */
+    public CountMipmapFeature(final int baseQuark, final int mipmapQuark, final int mipmapResolution, final ITmfStateSystemBuilder ss) {
+        super(baseQuark, mipmapQuark, mipmapResolution, ss);
+    }
+
+    @Override
+    protected ITmfStateValue computeMipmapValue(List<ITmfStateInterval> lowerIntervals, long startTime, long endTime) {
+        if (lowerIntervals.get(0).getAttribute() != getLevelQuark(0)) {
+            /* The running count of the last lower-level interval */
+            return lowerIntervals.get(lowerIntervals.size() - 1).getStateValue();
+        }
+        fTotal += lowerIntervals.size();
+        return TmfStateValue.newValueLong(fTotal);
+    }
+}
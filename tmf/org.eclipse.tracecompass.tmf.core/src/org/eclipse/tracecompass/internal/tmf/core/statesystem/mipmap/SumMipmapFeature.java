@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap;
+
+import java.util.List;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue.Type;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+
+/**
+ * The sum mipmap feature.
+ *
+ * Each mipmap state value is the running sum of all the base attribute state
+ * values up to the end of the mipmap interval. The sum of the values covered
+ * by a mipmap interval is the difference with the value of the previous
+ * interval of the same level. Storing running sums ensures that consecutive
+ * intervals with the same sum, which the state system would merge, do not
+ * lose their contribution. The state value is a Double if the base attribute
+ * has Double values, or else a Long.
+ */
+public class SumMipmapFeature extends TmfMipmapFeature {
+
+    private long fLongTotal = 0;
+    private double fDoubleTotal = 0.0;
+
+    /**
+     * Constructor
+     *
+     * @param baseQuark
+     *            The quark for the attribute we want to mipmap
+     * @param mipmapQuark
+     *            The quark of the mipmap feature attribute
+     * @param mipmapResolution
+     *            The resolution that will be use in the mipmap
+     * @param ss
+     *            The state system in which to insert the state changes
+     */
+    public SumMipmapFeature(final int baseQuark, final int mipmapQuark, final int mipmapResolution, final ITmfStateSystemBuilder ss) {
+        super(baseQuark, mipmapQuark, mipmapResolution, ss);
+    }
+
+    @Override
+    protected ITmfStateValue computeMipmapValue(List<ITmfStateInterval> lowerIntervals, long startTime, long endTime) {
+        if (lowerIntervals.get(0).getAttribute() != getLevelQuark(0)) {
+            /* The running sum of the last lower-level interval */
+            return lowerIntervals.get(lowerIntervals.size() - 1).getStateValue();
+        }
+        boolean isDouble = false;
+        try {
+            for (ITmfStateInterval interval : lowerIntervals) {
+                ITmfStateValue value = interval.getStateValue();
+                if (value.getType() == Type.DOUBLE) {
+                    fDoubleTotal += value.unboxDouble();
+                    isDouble = true;
+                } else {
+                    fLongTotal += value.unboxLong();
+                }
+            }
+        } catch (StateValueTypeException e) {
+            e.printStackTrace();
+        }
+        if (isDouble) {
+            return TmfStateValue.newValueDouble(fDoubleTotal);
+        }
+        return TmfStateValue.newValueLong(fLongTotal);
+    }
+}
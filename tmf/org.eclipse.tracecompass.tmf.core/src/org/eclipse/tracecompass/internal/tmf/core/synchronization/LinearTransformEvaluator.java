@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2016 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.synchronization;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Evaluates the linear function
+ *
+ * f(t) = alpha * t + beta
+ *
+ * and truncates the result to a long, exactly as the BigDecimal computation
+ * done by the linear transforms would, but without allocating.
+ *
+ * The slope and offset are kept as double-double values (an unevaluated sum
+ * of two doubles, about 106 bits of mantissa), and the product is computed
+ * with an error-free multiplication. The error of the result is then below
+ * 2^-38, much less than the distance to the closest integer for almost all
+ * timestamps. When the result is too close to an integer to know how the
+ * BigDecimal computation would truncate it, or when the values are out of the
+ * range of the fast computation, the BigDecimal computation is done instead.
+ *
+ * Instances of this class are immutable.
+ */
+final class LinearTransformEvaluator {
+
+    private static final MathContext MC = MathContext.DECIMAL128;
+
+    /** Bound of the timestamps, offsets and results of the fast computation */
+    private static final long LIMIT = 1L << 62;
+    private static final double LIMIT_D = 0x1p62;
+
+    /** Largest slope of the fast computation */
+    private static final double MAX_SLOPE = 2.0;
+
+    /**
+     * Distance to the closest integer under which the result may not be
+     * truncated the same way as the BigDecimal computation
+     */
+    private static final double EPSILON = 0x1p-30;
+
+    /** Constant used to split a double in two halves of 26 bits */
+    private static final double SPLITTER = 0x1p27 + 1;
+
+    private final BigDecimal fAlpha;
+    private final BigDecimal fBeta;
+    private final boolean fRoundSum;
+    private final boolean fFast;
+
+    private final double fAlphaHi;
+    private final double fAlphaLo;
+    private final double fAlphaHiUpper;
+    private final double fAlphaHiLower;
+    private final double fBetaHi;
+    private final double fBetaLo;
+
+    /**
+     * Constructor
+     *
+     * @param alpha
+     *            The slope of the function
+     * @param beta
+     *            The offset of the function
+     * @param roundSum
+     *            Whether the BigDecimal computation rounds the sum of the
+     *            product and the offset to {@link MathContext#DECIMAL128}, or
+     *            computes it exactly
+     */
+    public LinearTransformEvaluator(BigDecimal alpha, BigDecimal beta, boolean roundSum) {
+        fAlpha = alpha;
+        fBeta = beta;
+        fRoundSum = roundSum;
+
+        double alphaHi = alpha.doubleValue();
+        double betaHi = beta.doubleValue();
+        fFast = (Math.abs(alphaHi) <= MAX_SLOPE) && (Math.abs(betaHi) < LIMIT_D);
+        if (!fFast) {
+            /* The values may not even be finite doubles */
+            alphaHi = 0.0;
+            betaHi = 0.0;
+        }
+        fAlphaHi = alphaHi;
+        fAlphaLo = alpha.subtract(new BigDecimal(alphaHi)).doubleValue();
+        double c = SPLITTER * alphaHi;
+        fAlphaHiUpper = c - (c - alphaHi);
+        fAlphaHiLower = alphaHi - fAlphaHiUpper;
+        fBetaHi = betaHi;
+        fBetaLo = beta.subtract(new BigDecimal(betaHi)).doubleValue();
+    }
+
+    /**
+     * Compute the value of the function for a timestamp
+     *
+     * @param t
+     *            The timestamp
+     * @return The value of the function, truncated to a long
+     */
+    public long evaluate(long t) {
+        if (!fFast || t <= -LIMIT || t >= LIMIT) {
+            return evaluateBigDecimal(t);
+        }
+
+        /* t = th + tl exactly, tl is at most 2^9 */
+        double th = t;
+        long tl = t - (long) th;
+
+        /* p + e = th * alphaHi exactly (Dekker's product) */
+        double p = th * fAlphaHi;
+        double c = SPLITTER * th;
+        double thUpper = c - (c - th);
+        double thLower = th - thUpper;
+        double e = ((thUpper * fAlphaHiUpper - p) + thUpper * fAlphaHiLower + thLower * fAlphaHiUpper) + thLower * fAlphaHiLower;
+
+        /* s + f = p + betaHi exactly (Knuth's sum) */
+        double s = p + fBetaHi;
+        double bv = s - p;
+        double f = (p - (s - bv)) + (fBetaHi - bv);
+
+        /* Add all the small terms, then normalize the result */
+        double lo = f + e + th * fAlphaLo + tl * fAlphaHi + tl * fAlphaLo + fBetaLo;
+        double hi = s + lo;
+        lo = lo - (hi - s);
+        if (!(Math.abs(hi) < LIMIT_D)) {
+            return evaluateBigDecimal(t);
+        }
+
+        /* Split the result in an integer part and a fraction in [0, 1) */
+        long integer = (long) hi;
+        double rest = (hi - integer) + lo;
+        double floorRest = Math.floor(rest);
+        double fraction = rest - floorRest;
+        if (fraction < EPSILON || fraction > 1.0 - EPSILON) {
+            return evaluateBigDecimal(t);
+        }
+        long floor = integer + (long) floorRest;
+
+        /* BigDecimal.longValue() truncates toward zero */
+        return (floor >= 0) ? floor : floor + 1;
+    }
+
+    private long evaluateBigDecimal(long t) {
+        BigDecimal product = BigDecimal.valueOf(t).multiply(fAlpha, MC);
+        BigDecimal value = fRoundSum ? product.add(fBeta, MC) : product.add(fBeta);
+        return value.longValue();
+    }
+}
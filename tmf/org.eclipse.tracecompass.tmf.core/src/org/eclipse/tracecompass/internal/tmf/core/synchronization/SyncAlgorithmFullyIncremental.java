@@ -15,9 +15,12 @@ package org.eclipse.tracecompass.internal.tmf.core.synchronization;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -26,13 +29,11 @@ import java.util.Map;
 
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.graph.SyncSpanningTree;
-import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventDependency;
 import org.eclipse.tracecompass.tmf.core.synchronization.ITmfTimestampTransform;
 import org.eclipse.tracecompass.tmf.core.synchronization.Messages;
 import org.eclipse.tracecompass.tmf.core.synchronization.SynchronizationAlgorithm;
 import org.eclipse.tracecompass.tmf.core.synchronization.TimestampTransformFactory;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
@@ -221,20 +222,32 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
         private SyncQuality fQuality;
 
         /**
-         * The list of meaningful points on the upper hull (received by the
-         * reference trace, below in a graph)
+         * The meaningful points on the upper hull (received by the reference
+         * trace, below in a graph)
          */
-        private transient LinkedList<SyncPoint> fUpperBoundList = new LinkedList<>();
+        private transient HullBound fUpperBound = new HullBound();
         /**
-         * The list of meaninful points on the lower hull (sent by the reference
+         * The meaningful points on the lower hull (sent by the reference
          * trace, above in a graph)
          */
-        private transient LinkedList<SyncPoint> fLowerBoundList = new LinkedList<>();
+        private transient HullBound fLowerBound = new HullBound();
 
         /** Points forming the line with maximum slope */
-        private transient SyncPoint[] fLmax = new SyncPoint[2];
+        private transient HullLine fLmax = new HullLine();
         /** Points forming the line with minimum slope */
-        private transient SyncPoint[] fLmin = new SyncPoint[2];
+        private transient HullLine fLmin = new HullLine();
+
+        /**
+         * Copies of fLmax and fLmin the last time the synchronization was
+         * approximated. The BigDecimal slopes and ordinates at origin are
+         * computed from them only when they are needed.
+         */
+        private transient HullLine fSyncLmax = new HullLine();
+        private transient HullLine fSyncLmin = new HullLine();
+        private transient boolean fSyncPending = false;
+
+        /** Identifier of the next point of this hull */
+        private transient long fNextPointId = 0;
 
         private transient Map<String, Object> fStats = new LinkedHashMap<>();
 
@@ -267,36 +280,42 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
 
         protected void processMatch(TmfEventDependency match) {
 
-            LinkedList<SyncPoint> boundList, otherBoundList;
+            HullBound bound, otherBound;
 
-            SyncPoint[] line, otherLine;
-            SyncPoint p;
+            HullLine line, otherLine;
+            long x, y;
             int inversionFactor = 1;
             boolean qualify = false;
             fNbMatches++;
 
+            long sourceTime = match.getSourceEvent().getTimestamp().getValue();
+            long destinationTime = match.getDestinationEvent().getTimestamp().getValue();
+
             /* Initialize data depending on the which hull the match is part of */
             if (match.getSourceEvent().getTrace().getHostId().compareTo(match.getDestinationEvent().getTrace().getHostId()) > 0) {
-                boundList = fUpperBoundList;
-                otherBoundList = fLowerBoundList;
+                bound = fUpperBound;
+                otherBound = fLowerBound;
                 line = fLmin;
                 otherLine = fLmax;
-                p = new SyncPoint(match.getDestinationEvent(), match.getSourceEvent());
+                x = destinationTime;
+                y = sourceTime;
                 inversionFactor = 1;
             } else {
-                boundList = fLowerBoundList;
-                otherBoundList = fUpperBoundList;
+                bound = fLowerBound;
+                otherBound = fUpperBound;
                 line = fLmax;
                 otherLine = fLmin;
-                p = new SyncPoint(match.getSourceEvent(), match.getDestinationEvent());
+                x = sourceTime;
+                y = destinationTime;
                 inversionFactor = -1;
             }
+            long id = fNextPointId++;
 
             /*
              * Does the message qualify for the hull, or is in on the wrong side
              * of the reference line
              */
-            if ((line[0] == null) || (line[1] == null) || (p.crossProduct(line[0], line[1]) * inversionFactor > 0)) {
+            if (!line.hasOrigin() || !line.hasEnd() || (crossProduct(x, y, line.fX0, line.fY0, line.fX1, line.fY1) * inversionFactor > 0)) {
                 /*
                  * If message qualifies, verify if points need to be removed
                  * from the hull and add the new point as the maximum reference
@@ -305,8 +324,8 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
                  */
                 fNbAccurateMatches++;
                 qualify = true;
-                removeUselessPoints(p, boundList, inversionFactor);
-                line[1] = p;
+                removeUselessPoints(id, x, y, bound, inversionFactor);
+                line.setEnd(id, x, y);
                 fStats.clear();
             }
 
@@ -315,9 +334,9 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
              * reference point of the other line was removed from the hull, also
              * adjust the other line
              */
-            adjustBound(line, otherBoundList, inversionFactor);
-            if ((otherLine[1] != null) && !boundList.contains(otherLine[0])) {
-                adjustBound(otherLine, boundList, inversionFactor * -1);
+            adjustBound(line, otherBound, inversionFactor);
+            if (otherLine.hasEnd() && !bound.contains(otherLine.fId0)) {
+                adjustBound(otherLine, bound, inversionFactor * -1);
             }
 
             if (qualify) {
@@ -327,8 +346,9 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
         }
 
         /**
-         * Calculates slopes and ordinate at origin of fLmax and fLmin to obtain
-         * and approximation of the synchronization at this time
+         * Checks the slopes of fLmax and fLmin to obtain an approximation of
+         * the synchronization at this time. The slopes and ordinates at origin
+         * themselves are computed later, by {@link #updateSync()}.
          */
         private void approximateSync() {
 
@@ -339,20 +359,18 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
              *
              * Lmin = alpha_min T + beta_max
              */
-            if ((fLmax[0] != null) || (fLmin[0] != null)) {
+            if (fLmax.hasOrigin() || fLmin.hasOrigin()) {
                 /**
                  * Do not recalculate synchronization after it is failed. We
                  * keep the last not failed result.
                  */
                 if (getQuality() != SyncQuality.FAIL) {
-                    BigDecimal alphamax = fLmax[1].getAlpha(fLmax[0]);
-                    BigDecimal alphamin = fLmin[1].getAlpha(fLmin[0]);
                     SyncQuality quality = null;
 
-                    if ((fLmax[0] == null) || (fLmin[0] == null)) {
+                    if (!fLmax.hasOrigin() || !fLmin.hasOrigin()) {
                         quality = SyncQuality.APPROXIMATE;
                     }
-                    else if (alphamax.compareTo(alphamin) > 0) {
+                    else if (fLmax.compareSlope(fLmin) > 0) {
                         quality = SyncQuality.ACCURATE;
                     } else {
                         /* Lines intersect, not good */
@@ -363,39 +381,52 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
                      * of synchronization
                      */
                     if (quality != SyncQuality.FAIL) {
-                        fAlphamax = alphamax;
-                        fBetamin = fLmax[1].getBeta(fAlphamax);
-                        fAlphamin = alphamin;
-                        fBetamax = fLmin[1].getBeta(fAlphamin);
-                        fAlpha = fAlphamax.add(fAlphamin).divide(BigDecimal.valueOf(2), fMc);
-                        fBeta = fBetamin.add(fBetamax).divide(BigDecimal.valueOf(2), fMc);
+                        fSyncLmax.copy(fLmax);
+                        fSyncLmin.copy(fLmin);
+                        fSyncPending = true;
                     }
                     setQuality(quality);
                 }
-            } else if (((fLmax[0] == null) && (fLmin[1] == null))
-                    || ((fLmax[1] == null) && (fLmin[0] == null))) {
+            } else if ((!fLmax.hasOrigin() && !fLmin.hasEnd())
+                    || (!fLmax.hasEnd() && !fLmin.hasOrigin())) {
                 /* Either there is no upper hull point or no lower hull */
                 setQuality(SyncQuality.INCOMPLETE);
             }
         }
 
+        /**
+         * Calculates slopes and ordinate at origin of the lines saved by the
+         * last approximation of the synchronization, if not done yet
+         */
+        private void updateSync() {
+            if (!fSyncPending) {
+                return;
+            }
+            fSyncPending = false;
+            fAlphamax = fSyncLmax.getAlpha();
+            fBetamin = fSyncLmax.getBeta(fAlphamax);
+            fAlphamin = fSyncLmin.getAlpha();
+            fBetamax = fSyncLmin.getBeta(fAlphamin);
+            fAlpha = fAlphamax.add(fAlphamin).divide(BigDecimal.valueOf(2), fMc);
+            fBeta = fBetamin.add(fBetamax).divide(BigDecimal.valueOf(2), fMc);
+        }
+
         /*
          * Verify if the line should be adjusted to be more accurate give the
          * hull
          */
-        private void adjustBound(SyncPoint[] line, LinkedList<SyncPoint> otherBoundList, int inversionFactor) {
-            SyncPoint minPoint = null, nextPoint;
+        private void adjustBound(HullLine line, HullBound otherBound, int inversionFactor) {
+            int minIndex = -1;
             boolean finishedSearch = false;
 
             /*
              * Find in the other bound, the origin point of the line, start from
              * the beginning if the point was lost
              */
-            int i = Math.max(0, otherBoundList.indexOf(line[0]));
+            int i = Math.max(0, otherBound.indexOf(line.fId0));
 
-            while ((i < otherBoundList.size() - 1) && !finishedSearch) {
-                minPoint = otherBoundList.get(i);
-                nextPoint = otherBoundList.get(i + 1);
+            while ((i < otherBound.size() - 1) && !finishedSearch) {
+                minIndex = i;
 
                 /*
                  * If the rotation (cross-product) is not optimal, move to next
@@ -403,26 +434,26 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
                  *
                  * Otherwise, the current minPoint is the minPoint of the line
                  */
-                if (minPoint.crossProduct(nextPoint, line[1]) * inversionFactor > 0) {
-                    if (nextPoint.getTimeX() < line[1].getTimeX()) {
+                if (crossProduct(otherBound.getX(i), otherBound.getY(i), otherBound.getX(i + 1), otherBound.getY(i + 1), line.fX1, line.fY1) * inversionFactor > 0) {
+                    if (otherBound.getX(i + 1) < line.fX1) {
                         i++;
                     } else {
-                        line[0] = null;
+                        line.clearOrigin();
                         finishedSearch = true;
                     }
                 } else {
-                    line[0] = minPoint;
+                    line.setOrigin(otherBound, i);
                     finishedSearch = true;
                 }
             }
 
-            if (line[0] == null) {
-                line[0] = minPoint;
+            if (!line.hasOrigin() && minIndex >= 0) {
+                line.setOrigin(otherBound, minIndex);
             }
 
             /* Make sure point 0 is before point 1 */
-            if ((line[0] != null) && (line[0].getTimeX() > line[1].getTimeX())) {
-                line[0] = null;
+            if (line.hasOrigin() && (line.fX0 > line.fX1)) {
+                line.clearOrigin();
             }
         }
 
@@ -430,22 +461,24 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
          * When a point qualifies to be in a hull, we verify if any of the
          * existing points need to be removed from the hull
          */
-        private void removeUselessPoints(final SyncPoint p, final LinkedList<SyncPoint> boundList, final int inversionFactor) {
+        private void removeUselessPoints(long id, long x, long y, final HullBound bound, final int inversionFactor) {
 
             boolean checkRemove = true;
 
-            while (checkRemove && boundList.size() >= 2) {
-                if (p.crossProduct(boundList.get(boundList.size() - 2), boundList.getLast()) * inversionFactor > 0) {
-                    boundList.removeLast();
+            while (checkRemove && bound.size() >= 2) {
+                int last = bound.size() - 1;
+                if (crossProduct(x, y, bound.getX(last - 1), bound.getY(last - 1), bound.getX(last), bound.getY(last)) * inversionFactor > 0) {
+                    bound.removeLast();
                 } else {
                     checkRemove = false;
                 }
             }
-            boundList.addLast(p);
+            bound.add(id, x, y);
         }
 
         public ITmfTimestampTransform getTimestampTransform(String hostId) {
             if (hostId.equals(fOtherHost) && (getQuality() == SyncQuality.ACCURATE || getQuality() == SyncQuality.APPROXIMATE || getQuality() == SyncQuality.FAIL)) {
+                updateSync();
                 /* alpha: beta => 1 / fAlpha, -1 * fBeta / fAlpha); */
                 return TimestampTransformFactory.createLinear(NonNullUtils.checkNotNull(BigDecimal.ONE.divide(fAlpha, fMc)), NonNullUtils.checkNotNull(BigDecimal.valueOf(-1).multiply(fBeta).divide(fAlpha, fMc)));
             }
@@ -457,11 +490,13 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
         }
 
         public BigDecimal getAccuracy() {
+            updateSync();
             return fAlphamax.subtract(fAlphamin);
         }
 
         public Map<String, Object> getStats() {
             if (fStats.size() == 0) {
+                updateSync();
                 String syncQuality;
                 switch (getQuality()) {
                 case ABSENT:
@@ -487,8 +522,8 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_quality, syncQuality);
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_alpha, fAlpha);
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_beta, fBeta);
-                fStats.put(Messages.SyncAlgorithmFullyIncremental_ub, (fUpperBoundList.size() == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fUpperBoundList.size());
-                fStats.put(Messages.SyncAlgorithmFullyIncremental_lb, (fLowerBoundList.size() == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fLowerBoundList.size());
+                fStats.put(Messages.SyncAlgorithmFullyIncremental_ub, (fUpperBound.size() == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fUpperBound.size());
+                fStats.put(Messages.SyncAlgorithmFullyIncremental_lb, (fLowerBound.size() == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fLowerBound.size());
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_accuracy, getAccuracy().doubleValue());
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_nbmatch, (fNbMatches == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fNbMatches);
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_nbacc, (fNbAccurateMatches == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fNbAccurateMatches);
@@ -511,21 +546,31 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
             return ((fReferenceHost.equals(hostId1) && fOtherHost.equals(hostId2)) || (fReferenceHost.equals(hostId2) && fOtherHost.equals(hostId1)));
         }
 
+        private void writeObject(ObjectOutputStream stream) throws IOException {
+            updateSync();
+            stream.defaultWriteObject();
+        }
+
         private void readObject(ObjectInputStream stream)
                 throws IOException, ClassNotFoundException {
             stream.defaultReadObject();
 
             /* Initialize transient fields */
-            fUpperBoundList = new LinkedList<>();
-            fLowerBoundList = new LinkedList<>();
-            fLmax = new SyncPoint[2];
-            fLmin = new SyncPoint[2];
+            fUpperBound = new HullBound();
+            fLowerBound = new HullBound();
+            fLmax = new HullLine();
+            fLmin = new HullLine();
+            fSyncLmax = new HullLine();
+            fSyncLmin = new HullLine();
+            fSyncPending = false;
+            fNextPointId = 0;
             fStats = new LinkedHashMap<>();
         }
 
         @SuppressWarnings("nls")
         @Override
         public String toString() {
+            updateSync();
             StringBuilder b = new StringBuilder();
             b.append("Between " + fReferenceHost + " and " + fOtherHost + " [");
             b.append(" alpha " + fAlpha + " beta " + fBeta + " ]");
@@ -539,51 +584,200 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
     }
 
     /**
-     * Private class representing a point to synchronize on a graph. The x axis
-     * is the timestamp of the event from the reference trace while the y axis
-     * is the timestamp of the event on the other trace
+     * Calculate a cross product of 3 points on a graph where the x axis is the
+     * timestamp of the event from the reference trace and the y axis is the
+     * timestamp of the event on the other trace:
+     *
+     * If the cross-product < 0, then p, pa, pb are clockwise
+     *
+     * If the cross-product > 0, then p, pa, pb are counter-clockwise
+     *
+     * If cross-product == 0, then they are in a line
+     *
+     * Only the sign of the result is meaningful, it is exact even when the
+     * products of the coordinates overflow.
+     *
+     * @param x
+     *            x of the point p
+     * @param y
+     *            y of the point p
+     * @param xa
+     *            x of the first point pa
+     * @param ya
+     *            y of the first point pa
+     * @param xb
+     *            x of the second point pb
+     * @param yb
+     *            y of the second point pb
+     * @return The sign of the cross product, -1, 0 or 1
      */
-    private class SyncPoint {
-        private final ITmfTimestamp x, y;
+    private static int crossProduct(long x, long y, long xa, long ya, long xb, long yb) {
+        return compareProducts(xa - x, yb - y, ya - y, xb - x);
+    }
+
+    /**
+     * Compare the exact products a * b and c * d, without allocating in the
+     * common cases. When the difference of the products fits in a long, the
+     * overflowing long arithmetic yields its exact value. When it does not,
+     * the double estimate is far enough from zero to give its sign.
+     *
+     * @return -1, 0 or 1 as a * b is less than, equal to or greater than c * d
+     */
+    private static int compareProducts(long a, long b, long c, long d) {
+        double ab = (double) a * b;
+        double cd = (double) c * d;
+        double estimate = ab - cd;
+        double error = (Math.abs(ab) + Math.abs(cd)) * 0x1p-50;
+        if (Math.abs(estimate) + error < 0x1p62) {
+            return Long.signum(a * b - c * d);
+        }
+        if (Math.abs(estimate) > error) {
+            return (estimate > 0) ? 1 : -1;
+        }
+        return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).compareTo(BigInteger.valueOf(c).multiply(BigInteger.valueOf(d)));
+    }
+
+    /**
+     * The points of one side of a convex hull, stored in primitive arrays.
+     * Points are only added and removed at the end, so their identifiers are
+     * sorted.
+     */
+    private static final class HullBound {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[] fIds = new long[INITIAL_CAPACITY];
+        private long[] fX = new long[INITIAL_CAPACITY];
+        private long[] fY = new long[INITIAL_CAPACITY];
+        private int fSize = 0;
+
+        public int size() {
+            return fSize;
+        }
+
+        public long getId(int index) {
+            return fIds[index];
+        }
+
+        public long getX(int index) {
+            return fX[index];
+        }
 
-        public SyncPoint(ITmfEvent ex, ITmfEvent ey) {
-            x = ex.getTimestamp();
-            y = ey.getTimestamp();
+        public long getY(int index) {
+            return fY[index];
         }
 
-        public long getTimeX() {
-            return x.getValue();
+        public void add(long id, long x, long y) {
+            if (fSize == fIds.length) {
+                int capacity = fSize * 2;
+                fIds = Arrays.copyOf(fIds, capacity);
+                fX = Arrays.copyOf(fX, capacity);
+                fY = Arrays.copyOf(fY, capacity);
+            }
+            fIds[fSize] = id;
+            fX[fSize] = x;
+            fY[fSize] = y;
+            fSize++;
+        }
+
+        public void removeLast() {
+            fSize--;
         }
 
         /**
-         * Calculate a cross product of 3 points:
-         *
-         * If the cross-product < 0, then p, pa, pb are clockwise
-         *
-         * If the cross-product > 0, then p, pa, pb are counter-clockwise
-         *
-         * If cross-product == 0, then they are in a line
-         *
-         * @param pa
-         *            First point
-         * @param pb
-         *            Second point
-         * @return The cross product
+         * @return The index of the point, or -1 if it is not in this bound
          */
-        public long crossProduct(SyncPoint pa, SyncPoint pb) {
-            long cp = ((pa.x.getValue() - x.getValue()) * (pb.y.getValue() - y.getValue()) - (pa.y.getValue() - y.getValue()) * (pb.x.getValue() - x.getValue()));
-            return cp;
+        public int indexOf(long id) {
+            int index = Arrays.binarySearch(fIds, 0, fSize, id);
+            return (index >= 0) ? index : -1;
+        }
+
+        public boolean contains(long id) {
+            return indexOf(id) >= 0;
+        }
+    }
+
+    /**
+     * Private class representing a line between two points on a graph. The x
+     * axis is the timestamp of the event from the reference trace while the y
+     * axis is the timestamp of the event on the other trace. The origin point
+     * is on one bound of the hull, the end point on the other.
+     */
+    private static final class HullLine {
+
+        private static final long NO_POINT = -1;
+
+        private long fId0 = NO_POINT;
+        private long fX0, fY0;
+        private long fId1 = NO_POINT;
+        private long fX1, fY1;
+
+        public boolean hasOrigin() {
+            return fId0 != NO_POINT;
+        }
+
+        public boolean hasEnd() {
+            return fId1 != NO_POINT;
+        }
+
+        public void setOrigin(HullBound bound, int index) {
+            fId0 = bound.getId(index);
+            fX0 = bound.getX(index);
+            fY0 = bound.getY(index);
+        }
+
+        public void clearOrigin() {
+            fId0 = NO_POINT;
+        }
+
+        public void setEnd(long id, long x, long y) {
+            fId1 = id;
+            fX1 = x;
+            fY1 = y;
+        }
+
+        public void copy(HullLine other) {
+            fId0 = other.fId0;
+            fX0 = other.fX0;
+            fY0 = other.fY0;
+            fId1 = other.fId1;
+            fX1 = other.fX1;
+            fY1 = other.fY1;
+        }
+
+        /*
+         * Compare the slope of this line with the one of another line, as
+         * getAlpha() would, but exactly
+         */
+        public int compareSlope(HullLine other) {
+            long dy = fY1 - fY0, dx = fX1 - fX0;
+            long otherDy = other.fY1 - other.fY0, otherDx = other.fX1 - other.fX0;
+            if (dx == 0) {
+                dy = 1;
+                dx = 1;
+            } else if (dx < 0) {
+                dy = -dy;
+                dx = -dx;
+            }
+            if (otherDx == 0) {
+                otherDy = 1;
+                otherDx = 1;
+            } else if (otherDx < 0) {
+                otherDy = -otherDy;
+                otherDx = -otherDx;
+            }
+            return compareProducts(dy, otherDx, otherDy, dx);
         }
 
         /*
-         * Gets the alpha (slope) between two points
+         * Gets the alpha (slope) of the line
          */
-        public BigDecimal getAlpha(SyncPoint p1) {
-            if (p1 == null) {
+        public BigDecimal getAlpha() {
+            if (!hasOrigin()) {
                 return BigDecimal.ONE;
             }
-            BigDecimal deltay = BigDecimal.valueOf(y.getValue() - p1.y.getValue());
-            BigDecimal deltax = BigDecimal.valueOf(x.getValue() - p1.x.getValue());
+            BigDecimal deltay = BigDecimal.valueOf(fY1 - fY0);
+            BigDecimal deltax = BigDecimal.valueOf(fX1 - fX0);
             if (deltax.equals(BigDecimal.ZERO)) {
                 return BigDecimal.ONE;
             }
@@ -594,12 +788,13 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
          * Get the beta value (when x = 0) of the line given alpha
          */
         public BigDecimal getBeta(BigDecimal alpha) {
-            return BigDecimal.valueOf(y.getValue()).subtract(alpha.multiply(BigDecimal.valueOf(x.getValue()), fMc));
+            return BigDecimal.valueOf(fY1).subtract(alpha.multiply(BigDecimal.valueOf(fX1), fMc));
         }
 
+        @SuppressWarnings("nls")
         @Override
         public String toString() {
-            return String.format("%s (%s,  %s)", this.getClass().getCanonicalName(), x, y); //$NON-NLS-1$
+            return String.format("%s ((%d, %d), (%d, %d))", getClass().getSimpleName(), fX0, fY0, fX1, fY1);
         }
     }
 
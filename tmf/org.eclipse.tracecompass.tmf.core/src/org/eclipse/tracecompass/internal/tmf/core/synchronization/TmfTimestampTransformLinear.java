@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.synchronization;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.math.BigDecimal;
 import java.math.MathContext;
 
@@ -43,12 +45,16 @@ public class TmfTimestampTransformLinear implements ITmfTimestampTransformInvert
 
     private static final MathContext fMc = MathContext.DECIMAL128;
 
+    /** Computes the transform without allocating, see {@link #transform(long)} */
+    private transient LinearTransformEvaluator fEvaluator;
+
     /**
      * Default constructor
      */
     public TmfTimestampTransformLinear() {
         fAlpha = BigDecimal.ONE;
         fBeta = BigDecimal.ZERO;
+        fEvaluator = new LinearTransformEvaluator(fAlpha, fBeta, false);
     }
 
     /**
@@ -62,6 +68,7 @@ public class TmfTimestampTransformLinear implements ITmfTimestampTransformInvert
     public TmfTimestampTransformLinear(final double alpha, final double beta) {
         fAlpha = BigDecimal.valueOf(alpha);
         fBeta = BigDecimal.valueOf(beta);
+        fEvaluator = new LinearTransformEvaluator(fAlpha, fBeta, false);
     }
 
     /**
@@ -83,18 +90,24 @@ public class TmfTimestampTransformLinear implements ITmfTimestampTransformInvert
         } else {
             fBeta = BigDecimal.ZERO;
         }
+        fEvaluator = new LinearTransformEvaluator(fAlpha, fBeta, false);
     }
 
     @Override
     public ITmfTimestamp transform(ITmfTimestamp timestamp) {
-        BigDecimal newvalue = BigDecimal.valueOf(timestamp.getValue()).multiply(fAlpha, fMc).add(fBeta);
-        return TmfTimestamp.create(newvalue.longValue(), timestamp.getScale());
+        return TmfTimestamp.create(transform(timestamp.getValue()), timestamp.getScale());
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The result is the same as computing alpha * t + beta with BigDecimal,
+     * but BigDecimal is only used when the result is too close to an integer
+     * to be truncated safely with double-double arithmetic.
+     */
     @Override
     public long transform(long timestamp) {
-        BigDecimal t = BigDecimal.valueOf(timestamp).multiply(fAlpha, fMc).add(fBeta);
-        return t.longValue();
+        return fEvaluator.evaluate(timestamp);
     }
 
     @Override
@@ -162,4 +175,9 @@ public class TmfTimestampTransformLinear implements ITmfTimestampTransformInvert
     public BigDecimal getBeta() {
         return fBeta;
     }
+
+    private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        stream.defaultReadObject();
+        fEvaluator = new LinearTransformEvaluator(fAlpha, fBeta, false);
+    }
 }
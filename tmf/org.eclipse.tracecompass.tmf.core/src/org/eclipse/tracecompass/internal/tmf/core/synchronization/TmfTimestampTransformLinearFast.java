@@ -13,6 +13,8 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.synchronization;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.math.BigDecimal;
 import java.math.MathContext;
 
@@ -75,6 +77,7 @@ public class TmfTimestampTransformLinearFast implements ITmfTimestampTransformIn
 
     private long fOffset;
 
+    private transient LinearTransformEvaluator fEvaluator;
     private transient long fRangeStart;
     private transient long fScaleMiss;
     private transient long fScaleHit;
@@ -151,6 +154,7 @@ public class TmfTimestampTransformLinearFast implements ITmfTimestampTransformIn
         fDeltaBits = Math.max(Math.min(width, DECIMAL_BITS), 0);
         fDeltaMax = 1 << fDeltaBits;
         fAlphaLong = fAlpha.multiply(BigDecimal.valueOf(fDeltaMax), MC).longValue();
+        fEvaluator = new LinearTransformEvaluator(fAlpha, fBeta, true);
         fRangeStart = 0L;
         fOffset = 0L;
         fScaleMiss = 0;
@@ -183,10 +187,13 @@ public class TmfTimestampTransformLinearFast implements ITmfTimestampTransformIn
              * reference, they may not produce the same result. To avoid this
              * problem, align fStart on a deterministic boundary.
              *
+             * The offset of the new range is computed without BigDecimal in
+             * most cases, so a rescale does not allocate either.
+             *
              * TODO: use exact math arithmetic to detect overflow when switching to Java 8
              */
             fRangeStart = timestamp - (timestamp % fDeltaMax);
-            fOffset = BigDecimal.valueOf(fRangeStart).multiply(fAlpha, MC).add(fBeta, MC).longValue();
+            fOffset = fEvaluator.evaluate(fRangeStart);
             delta = Math.abs(timestamp - fRangeStart);
             fScaleMiss++;
         } else {
@@ -233,7 +240,7 @@ public class TmfTimestampTransformLinearFast implements ITmfTimestampTransformIn
 
     /**
      * A cache miss occurs when the timestamp is out of the range for integer
-     * computation, and therefore requires using BigDecimal for re-scaling.
+     * computation, and therefore requires computing the offset of a new range.
      *
      * @return number of misses
      */
@@ -308,4 +315,9 @@ public class TmfTimestampTransformLinearFast implements ITmfTimestampTransformIn
         return fHashCode;
     }
 
+    private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        stream.defaultReadObject();
+        fEvaluator = new LinearTransformEvaluator(fAlpha, fBeta, true);
+    }
+
 }
\ No newline at end of file
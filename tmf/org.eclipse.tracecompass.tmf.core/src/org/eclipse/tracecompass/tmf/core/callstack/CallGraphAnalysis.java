@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.callstack;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+
+/**
+ * Analysis aggregating the call stacks of all threads of a trace into a
+ * calling-context tree, the data behind call graph and flame graph
+ * representations. It uses the state system of the
+ * {@link ICallStackAnalysis} of the trace.
+ *
+ * The tree of the whole trace is computed once and saved in the trace's
+ * supplementary files. The tree of any other time range can be computed with
+ * {@link #getCallGraph(long, long, IProgressMonitor)}.
+ *
+ * @since 2.0
+ */
+public class CallGraphAnalysis extends TmfAbstractAnalysisModule {
+
+    /** The ID of this analysis */
+    public static final String ID = "org.eclipse.tracecompass.tmf.core.callgraph"; //$NON-NLS-1$
+
+    private static final String DATA_FILE_EXTENSION = ".callgraph"; //$NON-NLS-1$
+
+    private @Nullable CallGraphNode fCallGraph = null;
+
+    @Override
+    public boolean canExecute(ITmfTrace trace) {
+        return TmfTraceUtils.getAnalysisModulesOfClass(trace, ICallStackAnalysis.class).iterator().hasNext();
+    }
+
+    @Override
+    protected Iterable<IAnalysisModule> getDependentAnalyses() {
+        ICallStackAnalysis module = getCallStackAnalysis();
+        if (module == null) {
+            return Collections.EMPTY_LIST;
+        }
+        return Collections.singleton(module);
+    }
+
+    private @Nullable ICallStackAnalysis getCallStackAnalysis() {
+        ITmfTrace trace = getTrace();
+        if (trace == null) {
+            return null;
+        }
+        for (ICallStackAnalysis module : TmfTraceUtils.getAnalysisModulesOfClass(trace, ICallStackAnalysis.class)) {
+            return module;
+        }
+        return null;
+    }
+
+    /**
+     * Get the calling-context tree of the whole trace
+     *
+     * @return The root of the tree, or <code>null</code> if the analysis has
+     *         not completed yet
+     */
+    public @Nullable CallGraphNode getCallGraph() {
+        return fCallGraph;
+    }
+
+    /**
+     * Compute the calling-context tree of a time range. Calls that are only
+     * partially in the range are counted for the part inside the range.
+     *
+     * @param start
+     *            The start of the range, inclusive
+     * @param end
+     *            The end of the range, exclusive
+     * @param monitor
+     *            The progress monitor
+     * @return The root of the tree, or <code>null</code> if the call stack is
+     *         not available or the computation was cancelled
+     */
+    public @Nullable CallGraphNode getCallGraph(long start, long end, IProgressMonitor monitor) {
+        ICallStackAnalysis module = getCallStackAnalysis();
+        if (module == null) {
+            return null;
+        }
+        module.schedule();
+        if (!module.waitForInitialization()) {
+            return null;
+        }
+        ITmfStateSystem ss = module.getStateSystem();
+        if (ss == null) {
+            return null;
+        }
+        return CallGraphBuilder.build(ss, module.getThreadsPattern(), module.getCallStackPath(), start, end, monitor);
+    }
+
+    @Override
+    protected boolean executeAnalysis(IProgressMonitor monitor) throws TmfAnalysisException {
+        ITmfTrace trace = checkNotNull(getTrace());
+        ICallStackAnalysis module = getCallStackAnalysis();
+        if (module == null) {
+            return false;
+        }
+
+        /* See if the data file already exists on disk */
+        String dir = TmfTraceManager.getSupplementaryFileDir(trace);
+        final Path file = Paths.get(dir, getId() + DATA_FILE_EXTENSION);
+        if (Files.exists(file)) {
+            try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(file))) {
+                fCallGraph = (CallGraphNode) ois.readObject();
+                return true;
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                /*
+                 * We did not manage to read the file successfully, we will
+                 * just fall-through to rebuild a new one.
+                 */
+                try {
+                    Files.delete(file);
+                } catch (IOException e1) {
+                }
+            }
+        }
+
+        if (!module.waitForCompletion(monitor)) {
+            return false;
+        }
+        ITmfStateSystem ss = module.getStateSystem();
+        if (ss == null) {
+            return false;
+        }
+        CallGraphNode callGraph = CallGraphBuilder.build(ss, module.getThreadsPattern(), module.getCallStackPath(),
+                ss.getStartTime(), Long.MAX_VALUE, monitor);
+        if (callGraph == null || monitor.isCanceled()) {
+            return false;
+        }
+        fCallGraph = callGraph;
+
+        /* Serialize the tree to disk for future usage */
+        try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(file))) {
+            oos.writeObject(callGraph);
+        } catch (IOException e) {
+            /*
+             * Didn't work, oh well. We will just rebuild it next time
+             */
+        }
+        return true;
+    }
+
+    @Override
+    protected void canceling() {
+        /* The build checks the progress monitor */
+    }
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.callstack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+
+/**
+ * Builds a calling-context tree from a call stack state system. The call
+ * stack of each thread is walked on its own worker, then the per-thread trees
+ * are merged in thread order, so the result is deterministic.
+ *
+ * A worker never queries the full state: it walks each depth attribute of its
+ * thread once, in time order, like a range query on that attribute. The calls
+ * at depth n+1 are nested in the calls at depth n, so a cursor per depth is
+ * enough to place every interval under its caller while visiting it exactly
+ * once. The cost is proportional to the number of calls of the thread, and
+ * the memory used to the size of the resulting tree.
+ */
+final class CallGraphBuilder {
+
+    private CallGraphBuilder() {
+    }
+
+    /**
+     * Build the calling-context tree of all the threads of a call stack state
+     * system for a time range
+     *
+     * @param ss
+     *            The call stack state system
+     * @param threadsPattern
+     *            The absolute pattern of the thread attributes
+     * @param callStackPath
+     *            The call stack path relative to a thread attribute
+     * @param start
+     *            The start of the range, inclusive
+     * @param end
+     *            The end of the range, exclusive
+     * @param monitor
+     *            The progress monitor
+     * @return The root of the tree, or <code>null</code> if the build was
+     *         cancelled or failed
+     */
+    public static @Nullable CallGraphNode build(ITmfStateSystem ss, String[] threadsPattern, String[] callStackPath,
+            long start, long end, IProgressMonitor monitor) {
+        long rangeStart = Math.max(start, ss.getStartTime());
+        long rangeEnd = Math.min(end, ss.getCurrentEndTime() + 1);
+        CallGraphNode root = new CallGraphNode();
+        List<Integer> threadQuarks = ss.getQuarks(threadsPattern);
+        if (rangeStart >= rangeEnd || threadQuarks.isEmpty()) {
+            return root;
+        }
+
+        int nbWorkers = Math.min(threadQuarks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        try {
+            List<Future<CallGraphNode>> results = new ArrayList<>();
+            for (int threadQuark : threadQuarks) {
+                results.add(executor.submit(() -> buildThread(ss, threadQuark, callStackPath, rangeStart, rangeEnd, monitor)));
+            }
+            /* Merge in thread order so that the result is deterministic */
+            for (Future<CallGraphNode> result : results) {
+                CallGraphNode threadRoot = result.get();
+                if (monitor.isCanceled()) {
+                    return null;
+                }
+                root.merge(threadRoot);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Activator.logError("Error building the call graph of " + ss.getSSID(), e.getCause()); //$NON-NLS-1$
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+        return root;
+    }
+
+    private static CallGraphNode buildThread(ITmfStateSystem ss, int threadQuark, String[] callStackPath,
+            long start, long end, IProgressMonitor monitor) throws StateSystemDisposedException {
+        CallGraphNode root = new CallGraphNode();
+        int callStackQuark = ss.optQuarkRelative(threadQuark, callStackPath);
+        if (callStackQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+            return root;
+        }
+        /* The depth attributes are created in order, 1 to n */
+        List<Integer> depthQuarks = ss.getSubAttributes(callStackQuark, false);
+        int[] quarks = new int[depthQuarks.size()];
+        for (int i = 0; i < quarks.length; i++) {
+            quarks[i] = depthQuarks.get(i);
+        }
+        long[] cursors = new long[quarks.length];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = start;
+        }
+        root.addRootTime(aggregate(ss, quarks, cursors, 0, root, start, end, monitor));
+        return root;
+    }
+
+    /**
+     * Aggregate under a parent node the calls at a given depth that happen in
+     * [start, end). The cursor of the depth only moves forward, so each
+     * interval of the depth attribute is queried once for the whole walk.
+     *
+     * @return The time covered by those calls
+     */
+    private static long aggregate(ITmfStateSystem ss, int[] quarks, long[] cursors, int depth,
+            CallGraphNode parent, long start, long end, IProgressMonitor monitor) throws StateSystemDisposedException {
+        if (depth >= quarks.length) {
+            return 0;
+        }
+        long covered = 0;
+        long t = Math.max(cursors[depth], start);
+        while (t < end) {
+            if (monitor.isCanceled()) {
+                break;
+            }
+            ITmfStateInterval interval = ss.querySingleState(t, quarks[depth]);
+            ITmfStateValue value = interval.getStateValue();
+            if (!value.isNull()) {
+                long callStart = Math.max(interval.getStartTime(), start);
+                long callEnd = Math.min(interval.getEndTime() + 1, end);
+                long duration = callEnd - callStart;
+                CallGraphNode node = parent.getOrCreateChild(getSymbol(value));
+                long calleesTime = aggregate(ss, quarks, cursors, depth + 1, node, callStart, callEnd, monitor);
+                node.addCall(duration, duration - calleesTime);
+                covered += duration;
+            }
+            t = interval.getEndTime() + 1;
+        }
+        cursors[depth] = t;
+        return covered;
+    }
+
+    private static Object getSymbol(ITmfStateValue value) {
+        switch (value.getType()) {
+        case INTEGER:
+            return value.unboxInt();
+        case LONG:
+            return value.unboxLong();
+        case STRING:
+            return value.unboxStr();
+        case DOUBLE:
+        case NULL:
+        default:
+            return value.toString();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.callstack;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A node of a calling-context tree. Each node aggregates all the calls of a
+ * function made from the same chain of callers, possibly coming from many
+ * threads.
+ *
+ * The symbol of a node is the value that was pushed on the call stack, a
+ * {@link String}, {@link Integer} or {@link Long} representing the function
+ * name or address. The root node of a tree has a <code>null</code> symbol.
+ *
+ * @since 2.0
+ */
+public class CallGraphNode implements Serializable {
+
+    private static final long serialVersionUID = -3297514263582545612L;
+
+    private final @Nullable Object fSymbol;
+    private final int fDepth;
+    private final Map<Object, CallGraphNode> fChildren = new LinkedHashMap<>();
+
+    private long fCallCount = 0;
+    private long fTotalTime = 0;
+    private long fSelfTime = 0;
+    private long fMinDuration = Long.MAX_VALUE;
+    private long fMaxDuration = Long.MIN_VALUE;
+
+    /**
+     * Create a root node, without symbol
+     */
+    public CallGraphNode() {
+        this(null, 0);
+    }
+
+    private CallGraphNode(@Nullable Object symbol, int depth) {
+        fSymbol = symbol;
+        fDepth = depth;
+    }
+
+    /**
+     * Get the symbol of the function of this node
+     *
+     * @return The symbol, or <code>null</code> for the root node
+     */
+    public @Nullable Object getSymbol() {
+        return fSymbol;
+    }
+
+    /**
+     * Get the depth of this node in the tree. The root is at depth 0 and the
+     * outermost functions at depth 1.
+     *
+     * @return The depth of this node
+     */
+    public int getDepth() {
+        return fDepth;
+    }
+
+    /**
+     * Get the functions called by the function of this node
+     *
+     * @return The child nodes
+     */
+    public Collection<CallGraphNode> getChildren() {
+        return Collections.unmodifiableCollection(fChildren.values());
+    }
+
+    /**
+     * Get the child node for a symbol
+     *
+     * @param symbol
+     *            The symbol of the called function
+     * @return The child node, or <code>null</code> if this function was never
+     *         called from this node
+     */
+    public @Nullable CallGraphNode getChild(Object symbol) {
+        return fChildren.get(symbol);
+    }
+
+    /**
+     * Get the number of calls aggregated in this node
+     *
+     * @return The number of calls
+     */
+    public long getCallCount() {
+        return fCallCount;
+    }
+
+    /**
+     * Get the total time spent in the calls of this node, including the time
+     * spent in the functions they called
+     *
+     * @return The total time
+     */
+    public long getTotalTime() {
+        return fTotalTime;
+    }
+
+    /**
+     * Get the time spent in the calls of this node, excluding the time spent
+     * in the functions they called
+     *
+     * @return The self time
+     */
+    public long getSelfTime() {
+        return fSelfTime;
+    }
+
+    /**
+     * Get the duration of the shortest call of this node
+     *
+     * @return The minimum duration, or 0 if there are no calls
+     */
+    public long getMinDuration() {
+        return (fCallCount == 0 ? 0 : fMinDuration);
+    }
+
+    /**
+     * Get the duration of the longest call of this node
+     *
+     * @return The maximum duration, or 0 if there are no calls
+     */
+    public long getMaxDuration() {
+        return (fCallCount == 0 ? 0 : fMaxDuration);
+    }
+
+    /**
+     * Get the average duration of the calls of this node
+     *
+     * @return The average duration, or 0 if there are no calls
+     */
+    public double getAverageDuration() {
+        return (fCallCount == 0 ? 0.0 : (double) fTotalTime / fCallCount);
+    }
+
+    // ------------------------------------------------------------------------
+    // Building the tree
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the child node for a symbol, creating it if it does not exist yet
+     *
+     * @param symbol
+     *            The symbol of the called function
+     * @return The child node
+     */
+    CallGraphNode getOrCreateChild(Object symbol) {
+        CallGraphNode child = fChildren.get(symbol);
+        if (child == null) {
+            child = new CallGraphNode(symbol, fDepth + 1);
+            fChildren.put(symbol, child);
+        }
+        return child;
+    }
+
+    /**
+     * Add a call to this node
+     *
+     * @param duration
+     *            The duration of the call
+     * @param selfTime
+     *            The part of the duration not spent in callees
+     */
+    void addCall(long duration, long selfTime) {
+        fCallCount++;
+        fTotalTime += duration;
+        fSelfTime += selfTime;
+        fMinDuration = Math.min(fMinDuration, duration);
+        fMaxDuration = Math.max(fMaxDuration, duration);
+    }
+
+    /**
+     * Add the time spent directly in the root node, which has no call of its
+     * own
+     *
+     * @param duration
+     *            The time to add
+     */
+    void addRootTime(long duration) {
+        fTotalTime += duration;
+    }
+
+    /**
+     * Merge the statistics and children of another tree into this one. The
+     * other tree must have the same symbol as this node.
+     *
+     * @param other
+     *            The node to merge into this one
+     */
+    void merge(CallGraphNode other) {
+        fCallCount += other.fCallCount;
+        fTotalTime += other.fTotalTime;
+        fSelfTime += other.fSelfTime;
+        fMinDuration = Math.min(fMinDuration, other.fMinDuration);
+        fMaxDuration = Math.max(fMaxDuration, other.fMaxDuration);
+        for (CallGraphNode otherChild : other.fChildren.values()) {
+            Object symbol = otherChild.fSymbol;
+            if (symbol == null) {
+                continue;
+            }
+            getOrCreateChild(symbol).merge(otherChild);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CallGraphNode [symbol=" + fSymbol + ", calls=" + fCallCount + //$NON-NLS-1$ //$NON-NLS-2$
+                ", total=" + fTotalTime + ", self=" + fSelfTime + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
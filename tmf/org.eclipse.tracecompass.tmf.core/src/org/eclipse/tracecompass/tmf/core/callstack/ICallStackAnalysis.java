@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.callstack;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfAnalysisModuleWithStateSystems;
+
+/**
+ * Interface for analyses providing a call stack state system, as built by a
+ * {@link CallStackStateProvider}. It lets core analyses, like the
+ * {@link CallGraphAnalysis}, find the call stacks without depending on the
+ * views.
+ *
+ * @since 2.0
+ */
+public interface ICallStackAnalysis extends ITmfAnalysisModuleWithStateSystems {
+
+    /**
+     * Get the state system containing the call stacks
+     *
+     * @return The call stack state system, or <code>null</code> if it is not
+     *         initialized yet
+     */
+    @Nullable ITmfStateSystem getStateSystem();
+
+    /**
+     * Get the pattern of thread attributes
+     *
+     * @return the absolute pattern of the thread attributes
+     */
+    String[] getThreadsPattern();
+
+    /**
+     * Get the call stack attribute path relative to a thread attribute found
+     * by {@link #getThreadsPattern()}
+     *
+     * @return the relative path of the call stack attribute
+     */
+    String[] getCallStackPath();
+}
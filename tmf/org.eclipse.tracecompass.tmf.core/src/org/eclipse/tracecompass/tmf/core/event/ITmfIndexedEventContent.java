@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.event;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Content of an event whose fields can also be read by their index. The index
+ * of a field is the same in the contents of all the events with the same
+ * layout, so it can be resolved once from the name of the field, and the
+ * values then read without looking up the name or creating the fields.
+ *
+ * @since 2.0
+ * @see TmfIndexedFields
+ */
+@NonNullByDefault
+public interface ITmfIndexedEventContent extends ITmfEventField {
+
+    /**
+     * Get the layout of the fields of this content. The contents with the
+     * same layout, compared by identity, have the same field at each index.
+     *
+     * @return The layout object
+     */
+    Object getLayout();
+
+    /**
+     * Get the index of a field of this content
+     *
+     * @param name
+     *            The name of the field
+     * @return The index of the field, or -1 if there is no such field
+     */
+    int getFieldIndex(String name);
+
+    /**
+     * Get the value of a field, as would be returned by
+     * {@link ITmfEventField#getValue()} of the field
+     *
+     * @param index
+     *            The index of the field
+     * @return The value, or null if the index is not a field of this content
+     */
+    @Nullable Object getFieldValue(int index);
+
+    /**
+     * Get the value of an integer field, without boxing it
+     *
+     * @param index
+     *            The index of the field
+     * @param defaultValue
+     *            The value to return if the field is not an integer
+     * @return The value of the field, or the default value
+     */
+    long getFieldLongValue(int index, long defaultValue);
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.event;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The indexes of some fields in the contents of events, resolved from their
+ * names once for each layout of the contents, and kept until a content with
+ * another layout is seen. An event handler reading the same fields of every
+ * event of a type can keep one instance of this class.
+ *
+ * @since 2.0
+ */
+@NonNullByDefault
+public final class TmfIndexedFields {
+
+    private static final class Resolved {
+        private final Object fLayout;
+        private final int @Nullable [] fIndexes;
+
+        public Resolved(Object layout, int @Nullable [] indexes) {
+            fLayout = layout;
+            fIndexes = indexes;
+        }
+    }
+
+    private final String[] fNames;
+    private volatile @Nullable Resolved fResolved = null;
+
+    /**
+     * Constructor
+     *
+     * @param names
+     *            The names of the fields
+     */
+    public TmfIndexedFields(String... names) {
+        fNames = names.clone();
+    }
+
+    /**
+     * Get the indexes of the fields in an event content
+     *
+     * @param content
+     *            The content of the event
+     * @return The indexes of the fields, in the order of their names given to
+     *         the constructor, or null if the content cannot be read by index
+     *         or does not have all the fields. The array must not be modified.
+     */
+    public int @Nullable [] getIndexes(ITmfEventField content) {
+        if (!(content instanceof ITmfIndexedEventContent)) {
+            return null;
+        }
+        ITmfIndexedEventContent indexedContent = (ITmfIndexedEventContent) content;
+        Object layout = indexedContent.getLayout();
+        Resolved resolved = fResolved;
+        if (resolved == null || resolved.fLayout != layout) {
+            resolved = new Resolved(layout, resolve(indexedContent));
+            fResolved = resolved;
+        }
+        return resolved.fIndexes;
+    }
+
+    private int @Nullable [] resolve(ITmfIndexedEventContent content) {
+        int[] indexes = new int[fNames.length];
+        for (int i = 0; i < fNames.length; i++) {
+            indexes[i] = content.getFieldIndex(fNames[i]);
+            if (indexes[i] < 0) {
+                return null;
+            }
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) 2016 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.event.matching;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatching.Direction;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * The unmatched events of a subset of the event keys. Each key belongs to
+ * exactly one shard, so shards can match their events concurrently and still
+ * find the same matches as if all events were matched one after the other.
+ *
+ * Unmatched events are kept as small {@link PendingEvent} tuples instead of
+ * the full events. They are kept in insertion order, so that events older
+ * than the matching window can be evicted from the head.
+ *
+ * This class is not thread-safe, a shard must be used by one thread at a
+ * time.
+ */
+class EventMatchingShard {
+
+    /** Value of the matching window when events are never evicted */
+    static final long NO_WINDOW = Long.MAX_VALUE;
+
+    /**
+     * An event waiting for its match. Events of different traces with the same
+     * key are chained, from the oldest to the most recent.
+     */
+    static class PendingEvent {
+
+        private final ITmfTrace fTrace;
+        private final long fRank;
+        private final long fValue;
+        private final int fScale;
+        private final long fTime;
+        private @Nullable PendingEvent fNext = null;
+
+        PendingEvent(ITmfEvent event) {
+            ITmfTimestamp ts = event.getTimestamp();
+            fTrace = event.getTrace();
+            fRank = event.getRank();
+            fValue = ts.getValue();
+            fScale = ts.getScale();
+            fTime = ts.toNanos();
+        }
+
+        ITmfTrace getTrace() {
+            return fTrace;
+        }
+
+        long getTime() {
+            return fTime;
+        }
+
+        /**
+         * Get an event to put in the dependency. Only the trace, rank and
+         * timestamp of the original event are available.
+         */
+        ITmfEvent toEvent() {
+            return new TmfEvent(fTrace, fRank, TmfTimestamp.create(fValue, fScale), null, null);
+        }
+    }
+
+    /**
+     * A pending event that keeps the original event, for the callers that
+     * need the same event objects in the dependencies.
+     */
+    static class RetainedPendingEvent extends PendingEvent {
+
+        private final ITmfEvent fEvent;
+
+        RetainedPendingEvent(ITmfEvent event) {
+            super(event);
+            fEvent = event;
+        }
+
+        @Override
+        ITmfEvent toEvent() {
+            return fEvent;
+        }
+    }
+
+    private final Map<IEventMatchingKey, PendingEvent> fUnmatchedIn = new LinkedHashMap<>();
+    private final Map<IEventMatchingKey, PendingEvent> fUnmatchedOut = new LinkedHashMap<>();
+    private final long fWindow;
+
+    /**
+     * Constructor
+     *
+     * @param window
+     *            The time, in nanoseconds, after which an unmatched event is
+     *            evicted, or {@link #NO_WINDOW}
+     */
+    EventMatchingShard(long window) {
+        fWindow = window;
+    }
+
+    /**
+     * Match one event with the unmatched events of this shard. If no match is
+     * found, the event is kept to be matched later.
+     *
+     * @param direction
+     *            The direction of the event
+     * @param key
+     *            The key of the event, it must belong to this shard
+     * @param event
+     *            The event to match
+     * @return The dependency if a match was found, <code>null</code> otherwise
+     */
+    @Nullable TmfEventDependency match(Direction direction, IEventMatchingKey key, PendingEvent event) {
+        Map<IEventMatchingKey, PendingEvent> unmatchedTbl, companionTbl;
+
+        /* Point to the appropriate table */
+        switch (direction) {
+        case CAUSE:
+            unmatchedTbl = fUnmatchedIn;
+            companionTbl = fUnmatchedOut;
+            break;
+        case EFFECT:
+            unmatchedTbl = fUnmatchedOut;
+            companionTbl = fUnmatchedIn;
+            break;
+        default:
+            return null;
+        }
+
+        long oldest = (fWindow == NO_WINDOW) ? Long.MIN_VALUE : event.getTime() - fWindow;
+        evict(fUnmatchedIn, oldest);
+        evict(fUnmatchedOut, oldest);
+
+        /* Search for the event in the companion table, and remove it */
+        PendingEvent companion = companionTbl.remove(key);
+        while (companion != null && companion.getTime() < oldest) {
+            companion = companion.fNext;
+        }
+        if (companion != null) {
+            switch (direction) {
+            case CAUSE:
+                return new TmfEventDependency(companion.toEvent(), event.toEvent());
+            case EFFECT:
+                return new TmfEventDependency(event.toEvent(), companion.toEvent());
+            default:
+                return null;
+            }
+        }
+
+        /*
+         * If an event of the same trace is already associated with this key, do
+         * not add it again, we keep the first event chronologically.
+         */
+        PendingEvent pending = unmatchedTbl.get(key);
+        if (pending != null && pending.getTime() < oldest) {
+            /* Drop the expired events, the key moves to the end of the table */
+            unmatchedTbl.remove(key);
+            while (pending != null && pending.getTime() < oldest) {
+                pending = pending.fNext;
+            }
+            if (pending != null) {
+                unmatchedTbl.put(key, pending);
+            }
+        }
+        if (pending == null) {
+            unmatchedTbl.put(key, event);
+            return null;
+        }
+        while (true) {
+            if (pending.getTrace().equals(event.getTrace())) {
+                return null;
+            }
+            PendingEvent next = pending.fNext;
+            if (next == null) {
+                pending.fNext = event;
+                return null;
+            }
+            pending = next;
+        }
+    }
+
+    /**
+     * Remove from the head of a table the events that are older than the
+     * matching window. A key stops the eviction if some of its events are
+     * still in the window.
+     */
+    private static void evict(Map<IEventMatchingKey, PendingEvent> table, long oldest) {
+        Iterator<Entry<IEventMatchingKey, PendingEvent>> it = table.entrySet().iterator();
+        while (it.hasNext()) {
+            PendingEvent pending = it.next().getValue();
+            PendingEvent last = pending;
+            while (last.fNext != null) {
+                last = last.fNext;
+            }
+            if (last.getTime() >= oldest) {
+                return;
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * Count the unmatched events of a trace
+     *
+     * @param trace
+     *            The trace
+     * @param direction
+     *            The direction of the events to count
+     * @return The number of unmatched events
+     */
+    int countUnmatched(ITmfTrace trace, Direction direction) {
+        Map<IEventMatchingKey, PendingEvent> table = (direction == Direction.CAUSE) ? fUnmatchedIn : fUnmatchedOut;
+        int count = 0;
+        for (PendingEvent pending : table.values()) {
+            for (PendingEvent event = pending; event != null; event = event.fNext) {
+                if (event.getTrace().equals(trace)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -43,6 +43,21 @@ public interface IMatchProcessingUnit {
      */
     void addMatch(TmfEventDependency match);
 
+    /**
+     * Function called when several matches are found at once. The matches are
+     * in the order in which they were found. The default implementation calls
+     * {@link #addMatch(TmfEventDependency)} for each match.
+     *
+     * @param matches
+     *            The event matches
+     * @since 2.0
+     */
+    default void addMatches(Collection<TmfEventDependency> matches) {
+        for (TmfEventDependency match : matches) {
+            addMatch(match);
+        }
+    }
+
     /**
      * Function called after all matching has been done, to do any post-match
      * treatment
@@ -14,9 +14,17 @@ package org.eclipse.tracecompass.tmf.core.event.matching;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -24,9 +32,12 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.matching.EventMatchingShard.PendingEvent;
+import org.eclipse.tracecompass.tmf.core.event.matching.EventMatchingShard.RetainedPendingEvent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
@@ -34,21 +45,29 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
 /**
  * Abstract class to extend to match certain type of events in a trace
  *
+ * When all the events of the traces are matched with {@link #matchEvents()},
+ * the events are processed in batches. The keys of the events of a batch are
+ * computed concurrently, then the events are dispatched to shards by key and
+ * each shard matches its events on its own thread. The matches of a batch are
+ * given to the processing unit in the order of the events, so the result is
+ * the same as if the events were matched one by one.
+ *
  * @author Geneviève Bastien
  */
 public class TmfEventMatching implements ITmfEventMatching {
 
     private static final Set<ITmfMatchEventDefinition> MATCH_DEFINITIONS = new HashSet<>();
 
+    /** Number of events matched together by {@link #matchEvents()} */
+    private static final int BATCH_SIZE = 8192;
+
     /**
      * The array of traces to match
      */
@@ -62,14 +81,20 @@ public class TmfEventMatching implements ITmfEventMatching {
     private final Multimap<ITmfTrace, ITmfMatchEventDefinition> fMatchMap = HashMultimap.create();
 
     /**
-     * Hashtables for unmatches incoming events
+     * The unmatched events, sharded by key
      */
-    private final Table<ITmfTrace, IEventMatchingKey, ITmfEvent> fUnmatchedIn = HashBasedTable.create();
+    private final EventMatchingShard[] fShards;
 
-    /**
-     * Hashtables for unmatches outgoing events
+    private long fMatchingWindow = EventMatchingShard.NO_WINDOW;
+
+    /*
+     * State of the batched matching: the events of the batch being filled,
+     * and the batch being matched by the worker threads.
      */
-    private final Table<ITmfTrace, IEventMatchingKey, ITmfEvent> fUnmatchedOut = HashBasedTable.create();
+    private @Nullable ExecutorService fWorkers = null;
+    private @Nullable ExecutorService fCoordinator = null;
+    private List<ITmfEvent> fBatch = new ArrayList<>();
+    private @Nullable Future<List<TmfEventDependency>> fRunningBatch = null;
 
     /**
      * Enum for cause and effect types of event
@@ -111,6 +136,27 @@ public class TmfEventMatching implements ITmfEventMatching {
         }
         fTraces = new HashSet<>(traces);
         fMatches = tmfEventMatches;
+        fShards = new EventMatchingShard[Runtime.getRuntime().availableProcessors()];
+    }
+
+    /**
+     * Set the matching window. An unmatched event is forgotten once an event
+     * more recent by this amount of time is matched. Since the events are
+     * matched in the order of the requests, this is only meaningful if the
+     * traces are read together, for example in an experiment, and if the
+     * window is larger than the time difference between the traces' clocks.
+     *
+     * By default, unmatched events are never forgotten.
+     *
+     * @param window
+     *            The matching window in nanoseconds, it must be positive
+     * @since 2.0
+     */
+    public void setMatchingWindow(long window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException();
+        }
+        fMatchingWindow = window;
     }
 
     /**
@@ -169,8 +215,9 @@ public class TmfEventMatching implements ITmfEventMatching {
      */
     public void initMatching() {
         // Initialize the matching infrastructure (unmatched event lists)
-        fUnmatchedIn.clear();
-        fUnmatchedOut.clear();
+        for (int i = 0; i < fShards.length; i++) {
+            fShards[i] = new EventMatchingShard(fMatchingWindow);
+        }
 
         fMatches.init(fTraces);
         for (ITmfTrace trace : getIndividualTraces()) {
@@ -201,9 +248,17 @@ public class TmfEventMatching implements ITmfEventMatching {
         b.append(getProcessingUnit());
         int i = 0;
         for (ITmfTrace trace : getIndividualTraces()) {
+            int unmatchedIn = 0;
+            int unmatchedOut = 0;
+            for (EventMatchingShard shard : fShards) {
+                if (shard != null) {
+                    unmatchedIn += shard.countUnmatched(trace, Direction.CAUSE);
+                    unmatchedOut += shard.countUnmatched(trace, Direction.EFFECT);
+                }
+            }
             b.append("Trace " + i++ + ":" + cr + //$NON-NLS-1$ //$NON-NLS-2$
-                    "  " + fUnmatchedIn.row(trace).size() + " unmatched incoming events" + cr + //$NON-NLS-1$ //$NON-NLS-2$
-                    "  " + fUnmatchedOut.row(trace).size() + " unmatched outgoing events" + cr); //$NON-NLS-1$ //$NON-NLS-2$
+                    "  " + unmatchedIn + " unmatched incoming events" + cr + //$NON-NLS-1$ //$NON-NLS-2$
+                    "  " + unmatchedOut + " unmatched outgoing events" + cr); //$NON-NLS-1$ //$NON-NLS-2$
         }
 
         return b.toString();
@@ -221,6 +276,53 @@ public class TmfEventMatching implements ITmfEventMatching {
      * @since 1.0
      */
     public void matchEvent(ITmfEvent event, ITmfTrace trace, @NonNull IProgressMonitor monitor) {
+        MatchCandidate candidate = getCandidate(event, 0);
+        if (candidate == null) {
+            return;
+        }
+
+        /*
+         * The event itself is kept until it is matched, so that callers
+         * receive the same event objects in the dependencies.
+         */
+        TmfEventDependency dep = getShard(candidate.fKey).match(candidate.fDirection, candidate.fKey, new RetainedPendingEvent(event));
+        if (dep != null) {
+            getProcessingUnit().addMatch(dep);
+            monitor.subTask(NLS.bind(Messages.TmfEventMatching_MatchesFound, getProcessingUnit().countMatches()));
+        }
+    }
+
+    /**
+     * An event that can be matched, with its direction and key
+     */
+    private static class MatchCandidate {
+        private final long fSeq;
+        private final Direction fDirection;
+        private final IEventMatchingKey fKey;
+        private final PendingEvent fEvent;
+
+        public MatchCandidate(long seq, Direction direction, IEventMatchingKey key, PendingEvent event) {
+            fSeq = seq;
+            fDirection = direction;
+            fKey = key;
+            fEvent = event;
+        }
+    }
+
+    /**
+     * A dependency, with the sequence number of the event that completed it
+     */
+    private static class SequencedDependency {
+        private final long fSeq;
+        private final TmfEventDependency fDependency;
+
+        public SequencedDependency(long seq, TmfEventDependency dependency) {
+            fSeq = seq;
+            fDependency = dependency;
+        }
+    }
+
+    private @Nullable MatchCandidate getCandidate(ITmfEvent event, long seq) {
         ITmfMatchEventDefinition def = null;
         Direction evType = null;
         for (ITmfMatchEventDefinition oneDef : getEventDefinitions(event.getTrace())) {
@@ -233,79 +335,154 @@ public class TmfEventMatching implements ITmfEventMatching {
         }
 
         if (def == null || evType == null) {
-            return;
+            return null;
         }
 
         /* Get the event's unique fields */
         IEventMatchingKey eventKey = def.getEventKey(event);
 
         if (eventKey == null) {
+            return null;
+        }
+        return new MatchCandidate(seq, evType, eventKey, new PendingEvent(event));
+    }
+
+    private int getShardIndex(IEventMatchingKey key) {
+        return Math.floorMod(key.hashCode(), fShards.length);
+    }
+
+    private EventMatchingShard getShard(IEventMatchingKey key) {
+        return fShards[getShardIndex(key)];
+    }
+
+    /**
+     * Add an event to the batch being filled, and start matching the batch
+     * when it is full. Called by the requests of {@link #matchEvents()}.
+     */
+    void queueEvent(ITmfEvent event, IProgressMonitor monitor) {
+        fBatch.add(event);
+        if (fBatch.size() >= BATCH_SIZE) {
+            flushBatch(monitor);
+        }
+    }
+
+    /**
+     * Wait for the batch being matched, give its matches to the processing
+     * unit and start matching the batch being filled.
+     */
+    private void flushBatch(IProgressMonitor monitor) {
+        waitForBatch(monitor);
+        ExecutorService coordinator = fCoordinator;
+        if (fBatch.isEmpty() || coordinator == null) {
             return;
         }
-        Table<ITmfTrace, IEventMatchingKey, ITmfEvent> unmatchedTbl, companionTbl;
-
-        /* Point to the appropriate table */
-        switch (evType) {
-        case CAUSE:
-            unmatchedTbl = fUnmatchedIn;
-            companionTbl = fUnmatchedOut;
-            break;
-        case EFFECT:
-            unmatchedTbl = fUnmatchedOut;
-            companionTbl = fUnmatchedIn;
-            break;
-        default:
+        List<ITmfEvent> batch = fBatch;
+        fBatch = new ArrayList<>(BATCH_SIZE);
+        fRunningBatch = coordinator.submit(() -> matchBatch(batch));
+    }
+
+    private void waitForBatch(IProgressMonitor monitor) {
+        Future<List<TmfEventDependency>> running = fRunningBatch;
+        if (running == null) {
             return;
         }
+        fRunningBatch = null;
+        List<TmfEventDependency> matches = getResult(running);
+        if (!matches.isEmpty()) {
+            getProcessingUnit().addMatches(matches);
+            monitor.subTask(NLS.bind(Messages.TmfEventMatching_MatchesFound, getProcessingUnit().countMatches()));
+        }
+    }
 
-        boolean found = false;
-        TmfEventDependency dep = null;
-        /* Search for the event in the companion table */
-        for (ITmfTrace mTrace : getIndividualTraces()) {
-            if (companionTbl.contains(mTrace, eventKey)) {
-                found = true;
-                ITmfEvent companionEvent = companionTbl.get(mTrace, eventKey);
-
-                /* Remove the element from the companion table */
-                companionTbl.remove(mTrace, eventKey);
-
-                /* Create the dependency object */
-                switch (evType) {
-                case CAUSE:
-                    dep = new TmfEventDependency(companionEvent, event);
-                    break;
-                case EFFECT:
-                    dep = new TmfEventDependency(event, companionEvent);
-                    break;
-                default:
-                    break;
+    private List<TmfEventDependency> matchBatch(List<ITmfEvent> batch) {
+        ExecutorService workers = checkNotNull(fWorkers);
+        int nbSlices = fShards.length;
+
+        /* Find the direction and key of the events, concurrently */
+        MatchCandidate[] candidates = new MatchCandidate[batch.size()];
+        List<Callable<Void>> keyTasks = new ArrayList<>();
+        int sliceSize = (batch.size() + nbSlices - 1) / nbSlices;
+        for (int start = 0; start < batch.size(); start += sliceSize) {
+            int sliceStart = start;
+            int sliceEnd = Math.min(start + sliceSize, batch.size());
+            keyTasks.add(() -> {
+                for (int i = sliceStart; i < sliceEnd; i++) {
+                    candidates[i] = getCandidate(batch.get(i), i);
+                }
+                return null;
+            });
+        }
+        invokeAll(workers, keyTasks);
 
+        /* Dispatch the events to their shard, in order */
+        List<List<MatchCandidate>> shardEvents = new ArrayList<>();
+        for (int i = 0; i < fShards.length; i++) {
+            shardEvents.add(new ArrayList<>());
+        }
+        for (MatchCandidate candidate : candidates) {
+            if (candidate != null) {
+                shardEvents.get(getShardIndex(candidate.fKey)).add(candidate);
+            }
+        }
+
+        /* Match the events of each shard, concurrently */
+        List<Callable<List<SequencedDependency>>> matchTasks = new ArrayList<>();
+        for (int i = 0; i < fShards.length; i++) {
+            EventMatchingShard shard = fShards[i];
+            List<MatchCandidate> events = shardEvents.get(i);
+            if (events.isEmpty()) {
+                continue;
+            }
+            matchTasks.add(() -> {
+                List<SequencedDependency> deps = new ArrayList<>();
+                for (MatchCandidate candidate : events) {
+                    TmfEventDependency dep = shard.match(candidate.fDirection, candidate.fKey, candidate.fEvent);
+                    if (dep != null) {
+                        deps.add(new SequencedDependency(candidate.fSeq, dep));
+                    }
                 }
+                return deps;
+            });
+        }
+
+        /* Put the matches back in the order of the events */
+        List<SequencedDependency> deps = new ArrayList<>();
+        for (List<SequencedDependency> shardDeps : invokeAll(workers, matchTasks)) {
+            deps.addAll(shardDeps);
+        }
+        deps.sort(Comparator.comparingLong(dep -> dep.fSeq));
+        List<TmfEventDependency> matches = new ArrayList<>(deps.size());
+        for (SequencedDependency dep : deps) {
+            matches.add(dep.fDependency);
+        }
+        return matches;
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(getResult(future));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
         }
+        return results;
+    }
 
-        /*
-         * If no companion was found, add the event to the appropriate unMatched
-         * lists
-         */
-        if (found) {
-            getProcessingUnit().addMatch(checkNotNull(dep));
-            monitor.subTask(NLS.bind(Messages.TmfEventMatching_MatchesFound, getProcessingUnit().countMatches()));
-        } else {
-            /*
-             * If an event is already associated with this key, do not add it
-             * again, we keep the first event chronologically, so if its match
-             * is eventually found, it is associated with the first send or
-             * receive event. At best, it is a good guess, at worst, the match
-             * will be too far off to be accurate. Too bad!
-             *
-             * TODO: maybe instead of just one event, we could have a list of
-             * events as value for the unmatched table. Not necessary right now
-             * though
-             */
-            if (!unmatchedTbl.contains(event.getTrace(), eventKey)) {
-                unmatchedTbl.put(event.getTrace(), eventKey, event);
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
+            throw new IllegalStateException(cause);
         }
     }
 
@@ -323,6 +500,8 @@ public class TmfEventMatching implements ITmfEventMatching {
         }
 
         initMatching();
+        fWorkers = Executors.newFixedThreadPool(fShards.length);
+        fCoordinator = Executors.newSingleThreadExecutor();
 
         /*
          * Actual analysis will be run on a separate thread
@@ -352,13 +531,16 @@ public class TmfEventMatching implements ITmfEventMatching {
                     setName(NLS.bind(Messages.TmfEventMatching_RequestingEventsFrom, trace.getName()));
 
                     /* Send the request to the trace */
-                    EventMatchingBuildRequest request = new EventMatchingBuildRequest(TmfEventMatching.this, trace, monitor);
+                    EventMatchingBuildRequest request = new EventMatchingBuildRequest(TmfEventMatching.this, monitor);
                     trace.sendRequest(request);
                     try {
                         request.waitForCompletion();
                     } catch (InterruptedException e) {
                         Activator.logInfo(e.getMessage());
                     }
+                    /* Match the last events of the trace */
+                    flushBatch(monitor);
+                    waitForBatch(monitor);
                     if (monitor.isCanceled()) {
                         return Status.CANCEL_STATUS;
                     }
@@ -371,6 +553,13 @@ public class TmfEventMatching implements ITmfEventMatching {
             job.join();
         } catch (InterruptedException e) {
 
+        } finally {
+            checkNotNull(fCoordinator).shutdownNow();
+            checkNotNull(fWorkers).shutdownNow();
+            fCoordinator = null;
+            fWorkers = null;
+            fBatch = new ArrayList<>();
+            fRunningBatch = null;
         }
 
         finalizeMatching();
@@ -393,17 +582,15 @@ public class TmfEventMatching implements ITmfEventMatching {
 class EventMatchingBuildRequest extends TmfEventRequest {
 
     private final TmfEventMatching matching;
-    private final ITmfTrace trace;
     private final @NonNull IProgressMonitor fMonitor;
 
-    EventMatchingBuildRequest(TmfEventMatching matching, ITmfTrace trace, IProgressMonitor monitor) {
+    EventMatchingBuildRequest(TmfEventMatching matching, IProgressMonitor monitor) {
         super(ITmfEvent.class,
                 TmfTimeRange.ETERNITY,
                 0,
                 ITmfEventRequest.ALL_DATA,
                 ITmfEventRequest.ExecutionType.FOREGROUND);
         this.matching = matching;
-        this.trace = trace;
         if (monitor == null) {
             fMonitor = new NullProgressMonitor();
         } else {
@@ -417,7 +604,7 @@ class EventMatchingBuildRequest extends TmfEventRequest {
         if (fMonitor.isCanceled()) {
             this.cancel();
         }
-        matching.matchEvent(event, trace, fMonitor);
+        matching.queueEvent(event, fMonitor);
     }
 
     @Override
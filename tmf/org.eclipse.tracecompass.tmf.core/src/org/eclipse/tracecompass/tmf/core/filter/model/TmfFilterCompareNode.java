@@ -234,6 +234,8 @@ public class TmfFilterCompareNode extends TmfFilterAspectNode {
     @Override
     public ITmfFilterTreeNode clone() {
         TmfFilterCompareNode clone = (TmfFilterCompareNode) super.clone();
+        /* The format is not thread-safe, do not share it with the clone */
+        clone.fTimestampFormat = new TmfTimestampFormat(fTimestampFormat.toPattern());
         clone.setValue(fValue);
         return clone;
     }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -13,7 +13,10 @@
 
 package org.eclipse.tracecompass.tmf.core.request;
 
+import java.util.function.Predicate;
+
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
@@ -79,8 +82,9 @@ public interface ITmfEventRequest {
 
     /**
      * @return the number of events read so far
+     * @since 2.0
      */
-    int getNbRead();
+    long getNbRead();
 
     /**
      * @return the requested time range
@@ -102,6 +106,20 @@ public interface ITmfEventRequest {
      */
     void setProviderFilter(ITmfFilter filter);
 
+    /**
+     * Get the filter on the names of the event types handled by the request.
+     * The event provider may skip the events of the other types without
+     * creating them, so the request must not depend on them. The events of
+     * the other types can still be passed to the request.
+     *
+     * @return the filter on the event type names, or null if the request
+     *         handles all the events
+     * @since 2.0
+     */
+    default @Nullable Predicate<String> getEventTypeFilter() {
+        return null;
+    }
+
     // ------------------------------------------------------------------------
     // Request state predicates
     // ------------------------------------------------------------------------
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 Ericsson
+ * Copyright (c) 2009, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -14,7 +14,9 @@
 package org.eclipse.tracecompass.tmf.core.request;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.function.Predicate;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.TmfCoreTracer;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
@@ -89,7 +91,7 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
     protected int fNbRequested;
 
     /** The number of reads so far */
-    private int fNbRead;
+    private long fNbRead;
 
     private final CountDownLatch startedLatch = new CountDownLatch(1);
     private final CountDownLatch completedLatch = new CountDownLatch(1);
@@ -101,6 +103,8 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
 
     private ITmfFilter fEventFilter;
 
+    private @Nullable Predicate<String> fEventTypeFilter = null;
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -207,8 +211,11 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
         return fNbRequested;
     }
 
+    /**
+     * @since 2.0
+     */
     @Override
-    public synchronized int getNbRead() {
+    public synchronized long getNbRead() {
         return fNbRead;
     }
 
@@ -252,6 +259,28 @@ public abstract class TmfEventRequest implements ITmfEventRequest {
         fEventFilter = provider;
     }
 
+    /**
+     * @since 2.0
+     */
+    @Override
+    public @Nullable Predicate<String> getEventTypeFilter() {
+        return fEventTypeFilter;
+    }
+
+    /**
+     * Set the filter on the names of the event types handled by the request,
+     * so the event provider can skip the other events. It must be set before
+     * the request is sent.
+     *
+     * @param filter
+     *            the filter on the event type names, or null to handle all
+     *            the events
+     * @since 2.0
+     */
+    public void setEventTypeFilter(@Nullable Predicate<String> filter) {
+        fEventTypeFilter = filter;
+    }
+
     // ------------------------------------------------------------------------
     // Setters
     // ------------------------------------------------------------------------
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2015 Ericsson
+ * Copyright (c) 2012, 2016 Ericsson
  * Copyright (c) 2010, 2011 École Polytechnique de Montréal
  * Copyright (c) 2010, 2011 Alexandre Montplaisir <alexandre.montplaisir@gmail.com>
  *
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.tmf.core.statesystem;
 
+import java.util.function.Predicate;
+
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
@@ -87,6 +89,19 @@ public interface ITmfStateProvider {
      */
     void processEvent(ITmfEvent event);
 
+    /**
+     * Get the filter on the names of the event types that this state provider
+     * handles. When it is not null, the events of the other types may not be
+     * sent to {@link #processEvent}, so they must not change the state.
+     *
+     * @return the filter on the event type names, or null if the state
+     *         provider needs all the events
+     * @since 2.0
+     */
+    default @Nullable Predicate<String> getEventTypeFilter() {
+        return null;
+    }
+
     /**
      * Provide a non-initialized copy of this state input plugin. You will need
      * to call {@link #assignTargetStateSystem} on it to assign its target.
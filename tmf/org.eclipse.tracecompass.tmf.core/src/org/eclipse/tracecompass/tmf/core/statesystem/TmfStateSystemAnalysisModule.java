@@ -72,7 +72,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     @Nullable private ITmfEventRequest fRequest;
     @Nullable private TmfTimeRange fTimeRange = null;
 
-    private int fNbRead = 0;
+    private long fNbRead = 0;
     private boolean fInitializationSucceeded;
 
     /**
@@ -474,7 +474,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         private final ITmfStateProvider sci;
         private final ITmfTrace trace;
 
-        public StateSystemEventRequest(ITmfStateProvider sp, TmfTimeRange timeRange, int index) {
+        public StateSystemEventRequest(ITmfStateProvider sp, TmfTimeRange timeRange, long index) {
             super(ITmfEvent.class,
                     timeRange,
                     index,
@@ -482,7 +482,13 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
                     ITmfEventRequest.ExecutionType.BACKGROUND);
             this.sci = sp;
             trace = sci.getTrace();
-
+            /*
+             * The requests on incomplete traces continue at the rank of the
+             * number of events read, so all the events have to be read
+             */
+            if (isCompleteTrace(trace)) {
+                setEventTypeFilter(sp.getEventTypeFilter());
+            }
         }
 
         @Override
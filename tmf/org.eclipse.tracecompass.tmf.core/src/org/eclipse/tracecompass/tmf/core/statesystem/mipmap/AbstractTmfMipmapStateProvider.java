@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -11,7 +11,7 @@
  *     Patrick Tasse - Updates to mipmap feature
  *******************************************************************************/
 
-package org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap;
+package org.eclipse.tracecompass.tmf.core.statesystem.mipmap;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
@@ -20,7 +20,12 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
-import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap.AvgMipmapFeature;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap.CountMipmapFeature;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap.ITmfMipmapFeature;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap.MaxMipmapFeature;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap.MinMipmapFeature;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap.SumMipmapFeature;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
@@ -33,9 +38,13 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
  * This is an abstract state provider that allows attributes to be mipmapped
- * for one or more of the supported mipmap features (min, max, average).
+ * for one or more of the supported mipmap features (min, max, average, sum,
+ * count).
  *
- * Extend this class for a specific implementation
+ * Extend this class for a specific implementation, and use
+ * {@link TmfStateSystemOperations} to query the mipmapped attributes.
+ *
+ * @since 2.0
  */
 public abstract class AbstractTmfMipmapStateProvider extends AbstractTmfStateProvider {
 
@@ -54,6 +63,16 @@ public abstract class AbstractTmfMipmapStateProvider extends AbstractTmfStatePro
      */
     public static final int AVG = 1 << 3;
 
+    /**
+     * Feature bit for the sum mipmap feature (value is 1&lt;&lt;4).
+     */
+    public static final int SUM = 1 << 4;
+
+    /**
+     * Feature bit for the count mipmap feature (value is 1&lt;&lt;5).
+     */
+    public static final int COUNT = 1 << 5;
+
     /**
      * The string for maximum mipmap feature sub-attribute.
      * This attribute value is the mipmap number of levels.
@@ -75,6 +94,20 @@ public abstract class AbstractTmfMipmapStateProvider extends AbstractTmfStatePro
      */
     public static final String AVG_STRING = "avg"; //$NON-NLS-1$
 
+    /**
+     * The string for sum mipmap feature sub-attribute.
+     * This attribute value is the mipmap number of levels.
+     * It has sub-attributes for every level ("1", "2", etc.)
+     */
+    public static final String SUM_STRING = "sum"; //$NON-NLS-1$
+
+    /**
+     * The string for count mipmap feature sub-attribute.
+     * This attribute value is the mipmap number of levels.
+     * It has sub-attributes for every level ("1", "2", etc.)
+     */
+    public static final String COUNT_STRING = "count"; //$NON-NLS-1$
+
     /**
      * Map of mipmap features per attribute. The map's key is the base attribute quark.
      */
@@ -93,8 +126,7 @@ public abstract class AbstractTmfMipmapStateProvider extends AbstractTmfStatePro
      *            The name given to this state change input. Only used
      *            internally.
      */
-    public AbstractTmfMipmapStateProvider(@NonNull ITmfTrace trace,
-            @NonNull String id) {
+    public AbstractTmfMipmapStateProvider(ITmfTrace trace, String id) {
         super(trace, id);
     }
 
@@ -142,6 +174,8 @@ public abstract class AbstractTmfMipmapStateProvider extends AbstractTmfStatePro
      * @see #MAX
      * @see #MIN
      * @see #AVG
+     * @see #SUM
+     * @see #COUNT
      */
     public void modifyMipmapAttribute(long ts, ITmfStateValue value, int baseQuark, int mipmapFeatureBits, int resolution)
             throws TimeRangeException, AttributeNotFoundException, StateValueTypeException {
@@ -191,6 +225,18 @@ public abstract class AbstractTmfMipmapStateProvider extends AbstractTmfStatePro
                     AvgMipmapFeature mf = new AvgMipmapFeature(baseQuark, featureQuark, resolution, ss);
                     features.add(mf);
                 }
+                if ((mipmapFeatureBits & SUM) != 0) {
+                    int featureQuark = ss.getQuarkRelativeAndAdd(baseQuark, SUM_STRING);
+                    ss.modifyAttribute(ts, TmfStateValue.newValueInt(0), featureQuark);
+                    SumMipmapFeature mf = new SumMipmapFeature(baseQuark, featureQuark, resolution, ss);
+                    features.add(mf);
+                }
+                if ((mipmapFeatureBits & COUNT) != 0) {
+                    int featureQuark = ss.getQuarkRelativeAndAdd(baseQuark, COUNT_STRING);
+                    ss.modifyAttribute(ts, TmfStateValue.newValueInt(0), featureQuark);
+                    CountMipmapFeature mf = new CountMipmapFeature(baseQuark, featureQuark, resolution, ss);
+                    features.add(mf);
+                }
             } catch (TimeRangeException e) {
                 e.printStackTrace();
             } catch (AttributeNotFoundException e) {
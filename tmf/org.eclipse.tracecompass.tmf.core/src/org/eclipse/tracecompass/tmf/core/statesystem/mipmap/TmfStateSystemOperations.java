@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2015 Ericsson
+ * Copyright (c) 2013, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -11,11 +11,12 @@
  *     Patrick Tasse - Updates to mipmap feature
  ******************************************************************************/
 
-package org.eclipse.tracecompass.internal.tmf.core.statesystem.mipmap;
+package org.eclipse.tracecompass.tmf.core.statesystem.mipmap;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
@@ -32,7 +33,13 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
  * This class implements additional statistical operations that can be
  * performed on attributes of the state system.
  *
+ * The operations use the mipmap levels of attributes populated by an
+ * {@link AbstractTmfMipmapStateProvider}, so that their cost grows with the
+ * logarithm of the number of state changes in the time range. Attributes
+ * without the corresponding mipmap feature are iterated instead.
+ *
  * @author Patrick Tassé
+ * @since 2.0
  */
 public final class TmfStateSystemOperations {
 
@@ -196,6 +203,271 @@ public final class TmfStateSystemOperations {
         return avg;
     }
 
+    /**
+     * Return the sum of the values of an attribute over a time range. This is
+     * the sum of the values of all the non-null state intervals of the
+     * attribute that intersect the range.
+     * <p>
+     * With the {@link AbstractTmfMipmapStateProvider#SUM} feature, the mipmap
+     * levels store running sums, so the values of the base attribute should
+     * have the same type (Long or Double) through the whole trace.
+     *
+     * @param ss
+     *            The state system to query
+     * @param t1
+     *            The start time of the range
+     * @param t2
+     *            The end time of the range
+     * @param quark
+     *            The quark of the attribute
+     * @return The sum of the values of the attribute in this range, a Double
+     *         value if any of the values is a Double, or else a Long value
+     * @throws TimeRangeException
+     *             If an invalid time range is specified
+     * @throws AttributeNotFoundException
+     *             If the specified quark doesn't match an attribute
+     * @throws StateValueTypeException
+     *             If the state value type of the attribute does not support the
+     *             "Sum" operation
+     */
+    public static ITmfStateValue queryRangeSum(ITmfStateSystem ss, long t1, long t2, int quark)
+            throws AttributeNotFoundException, TimeRangeException, StateValueTypeException {
+        long longSum = 0;
+        double doubleSum = 0.0;
+        boolean isDouble = false;
+
+        List<ITmfStateInterval> intervals = queryAttributeRange(ss, t1, t2, quark, AbstractTmfMipmapStateProvider.SUM_STRING);
+        for (ITmfStateInterval si : intervals) {
+            ITmfStateValue value = si.getStateValue();
+            /* Mipmap intervals store running sums, subtract the previous one */
+            ITmfStateValue previous = (si.getAttribute() == quark) ? TmfStateValue.nullValue() : queryPreviousValue(ss, si);
+
+            switch (value.getType()) {
+            case DOUBLE:
+                doubleSum += value.unboxDouble();
+                if (!previous.isNull()) {
+                    doubleSum -= previous.unboxDouble();
+                }
+                isDouble = true;
+                break;
+
+            case INTEGER:
+            case LONG:
+                longSum += value.unboxLong();
+                if (!previous.isNull()) {
+                    longSum -= previous.unboxLong();
+                }
+                break;
+
+            case NULL:
+            case STRING:
+            default:
+                throw new StateValueTypeException(ss.getSSID() + " Quark:" + quark + ", Type:" + value.getType()); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        if (isDouble) {
+            return TmfStateValue.newValueDouble(doubleSum + longSum);
+        }
+        return TmfStateValue.newValueLong(longSum);
+    }
+
+    /**
+     * Return the number of non-null state intervals of an attribute that
+     * intersect a time range, that is the number of values assigned to the
+     * attribute in this range, plus the ongoing one at the start of the range.
+     *
+     * @param ss
+     *            The state system to query
+     * @param t1
+     *            The start time of the range
+     * @param t2
+     *            The end time of the range
+     * @param quark
+     *            The quark of the attribute
+     * @return The number of non-null state intervals in this range
+     * @throws TimeRangeException
+     *             If an invalid time range is specified
+     * @throws AttributeNotFoundException
+     *             If the specified quark doesn't match an attribute
+     * @throws StateValueTypeException
+     *             If the mipmap levels of the attribute are not Long values
+     */
+    public static long queryRangeCount(ITmfStateSystem ss, long t1, long t2, int quark)
+            throws AttributeNotFoundException, TimeRangeException, StateValueTypeException {
+        long count = 0;
+        List<ITmfStateInterval> intervals = queryAttributeRange(ss, t1, t2, quark, AbstractTmfMipmapStateProvider.COUNT_STRING);
+        for (ITmfStateInterval si : intervals) {
+            if (si.getAttribute() == quark) {
+                /* A base attribute interval counts once */
+                count++;
+            } else {
+                /* Mipmap intervals store running counts, subtract the previous one */
+                count += si.getStateValue().unboxLong();
+                ITmfStateValue previous = queryPreviousValue(ss, si);
+                if (!previous.isNull()) {
+                    count -= previous.unboxLong();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Downsample an attribute to its maximum value in each of a number of
+     * consecutive sub-ranges of equal duration, for example one per pixel of
+     * an XY chart. Each sub-range is queried with
+     * {@link #queryRangeMax(ITmfStateSystem, long, long, int)}.
+     *
+     * @param ss
+     *            The state system to query
+     * @param t1
+     *            The start time of the range
+     * @param t2
+     *            The end time of the range
+     * @param quark
+     *            The quark of the attribute
+     * @param nb
+     *            The number of sub-ranges
+     * @return The maximum value of the attribute in each sub-range, a null
+     *         value for the sub-ranges without values
+     * @throws TimeRangeException
+     *             If an invalid time range is specified
+     * @throws AttributeNotFoundException
+     *             If the specified quark doesn't match an attribute
+     * @throws StateValueTypeException
+     *             If the state value type of the attribute does not support the
+     *             "Max" operation
+     */
+    public static ITmfStateValue[] downsampleMax(ITmfStateSystem ss, long t1, long t2, int quark, int nb)
+            throws AttributeNotFoundException, TimeRangeException, StateValueTypeException {
+        long[] bounds = getSubRangeBounds(t1, t2, nb);
+        ITmfStateValue[] values = new ITmfStateValue[nb];
+        for (int i = 0; i < nb; i++) {
+            values[i] = queryRangeMax(ss, bounds[i], getSubRangeEnd(bounds, i), quark);
+        }
+        return values;
+    }
+
+    /**
+     * Downsample an attribute to its minimum value in each of a number of
+     * consecutive sub-ranges of equal duration, for example one per pixel of
+     * an XY chart. Each sub-range is queried with
+     * {@link #queryRangeMin(ITmfStateSystem, long, long, int)}.
+     *
+     * @param ss
+     *            The state system to query
+     * @param t1
+     *            The start time of the range
+     * @param t2
+     *            The end time of the range
+     * @param quark
+     *            The quark of the attribute
+     * @param nb
+     *            The number of sub-ranges
+     * @return The minimum value of the attribute in each sub-range, a null
+     *         value for the sub-ranges without values
+     * @throws TimeRangeException
+     *             If an invalid time range is specified
+     * @throws AttributeNotFoundException
+     *             If the specified quark doesn't match an attribute
+     * @throws StateValueTypeException
+     *             If the state value type of the attribute does not support the
+     *             "Min" operation
+     */
+    public static ITmfStateValue[] downsampleMin(ITmfStateSystem ss, long t1, long t2, int quark, int nb)
+            throws AttributeNotFoundException, TimeRangeException, StateValueTypeException {
+        long[] bounds = getSubRangeBounds(t1, t2, nb);
+        ITmfStateValue[] values = new ITmfStateValue[nb];
+        for (int i = 0; i < nb; i++) {
+            values[i] = queryRangeMin(ss, bounds[i], getSubRangeEnd(bounds, i), quark);
+        }
+        return values;
+    }
+
+    /**
+     * Downsample an attribute to its weighted average value in each of a
+     * number of consecutive sub-ranges of equal duration, for example one per
+     * pixel of an XY chart. Each sub-range is queried with
+     * {@link #queryRangeAverage(ITmfStateSystem, long, long, int)}.
+     *
+     * @param ss
+     *            The state system to query
+     * @param t1
+     *            The start time of the range
+     * @param t2
+     *            The end time of the range
+     * @param quark
+     *            The quark of the attribute
+     * @param nb
+     *            The number of sub-ranges
+     * @return The weighted average value of the attribute in each sub-range
+     * @throws TimeRangeException
+     *             If an invalid time range is specified
+     * @throws AttributeNotFoundException
+     *             If the specified quark doesn't match an attribute
+     * @throws StateValueTypeException
+     *             If the state value type of the attribute does not support the
+     *             "Average" operation
+     */
+    public static double[] downsampleAverage(ITmfStateSystem ss, long t1, long t2, int quark, int nb)
+            throws AttributeNotFoundException, TimeRangeException, StateValueTypeException {
+        long[] bounds = getSubRangeBounds(t1, t2, nb);
+        double[] values = new double[nb];
+        for (int i = 0; i < nb; i++) {
+            /* The average weighs the durations, the sub-ranges can share their bounds */
+            values[i] = queryRangeAverage(ss, bounds[i], bounds[i + 1], quark);
+        }
+        return values;
+    }
+
+    /**
+     * Get the value of the attribute of a mipmap interval just before it, or a
+     * null value if there is none
+     */
+    private static ITmfStateValue queryPreviousValue(ITmfStateSystem ss, ITmfStateInterval interval)
+            throws AttributeNotFoundException, TimeRangeException {
+        if (interval.getStartTime() <= ss.getStartTime()) {
+            return TmfStateValue.nullValue();
+        }
+        try {
+            return ss.querySingleState(interval.getStartTime() - 1, interval.getAttribute()).getStateValue();
+        } catch (StateSystemDisposedException e) {
+            /* We are shutting down, ignore the operation */
+        }
+        return TmfStateValue.nullValue();
+    }
+
+    /**
+     * Get the start times of nb consecutive sub-ranges of [t1, t2], followed
+     * by t2
+     */
+    private static long[] getSubRangeBounds(long t1, long t2, int nb) {
+        if (nb <= 0) {
+            throw new IllegalArgumentException("Invalid number of sub-ranges: " + nb); //$NON-NLS-1$
+        }
+        if (t2 < t1) {
+            throw new TimeRangeException("Invalid time range: " + t1 + " > " + t2); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        long[] bounds = new long[nb + 1];
+        double duration = t2 - t1;
+        for (int i = 0; i < nb; i++) {
+            bounds[i] = t1 + (long) (duration * i / nb);
+        }
+        bounds[nb] = t2;
+        return bounds;
+    }
+
+    /**
+     * Get the inclusive end time of a sub-range, so that a state change at the
+     * start of the next sub-range is not counted twice
+     */
+    private static long getSubRangeEnd(long[] bounds, int i) {
+        if (i == bounds.length - 2) {
+            return bounds[i + 1];
+        }
+        return Math.max(bounds[i], bounds[i + 1] - 1);
+    }
+
     private static List<ITmfStateInterval> queryAttributeRange(ITmfStateSystem ss,
             long t1, long t2, int baseQuark, String featureString)
                     throws AttributeNotFoundException, TimeRangeException, StateValueTypeException {
@@ -238,7 +510,7 @@ public final class TmfStateSystemOperations {
 
     private static void queryMipmapAttributeRange(ITmfStateSystem ss,
             int currentLevel, int levelMax, int baseQuark, int mipmapQuark,
-            TimeRange timeRange, List<ITmfStateInterval> intervals)
+            @Nullable TimeRange timeRange, List<ITmfStateInterval> intervals)
                     throws AttributeNotFoundException, TimeRangeException {
         int level = currentLevel;
         TimeRange range = timeRange;
@@ -304,7 +576,7 @@ public final class TmfStateSystemOperations {
         }
     }
 
-    private static TimeRange updateTimeRange(TimeRange timeRange,
+    private static @Nullable TimeRange updateTimeRange(TimeRange timeRange,
             ITmfStateInterval currentLevelInterval) {
         if (currentLevelInterval.getEndTime() >= timeRange.getSecond()) {
             return null;
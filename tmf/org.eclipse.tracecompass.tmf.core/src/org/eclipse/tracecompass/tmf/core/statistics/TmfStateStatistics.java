@@ -23,6 +23,7 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 
 /**
  * Implementation of ITmfStatistics which uses a state history for storing its
@@ -131,6 +132,103 @@ public class TmfStateStatistics implements ITmfStatistics {
         return list;
     }
 
+    /**
+     * Return the number of events in consecutive time ranges of equal
+     * duration. Unlike {@link #histogramQuery}, the events at the start time of
+     * each range are counted in that range. This is typically used to fill the
+     * buckets of a histogram, with one state system query per bucket
+     * regardless of the number of events in it.
+     *
+     * @param start
+     *            Start time of the first range
+     * @param duration
+     *            Duration of each range
+     * @param nb
+     *            The number of ranges
+     * @return The array of the number of events in each range
+     * @since 2.0
+     */
+    public long[] getEventsInRanges(long start, long duration, int nb) {
+        return getCountsInRanges(Attributes.TOTAL, start, duration, nb);
+    }
+
+    /**
+     * Return the number of lost events in consecutive time ranges of equal
+     * duration. Only the lost event records between the start and end times
+     * are counted, and the events lost by each record are spread evenly over
+     * the ranges that its lost time range covers, the same way the histogram
+     * does when it reads the lost event records.
+     *
+     * @param start
+     *            Start time of the first range
+     * @param end
+     *            End time of the lost event records to count
+     * @param duration
+     *            Duration of each range
+     * @param nb
+     *            The number of ranges
+     * @return The array of the number of lost events in each range
+     * @since 2.0
+     */
+    public long[] getLostEventsInRanges(long start, long end, long duration, int nb) {
+        long[] counts = new long[nb];
+        int totalQuark = totalsStats.optQuarkAbsolute(Attributes.LOST_EVENTS_TOTAL);
+        int startQuark = totalsStats.optQuarkAbsolute(Attributes.LOST_EVENTS_START);
+        int endQuark = totalsStats.optQuarkAbsolute(Attributes.LOST_EVENTS_END);
+        if (totalQuark == ITmfStateSystem.INVALID_ATTRIBUTE || startQuark == ITmfStateSystem.INVALID_ATTRIBUTE ||
+                endQuark == ITmfStateSystem.INVALID_ATTRIBUTE || totalsStats.isCancelled()) {
+            return counts;
+        }
+        try {
+            long prevTotal = getCountBefore(start, totalQuark);
+            long t = Math.max(start, totalsStats.getStartTime());
+            long tEnd = Math.min(end, totalsStats.getCurrentEndTime());
+            /*
+             * Each change of the total is a lost event record. The records at
+             * the same time are reported together, with the last lost range.
+             */
+            while (t <= tEnd) {
+                ITmfStateInterval interval = totalsStats.querySingleState(t, totalQuark);
+                long recordTime = interval.getStartTime();
+                ITmfStateValue value = interval.getStateValue();
+                if (recordTime >= start && !value.isNull()) {
+                    long total = value.unboxLong();
+                    long lostStart = totalsStats.querySingleState(recordTime, startQuark).getStateValue().unboxLong();
+                    long lostEnd = totalsStats.querySingleState(recordTime, endQuark).getStateValue().unboxLong();
+                    spreadLostEvents(counts, start, duration, lostStart, lostEnd, total - prevTotal);
+                    prevTotal = total;
+                }
+                t = interval.getEndTime() + 1;
+            }
+        } catch (StateSystemDisposedException e) {
+            /* Assume there is no (more) events */
+        } catch (AttributeNotFoundException e) {
+            e.printStackTrace();
+        }
+        return counts;
+    }
+
+    /**
+     * Spread lost events over the ranges covered by their lost time range,
+     * rounding the share of each range so that the sum is kept
+     */
+    private static void spreadLostEvents(long[] counts, long start, long duration, long lostStart, long lostEnd, long nbLostEvents) {
+        int indexStart = (int) ((lostStart - start) / duration);
+        int indexEnd = (int) ((lostEnd - start) / duration);
+        int nbRanges = (indexEnd - indexStart) + 1;
+        double lostEventsPerRange = (double) nbLostEvents / nbRanges;
+        double remainder = 0.0;
+        indexEnd = Math.min(indexEnd, counts.length - 1);
+        for (int index = indexStart; index <= indexEnd; index++) {
+            remainder += lostEventsPerRange;
+            long lostEvents = Math.round(remainder);
+            if (index >= 0) {
+                counts[index] += lostEvents;
+            }
+            remainder -= lostEvents;
+        }
+    }
+
     @Override
     public long getEventsTotal() {
         long endTime = totalsStats.getCurrentEndTime();
@@ -289,6 +387,41 @@ public class TmfStateStatistics implements ITmfStatistics {
         return 0;
     }
 
+    private long[] getCountsInRanges(String attribute, long start, long duration, int nb) {
+        long[] counts = new long[nb];
+        int quark = totalsStats.optQuarkAbsolute(attribute);
+        if (quark == ITmfStateSystem.INVALID_ATTRIBUTE || totalsStats.isCancelled()) {
+            return counts;
+        }
+        try {
+            /* One query per border, the count of a range is the difference */
+            long prevTotal = getCountBefore(start, quark);
+            for (int i = 0; i < nb; i++) {
+                long curTotal = getCountBefore(start + (i + 1) * duration, quark);
+                counts[i] = curTotal - prevTotal;
+                prevTotal = curTotal;
+            }
+        } catch (StateSystemDisposedException e) {
+            /* Assume there is no (more) events */
+        } catch (AttributeNotFoundException e) {
+            e.printStackTrace();
+        }
+        return counts;
+    }
+
+    /**
+     * Get the value of a counter before a timestamp, that is the number of
+     * events counted strictly before it
+     */
+    private long getCountBefore(long timestamp, int quark) throws StateSystemDisposedException, AttributeNotFoundException {
+        if (timestamp <= totalsStats.getStartTime()) {
+            return 0;
+        }
+        long ts = checkEndTime(timestamp - 1, totalsStats);
+        ITmfStateValue value = totalsStats.querySingleState(ts, quark).getStateValue();
+        return value.isNull() ? 0 : value.unboxLong();
+    }
+
     private static long checkStartTime(long initialStart, ITmfStateSystem ss) {
         long start = initialStart;
         if (start < ss.getStartTime()) {
@@ -319,5 +452,17 @@ public class TmfStateStatistics implements ITmfStatistics {
         /** lost_events
          * @since 2.0*/
         public static final String LOST_EVENTS = "lost_events"; //$NON-NLS-1$
+
+        /** Total nb of lost events
+         * @since 2.0*/
+        public static final String LOST_EVENTS_TOTAL = "lost_events_total"; //$NON-NLS-1$
+
+        /** Start of the time range of the last lost events
+         * @since 2.0*/
+        public static final String LOST_EVENTS_START = "lost_events_start"; //$NON-NLS-1$
+
+        /** End of the time range of the last lost events
+         * @since 2.0*/
+        public static final String LOST_EVENTS_END = "lost_events_end"; //$NON-NLS-1$
     }
 }
@@ -20,12 +20,14 @@ import org.eclipse.tracecompass.statesystem.core.StateSystemBuilderUtils;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfLostEvent;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.statistics.TmfStateStatistics.Attributes;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
@@ -69,12 +71,16 @@ public class TmfStatisticsTotalsModule extends TmfStateSystemAnalysisModule {
      * The state provider for traces statistics that use TmfStateStatistics. It
      * should work with any trace type for which we can use the state system.
      *
-     * Only one attribute will be stored, containing the total of events seen so
-     * far. The resulting attribute tree will look like this:
+     * The attributes store the total of events and the total of lost events
+     * seen so far, and the time range of the events lost by the last lost
+     * event record. The resulting attribute tree will look like this:
      *
      * <pre>
      * (root)
-     *   \-- total
+     *   |-- total
+     *   |-- lost_events_total
+     *   |-- lost_events_start
+     *   \-- lost_events_end
      * </pre>
      *
      * @author Alexandre Montplaisir
@@ -86,7 +92,7 @@ public class TmfStatisticsTotalsModule extends TmfStateSystemAnalysisModule {
          * Version number of this input handler. Please bump this if you modify the
          * contents of the generated state history in some way.
          */
-        private static final int VERSION = 2;
+        private static final int VERSION = 4;
 
         /**
          * Constructor
@@ -110,11 +116,6 @@ public class TmfStatisticsTotalsModule extends TmfStateSystemAnalysisModule {
 
         @Override
         protected void eventHandle(ITmfEvent event) {
-            /* Do not count lost events in the total */
-            if (event instanceof ITmfLostEvent) {
-                return;
-            }
-
             ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
 
             /* Since this can be used for any trace types, normalize all the
@@ -122,6 +123,19 @@ public class TmfStatisticsTotalsModule extends TmfStateSystemAnalysisModule {
             final long ts = event.getTimestamp().toNanos();
 
             try {
+                /* Lost events are counted apart from the total */
+                if (event instanceof ITmfLostEvent) {
+                    ITmfLostEvent lostEvent = (ITmfLostEvent) event;
+                    TmfTimeRange range = lostEvent.getTimeRange();
+                    int quark = ss.getQuarkAbsoluteAndAdd(Attributes.LOST_EVENTS_START);
+                    ss.modifyAttribute(ts, TmfStateValue.newValueLong(range.getStartTime().toNanos()), quark);
+                    quark = ss.getQuarkAbsoluteAndAdd(Attributes.LOST_EVENTS_END);
+                    ss.modifyAttribute(ts, TmfStateValue.newValueLong(range.getEndTime().toNanos()), quark);
+                    quark = ss.getQuarkAbsoluteAndAdd(Attributes.LOST_EVENTS_TOTAL);
+                    StateSystemBuilderUtils.incrementAttributeLong(ss, ts, quark, lostEvent.getNbLostEvents());
+                    return;
+                }
+
                 /* Total number of events */
                 int quark = ss.getQuarkAbsoluteAndAdd(Attributes.TOTAL);
                 StateSystemBuilderUtils.incrementAttributeInt(ss, ts, quark, 1);
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ui.tests.histogram;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.TmfLostEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
+import org.eclipse.tracecompass.tmf.core.statistics.TmfStateStatistics;
+import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsEventTypesModule;
+import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsTotalsModule;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.eclipse.tracecompass.tmf.ui.views.histogram.HistogramDataModel;
+import org.eclipse.tracecompass.tmf.ui.views.histogram.HistogramRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that the lost events of a histogram are the same when they are counted
+ * from the statistics of the trace and when the events are read by a
+ * {@link HistogramRequest}.
+ */
+public class HistogramLostEventsTest {
+
+    /* One lost event record every LOST_PERIOD events */
+    private static final int LOST_PERIOD = 1000;
+    private static final long LOST_BEFORE = 20000000L;
+    private static final long LOST_AFTER = 30000000L;
+
+    private ITmfTrace fTrace;
+    private TmfStatisticsTotalsModule fTotalsMod;
+    private TmfStatisticsEventTypesModule fEventTypesMod;
+    private TmfStateStatistics fStats;
+
+    /**
+     * Trace stub where some events are replaced by lost event records, whose
+     * lost time range covers several buckets
+     */
+    private static class LostEventsTraceStub extends TmfTraceStub {
+
+        private static final TmfEventType LOST_TYPE = new TmfEventType("Lost event", null);
+
+        public LostEventsTraceStub(String path) throws TmfTraceException {
+            super(path, ITmfTrace.DEFAULT_TRACE_CACHE_SIZE, true, null);
+        }
+
+        @Override
+        public ITmfEvent parseEvent(ITmfContext context) {
+            long rank = context.getRank();
+            ITmfEvent event = super.parseEvent(context);
+            if (event == null || rank % LOST_PERIOD != LOST_PERIOD / 2) {
+                return event;
+            }
+            long ts = event.getTimestamp().toNanos();
+            TmfTimeRange range = new TmfTimeRange(TmfTimestamp.fromNanos(ts - LOST_BEFORE), TmfTimestamp.fromNanos(ts + LOST_AFTER));
+            return new TmfLostEvent(this, rank, TmfTimestamp.fromNanos(ts), LOST_TYPE, range, rank + 7);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Maintenance
+    // ------------------------------------------------------------------------
+
+    /**
+     * Open the trace and build its statistics
+     *
+     * @throws TmfTraceException
+     *             If the trace could not be opened
+     * @throws TmfAnalysisException
+     *             If the statistics could not be built
+     */
+    @Before
+    public void setUp() throws TmfTraceException, TmfAnalysisException {
+        fTrace = new LostEventsTraceStub(TmfTestTrace.A_TEST_10K.getFullPath());
+
+        fTotalsMod = new TmfStatisticsTotalsModule();
+        fEventTypesMod = new TmfStatisticsEventTypesModule();
+        fTotalsMod.setTrace(fTrace);
+        fEventTypesMod.setTrace(fTrace);
+        fTotalsMod.schedule();
+        fEventTypesMod.schedule();
+        assertTrue(fTotalsMod.waitForCompletion());
+        assertTrue(fEventTypesMod.waitForCompletion());
+
+        ITmfStateSystem totalsSS = fTotalsMod.getStateSystem();
+        ITmfStateSystem eventTypesSS = fEventTypesMod.getStateSystem();
+        assertNotNull(totalsSS);
+        assertNotNull(eventTypesSS);
+        fStats = new TmfStateStatistics(totalsSS, eventTypesSS);
+    }
+
+    /**
+     * Dispose the statistics and the trace
+     */
+    @After
+    public void tearDown() {
+        fStats.dispose();
+        fTotalsMod.dispose();
+        fEventTypesMod.dispose();
+        fTrace.dispose();
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    /**
+     * Compare the lost events of the whole trace
+     *
+     * @throws InterruptedException
+     *             If the request was interrupted
+     */
+    @Test
+    public void testFullRange() throws InterruptedException {
+        long start = fTrace.getStartTime().toNanos();
+        long end = fTrace.getEndTime().toNanos();
+        compareLostEvents(start, end);
+    }
+
+    /**
+     * Compare the lost events of a range that ends in the lost time range of a
+     * record, whose lost events are partly out of the range
+     *
+     * @throws InterruptedException
+     *             If the request was interrupted
+     */
+    @Test
+    public void testPartialRange() throws InterruptedException {
+        long start = fTrace.getStartTime().toNanos();
+        /* The record at 4.501 s has lost events from 4.481 s to 4.531 s */
+        compareLostEvents(start + 2000000000L, start + 4510000000L);
+    }
+
+    private void compareLostEvents(long start, long end) throws InterruptedException {
+        /* Read the events like the time range histogram does */
+        HistogramDataModel requestModel = createModel(start, end);
+        HistogramRequest request = new HistogramRequest(requestModel,
+                new TmfTimeRange(TmfTimestamp.fromNanos(start), TmfTimestamp.fromNanos(end)),
+                0, ITmfEventRequest.ALL_DATA, ITmfTrace.DEFAULT_TRACE_CACHE_SIZE, ExecutionType.FOREGROUND, false);
+        fTrace.sendRequest(request);
+        request.waitForCompletion();
+
+        /* Count them from the statistics like the statistics job does */
+        HistogramDataModel statsModel = createModel(start, end);
+        long firstBucketTime = statsModel.getFirstBucketTime();
+        long bucketDuration = statsModel.getBucketDuration();
+        int nbBuckets = statsModel.getNbBuckets();
+        long[] counts = fStats.getEventsInRanges(firstBucketTime, bucketDuration, nbBuckets);
+        long[] lostEvents = fStats.getLostEventsInRanges(firstBucketTime, statsModel.getEndTime(), bucketDuration, nbBuckets);
+        statsModel.countEvents(fTrace, counts, lostEvents);
+
+        int[] expected = requestModel.scaleTo(nbBuckets, 100, 1).fLostEventsData;
+        int[] actual = statsModel.scaleTo(nbBuckets, 100, 1).fLostEventsData;
+        long total = 0;
+        for (int lost : expected) {
+            total += lost;
+        }
+        assertTrue(total > 0);
+        assertEquals(nbBuckets, actual.length);
+        assertArrayEquals(expected, actual);
+    }
+
+    private static HistogramDataModel createModel(long start, long end) {
+        HistogramDataModel model = new HistogramDataModel();
+        model.setTimeRange(start, end);
+        model.setEndTime(end);
+        return model;
+    }
+}
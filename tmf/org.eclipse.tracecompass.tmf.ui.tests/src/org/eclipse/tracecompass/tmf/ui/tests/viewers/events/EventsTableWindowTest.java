@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ui.tests.viewers.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.tracecompass.internal.tmf.ui.viewers.events.EventsTableWindow;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link EventsTableWindow} class
+ */
+public class EventsTableWindowTest {
+
+    private static final int ROWS = 100;
+
+    /**
+     * Test the mapping of the first window
+     */
+    @Test
+    public void testFirstWindow() {
+        EventsTableWindow window = new EventsTableWindow(ROWS);
+        assertEquals(0, window.getOffset());
+        assertEquals(0, window.getRowCount(0));
+        assertEquals(42, window.getRowCount(42));
+        assertEquals(ROWS, window.getRowCount(ROWS + 1));
+        assertEquals(42, window.toIndex(42));
+        assertEquals(42, window.toRow(42));
+        assertEquals(ROWS - 1, window.toRow(ROWS - 1));
+        assertEquals(-1, window.toRow(ROWS));
+        assertEquals(ROWS - 1, window.toNearestRow(ROWS));
+        assertFalse(window.reveal(ROWS - 1));
+        assertEquals(0, window.getOffset());
+    }
+
+    /**
+     * Test that the window moves over an event past its last row, and back
+     */
+    @Test
+    public void testReveal() {
+        EventsTableWindow window = new EventsTableWindow(ROWS);
+        assertTrue(window.reveal(1000));
+        assertEquals(1000 - ROWS / 2, window.getOffset());
+        assertEquals(ROWS / 2, window.toRow(1000));
+        assertEquals(1000, window.toIndex(window.toRow(1000)));
+        assertEquals(-1, window.toRow(0));
+        assertEquals(0, window.toNearestRow(0));
+        assertEquals(ROWS, window.getRowCount(5000));
+        assertEquals(1010 - window.getOffset(), window.getRowCount(1010));
+
+        /* Near the start, the window starts at the first event */
+        assertTrue(window.reveal(10));
+        assertEquals(0, window.getOffset());
+        assertEquals(10, window.toRow(10));
+
+        window.reveal(1000);
+        window.reset();
+        assertEquals(0, window.getOffset());
+    }
+
+    /**
+     * Test the events past the largest table index
+     */
+    @Test
+    public void testLargeIndex() {
+        EventsTableWindow window = new EventsTableWindow();
+        long count = 3L * Integer.MAX_VALUE;
+        assertEquals(EventsTableWindow.MAX_ROWS, window.getRowCount(count));
+
+        long last = count - 1;
+        assertEquals(-1, window.toRow(last));
+        assertTrue(window.reveal(last));
+        int row = window.toRow(last);
+        assertTrue(row >= 0 && row < EventsTableWindow.MAX_ROWS);
+        assertEquals(last, window.toIndex(row));
+        assertTrue(window.getRowCount(count) > row);
+
+        /* Distinct events have distinct rows, none is clamped */
+        assertEquals(row - 1, window.toRow(last - 1));
+    }
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ui.tests.viewers.events;
+
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.tracecompass.internal.tmf.ui.viewers.events.FilterCheckpoints;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link FilterCheckpoints} class
+ */
+public class FilterCheckpointsTest {
+
+    private static final int INTERVAL = 10;
+
+    /**
+     * Test that only the events at the checkpoints are kept
+     */
+    @Test
+    public void testStore() {
+        FilterCheckpoints checkpoints = new FilterCheckpoints(INTERVAL);
+        for (long index = 0; index < 25; index++) {
+            checkpoints.store(index, index * 3);
+        }
+        assertEquals(3, checkpoints.size());
+        assertEquals(0, checkpoints.getRank(0));
+        assertEquals(30, checkpoints.getRank(1));
+        assertEquals(60, checkpoints.getRank(2));
+
+        /* An existing checkpoint is updated, a gap is ignored */
+        checkpoints.store(10, 31);
+        checkpoints.store(40, 120);
+        assertEquals(3, checkpoints.size());
+        assertEquals(31, checkpoints.getRank(1));
+
+        checkpoints.clear();
+        assertEquals(0, checkpoints.size());
+    }
+
+    /**
+     * Test that the checkpoints grow past their initial capacity, keeping the
+     * ranks already stored
+     */
+    @Test
+    public void testGrow() {
+        FilterCheckpoints checkpoints = new FilterCheckpoints(INTERVAL);
+        int nb = 1000;
+        for (long index = 0; index < (long) nb * INTERVAL; index++) {
+            checkpoints.store(index, 2 * index + 1);
+        }
+        assertEquals(nb, checkpoints.size());
+        for (int i = 0; i < nb; i++) {
+            assertEquals(2L * i * INTERVAL + 1, checkpoints.getRank(i));
+        }
+    }
+
+    /**
+     * Test filtered indexes and ranks past the largest int
+     */
+    @Test
+    public void testLargeIndex() {
+        FilterCheckpoints checkpoints = new FilterCheckpoints(Integer.MAX_VALUE);
+        long rank = 5L * Integer.MAX_VALUE;
+        checkpoints.store(0, 0);
+        checkpoints.store(Integer.MAX_VALUE, rank);
+        checkpoints.store(2L * Integer.MAX_VALUE, rank + 1);
+        assertEquals(3, checkpoints.size());
+        assertEquals(rank, checkpoints.getRank(1));
+        assertEquals(rank + 1, checkpoints.getRank(2));
+    }
+
+    /**
+     * Test reading a checkpoint that was not stored
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testMissingCheckpoint() {
+        FilterCheckpoints checkpoints = new FilterCheckpoints(INTERVAL);
+        checkpoints.store(0, 0);
+        checkpoints.getRank(1);
+    }
+}
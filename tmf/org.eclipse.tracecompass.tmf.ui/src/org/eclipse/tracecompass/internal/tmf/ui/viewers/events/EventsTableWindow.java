@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.ui.viewers.events;
+
+/**
+ * The window of events shown by the rows of the events table.
+ *
+ * The table rows are indexed by int, but a trace, or the events matching a
+ * filter, can have more events than that. The table shows the events of a
+ * window starting at an offset, and the window is moved when an event outside
+ * of it is selected, so every event can be shown.
+ */
+public class EventsTableWindow {
+
+    /**
+     * Largest number of event rows, leaving room for the header and filter
+     * status rows
+     */
+    public static final int MAX_ROWS = Integer.MAX_VALUE - 3;
+
+    private final int fMaxRows;
+    private volatile long fOffset = 0;
+
+    /**
+     * Constructor, for a window of the largest number of rows
+     */
+    public EventsTableWindow() {
+        this(MAX_ROWS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxRows
+     *            The number of rows of the window
+     */
+    public EventsTableWindow(int maxRows) {
+        if (maxRows <= 0) {
+            throw new IllegalArgumentException("The window must have rows"); //$NON-NLS-1$
+        }
+        fMaxRows = maxRows;
+    }
+
+    /**
+     * Get the number of rows of the window
+     *
+     * @return The number of rows
+     */
+    public int getMaxRows() {
+        return fMaxRows;
+    }
+
+    /**
+     * Get the index of the event shown by the first row
+     *
+     * @return The offset of the window
+     */
+    public long getOffset() {
+        return fOffset;
+    }
+
+    /**
+     * Move the window back to the first event
+     */
+    public void reset() {
+        fOffset = 0;
+    }
+
+    /**
+     * Get the number of rows needed to show the events of the window
+     *
+     * @param count
+     *            The number of events, in the trace or matching the filter
+     * @return The number of rows
+     */
+    public int getRowCount(long count) {
+        return (int) Math.max(0, Math.min(count - fOffset, fMaxRows));
+    }
+
+    /**
+     * Get the index of the event shown by a row
+     *
+     * @param row
+     *            The row, without the header and filter status rows
+     * @return The index of the event
+     */
+    public long toIndex(int row) {
+        return fOffset + row;
+    }
+
+    /**
+     * Get the row showing an event
+     *
+     * @param index
+     *            The index of the event
+     * @return The row, or -1 if the event is outside of the window
+     */
+    public int toRow(long index) {
+        if (!contains(index)) {
+            return -1;
+        }
+        return (int) (index - fOffset);
+    }
+
+    /**
+     * Get the row showing an event, or the closest row of the window if the
+     * event is outside of it
+     *
+     * @param index
+     *            The index of the event
+     * @return The row
+     */
+    public int toNearestRow(long index) {
+        return (int) Math.max(0, Math.min(index - fOffset, fMaxRows - 1));
+    }
+
+    /**
+     * Check if an event is shown by a row of the window
+     *
+     * @param index
+     *            The index of the event
+     * @return true if the event is in the window
+     */
+    public boolean contains(long index) {
+        return index >= fOffset && index - fOffset < fMaxRows;
+    }
+
+    /**
+     * Move the window so that it shows an event, if it does not already. The
+     * event is then in the middle of the window, unless it is near the first
+     * event.
+     *
+     * @param index
+     *            The index of the event
+     * @return true if the window was moved, and the rows must be refreshed
+     */
+    public boolean reveal(long index) {
+        if (index < 0 || contains(index)) {
+            return false;
+        }
+        fOffset = Math.max(0, index - fMaxRows / 2);
+        return true;
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.ui.viewers.events;
+
+import java.util.Arrays;
+
+/**
+ * The trace ranks of every n-th event matching a filter, so the events at a
+ * filtered index can be read from a nearby rank instead of from the start of
+ * the trace.
+ *
+ * The checkpoints are stored in order, as the events matching the filter are
+ * found. This class is not thread-safe.
+ */
+public class FilterCheckpoints {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* Largest array size supported by the virtual machines */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private final int fInterval;
+    private long[] fRanks = new long[INITIAL_CAPACITY];
+    private int fSize = 0;
+
+    /**
+     * Constructor
+     *
+     * @param interval
+     *            The number of filtered events between two checkpoints
+     */
+    public FilterCheckpoints(int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The interval must be positive"); //$NON-NLS-1$
+        }
+        fInterval = interval;
+    }
+
+    /**
+     * Get the number of filtered events between two checkpoints
+     *
+     * @return The interval
+     */
+    public int getInterval() {
+        return fInterval;
+    }
+
+    /**
+     * Get the number of checkpoints
+     *
+     * @return The number of checkpoints
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Get the rank of a checkpoint, the rank of the filtered event at index
+     * <code>checkpoint * interval</code>
+     *
+     * @param checkpoint
+     *            The checkpoint, from 0 to size() - 1
+     * @return The rank of the event in the trace
+     */
+    public long getRank(int checkpoint) {
+        if (checkpoint < 0 || checkpoint >= fSize) {
+            throw new IndexOutOfBoundsException(Integer.toString(checkpoint));
+        }
+        return fRanks[checkpoint];
+    }
+
+    /**
+     * Store the rank of a filtered event, if its index is at a checkpoint. A
+     * checkpoint is only added after the previous ones.
+     *
+     * @param index
+     *            The index of the event among the filtered events
+     * @param rank
+     *            The rank of the event in the trace
+     */
+    public void store(long index, long rank) {
+        if (index < 0 || (index % fInterval) != 0) {
+            return;
+        }
+        long checkpoint = index / fInterval;
+        if (checkpoint < fSize) {
+            fRanks[(int) checkpoint] = rank;
+        } else if (checkpoint == fSize) {
+            if (fSize == fRanks.length) {
+                if (fSize == MAX_CAPACITY) {
+                    return;
+                }
+                fRanks = Arrays.copyOf(fRanks, (int) Math.min(2L * fSize, MAX_CAPACITY));
+            }
+            fRanks[fSize] = rank;
+            fSize++;
+        }
+    }
+
+    /**
+     * Remove all the checkpoints
+     */
+    public void clear() {
+        fRanks = new long[INITIAL_CAPACITY];
+        fSize = 0;
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2014 Ericsson
+ * Copyright (c) 2011, 2016 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -13,16 +13,18 @@
 
 package org.eclipse.tracecompass.tmf.ui.viewers.events;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCollapseFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCompiledFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterRankBitmap;
 import org.eclipse.tracecompass.internal.tmf.ui.Activator;
+import org.eclipse.tracecompass.internal.tmf.ui.viewers.events.EventsTableWindow;
+import org.eclipse.tracecompass.internal.tmf.ui.viewers.events.FilterCheckpoints;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
@@ -123,14 +125,17 @@ public class TmfEventsCache {
 
     private final CachedEvent[] fCache;
     private final int fCacheSize;
-    private int fCacheStartIndex = 0;
-    private int fCacheEndIndex   = 0;
+    private long fCacheStartIndex = 0;
+    private long fCacheEndIndex   = 0;
 
     private ITmfTrace fTrace;
     private final TmfEventsTable fTable;
     private ITmfFilter fFilter;
-    private final List<Integer> fFilterIndex = new ArrayList<>(); // contains the event rank at each 'cache size' filtered events
+    private final EventsTableWindow fWindow = new EventsTableWindow();
+
+    private final FilterCheckpoints fFilterIndex; // contains the event rank at each 'cache size' filtered events
     private boolean fCollapseFilterEnabled = false;
+    private TmfFilterRankBitmap fFilterRanks = null; // the ranks of the matching events, if they are known
 
     /**
      * Constructor for the event cache
@@ -143,9 +148,20 @@ public class TmfEventsCache {
     public TmfEventsCache(int cacheSize, TmfEventsTable table) {
         fCacheSize = cacheSize;
         fCache = new CachedEvent[cacheSize * 2]; // the cache holds two blocks of cache size
+        fFilterIndex = new FilterCheckpoints(cacheSize);
         fTable = table;
     }
 
+    /**
+     * Get the window of events shown by the table rows. The indexes of the
+     * public methods of this cache are rows of this window.
+     *
+     * @return The window of the table rows
+     */
+    EventsTableWindow getWindow() {
+        return fWindow;
+    }
+
     /**
      * Assign a new trace to this events cache. This clears the current
      * contents.
@@ -155,6 +171,7 @@ public class TmfEventsCache {
      */
     public void setTrace(ITmfTrace trace) {
         fTrace = trace;
+        fWindow.reset();
         clear();
     }
 
@@ -169,6 +186,20 @@ public class TmfEventsCache {
         fCacheStartIndex = 0;
         fCacheEndIndex = 0;
         fFilterIndex.clear();
+        fFilterRanks = null;
+    }
+
+    /**
+     * Set the ranks of the events that match the current filter, when they
+     * are known. They are used instead of reading and filtering the events
+     * before the requested ones.
+     *
+     * @param ranks
+     *            The ranks of the matching events, for the events covered by
+     *            the bitmap
+     */
+    synchronized void setFilterRanks(TmfFilterRankBitmap ranks) {
+        fFilterRanks = ranks;
     }
 
     /**
@@ -182,8 +213,9 @@ public class TmfEventsCache {
      * @since 2.0
      */
     public void applyFilter(ITmfFilter filter, boolean collapseFilterEnabled) {
-        fFilter = filter;
+        fFilter = TmfCompiledFilter.compile(filter);
         fCollapseFilterEnabled = collapseFilterEnabled;
+        fWindow.reset();
         clear();
     }
 
@@ -194,6 +226,7 @@ public class TmfEventsCache {
     public void clearFilter() {
         fFilter = null;
         fCollapseFilterEnabled = false;
+        fWindow.reset();
         clear();
     }
 
@@ -202,15 +235,16 @@ public class TmfEventsCache {
      * a cache population request is triggered.
      *
      * @param index
-     *            The index of this event in the cache
+     *            The index of this event in the cache, the table row
      * @return The cached event, or 'null' if the event is not in the cache
      */
     public synchronized CachedEvent getEvent(int index) {
-        if ((index >= fCacheStartIndex) && (index < fCacheEndIndex)) {
-            int i = index - fCacheStartIndex;
+        long eventIndex = fWindow.toIndex(index);
+        if ((eventIndex >= fCacheStartIndex) && (eventIndex < fCacheEndIndex)) {
+            int i = (int) (eventIndex - fCacheStartIndex);
             return fCache[i];
         }
-        populateCache(index);
+        populateCache(eventIndex);
         return null;
     }
 
@@ -218,12 +252,13 @@ public class TmfEventsCache {
      * Peek an event in the cache. Does not trigger cache population.
      *
      * @param index
-     *            Index of the event to peek
+     *            Index of the event to peek, the table row
      * @return The cached event, or 'null' if the event is not in the cache
      */
     public synchronized CachedEvent peekEvent(int index) {
-        if ((index >= fCacheStartIndex) && (index < fCacheEndIndex)) {
-            int i = index - fCacheStartIndex;
+        long eventIndex = fWindow.toIndex(index);
+        if ((eventIndex >= fCacheStartIndex) && (eventIndex < fCacheEndIndex)) {
+            int i = (int) (eventIndex - fCacheStartIndex);
             return fCache[i];
         }
         return null;
@@ -237,19 +272,34 @@ public class TmfEventsCache {
      * @param rank
      *            The rank of this event in the trace
      * @param index
-     *            The index this event will occupy in the cache
+     *            The index this event will occupy in the cache, the table row
+     */
+    public void storeEvent(ITmfEvent event, long rank, int index) {
+        storeEventAt(event, rank, fWindow.toIndex(index));
+    }
+
+    /**
+     * Add a trace event to the cache, at an event index that can be outside
+     * of the table window.
+     *
+     * @param event
+     *            The original trace event to be cached
+     * @param rank
+     *            The rank of this event in the trace
+     * @param index
+     *            The index of this event, among the filtered events if a
+     *            filter is applied
      */
-    public synchronized void storeEvent(ITmfEvent event, long rank, int index) {
+    synchronized void storeEventAt(ITmfEvent event, long rank, long index) {
         if (index == fCacheEndIndex) {
-            int i = index - fCacheStartIndex;
+            long i = index - fCacheStartIndex;
             if (i < fCache.length) {
-                fCache[i] = new CachedEvent(event, rank);
+                fCache[(int) i] = new CachedEvent(event, rank);
                 fCacheEndIndex++;
             }
         }
-        if ((fFilter != null) && ((index % fCacheSize) == 0)) {
-            int i = index / fCacheSize;
-            fFilterIndex.add(i, Integer.valueOf((int) rank));
+        if (fFilter != null) {
+            fFilterIndex.store(index, rank);
         }
     }
 
@@ -257,12 +307,23 @@ public class TmfEventsCache {
      * Update event repeat count at index
      *
      * @param index
-     *            The index this event occupies in the cache
+     *            The index this event occupies in the cache, the table row
+     */
+    public void updateCollapsedEvent(int index) {
+        updateCollapsedEventAt(fWindow.toIndex(index));
+    }
+
+    /**
+     * Update event repeat count at an event index that can be outside of the
+     * table window
+     *
+     * @param index
+     *            The index of this event among the filtered events
      */
-    public synchronized void updateCollapsedEvent(int index) {
-        int i = index - fCacheStartIndex;
-        if (i < fCache.length) {
-            fCache[i].repeatCount++;
+    synchronized void updateCollapsedEventAt(long index) {
+        long i = index - fCacheStartIndex;
+        if ((i >= 0) && (i < (fCacheEndIndex - fCacheStartIndex))) {
+            fCache[(int) i].repeatCount++;
         }
     }
 
@@ -272,24 +333,42 @@ public class TmfEventsCache {
      *
      * @param rank
      *            The rank of the event in the trace
-     * @return The position (index) this event should use once cached
+     * @return The position (index) this event should use once cached, the
+     *         closest table row if the event is outside of the table window
      */
     public int getFilteredEventIndex(final long rank) {
+        return fWindow.toNearestRow(getFilteredIndex(rank));
+    }
+
+    /**
+     * Get the index of an event among the filtered events from his rank in
+     * the trace. The index can be outside of the table window.
+     *
+     * @param rank
+     *            The rank of the event in the trace
+     * @return The index of the event among the filtered events
+     */
+    long getFilteredIndex(final long rank) {
         int current;
-        int startRank;
+        long startRank;
         TmfEventRequest request;
         final ITmfFilter filter = fFilter;
         synchronized (this) {
+            if (fFilterRanks != null && !fCollapseFilterEnabled) {
+                return fFilterRanks.rank(rank);
+            }
+            int size = fFilterIndex.size();
             int start = 0;
-            int end = fFilterIndex.size();
+            int end = size;
 
-            if ((fCacheEndIndex - fCacheStartIndex) > 1) {
+            int cacheCount = (int) (fCacheEndIndex - fCacheStartIndex);
+            if (cacheCount > 1) {
                 if (rank < fCache[0].rank) {
-                    end = (fCacheStartIndex / fCacheSize) + 1;
-                } else if (rank > fCache[fCacheEndIndex - fCacheStartIndex - 1].rank) {
-                    start = fCacheEndIndex / fCacheSize;
+                    end = (int) Math.min((fCacheStartIndex / fCacheSize) + 1, size);
+                } else if (rank > fCache[cacheCount - 1].rank) {
+                    start = (int) Math.min(fCacheEndIndex / fCacheSize, Math.max(size - 1, 0));
                 } else {
-                    for (int i = 0; i < (fCacheEndIndex - fCacheStartIndex); i++) {
+                    for (int i = 0; i < cacheCount; i++) {
                         if (fCache[i].rank >= rank) {
                             return fCacheStartIndex + i;
                         }
@@ -300,7 +379,7 @@ public class TmfEventsCache {
 
             current = (start + end) / 2;
             while (current != start) {
-                if (rank < fFilterIndex.get(current)) {
+                if (rank < fFilterIndex.getRank(current)) {
                     end = current;
                     current = (start + end) / 2;
                 } else {
@@ -308,18 +387,18 @@ public class TmfEventsCache {
                     current = (start + end) / 2;
                 }
             }
-            startRank = fFilterIndex.size() > 0 ? fFilterIndex.get(current) : 0;
+            startRank = size > 0 ? fFilterIndex.getRank(current) : 0;
         }
 
-        final int index = current * fCacheSize;
+        final long index = (long) current * fCacheSize;
 
         class DataRequest extends TmfEventRequest {
             ITmfFilter requestFilter;
             TmfCollapseFilter requestCollapsedFilter;
-            int requestRank;
-            int requestIndex;
+            long requestRank;
+            long requestIndex;
 
-            DataRequest(Class<? extends ITmfEvent> dataType, ITmfFilter reqFilter, int start, int nbRequested) {
+            DataRequest(Class<? extends ITmfEvent> dataType, ITmfFilter reqFilter, long start, int nbRequested) {
                 super(dataType, TmfTimeRange.ETERNITY, start, nbRequested,
                         TmfEventRequest.ExecutionType.FOREGROUND);
                 requestFilter = reqFilter;
@@ -346,7 +425,7 @@ public class TmfEventsCache {
                 }
             }
 
-            public int getFilteredIndex() {
+            public long getFilteredIndex() {
                 return requestIndex;
             }
         }
@@ -368,7 +447,7 @@ public class TmfEventsCache {
 
     // The event fetching job
     private Job job;
-    private synchronized void populateCache(final int index) {
+    private synchronized void populateCache(final long index) {
 
         /* Check if the current job will fetch the requested event:
          * 1. The job must exist
@@ -397,8 +476,10 @@ public class TmfEventsCache {
         fCacheEndIndex   = fCacheStartIndex;
 
         job = new Job("Fetching Events") { //$NON-NLS-1$
-            private int startIndex = fCacheStartIndex;
-            private int skipCount = 0;
+            private final long startIndex = fCacheStartIndex;
+            private long startRank = startIndex;
+            private long skipCount = 0;
+            private final TmfFilterRankBitmap ranks = fCollapseFilterEnabled ? null : fFilterRanks;
             @Override
             protected IStatus run(final IProgressMonitor monitor) {
 
@@ -407,20 +488,29 @@ public class TmfEventsCache {
                     nbRequested = fCache.length;
                 } else {
                     nbRequested = ITmfEventRequest.ALL_DATA;
-                    int i = startIndex / fCacheSize;
-                    if (i < fFilterIndex.size()) {
-                        skipCount = startIndex - (i * fCacheSize);
-                        startIndex = fFilterIndex.get(i);
+                    long i = startIndex / fCacheSize;
+                    if (ranks != null && startIndex < ranks.getCardinality()) {
+                        startRank = ranks.select(startIndex);
+                    } else if (ranks != null) {
+                        startRank = ranks.size();
+                        skipCount = startIndex - ranks.getCardinality();
+                    } else {
+                        synchronized (TmfEventsCache.this) {
+                            if (i < fFilterIndex.size()) {
+                                skipCount = startIndex - (i * fCacheSize);
+                                startRank = fFilterIndex.getRank((int) i);
+                            }
+                        }
                     }
                 }
 
                 TmfEventRequest request = new TmfEventRequest(ITmfEvent.class,
                         TmfTimeRange.ETERNITY,
-                        startIndex,
+                        startRank,
                         nbRequested,
                         TmfEventRequest.ExecutionType.FOREGROUND) {
                     private int count = 0;
-                    private long rank = startIndex;
+                    private long rank = startRank;
                     private TmfCollapseFilter collapseFilter = fCollapseFilterEnabled ? new TmfCollapseFilter() : null;
                     @Override
                     public void handleData(ITmfEvent event) {
@@ -430,7 +520,7 @@ public class TmfEventsCache {
                             return;
                         }
                         super.handleData(event);
-                        if ((fFilter == null) || fFilter.matches(event)) {
+                        if ((fFilter == null) || matches(event, rank)) {
                             if (collapseFilter == null || collapseFilter.matches(event)) {
                                 if (skipCount-- <= 0) {
                                     synchronized (TmfEventsCache.this) {
@@ -456,6 +546,13 @@ public class TmfEventsCache {
                         }
                         rank++;
                     }
+
+                    private boolean matches(ITmfEvent event, long eventRank) {
+                        if (ranks != null && eventRank < ranks.size()) {
+                            return ranks.contains(eventRank);
+                        }
+                        return fFilter.matches(event);
+                    }
                 };
 
                 ((ITmfEventProvider) fTrace).sendRequest(request);
@@ -20,12 +20,14 @@ package org.eclipse.tracecompass.tmf.ui.viewers.events;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -51,6 +53,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
@@ -121,12 +124,19 @@ import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex;
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndex.Postings;
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndexModule;
+import org.eclipse.tracecompass.internal.tmf.core.event.index.TmfEventIndexQuery;
 import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCollapseFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCompiledFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterRankIndex;
 import org.eclipse.tracecompass.internal.tmf.ui.Activator;
 import org.eclipse.tracecompass.internal.tmf.ui.Messages;
 import org.eclipse.tracecompass.internal.tmf.ui.commands.CopyToClipboardOperation;
 import org.eclipse.tracecompass.internal.tmf.ui.commands.ExportToTextCommandHandler;
 import org.eclipse.tracecompass.internal.tmf.ui.dialogs.AddBookmarkDialog;
+import org.eclipse.tracecompass.internal.tmf.ui.viewers.events.EventsTableWindow;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.component.TmfComponent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -142,6 +152,7 @@ import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
 import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
 import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterObjectNode;
 import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest.ExecutionType;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.resources.ITmfMarker;
@@ -158,6 +169,7 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.core.util.Pair;
 import org.eclipse.tracecompass.tmf.ui.viewers.events.TmfEventsCache.CachedEvent;
@@ -333,10 +345,12 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             } else {
                 return;
             }
-            int index = (int) rank;
+            int index;
             if (fTable.getData(Key.FILTER_OBJ) != null) {
                 // +1 for top filter status row
-                index = fCache.getFilteredEventIndex(rank) + 1;
+                index = revealRow(fCache.getFilteredIndex(rank)) + 1;
+            } else {
+                index = revealRow(rank);
             }
             // +1 for header row
             fTable.setSelection(index + 1);
@@ -2090,18 +2104,12 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             column.setData(Key.FILTER_TXT, null);
         }
         fTable.setData(Key.FILTER_OBJ, null);
-        if (fTrace != null) {
-            /* +1 for header row */
-            fTable.setItemCount((int) fTrace.getNbEvents() + 1);
-        } else {
-            /* +1 for header row */
-            fTable.setItemCount(1);
-        }
+        updateItemCount();
         fFilterMatchCount = 0;
         fFilterCheckCount = 0;
         if (fSelectedRank >= 0) {
             /* +1 for header row */
-            fTable.setSelection((int) fSelectedRank + 1);
+            fTable.setSelection(revealRow(fSelectedRank) + 1);
         } else {
             fTable.setSelection(0);
         }
@@ -2120,6 +2128,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
         private final ITmfFilterTreeNode filter;
         private TmfCollapseFilter collapseFilter = null;
         private TmfEventRequest request;
+        private final IProgressMonitor monitor = new NullProgressMonitor();
         private boolean refreshBusy = false;
         private boolean refreshPending = false;
         private final Object syncObj = new Object();
@@ -2142,13 +2151,21 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             }
             if (fCollapseFilterEnabled) {
                 collapseFilter = new TmfCollapseFilter();
+            } else {
+                String key = TmfFilterRankIndex.getKey(filter);
+                if (key != null) {
+                    runIndexed(key);
+                    return;
+                }
             }
-            final int nbRequested = (int) (fTrace.getNbEvents() - fFilterCheckCount);
-            if (nbRequested <= 0) {
+            final long remaining = fTrace.getNbEvents() - fFilterCheckCount;
+            if (remaining <= 0) {
                 return;
             }
+            final int nbRequested = (int) Math.min(remaining, ITmfEventRequest.ALL_DATA);
+            final ITmfFilter compiledFilter = TmfCompiledFilter.compile(filter);
             request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY,
-                    (int) fFilterCheckCount, nbRequested, ExecutionType.BACKGROUND) {
+                    fFilterCheckCount, nbRequested, ExecutionType.BACKGROUND) {
                 @Override
                 public void handleData(final ITmfEvent event) {
                     super.handleData(event);
@@ -2156,14 +2173,14 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                         return;
                     }
                     boolean refresh = false;
-                    if (filter.matches(event)) {
+                    if (compiledFilter.matches(event)) {
                         if (collapseFilter == null || collapseFilter.matches(event)) {
                             final long rank = fFilterCheckCount;
-                            final int index = (int) fFilterMatchCount;
+                            final long index = fFilterMatchCount;
                             fFilterMatchCount++;
-                            fCache.storeEvent(event, rank, index);
+                            fCache.storeEventAt(event, rank, index);
                         } else if (collapseFilter != null) {
-                            fCache.updateCollapsedEvent((int) fFilterMatchCount - 1);
+                            fCache.updateCollapsedEventAt(fFilterMatchCount - 1);
                         }
                         refresh = true;
                     }
@@ -2180,6 +2197,27 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             } catch (final InterruptedException e) {
             }
             refreshTable();
+            resume();
+        }
+
+        /**
+         * Filter the events with the filter results index, which checks the
+         * events in parallel and reuses the results saved for this filter.
+         */
+        private void runIndexed(String key) {
+            TmfFilterRankIndex.getRanks(fTrace, filter, key, monitor, ranks -> {
+                if (monitor.isCanceled()) {
+                    return;
+                }
+                fCache.setFilterRanks(ranks);
+                fFilterMatchCount = ranks.getCardinality();
+                fFilterCheckCount = ranks.size();
+                refreshTable();
+            });
+            resume();
+        }
+
+        private void resume() {
             synchronized (fFilterSyncObj) {
                 fFilterThread = null;
                 if (fFilterThreadResume) {
@@ -2190,6 +2228,10 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             }
         }
 
+        private boolean isCancelled() {
+            return monitor.isCanceled() || (request != null && request.isCancelled());
+        }
+
         /**
          * Refresh the filter.
          */
@@ -2204,17 +2246,13 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             Display.getDefault().asyncExec(new Runnable() {
                 @Override
                 public void run() {
-                    if (request.isCancelled()) {
+                    if (isCancelled()) {
                         return;
                     }
                     if (fTable.isDisposed()) {
                         return;
                     }
-                    /*
-                     * +1 for header row, +2 for top and bottom filter status
-                     * rows
-                     */
-                    fTable.setItemCount((int) fFilterMatchCount + 3);
+                    updateItemCount();
                     fTable.refresh();
                     synchronized (syncObj) {
                         refreshBusy = false;
@@ -2231,6 +2269,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
          * Cancel this filtering thread.
          */
         public void cancel() {
+            monitor.setCanceled(true);
             if (request != null) {
                 request.cancel();
             }
@@ -2365,7 +2404,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             }
             final Display display = Display.getDefault();
             if (startIndex < 0) {
-                rank = (int) trace.getNbEvents() - 1;
+                rank = trace.getNbEvents() - 1;
                 /*
                  * -1 for header row, -3 for header and top and bottom filter
                  * status rows
@@ -2400,20 +2439,26 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                     } else {
                         rank--;
                         if (rank < 0) {
-                            rank = (int) trace.getNbEvents() - 1;
+                            rank = trace.getNbEvents() - 1;
                         }
                     }
                 }
             }
-            final int startRank = (int) rank;
+            final long startRank = rank;
+            if (foundRank == -1 && searchIndex(trace, startRank, monitor) && foundRank == -1) {
+                synchronized (fSearchSyncObj) {
+                    fSearchThread = null;
+                }
+                return Status.OK_STATUS;
+            }
             boolean wrapped = false;
             while (!monitor.isCanceled() && (foundRank == -1)) {
-                int nbRequested = (direction == Direction.FORWARD ? Integer.MAX_VALUE : Math.min((int) rank + 1, trace.getCacheSize()));
+                int nbRequested = (direction == Direction.FORWARD ? Integer.MAX_VALUE : (int) Math.min(rank + 1, trace.getCacheSize()));
                 if (direction == Direction.BACKWARD) {
                     rank = Math.max(0, rank - trace.getCacheSize() + 1);
                 }
                 request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY,
-                        (int) rank, nbRequested, ExecutionType.BACKGROUND) {
+                        rank, nbRequested, ExecutionType.BACKGROUND) {
                     long currentRank = rank;
 
                     @Override
@@ -2450,13 +2495,13 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                             }
                             return Status.OK_STATUS;
                         }
-                        nbRequested = (int) rank;
+                        nbRequested = (int) Math.min(rank, ITmfEventRequest.ALL_DATA);
                         rank = 0;
                         wrapped = true;
                     } else {
                         rank--;
                         if (rank < 0) {
-                            rank = (int) trace.getNbEvents() - 1;
+                            rank = trace.getNbEvents() - 1;
                             wrapped = true;
                         }
                         if ((rank <= startRank) && wrapped) {
@@ -2468,12 +2513,9 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                     }
                 }
             }
-            int index = (int) foundRank;
-            if (eventFilter != null) {
-                index = fCache.getFilteredEventIndex(foundRank);
-            }
-            /* +1 for header row, +1 for top filter status row */
-            final int selection = index + 1 + (eventFilter != null ? +1 : 0);
+            final long index = (eventFilter != null ? fCache.getFilteredIndex(foundRank) : foundRank);
+            /* +1 for top filter status row */
+            final int filterRows = (eventFilter != null ? 1 : 0);
 
             display.asyncExec(new Runnable() {
                 @Override
@@ -2484,7 +2526,8 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                     if (fTable.isDisposed()) {
                         return;
                     }
-                    fTable.setSelection(selection);
+                    /* +1 for header row */
+                    fTable.setSelection(revealRow(index) + 1 + filterRows);
                     fSelectedRank = foundRank;
                     fSelectedBeginRank = fSelectedRank;
                     fRawViewer.selectAndReveal(fSelectedRank);
@@ -2501,6 +2544,67 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             return Status.OK_STATUS;
         }
 
+        /**
+         * Search the event with the event index of the trace, if it is built
+         * and it can answer the search filter. The index is built in the
+         * background on the first search, for the next ones.
+         *
+         * @return true if the index answered the search, whether an event was
+         *         found or not, false if the trace must be read instead
+         */
+        private boolean searchIndex(final ITmfTrace trace, final long startRank, final IProgressMonitor monitor) {
+            TmfEventIndexModule module = TmfTraceUtils.getAnalysisModuleOfClass(trace, TmfEventIndexModule.class, TmfEventIndexModule.ID);
+            if (module == null) {
+                return false;
+            }
+            module.schedule();
+            TmfEventIndex index = module.getIndex();
+            long nbEvents = trace.getNbEvents();
+            if (index == null || index.getNbEvents() < nbEvents) {
+                return false;
+            }
+            Map<String, ITmfEventAspect<?>> aspects = TmfEventIndexModule.getIndexedAspects(trace);
+            Postings postings = TmfEventIndexQuery.create(index, aspects, searchFilter);
+            if (postings == null) {
+                return false;
+            }
+            boolean forward = (direction == Direction.FORWARD);
+            try {
+                long candidate = forward ? postings.next(startRank) : postings.previous(startRank);
+                boolean wrapped = false;
+                while (!monitor.isCanceled()) {
+                    if (candidate < 0 || candidate >= nbEvents) {
+                        if (wrapped) {
+                            return true;
+                        }
+                        wrapped = true;
+                        candidate = forward ? postings.next(0) : postings.previous(nbEvents - 1);
+                        continue;
+                    }
+                    if (wrapped && (forward ? candidate >= startRank : candidate <= startRank)) {
+                        return true;
+                    }
+                    /* The event is read for its timestamp and the event filter */
+                    ITmfContext context = trace.seekEvent(candidate);
+                    ITmfEvent event = trace.getNext(context);
+                    context.dispose();
+                    if (event == null) {
+                        return false;
+                    }
+                    if (eventFilter == null || eventFilter.matches(event)) {
+                        foundRank = candidate;
+                        foundTimestamp = event.getTimestamp();
+                        return true;
+                    }
+                    candidate = forward ? postings.next(candidate + 1) : (candidate == 0 ? -1 : postings.previous(candidate - 1));
+                }
+            } catch (IOException e) {
+                Activator.getDefault().logError("Error reading the event index of trace " + trace.getName(), e); //$NON-NLS-1$
+                return false;
+            }
+            return true;
+        }
+
         @Override
         protected void canceling() {
             if (request != null) {
@@ -2771,8 +2875,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                 if (trace != null) {
                     if (!fTable.isDisposed()) {
                         if (fTable.getData(Key.FILTER_OBJ) == null) {
-                            // +1 for header row
-                            fTable.setItemCount((int) trace.getNbEvents() + 1);
+                            updateItemCount();
                         } else {
                             stopFilterThread();
                             fFilterMatchCount = 0;
@@ -2805,6 +2908,39 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
         fStatusLineManager = statusLineManager;
     }
 
+    /**
+     * Get the row of an event, moving the window of the table rows over the
+     * event if it is outside of the window. Must be called from the UI thread.
+     *
+     * @param index
+     *            The rank of the event, or its index among the filtered events
+     *            if a filter is applied
+     * @return The row of the event, without the header and filter status rows
+     */
+    private int revealRow(long index) {
+        EventsTableWindow window = fCache.getWindow();
+        if (window.reveal(index)) {
+            fTable.clearAll();
+            updateItemCount();
+        }
+        return window.toRow(index);
+    }
+
+    /**
+     * Set the number of rows of the table for the events of the current
+     * window. Must be called from the UI thread.
+     */
+    private void updateItemCount() {
+        EventsTableWindow window = fCache.getWindow();
+        if (fTable.getData(Key.FILTER_OBJ) == null) {
+            /* +1 for header row */
+            fTable.setItemCount(window.getRowCount(fTrace != null ? fTrace.getNbEvents() : 0) + 1);
+        } else {
+            /* +1 for header row, +2 for top and bottom filter status rows */
+            fTable.setItemCount(window.getRowCount(fFilterMatchCount) + 3);
+        }
+    }
+
     private void updateStatusLine(ITmfTimestamp delta) {
         if (fStatusLineManager != null) {
             if (delta != null) {
@@ -3101,12 +3237,15 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             context.dispose();
         }
         if (rank != -1) {
-            int index = (int) rank;
+            int index;
             if (fTable.getData(Key.FILTER_OBJ) != null) {
                 // +1 for top filter status row
-                index = fCache.getFilteredEventIndex(rank) + 1;
-            } else if (rank >= fTable.getItemCount()) {
-                fPendingGotoRank = rank;
+                index = revealRow(fCache.getFilteredIndex(rank)) + 1;
+            } else {
+                if (rank >= fTrace.getNbEvents()) {
+                    fPendingGotoRank = rank;
+                }
+                index = revealRow(rank);
             }
             fSelectedRank = rank;
             fSelectedBeginRank = fSelectedRank;
@@ -3152,12 +3291,10 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             public void run() {
                 if (!fTable.isDisposed() && (fTrace != null)) {
                     if (fTable.getData(Key.FILTER_OBJ) == null) {
-                        /* +1 for header row */
-                        fTable.setItemCount((int) fTrace.getNbEvents() + 1);
-                        /* +1 for header row */
-                        if ((fPendingGotoRank != -1) && ((fPendingGotoRank + 1) < fTable.getItemCount())) {
+                        updateItemCount();
+                        if ((fPendingGotoRank != -1) && (fPendingGotoRank < fTrace.getNbEvents())) {
                             /* +1 for header row */
-                            fTable.setSelection((int) fPendingGotoRank + 1);
+                            fTable.setSelection(revealRow(fPendingGotoRank) + 1);
                             fPendingGotoRank = -1;
                             updateStatusLine(null);
                         }
@@ -3302,16 +3439,22 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                             fSelectedRank = rankEnd;
                             long toReveal = fSelectedBeginRank != rankBegin ? rankBegin : rankEnd;
                             fSelectedBeginRank = rankBegin;
-                            int indexBegin = (int) rankBegin;
-                            int indexEnd = (int) rankEnd;
+                            long indexBegin = rankBegin;
+                            long indexEnd = rankEnd;
+                            int filterRows = 0;
 
                             if (fTable.getData(Key.FILTER_OBJ) != null) {
+                                indexBegin = fCache.getFilteredIndex(rankBegin);
+                                indexEnd = rankEnd == rankBegin ? indexBegin : fCache.getFilteredIndex(rankEnd);
                                 /* +1 for top filter status row */
-                                indexBegin = fCache.getFilteredEventIndex(rankBegin) + 1;
-                                indexEnd = rankEnd == rankBegin ? indexBegin : fCache.getFilteredEventIndex(rankEnd) + 1;
+                                filterRows = 1;
                             }
+                            revealRow(toReveal == rankBegin ? indexBegin : indexEnd);
+                            EventsTableWindow window = fCache.getWindow();
+                            int rowBegin = window.toNearestRow(indexBegin) + filterRows;
+                            int rowEnd = window.toNearestRow(indexEnd) + filterRows;
                             /* +1 for header row */
-                            fTable.setSelectionRange(indexBegin + 1, indexEnd + 1);
+                            fTable.setSelectionRange(rowBegin + 1, rowEnd + 1);
                             fRawViewer.selectAndReveal(toReveal);
                             updateStatusLine(null);
                         }
@@ -14,6 +14,7 @@
 package org.eclipse.tracecompass.tmf.ui.views.callstack;
 
 import org.eclipse.tracecompass.tmf.core.callstack.CallStackStateProvider;
+import org.eclipse.tracecompass.tmf.core.callstack.ICallStackAnalysis;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.ui.analysis.TmfAnalysisViewOutput;
 
@@ -22,7 +23,7 @@ import org.eclipse.tracecompass.tmf.ui.analysis.TmfAnalysisViewOutput;
  *
  * @author Alexandre Montplaisir
  */
-public abstract class AbstractCallStackAnalysis extends TmfStateSystemAnalysisModule {
+public abstract class AbstractCallStackAnalysis extends TmfStateSystemAnalysisModule implements ICallStackAnalysis {
 
     private static final String[] DEFAULT_THREADS_PATTERN =
             new String[] { CallStackStateProvider.THREADS, "*" }; //$NON-NLS-1$;
@@ -46,6 +47,7 @@ public abstract class AbstractCallStackAnalysis extends TmfStateSystemAnalysisMo
      *
      * @return the absolute pattern of the thread attributes
      */
+    @Override
     public String[] getThreadsPattern() {
         return DEFAULT_THREADS_PATTERN;
     }
@@ -58,6 +60,7 @@ public abstract class AbstractCallStackAnalysis extends TmfStateSystemAnalysisMo
      *
      * @return the relative path of the call stack attribute
      */
+    @Override
     public String[] getCallStackPath() {
         return DEFAULT_CALL_STACK_PATH;
     }
@@ -77,6 +77,18 @@ public class HistogramBucket {
         fNbEvents++;
     }
 
+    /**
+     * Add events in this bucket
+     * @param traceIndex a trace index - see {@link HistogramDataModel#setTrace}.
+     * @param nbEvents the number of events to add
+     * @since 2.0
+     */
+    public synchronized void addEvents(int traceIndex, int nbEvents) {
+        ensureCapacity(traceIndex + 1);
+        fEvents[traceIndex] += nbEvents;
+        fNbEvents += nbEvents;
+    }
+
     private void ensureCapacity(int len) {
         if (fEvents == null) {
             fEvents = new int[len];
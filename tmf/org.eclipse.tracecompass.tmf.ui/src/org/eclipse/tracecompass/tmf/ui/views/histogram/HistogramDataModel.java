@@ -538,6 +538,42 @@ public class HistogramDataModel implements IHistogramDataModel {
         fireModelUpdateNotification(eventCount);
     }
 
+    /**
+     * Add the events already counted per bucket, for example by the
+     * statistics of the trace, instead of counting them one by one. The counts
+     * start at the first bucket and use the current bucket duration.
+     *
+     * @param trace
+     *            The trace of the events
+     * @param counts
+     *            The number of events in each bucket
+     * @param lostEvents
+     *            The number of lost events in each bucket
+     * @since 2.0
+     */
+    public synchronized void countEvents(ITmfTrace trace, long[] counts, long[] lostEvents) {
+        Integer traceIndex = fTraceMap.get(trace);
+        if (traceIndex == null) {
+            traceIndex = 0;
+        }
+        int nbBuckets = Math.min(counts.length, fNbBuckets);
+        for (int index = 0; index < nbBuckets; index++) {
+            if (counts[index] > 0) {
+                if (fBuckets[index] == null) {
+                    fBuckets[index] = new HistogramBucket(getNbTraces());
+                }
+                fBuckets[index].addEvents(traceIndex, (int) Math.min(counts[index], Integer.MAX_VALUE));
+                fNbEvents += counts[index];
+                fLastBucket = Math.max(fLastBucket, index);
+            }
+        }
+        nbBuckets = Math.min(lostEvents.length, fNbBuckets);
+        for (int index = 0; index < nbBuckets; index++) {
+            fLostEventsBuckets[index] += lostEvents[index];
+        }
+        fireModelUpdateNotification();
+    }
+
     /**
      * Add lost event to the correct bucket, compacting the if needed.
      *
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ui.views.histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.tracecompass.tmf.core.statistics.ITmfStatistics;
+import org.eclipse.tracecompass.tmf.core.statistics.TmfStateStatistics;
+import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsModule;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+
+/**
+ * Job filling a histogram data model from the statistics of the traces,
+ * instead of reading the events of its time range. Each bucket costs one
+ * state system query per trace, whatever the number of events in it, so
+ * zooming on a large trace does not read it again.
+ */
+class HistogramStatisticsJob extends Job {
+
+    private final HistogramDataModel fModel;
+    private final Map<ITmfTrace, TmfStateStatistics> fStatistics;
+    private final long fStartTime;
+    private final long fEndTime;
+    private final long fBucketDuration;
+
+    private HistogramStatisticsJob(HistogramDataModel model, Map<ITmfTrace, TmfStateStatistics> statistics) {
+        super("Histogram statistics"); //$NON-NLS-1$
+        setSystem(true);
+        fModel = model;
+        fStatistics = statistics;
+        /* The range can change once the job is scheduled, keep the current one */
+        fStartTime = model.getFirstBucketTime();
+        fEndTime = model.getEndTime();
+        fBucketDuration = model.getBucketDuration();
+    }
+
+    /**
+     * Create a job filling a histogram data model for the current time range
+     * of the model
+     *
+     * @param model
+     *            The histogram data model, cleared and set to its time range
+     * @param trace
+     *            The trace, or experiment
+     * @return The job, or null if the statistics of a trace are still being
+     *         built, in which case the events have to be read
+     */
+    public static HistogramStatisticsJob create(HistogramDataModel model, ITmfTrace trace) {
+        Map<ITmfTrace, TmfStateStatistics> statistics = new LinkedHashMap<>();
+        for (ITmfTrace child : TmfTraceManager.getTraceSet(trace)) {
+            TmfStatisticsModule module = TmfTraceUtils.getAnalysisModuleOfClass(child, TmfStatisticsModule.class, TmfStatisticsModule.ID);
+            if (module == null) {
+                return null;
+            }
+            ITmfStatistics stats = module.getStatistics();
+            if (!(stats instanceof TmfStateStatistics) || !((TmfStateStatistics) stats).getTotalsSS().waitUntilBuilt(0)) {
+                return null;
+            }
+            statistics.put(child, (TmfStateStatistics) stats);
+        }
+        if (statistics.isEmpty() || model.getEndTime() < model.getFirstBucketTime()) {
+            return null;
+        }
+        return new HistogramStatisticsJob(model, statistics);
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        int nbBuckets = (int) Math.min((fEndTime - fStartTime) / fBucketDuration + 1, fModel.getNbBuckets());
+        long lastBucketTime = fStartTime + (nbBuckets - 1) * fBucketDuration;
+        for (Entry<ITmfTrace, TmfStateStatistics> entry : fStatistics.entrySet()) {
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            TmfStateStatistics stats = entry.getValue();
+            long[] counts = stats.getEventsInRanges(fStartTime, fBucketDuration, nbBuckets);
+            /* Lost events are spread over their time range, like an event request */
+            long[] lostEvents = stats.getLostEventsInRanges(fStartTime, fEndTime, fBucketDuration, fModel.getNbBuckets());
+            /* The last bucket stops at the end of the range, like an event request */
+            counts[nbBuckets - 1] = stats.getEventsInRanges(lastBucketTime, fEndTime - lastBucketTime + 1, 1)[0];
+            synchronized (fModel) {
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                fModel.countEvents(entry.getKey(), counts, lostEvents);
+            }
+        }
+        fModel.complete();
+        return Status.OK_STATUS;
+    }
+}
@@ -143,6 +143,7 @@ public class HistogramView extends TmfView implements ITmfTimeAligned {
     // Histogram/request for the selected time range
     private TimeRangeHistogram fTimeRangeHistogram;
     private HistogramRequest fTimeRangeRequest;
+    private HistogramStatisticsJob fTimeRangeStatisticsJob;
 
     // Legend area
     private Composite fLegendArea;
@@ -175,6 +176,9 @@ public class HistogramView extends TmfView implements ITmfTimeAligned {
         if ((fTimeRangeRequest != null) && !fTimeRangeRequest.isCompleted()) {
             fTimeRangeRequest.cancel();
         }
+        if (fTimeRangeStatisticsJob != null) {
+            fTimeRangeStatisticsJob.cancel();
+        }
         if ((fFullTraceRequest != null) && !fFullTraceRequest.isCompleted()) {
             fFullTraceRequest.cancel();
         }
@@ -671,6 +675,9 @@ public class HistogramView extends TmfView implements ITmfTimeAligned {
         if ((fTimeRangeRequest != null) && !fTimeRangeRequest.isCompleted()) {
             fTimeRangeRequest.cancel();
         }
+        if (fTimeRangeStatisticsJob != null) {
+            fTimeRangeStatisticsJob.cancel();
+        }
         if ((fFullTraceRequest != null) && !fFullTraceRequest.isCompleted()) {
             fFullTraceRequest.cancel();
         }
@@ -836,6 +843,9 @@ public class HistogramView extends TmfView implements ITmfTimeAligned {
         if ((fTimeRangeRequest != null) && !fTimeRangeRequest.isCompleted()) {
             fTimeRangeRequest.cancel();
         }
+        if (fTimeRangeStatisticsJob != null) {
+            fTimeRangeStatisticsJob.cancel();
+        }
         fTimeRangeHistogram.clear();
         fTimeRangeHistogram.setFullRange(fTraceStartTime, fTraceEndTime);
         fTimeRangeHistogram.setTimeRange(startTime, duration);
@@ -937,6 +947,9 @@ public class HistogramView extends TmfView implements ITmfTimeAligned {
         if ((fTimeRangeRequest != null) && !fTimeRangeRequest.isCompleted()) {
             fTimeRangeRequest.cancel();
         }
+        if (fTimeRangeStatisticsJob != null) {
+            fTimeRangeStatisticsJob.cancel();
+        }
         ITmfTimestamp startTS = TmfTimestamp.fromNanos(startTime);
         ITmfTimestamp endTS = TmfTimestamp.fromNanos(endTime);
         TmfTimeRange timeRange = new TmfTimeRange(startTS, endTS);
@@ -945,6 +958,13 @@ public class HistogramView extends TmfView implements ITmfTimeAligned {
         fTimeRangeHistogram.setFullRange(fTraceStartTime, fTraceEndTime);
         fTimeRangeHistogram.setTimeRange(startTime, endTime - startTime);
 
+        /* Count the events with the statistics once they are built */
+        fTimeRangeStatisticsJob = HistogramStatisticsJob.create(fTimeRangeHistogram.getDataModel(), fTrace);
+        if (fTimeRangeStatisticsJob != null) {
+            fTimeRangeStatisticsJob.schedule();
+            return;
+        }
+
         int cacheSize = fTrace.getCacheSize();
         fTimeRangeRequest = new HistogramRequest(fTimeRangeHistogram.getDataModel(),
                 timeRange, 0, ITmfEventRequest.ALL_DATA, cacheSize, ExecutionType.FOREGROUND, false);